@@ -4,22 +4,33 @@ import static spark.Spark.get;
 import static spark.Spark.post;
 import static spark.Spark.put;
 
+import java.time.Duration;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import dev.samir.backend.client.HttpHtmlClientFacade;
+import dev.samir.backend.client.PoliteHttpClientFacade;
+import dev.samir.backend.client.ResilientHttpClientFacade;
 import dev.samir.backend.common.GsonTransformer;
 import dev.samir.backend.common.RandomUtils;
 import dev.samir.backend.common.TransformToJson;
 import dev.samir.backend.common.configuration.DefaultEnvironmentConfiguration;
 import dev.samir.backend.common.configuration.Environment;
+import dev.samir.backend.common.configuration.ExecutionMode;
 import dev.samir.backend.common.validation.DefaultValidation;
+import dev.samir.backend.persistence.DataAccessObject;
 import dev.samir.backend.persistence.InMemmoryDao;
+import dev.samir.backend.persistence.MappedResultsDao;
+import dev.samir.backend.persistence.RetentionSweeper;
+import dev.samir.backend.persistence.WriteAheadLogDao;
+import dev.samir.backend.route.CrawlBatchRoute;
 import dev.samir.backend.route.CrawlRoute;
 import dev.samir.backend.route.ResultsRoute;
+import dev.samir.backend.route.StreamRoute;
 import dev.samir.backend.route.UpdateRoute;
 import dev.samir.backend.service.ServicesImpl;
 
@@ -27,10 +38,12 @@ import dev.samir.backend.service.ServicesImpl;
  * This class is a simple HTTP server that handles GET and POST requests.
  * It uses the Spark framework to define the routes and their corresponding handlers.
  * <p>
- * The server has two endpoints: <br>
+ * The server has the following endpoints: <br>
  * <ol>
  *   <li>GET /crawl/:id - Responds with a message containing the ID from the URL.</li>
  *   <li>POST /crawl - Responds with a message containing the body of the request.</li>
+ *   <li>POST /crawls - Starts a crawl for each keyword of the body, all of them sharing a single traversal.</li>
+ *   <li>GET /crawl/:id/stream - Streams the URLs found and the status changes of the crawl as Server-Sent Events.</li>
  * </ol>
  * </p>
  * The server go throught different URLs to find the keyword provided and then lists the URLs where the keyword was found. 
@@ -61,12 +74,20 @@ public class Main {
 	private static final Logger LOGGER = LoggerFactory.getLogger(Main.class);
 	
 	/**
-	 * 
+	 * Executor shared by the HTTP client and the crawl processing, created according to the configured {@link ExecutionMode}.
 	 */
-	public static final ExecutorService EXECUTOR_SERVICE = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+	public static final ExecutorService EXECUTOR_SERVICE = new Environment(new DefaultEnvironmentConfiguration())
+			.getExecutionMode().newExecutorService();
+	
+	/**
+	 * Released on shutdown once the {@link #EXECUTOR_SERVICE} is done, the last one registered first, so the crawls are
+	 * checkpointed before the write-ahead log they write to is closed.
+	 */
+	private static final Deque<Runnable> RELEASES = new ConcurrentLinkedDeque<>();
 	
     /**
-     * Releasing thread resources.
+     * Releasing thread resources, then the resources registered by {@link #onShutdown(Runnable)}, in a single hook since
+     * the JVM runs its hooks concurrently.
      */
     static {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
@@ -82,10 +103,25 @@ public class Main {
                     Thread.currentThread().interrupt();
                 }
             }
+            for (Runnable release : RELEASES) {
+            	try {
+            		release.run();
+            	} catch (RuntimeException ex) {
+            		LOGGER.warn("Could not release a resource on shutdown", ex);
+            	}
+            }
             LOGGER.debug("Shutdown complete.");
         }));
     }
 	
+	/**
+	 * Registers a resource to release on shutdown, before the ones registered earlier.
+	 * @param release releases the resource.
+	 */
+	private static void onShutdown(Runnable release) {
+		RELEASES.push(release);
+	}
+	
 	/**
 	 * The main method sets up the server and defines the routes.
 	 * @param args Command line arguments (not used).
@@ -93,10 +129,32 @@ public class Main {
     public static void main(String[] args) {
     	
     	DefaultValidation validation = new DefaultValidation();
+    	Environment environment = new Environment(new DefaultEnvironmentConfiguration());
+    	DataAccessObject dao = new InMemmoryDao(validation, new RandomUtils(), Duration.ofMinutes(environment.getRetentionExpiredWindow()));
+    	
+    	// Result URLs are kept in memory-mapped files rather than on the heap
+    	if (environment.getResultsDirectory().isPresent()) {
+    		dao = new MappedResultsDao(dao, environment.getResultsDirectory().get());
+    	}
+    	
+    	// Crawls are rebuilt from the write-ahead log, and its last records synced on shutdown
+    	if (environment.getWalDirectory().isPresent()) {
+    		WriteAheadLogDao log = new WriteAheadLogDao(dao, environment.getWalDirectory().get(), environment.getWalSegmentSize() * 1024L * 1024L);
+    		onShutdown(log::close);
+    		dao = log;
+    	}
+    	
+    	// Finished crawls are evicted past their time to live, or when too many crawls or results are kept
+    	RetentionSweeper.of(dao, environment).start();
+    	
     	ServicesImpl service = new ServicesImpl(
-    			new InMemmoryDao(validation, new RandomUtils()), 
-    			new Environment(new DefaultEnvironmentConfiguration()),
-    			new HttpHtmlClientFacade());
+    			dao, 
+    			environment,
+    			new ResilientHttpClientFacade(new PoliteHttpClientFacade(new HttpHtmlClientFacade(environment), environment), environment));
+    	
+    	// Crawls checkpointed by a previous run go on where they were, and the latest progress is written on shutdown
+    	service.recover();
+    	onShutdown(service::checkpoint);
     	
     	TransformToJson transformer = new GsonTransformer();
     	
@@ -106,9 +164,16 @@ public class Main {
         post("/crawl", 
         		new CrawlRoute(service, validation), transformer::toJson);
         
+        post("/crawls", 
+        		new CrawlBatchRoute(service, validation), transformer::toJson);
+        
         put("/crawl/:id/status/:status", 
         		new UpdateRoute(service, validation), transformer::toJson);
         
+        // The events are written by the route itself, which leaves an empty body behind
+        get("/crawl/:id/stream", 
+        		new StreamRoute(service, validation), body -> "".equals(body) ? "" : transformer.toJson(body));
+        
     }
     
 }
@@ -0,0 +1,111 @@
+package dev.samir.backend.client;
+
+import java.net.http.HttpResponse.BodySubscriber;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Body subscriber forwarding every signal to another one, and able to abort the body: its subscription is cancelled and
+ * the other subscriber failed, so the rest of the body is never downloaded.
+ * <p>
+ * Cancelling the future of {@link java.net.http.HttpClient#sendAsync} only aborts the exchange from Java 16 on, the body
+ * streaming into its subscriber until its end otherwise. Timed out requests and the losing exchanges of hedged ones are
+ * aborted through this subscriber instead, whatever the runtime.
+ * </p>
+ * Signals are synchronized, since the body is aborted from the thread completing the response.
+ * @param <T> the type of the body.
+ * @author Scheide, Samir
+ */
+final class AbortableBodySubscriber<T> implements BodySubscriber<T> {
+
+	/**
+	 * Reads the body.
+	 */
+	private final BodySubscriber<T> delegate;
+
+	/**
+	 * The subscription to the response bytes, null until the body starts.
+	 */
+	private Flow.Subscription subscription;
+
+	/**
+	 * Whether the body was aborted, before it started or not.
+	 */
+	private boolean aborted;
+
+	/**
+	 * Whether the delegate received its last signal.
+	 */
+	private boolean done;
+
+	/**
+	 * Default constructor.
+	 * @param delegate {@link #delegate}
+	 */
+	AbortableBodySubscriber(BodySubscriber<T> delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public synchronized void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		delegate.onSubscribe(subscription);
+		if (aborted) {
+			fail();
+		}
+	}
+
+	@Override
+	public synchronized void onNext(List<ByteBuffer> item) {
+		if (!done) {
+			delegate.onNext(item);
+		}
+	}
+
+	@Override
+	public synchronized void onError(Throwable throwable) {
+		if (!done) {
+			done = true;
+			delegate.onError(throwable);
+		}
+	}
+
+	@Override
+	public synchronized void onComplete() {
+		if (!done) {
+			done = true;
+			delegate.onComplete();
+		}
+	}
+
+	@Override
+	public CompletionStage<T> getBody() {
+		return delegate.getBody();
+	}
+
+	/**
+	 * Cancels the download of the body, at once or as soon as it starts, unless the body was read already.
+	 */
+	synchronized void abort() {
+		if (aborted || done || delegate.getBody().toCompletableFuture().isDone()) {
+			return;
+		}
+		aborted = true;
+		if (subscription != null) {
+			fail();
+		}
+	}
+
+	/**
+	 * Cancels the subscription and fails the delegate, so it releases what it holds.
+	 */
+	private void fail() {
+		subscription.cancel();
+		done = true;
+		delegate.onError(new CancellationException("The download of the body was aborted"));
+	}
+
+}
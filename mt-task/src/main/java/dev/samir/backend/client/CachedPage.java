@@ -0,0 +1,286 @@
+package dev.samir.backend.client;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.Flow;
+
+import javax.net.ssl.SSLSession;
+
+/**
+ * A fetched page as kept by the {@link PageCache} and the {@link PageStore}: the response status and headers plus the
+ * body bytes, already decompressed, whose charset is decoded again by whoever reads it.
+ * <p>
+ * The validators of the response (<b>ETag</b> and <b>Last-Modified</b>) let an expired page be revalidated with a
+ * conditional request, and its <b>Cache-Control</b> bounds how long it may be kept.
+ * </p>
+ * @author Scheide, Samir
+ */
+final class CachedPage {
+
+	/**
+	 * Rough size of the status, headers and references, added to the body length to weigh a page.
+	 */
+	private static final int OVERHEAD = 512;
+
+	/**
+	 * Largest freshness lifetime, in seconds: RFC 9111 has caches read any greater <b>max-age</b> as 2<sup>31</sup>.
+	 */
+	private static final long MAX_DELTA_SECONDS = 1L << 31;
+
+	/**
+	 * Subscription of replayed bodies, which are handed over in a single chunk.
+	 */
+	private static final Flow.Subscription REPLAY = new Flow.Subscription() {
+		@Override
+		public void request(long n) {}
+		@Override
+		public void cancel() {}
+	};
+
+	/**
+	 * The page URI.
+	 */
+	private final URI uri;
+
+	/**
+	 * The response status code.
+	 */
+	private final int status;
+
+	/**
+	 * The HTTP version of the response.
+	 */
+	private final HttpClient.Version version;
+
+	/**
+	 * The response headers, updated by every revalidation.
+	 */
+	private final HttpHeaders headers;
+
+	/**
+	 * The complete body, or null when the download was cancelled or the body was too large to be kept.
+	 */
+	private final byte[] body;
+
+	/**
+	 * Default constructor.
+	 * @param response {@link #response}
+	 * @param body {@link #body}
+	 */
+	CachedPage(HttpResponse<?> response, byte[] body) {
+		this(response.uri(), response.statusCode(), response.version(), decoded(response.headers()), body);
+	}
+
+	/**
+	 * Constructor of a page read back from disk.
+	 * @param uri {@link #uri}
+	 * @param status {@link #status}
+	 * @param version {@link #version}
+	 * @param headers {@link #headers}
+	 * @param body {@link #body}
+	 */
+	CachedPage(URI uri, int status, HttpClient.Version version, HttpHeaders headers, byte[] body) {
+		this.uri = uri;
+		this.status = status;
+		this.version = version;
+		this.headers = headers;
+		this.body = body;
+	}
+
+	/**
+	 * @return true when the page may be kept: a complete body of a successful response which does not forbid it.
+	 */
+	boolean isCacheable() {
+		return body != null && status == StatusCode.OK.getCode() && !hasDirective("no-store");
+	}
+
+	/**
+	 * @return true when the whole body is available to be read again.
+	 */
+	boolean hasBody() {
+		return body != null;
+	}
+
+	URI getUri() {
+		return uri;
+	}
+
+	int getStatus() {
+		return status;
+	}
+
+	HttpClient.Version getVersion() {
+		return version;
+	}
+
+	HttpHeaders getHeaders() {
+		return headers;
+	}
+
+	/**
+	 * @return the body itself, not a copy, or null.
+	 */
+	byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * @return the memory taken by the page, in bytes.
+	 */
+	int weight() {
+		return OVERHEAD + (body == null ? 0 : body.length);
+	}
+
+	/**
+	 * Reads how long the server allows the page to be used without revalidation, from the <b>max-age</b> directive of
+	 * its <b>Cache-Control</b>, or zero when it asks for <b>no-cache</b>.
+	 * @return the freshness lifetime, if the server set one.
+	 */
+	Optional<Duration> getMaxAge() {
+		if (hasDirective("no-cache")) {
+			return Optional.of(Duration.ZERO);
+		}
+		for (String directive : directives()) {
+			if (directive.startsWith("max-age=")) {
+				return Optional.of(Duration.ofSeconds(deltaSeconds(directive.substring("max-age=".length()).replace("\"", ""))));
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Parses delta-seconds, clamped to {@link #MAX_DELTA_SECONDS} so no value overflows, or zero when it is invalid.
+	 */
+	private static long deltaSeconds(String value) {
+		if (value.isEmpty() || !value.chars().allMatch(c -> c >= '0' && c <= '9')) {
+			return 0;
+		}
+		// More digits than a long holds are already way over the maximum
+		return value.length() > 18 ? MAX_DELTA_SECONDS : Math.min(Long.parseLong(value), MAX_DELTA_SECONDS);
+	}
+
+	Optional<String> getETag() {
+		return headers.firstValue("ETag");
+	}
+
+	Optional<String> getLastModified() {
+		return headers.firstValue("Last-Modified");
+	}
+
+	/**
+	 * @return true when the page has a body and a validator, so a conditional request can tell if it is still current.
+	 */
+	boolean isRevalidatable() {
+		return body != null && (getETag().isPresent() || getLastModified().isPresent());
+	}
+
+	/**
+	 * Adds the validators of this page to a request, making it conditional.
+	 * @param request the request for the same page.
+	 * @return the request.
+	 */
+	HttpRequest.Builder conditional(HttpRequest.Builder request) {
+		getETag().ifPresent(etag -> request.header("If-None-Match", etag));
+		getLastModified().ifPresent(lastModified -> request.header("If-Modified-Since", lastModified));
+		return request;
+	}
+
+	/**
+	 * Creates the page confirmed by a <b>304 Not Modified</b> response: the same body, with the headers of the
+	 * response replacing the stored ones.
+	 * @param notModified the response to the conditional request.
+	 * @return the revalidated page.
+	 */
+	CachedPage revalidate(HttpResponse<?> notModified) {
+		Map<String, List<String>> merged = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		merged.putAll(headers.map());
+		merged.putAll(decoded(notModified.headers()).map());
+		return new CachedPage(uri, status, version, HttpHeaders.of(merged, (name, value) -> true), body);
+	}
+
+	/**
+	 * Reads the body again with the scanner, just like {@link HtmlScanBodySubscriber} does while downloading.
+	 * @param scanner a new scanner.
+	 * @return the scanner after reading the body.
+	 */
+	HtmlPageScanner scan(HtmlPageScanner scanner) {
+		HtmlScanBodySubscriber subscriber = new HtmlScanBodySubscriber(scanner.status(status), HtmlScanBodySubscriber.charset(headers));
+		subscriber.onSubscribe(REPLAY);
+		subscriber.onNext(List.of(ByteBuffer.wrap(body)));
+		subscriber.onComplete();
+		return subscriber.getBody().toCompletableFuture().join();
+	}
+
+	/**
+	 * @return the page as a response whose body is decoded with the charset of its headers.
+	 */
+	HttpResponse<String> toResponse() {
+		String text = new String(body, HtmlScanBodySubscriber.charset(headers));
+		return new HttpResponse<>() {
+			@Override
+			public int statusCode() {
+				return status;
+			}
+			@Override
+			public HttpRequest request() {
+				return HttpRequest.newBuilder(uri).GET().build();
+			}
+			@Override
+			public Optional<HttpResponse<String>> previousResponse() {
+				return Optional.empty();
+			}
+			@Override
+			public HttpHeaders headers() {
+				return headers;
+			}
+			@Override
+			public String body() {
+				return text;
+			}
+			@Override
+			public Optional<SSLSession> sslSession() {
+				return Optional.empty();
+			}
+			@Override
+			public URI uri() {
+				return uri;
+			}
+			@Override
+			public HttpClient.Version version() {
+				return version;
+			}
+		};
+	}
+
+	/**
+	 * Drops the headers describing the body as it was received, since pages keep their body decoded.
+	 */
+	private static HttpHeaders decoded(HttpHeaders headers) {
+		return HttpHeaders.of(headers.map(), (name, value) -> !name.equalsIgnoreCase("Content-Encoding")
+				&& !name.equalsIgnoreCase("Content-Length"));
+	}
+
+	private boolean hasDirective(String name) {
+		for (String directive : directives()) {
+			if (directive.equals(name) || directive.startsWith(name + "=")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private String[] directives() {
+		return String.join(",", headers.allValues("Cache-Control")).toLowerCase(Locale.ROOT).replace(" ", "").split(",");
+	}
+
+}
@@ -0,0 +1,104 @@
+package dev.samir.backend.client;
+
+/**
+ * Circuit breaker of a single host. After too many consecutive failures the circuit opens and requests fail at once
+ * instead of waiting for a host which is down; once the cool down is over, a single probe is let through, closing the
+ * circuit again when it succeeds and opening it for another cool down when it fails.
+ *
+ * @author Scheide, Samir
+ */
+final class CircuitBreaker {
+
+	enum State { CLOSED, OPEN, HALF_OPEN }
+
+	/**
+	 * Consecutive failures opening the circuit, zero or less never opening it.
+	 */
+	private final int threshold;
+
+	/**
+	 * How long the circuit stays open before a probe is let through.
+	 */
+	private final long coolDownNanos;
+
+	private State state = State.CLOSED;
+
+	/**
+	 * Consecutive failures while closed.
+	 */
+	private int failures;
+
+	/**
+	 * When the circuit was opened, in {@link System#nanoTime()} units.
+	 */
+	private long openedAt;
+
+	/**
+	 * Whether the probe of the half open circuit was let through and did not complete yet.
+	 */
+	private boolean probing;
+
+	/**
+	 * Default constructor.
+	 * @param threshold {@link #threshold}
+	 * @param coolDownNanos {@link #coolDownNanos}
+	 */
+	CircuitBreaker(int threshold, long coolDownNanos) {
+		this.threshold = threshold;
+		this.coolDownNanos = coolDownNanos;
+	}
+
+	/**
+	 * @return true when a request may be sent, false when it must fail fast.
+	 */
+	synchronized boolean tryAcquire() {
+		if (state == State.OPEN && System.nanoTime() - openedAt >= coolDownNanos) {
+			state = State.HALF_OPEN;
+			probing = false;
+		}
+		if (state == State.HALF_OPEN) {
+			if (probing) {
+				return false;
+			}
+			probing = true;
+			return true;
+		}
+		return state == State.CLOSED;
+	}
+
+	/**
+	 * Records an answer of the host, closing the circuit.
+	 */
+	synchronized void onSuccess() {
+		state = State.CLOSED;
+		failures = 0;
+		probing = false;
+	}
+
+	/**
+	 * Records a failure of the host, opening the circuit when it was a probe or one failure too many.
+	 */
+	synchronized void onFailure() {
+		if (threshold <= 0) {
+			return;
+		}
+		if (state == State.HALF_OPEN || (state == State.CLOSED && ++failures >= threshold)) {
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+			failures = 0;
+			probing = false;
+		}
+	}
+
+	/**
+	 * Records a request cancelled before the host answered, which tells nothing about the host but frees the probe.
+	 */
+	synchronized void onCancelled() {
+		probing = false;
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+
+}
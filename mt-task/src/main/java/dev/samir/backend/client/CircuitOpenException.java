@@ -0,0 +1,25 @@
+package dev.samir.backend.client;
+
+import java.io.IOException;
+
+/**
+ * Signals a request which was not sent because its host failed too many times recently.
+ *
+ * @author Scheide, Samir
+ */
+public final class CircuitOpenException extends IOException {
+
+	/**
+	 * Serial version UID for serialization.
+	 */
+	private static final long serialVersionUID = -6402713580935521247L;
+
+	/**
+	 * Default constructor.
+	 * @param message the detail message.
+	 */
+	public CircuitOpenException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,249 @@
+package dev.samir.backend.client;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streaming decoder of the <b>Content-Encoding</b> of a response body: <b>gzip</b> and <b>deflate</b> bodies are
+ * inflated chunk by chunk into a fixed size buffer, so a compressed page is never inflated as a whole in memory.
+ * <p>
+ * The <b>gzip</b> header is skipped before inflating, and its trailer is ignored. Since servers disagree on what
+ * <b>deflate</b> means, its first bytes tell whether the stream has a zlib wrapper or is raw. Any other encoding is
+ * passed through untouched, as is the rest of a body which turns out to be corrupted: the page then simply holds no
+ * keyword nor links, instead of failing the crawl.
+ * </p>
+ * It also counts the bytes received from the network and the decoded bytes.
+ *
+ * @author Scheide, Samir
+ */
+final class ContentDecoder {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ContentDecoder.class);
+
+	/**
+	 * The encodings advertised in the <b>Accept-Encoding</b> header of the requests.
+	 */
+	static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+	/**
+	 * Size of the inflated bytes buffer.
+	 */
+	private static final int CHUNK_SIZE = 8 * 1024;
+
+	/**
+	 * Flags of the optional fields of a gzip header.
+	 */
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	/**
+	 * Inflates the body, or null when it is not compressed or could not be inflated.
+	 */
+	private Inflater inflater;
+
+	/**
+	 * Whether the body is gzip, whose header must be skipped, rather than deflate, whose wrapper must be detected.
+	 */
+	private final boolean gzip;
+
+	/**
+	 * Whether the input comes from the network, rather than from a cached page.
+	 */
+	private final boolean network;
+
+	/**
+	 * First bytes of the body, held until the header is complete. Null once the inflater was set up.
+	 */
+	private byte[] header;
+
+	/**
+	 * Inflated bytes, reused for every chunk.
+	 */
+	private byte[] output;
+
+	/**
+	 * Whether the compressed body turned out to be corrupted, its rest being ignored.
+	 */
+	private boolean corrupted;
+
+	private long wireBytes;
+	private long decodedBytes;
+
+	private ContentDecoder(String encoding, boolean network) {
+		this.network = network;
+		this.gzip = encoding.equals("gzip") || encoding.equals("x-gzip");
+		if (gzip || encoding.equals("deflate")) {
+			this.header = new byte[0];
+			this.output = new byte[CHUNK_SIZE];
+		} else if (!encoding.isEmpty() && !encoding.equals("identity")) {
+			LOGGER.debug("Unsupported content encoding {}, reading the body as is", encoding);
+		}
+	}
+
+	/**
+	 * Creates the decoder of a response body.
+	 * @param headers the response headers.
+	 * @return the decoder of the body encoding.
+	 */
+	static ContentDecoder of(HttpHeaders headers) {
+		return new ContentDecoder(headers.firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT), true);
+	}
+
+	/**
+	 * @return a decoder of bodies which are already decoded and are read again from memory, so they cross no wire.
+	 */
+	static ContentDecoder replay() {
+		return new ContentDecoder("", false);
+	}
+
+	/**
+	 * Decodes a whole body at once.
+	 * @param headers the response headers.
+	 * @param body the body as received.
+	 * @return the decoded body.
+	 */
+	static byte[] decode(HttpHeaders headers, byte[] body) {
+		ContentDecoder decoder = of(headers);
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream(body.length);
+		decoder.decode(ByteBuffer.wrap(body), chunk -> decoded.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining()));
+		decoder.end();
+		return decoded.toByteArray();
+	}
+
+	/**
+	 * Decodes the next bytes of the body, consuming them.
+	 * @param input the next bytes as received.
+	 * @param sink receives the decoded bytes, in a buffer only valid during the call.
+	 */
+	void decode(ByteBuffer input, Consumer<ByteBuffer> sink) {
+		if (network) {
+			wireBytes += input.remaining();
+		}
+		if (corrupted) {
+			input.position(input.limit());
+			return;
+		}
+		if (output != null && inflater == null) {
+			input = readHeader(input);
+			if (input == null) {
+				return;
+			}
+		}
+		if (inflater == null) {
+			decodedBytes += input.remaining();
+			sink.accept(input.duplicate());
+			input.position(input.limit());
+			return;
+		}
+		inflate(input, sink);
+	}
+
+	/**
+	 * Releases the inflater, once the body ended or was cancelled.
+	 */
+	void end() {
+		if (inflater != null) {
+			inflater.end();
+		}
+		output = null;
+	}
+
+	long getWireBytes() {
+		return wireBytes;
+	}
+
+	long getDecodedBytes() {
+		return decodedBytes;
+	}
+
+	private void inflate(ByteBuffer input, Consumer<ByteBuffer> sink) {
+		inflater.setInput(input);
+		try {
+			while (!inflater.finished() && !inflater.needsDictionary()) {
+				int length = inflater.inflate(output);
+				if (length == 0 && inflater.needsInput()) {
+					break;
+				}
+				decodedBytes += length;
+				sink.accept(ByteBuffer.wrap(output, 0, length));
+			}
+		} catch (DataFormatException ex) {
+			LOGGER.debug("Corrupted compressed body, ignoring the rest of it", ex);
+			corrupted = true;
+		}
+		// Bytes after the end of the compressed stream, like the gzip trailer, are skipped
+		input.position(input.limit());
+	}
+
+	/**
+	 * Collects the first bytes of the body until its header is complete, then sets up the inflater.
+	 * @return the bytes following the header, or null while it is incomplete.
+	 */
+	private ByteBuffer readHeader(ByteBuffer input) {
+		int previous = header.length;
+		header = Arrays.copyOf(header, previous + input.remaining());
+		input.get(header, previous, header.length - previous);
+		if (header.length < 2) {
+			return null;
+		}
+		if (gzip && ((header[0] & 0xFF) != 0x1F || (header[1] & 0xFF) != 0x8B)) {
+			LOGGER.debug("Body announced as gzip without its magic number, reading it as is");
+			ByteBuffer rest = ByteBuffer.wrap(header);
+			header = null;
+			output = null;
+			return rest;
+		}
+		int length = gzip ? gzipHeaderLength() : 0;
+		if (length < 0) {
+			return null;
+		}
+		// A zlib wrapper starts with the deflate method and a checksum of its two first bytes
+		boolean wrapped = !gzip && (header[0] & 0x0F) == 8 && (((header[0] & 0xFF) << 8) | (header[1] & 0xFF)) % 31 == 0;
+		inflater = new Inflater(!wrapped);
+		ByteBuffer rest = ByteBuffer.wrap(header, length, header.length - length);
+		header = null;
+		return rest;
+	}
+
+	/**
+	 * @return the length of the gzip header, or -1 while it is incomplete.
+	 */
+	private int gzipHeaderLength() {
+		if (header.length < 10) {
+			return -1;
+		}
+		int flags = header[3] & 0xFF;
+		int length = 10;
+		if ((flags & FEXTRA) != 0) {
+			if (header.length < length + 2) return -1;
+			length += 2 + ((header[length] & 0xFF) | (header[length + 1] & 0xFF) << 8);
+		}
+		for (int flag : new int[] { FNAME, FCOMMENT }) {
+			if ((flags & flag) != 0) {
+				while (length < header.length && header[length] != 0) {
+					length++;
+				}
+				if (length++ >= header.length) return -1;
+			}
+		}
+		if ((flags & FHCRC) != 0) {
+			length += 2;
+		}
+		return length <= header.length ? length : -1;
+	}
+
+}
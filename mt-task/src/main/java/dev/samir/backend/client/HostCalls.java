@@ -0,0 +1,46 @@
+package dev.samir.backend.client;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Helpers shared by the facades keeping a state per host: naming the host of a URI, and calling the decorated facade.
+ * @author Scheide, Samir
+ */
+final class HostCalls {
+
+	/**
+	 * Constructor disabled.
+	 * @throws IllegalAccessException everytime this method is called.
+	 */
+	private HostCalls() throws IllegalAccessException {
+		throw new IllegalAccessException("Constructor should not be used.");
+	}
+
+	/**
+	 * Extracts the lower case host and port of the URI, which identify its host.
+	 * @param uri the requested URI.
+	 * @return the authority of the URI, empty when it has none.
+	 */
+	static String authority(URI uri) {
+		return Optional.ofNullable(uri.getRawAuthority()).orElse("").toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Calls without letting exceptions escape, so every attempt completes its result.
+	 * @param <T> the type of the result.
+	 * @param call the call to make.
+	 * @return the result of the call, failed with the exception it threw if any.
+	 */
+	static <T> CompletableFuture<T> invoke(Supplier<CompletableFuture<T>> call) {
+		try {
+			return call.get();
+		} catch (RuntimeException ex) {
+			return CompletableFuture.failedFuture(ex);
+		}
+	}
+
+}
@@ -0,0 +1,396 @@
+package dev.samir.backend.client;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Single pass HTML tokenizer collecting the <code>href</code> of every anchor, of the first <code>&lt;base&gt;</code>
+ * and of the first <code>&lt;link rel="canonical"&gt;</code>.
+ * <p>
+ * It is a small state machine fed with chunks of any size: it never looks back, never backtracks and never holds
+ * the page, only the value of the attribute being read. Anchors without a closing tag, unquoted values, comments and
+ * the raw contents of <code>&lt;script&gt;</code> and <code>&lt;style&gt;</code> elements are handled as a browser would.
+ * </p>
+ * A tokenizer reads a single page.
+ *
+ * @author Scheide, Samir
+ */
+public final class HrefTokenizer {
+
+	/**
+	 * Values longer than this are not links worth following and are dropped.
+	 */
+	private static final int MAX_VALUE_LENGTH = 4 * 1024;
+
+	/**
+	 * Tag and attribute names longer than this are of no interest, so only their first characters are kept.
+	 */
+	private static final int MAX_NAME_LENGTH = 8;
+
+	private enum State {
+		TEXT, TAG_OPEN, MARKUP_DECLARATION, COMMENT, END_TAG, TAG_NAME, BEFORE_ATTRIBUTE_NAME, ATTRIBUTE_NAME,
+		AFTER_ATTRIBUTE_NAME, BEFORE_ATTRIBUTE_VALUE, QUOTED_ATTRIBUTE_VALUE, UNQUOTED_ATTRIBUTE_VALUE, RAW_TEXT
+	}
+
+	private enum Tag {
+		A, BASE, LINK, SCRIPT, STYLE, OTHER
+	}
+
+	/**
+	 * Current state of the machine.
+	 */
+	private State state = State.TEXT;
+
+	/**
+	 * The tag being read.
+	 */
+	private Tag tag = Tag.OTHER;
+
+	/**
+	 * First characters of the tag or attribute name being read, in lower case.
+	 */
+	private final char[] name = new char[MAX_NAME_LENGTH];
+
+	/**
+	 * Full length of the name being read, which may be longer than what {@link #name} keeps.
+	 */
+	private int nameLength;
+
+	/**
+	 * Whether the attribute being read is the <code>href</code> of an anchor, base or link.
+	 */
+	private boolean href;
+
+	/**
+	 * Whether the attribute being read is the <code>rel</code> of a link.
+	 */
+	private boolean rel;
+
+	/**
+	 * The attribute value being read, only filled for <code>href</code> attributes.
+	 */
+	private char[] value = new char[64];
+
+	/**
+	 * Length of {@link #value}, or -1 once the value got too long.
+	 */
+	private int valueLength;
+
+	/**
+	 * The quote closing the attribute value being read.
+	 */
+	private char quote;
+
+	/**
+	 * Dashes read in a row, to find the opening and the closing of comments.
+	 */
+	private int dashes;
+
+	/**
+	 * Characters of the raw text closing tag (<code>&lt;/script</code> or <code>&lt;/style</code>) matched so far.
+	 */
+	private int rawTextMatch;
+
+	/**
+	 * The closing tag ending the raw text being skipped.
+	 */
+	private String rawTextEnd;
+
+	/**
+	 * Every anchor <code>href</code> read so far, in document order.
+	 */
+	private final List<String> hrefs = new ArrayList<>();
+
+	/**
+	 * The <code>href</code> of the first base element.
+	 */
+	private String baseHref;
+
+	/**
+	 * The <code>href</code> of the link element being read, kept until its <code>rel</code> is known.
+	 */
+	private String linkHref;
+
+	/**
+	 * Whether the link element being read is canonical.
+	 */
+	private boolean linkCanonical;
+
+	/**
+	 * The <code>href</code> of the first canonical link.
+	 */
+	private String canonicalHref;
+
+	/**
+	 * Reads the remaining characters of the chunk, without moving the buffer position.
+	 * @param chunk the next characters of the page.
+	 * @return this tokenizer.
+	 */
+	public HrefTokenizer feed(CharBuffer chunk) {
+		for (int i = chunk.position(); i < chunk.limit(); i++) {
+			char c = chunk.get(i);
+			if (!skip(c)) accept(c);
+		}
+		return this;
+	}
+
+	/**
+	 * Reads the characters of the text.
+	 * @param text the next characters of the page.
+	 * @return this tokenizer.
+	 */
+	public HrefTokenizer feed(CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (!skip(c)) accept(c);
+		}
+		return this;
+	}
+
+	/**
+	 * @return every anchor <code>href</code> read so far, in document order and with <code>&amp;amp;</code> decoded.
+	 */
+	public List<String> getHrefs() {
+		return hrefs;
+	}
+
+	/**
+	 * @return the <code>href</code> of the first <code>&lt;base&gt;</code> element, which anchors should be resolved against.
+	 */
+	public Optional<String> getBaseHref() {
+		return Optional.ofNullable(baseHref);
+	}
+
+	/**
+	 * @return the <code>href</code> of the first <code>&lt;link rel="canonical"&gt;</code>, the URL the page claims to be.
+	 */
+	public Optional<String> getCanonicalHref() {
+		return Optional.ofNullable(canonicalHref);
+	}
+
+	/**
+	 * Fast path for the bulk of a page: text and raw text characters which cannot start a tag.
+	 */
+	private boolean skip(char c) {
+		return c != '<' && (state == State.TEXT || (state == State.RAW_TEXT && rawTextMatch == 0));
+	}
+
+	private void accept(char c) {
+		switch (state) {
+			case TEXT:
+				if (c == '<') state = State.TAG_OPEN;
+				break;
+			case TAG_OPEN:
+				if (isLetter(c)) {
+					startName(c);
+					state = State.TAG_NAME;
+				} else if (c == '/') {
+					state = State.END_TAG;
+				} else if (c == '!') {
+					dashes = 0;
+					state = State.MARKUP_DECLARATION;
+				} else if (c != '<') {
+					state = State.TEXT;
+				}
+				break;
+			case MARKUP_DECLARATION:
+				if (c == '-' && ++dashes == 2) {
+					dashes = 0;
+					state = State.COMMENT;
+				} else if (c == '>') {
+					state = State.TEXT;
+				} else if (c != '-') {
+					// Doctypes and other declarations are skipped up to their end
+					state = State.END_TAG;
+				}
+				break;
+			case COMMENT:
+				if (c == '>' && dashes >= 2) state = State.TEXT;
+				dashes = c == '-' ? dashes + 1 : 0;
+				break;
+			case END_TAG:
+				if (c == '>') state = State.TEXT;
+				break;
+			case TAG_NAME:
+				if (isWhitespace(c) || c == '/') {
+					openTag();
+					state = State.BEFORE_ATTRIBUTE_NAME;
+				} else if (c == '>') {
+					openTag();
+					closeTag();
+				} else {
+					appendName(c);
+				}
+				break;
+			case BEFORE_ATTRIBUTE_NAME:
+				if (c == '>') {
+					closeTag();
+				} else if (!isWhitespace(c) && c != '/') {
+					startName(c);
+					state = State.ATTRIBUTE_NAME;
+				}
+				break;
+			case ATTRIBUTE_NAME:
+				if (isWhitespace(c)) {
+					state = State.AFTER_ATTRIBUTE_NAME;
+				} else if (c == '=') {
+					state = State.BEFORE_ATTRIBUTE_VALUE;
+				} else if (c == '>') {
+					closeTag();
+				} else if (c == '/') {
+					state = State.BEFORE_ATTRIBUTE_NAME;
+				} else {
+					appendName(c);
+				}
+				break;
+			case AFTER_ATTRIBUTE_NAME:
+				if (c == '=') {
+					state = State.BEFORE_ATTRIBUTE_VALUE;
+				} else if (c == '>') {
+					closeTag();
+				} else if (c == '/') {
+					state = State.BEFORE_ATTRIBUTE_NAME;
+				} else if (!isWhitespace(c)) {
+					startName(c);
+					state = State.ATTRIBUTE_NAME;
+				}
+				break;
+			case BEFORE_ATTRIBUTE_VALUE:
+				if (c == '"' || c == '\'') {
+					startValue();
+					quote = c;
+					state = State.QUOTED_ATTRIBUTE_VALUE;
+				} else if (c == '>') {
+					closeTag();
+				} else if (!isWhitespace(c)) {
+					startValue();
+					appendValue(c);
+					state = State.UNQUOTED_ATTRIBUTE_VALUE;
+				}
+				break;
+			case QUOTED_ATTRIBUTE_VALUE:
+				if (c == quote) {
+					endValue();
+					state = State.BEFORE_ATTRIBUTE_NAME;
+				} else {
+					appendValue(c);
+				}
+				break;
+			case UNQUOTED_ATTRIBUTE_VALUE:
+				if (isWhitespace(c)) {
+					endValue();
+					state = State.BEFORE_ATTRIBUTE_NAME;
+				} else if (c == '>') {
+					endValue();
+					closeTag();
+				} else {
+					appendValue(c);
+				}
+				break;
+			case RAW_TEXT:
+				if (toLowerCase(c) == rawTextEnd.charAt(rawTextMatch)) {
+					if (++rawTextMatch == rawTextEnd.length()) state = State.END_TAG;
+				} else {
+					rawTextMatch = c == '<' ? 1 : 0;
+				}
+				break;
+		}
+	}
+
+	private void openTag() {
+		tag = tag();
+		linkHref = null;
+		linkCanonical = false;
+	}
+
+	private void closeTag() {
+		if (tag == Tag.LINK && linkCanonical && linkHref != null && canonicalHref == null) {
+			canonicalHref = linkHref;
+		}
+		if (tag == Tag.SCRIPT || tag == Tag.STYLE) {
+			rawTextEnd = tag == Tag.SCRIPT ? "</script" : "</style";
+			rawTextMatch = 0;
+			state = State.RAW_TEXT;
+		} else {
+			state = State.TEXT;
+		}
+	}
+
+	private Tag tag() {
+		if (nameIs("a")) return Tag.A;
+		if (nameIs("base")) return Tag.BASE;
+		if (nameIs("link")) return Tag.LINK;
+		if (nameIs("script")) return Tag.SCRIPT;
+		if (nameIs("style")) return Tag.STYLE;
+		return Tag.OTHER;
+	}
+
+	private void startName(char c) {
+		nameLength = 0;
+		appendName(c);
+	}
+
+	private void appendName(char c) {
+		if (nameLength < MAX_NAME_LENGTH) name[nameLength] = toLowerCase(c);
+		nameLength++;
+	}
+
+	private boolean nameIs(String expected) {
+		if (nameLength != expected.length()) return false;
+		for (int i = 0; i < nameLength; i++) {
+			if (name[i] != expected.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	private void startValue() {
+		href = (tag == Tag.A || tag == Tag.BASE || tag == Tag.LINK) && nameIs("href");
+		rel = tag == Tag.LINK && nameIs("rel");
+		valueLength = 0;
+	}
+
+	private void appendValue(char c) {
+		if ((!href && !rel) || valueLength < 0) return;
+		if (valueLength == MAX_VALUE_LENGTH) {
+			valueLength = -1;
+			return;
+		}
+		if (valueLength == value.length) {
+			char[] larger = new char[Math.min(MAX_VALUE_LENGTH, value.length * 2)];
+			System.arraycopy(value, 0, larger, 0, valueLength);
+			value = larger;
+		}
+		value[valueLength++] = c;
+	}
+
+	private void endValue() {
+		if (rel && valueLength >= 0) {
+			for (String type : new String(value, 0, valueLength).split("[ \t\n\r\f]+")) {
+				linkCanonical |= "canonical".equalsIgnoreCase(type);
+			}
+			return;
+		}
+		if (!href || valueLength < 0) return;
+		String url = new String(value, 0, valueLength).trim();
+		if (url.indexOf('&') >= 0) url = url.replace("&amp;", "&");
+		if (url.isEmpty()) return;
+		if (tag == Tag.A) hrefs.add(url);
+		else if (tag == Tag.LINK) linkHref = url;
+		else if (baseHref == null) baseHref = url;
+	}
+
+	private static boolean isLetter(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+	}
+
+	private static char toLowerCase(char c) {
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+}
@@ -0,0 +1,268 @@
+package dev.samir.backend.client;
+
+import java.nio.CharBuffer;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import dev.samir.backend.common.CancellationToken;
+import dev.samir.backend.common.KeywordMatcher;
+import dev.samir.backend.common.MultiKeywordMatcher;
+
+/**
+ * Scans a single HTML page as it is downloaded, looking for the keyword and collecting the links with a
+ * {@link HrefTokenizer}, so the page text itself is never kept.
+ * <p>
+ * Links are only collected while they are wanted: as soon as the crawl stops wanting links the tokenizer is dropped,
+ * and once the keyword is found too the scanner is {@link #isSatisfied() satisfied}, letting the download be cancelled.
+ * </p>
+ * A scanner searches either a single keyword or, for a batch of crawls sharing their traversal, many keywords at once
+ * with a {@link MultiKeywordMatcher}. A scanner reads a single page; every attempt to fetch a page needs a new one.
+ *
+ * @author Scheide, Samir
+ */
+public final class HtmlPageScanner {
+
+	/**
+	 * Searches the keyword, or null when many keywords are searched.
+	 */
+	private final KeywordMatcher matcher;
+
+	/**
+	 * Searches the keywords of a batch of crawls, or null when a single keyword is searched.
+	 */
+	private final MultiKeywordMatcher keywords;
+
+	/**
+	 * Index of the {@link #keywords} found so far, or null when a single keyword is searched.
+	 */
+	private final BitSet found;
+
+	/**
+	 * Tells whether the crawl still wants the links of the page.
+	 */
+	private final BooleanSupplier linksWanted;
+
+	/**
+	 * Cancelled when the crawl reading the page stops.
+	 */
+	private final CancellationToken cancellation;
+
+	/**
+	 * State of the keyword search.
+	 */
+	private int state;
+
+	/**
+	 * Collects the links read so far, or null when links are not wanted.
+	 */
+	private HrefTokenizer links = new HrefTokenizer();
+
+	/**
+	 * Whether the whole page was read.
+	 */
+	private boolean complete;
+
+	/**
+	 * Bytes of the page received from the network, compressed or not.
+	 */
+	private long wireBytes;
+
+	/**
+	 * Bytes of the page once decompressed, read from the network or from a cache.
+	 */
+	private long decodedBytes;
+
+	/**
+	 * Why the page was not read to the end, or null.
+	 */
+	private String rejection;
+
+	/**
+	 * Status code of the response the page came from, zero until it is known.
+	 */
+	private int status;
+
+	/**
+	 * Default constructor.
+	 * @param matcher {@link #matcher}
+	 * @param linksWanted {@link #linksWanted}
+	 */
+	public HtmlPageScanner(KeywordMatcher matcher, BooleanSupplier linksWanted) {
+		this(matcher, linksWanted, CancellationToken.NONE);
+	}
+
+	/**
+	 * Creates a scanner whose download is aborted as soon as the crawl is cancelled.
+	 * @param matcher {@link #matcher}
+	 * @param linksWanted {@link #linksWanted}
+	 * @param cancellation {@link #cancellation}
+	 */
+	public HtmlPageScanner(KeywordMatcher matcher, BooleanSupplier linksWanted, CancellationToken cancellation) {
+		this.matcher = matcher;
+		this.keywords = null;
+		this.found = null;
+		this.linksWanted = linksWanted;
+		this.cancellation = cancellation;
+		this.state = matcher.initialState();
+	}
+
+	/**
+	 * Creates a scanner searching many keywords at once, whose download is aborted as soon as the crawls are cancelled.
+	 * @param keywords {@link #keywords}
+	 * @param linksWanted {@link #linksWanted}
+	 * @param cancellation {@link #cancellation}
+	 */
+	public HtmlPageScanner(MultiKeywordMatcher keywords, BooleanSupplier linksWanted, CancellationToken cancellation) {
+		this.matcher = null;
+		this.keywords = keywords;
+		this.found = new BitSet(keywords.size());
+		this.linksWanted = linksWanted;
+		this.cancellation = cancellation;
+		this.state = keywords.initialState();
+	}
+
+	/**
+	 * Reads the next characters of the page. The buffer position is left untouched.
+	 * @param chunk the next characters.
+	 * @return this scanner.
+	 */
+	public HtmlPageScanner feed(CharBuffer chunk) {
+		if (links != null && !linksWanted.getAsBoolean()) {
+			links = null;
+		}
+		if (links != null) {
+			links.feed(chunk);
+		}
+		if (keywords == null) {
+			state = matcher.advance(state, chunk);
+		} else if (found.cardinality() < keywords.size()) {
+			state = keywords.advance(state, chunk, found);
+		}
+		return this;
+	}
+
+	/**
+	 * Reads a whole page at once.
+	 * @param page the page contents.
+	 * @return this scanner.
+	 */
+	public HtmlPageScanner scan(String page) {
+		return feed(CharBuffer.wrap(page)).complete();
+	}
+
+	/**
+	 * Marks the page as completely read.
+	 * @return this scanner.
+	 */
+	public HtmlPageScanner complete() {
+		this.complete = true;
+		return this;
+	}
+
+	/**
+	 * @return true when reading the rest of the page would change nothing: the keywords were found and links are not
+	 * wanted.
+	 */
+	public boolean isSatisfied() {
+		boolean searched = keywords == null ? matcher.isFound(state) : found.cardinality() == keywords.size();
+		return searched && (links == null || !linksWanted.getAsBoolean());
+	}
+
+	/**
+	 * Adds the bytes read to get the page.
+	 * @param wire bytes received from the network.
+	 * @param decoded bytes once decompressed.
+	 * @return this scanner.
+	 */
+	public HtmlPageScanner transferred(long wire, long decoded) {
+		this.wireBytes += wire;
+		this.decodedBytes += decoded;
+		return this;
+	}
+
+	/**
+	 * Marks the page as not worth reading, because of its type or size.
+	 * @param reason why the page was rejected.
+	 * @return this scanner.
+	 */
+	public HtmlPageScanner reject(String reason) {
+		this.rejection = reason;
+		return this;
+	}
+
+	/**
+	 * Sets the status code of the response the page came from.
+	 * @param status the status code.
+	 * @return this scanner.
+	 */
+	public HtmlPageScanner status(int status) {
+		this.status = status;
+		return this;
+	}
+
+	/**
+	 * @return the status code of the response the page came from, or zero when it is not known.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return why the page was not read to the end, when it was rejected.
+	 */
+	public Optional<String> getRejection() {
+		return Optional.ofNullable(rejection);
+	}
+
+	public CancellationToken getCancellation() {
+		return cancellation;
+	}
+
+	public long getWireBytes() {
+		return wireBytes;
+	}
+
+	public long getDecodedBytes() {
+		return decodedBytes;
+	}
+
+	/**
+	 * @return true if the keyword, or any of the keywords, was found.
+	 */
+	public boolean isKeywordFound() {
+		return keywords == null ? matcher.isFound(state) : !found.isEmpty();
+	}
+
+	/**
+	 * @param index index of one of the keywords searched at once.
+	 * @return true if that keyword was found.
+	 */
+	public boolean isKeywordFound(int index) {
+		return found != null && found.get(index);
+	}
+
+	/**
+	 * @return the anchors <code>href</code> in document order, only when the page was completely read and links were
+	 * wanted until the end.
+	 */
+	public Optional<List<String>> getHrefs() {
+		return complete && links != null ? Optional.of(links.getHrefs()) : Optional.empty();
+	}
+
+	/**
+	 * @return the <code>href</code> of the page <code>&lt;base&gt;</code> element, which its anchors are relative to.
+	 */
+	public Optional<String> getBaseHref() {
+		return links != null ? links.getBaseHref() : Optional.empty();
+	}
+
+	/**
+	 * @return the <code>href</code> of the page canonical link, only known while links are wanted.
+	 */
+	public Optional<String> getCanonicalHref() {
+		return links != null ? links.getCanonicalHref() : Optional.empty();
+	}
+
+}
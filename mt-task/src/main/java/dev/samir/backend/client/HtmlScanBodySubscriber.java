@@ -0,0 +1,371 @@
+package dev.samir.backend.client;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Body subscriber decoding the response bytes as they arrive and feeding them to a {@link HtmlPageScanner}.
+ * <p>
+ * Bytes are decoded through a fixed size character buffer, so the subscriber never holds more than a chunk of the page,
+ * and bytes of a character split across two chunks are carried over to the next one. Once the scanner is
+ * {@link HtmlPageScanner#isSatisfied() satisfied}, the subscription is cancelled and the rest of the page is never downloaded.
+ * </p>
+ * Compressed bodies are inflated chunk by chunk by a {@link ContentDecoder} before being decoded into characters, and
+ * the bytes received and decoded are added to the scanner once the body ends.
+ * Responses whose <b>Content-Type</b> is not HTML, or whose <b>Content-Length</b> is over the maximum page size, are
+ * {@link HtmlPageScanner#reject(String) rejected} without reading a byte of their body; bodies without a length are
+ * cancelled once they decode to more than that size, the scanner keeping what was read until then. The download is
+ * also cancelled as soon as the {@link HtmlPageScanner#getCancellation() crawl} is, from the cancelling thread, which is
+ * why the signals are synchronized.
+ * </p>
+ * It may also keep a bounded copy of the decoded bytes, for the {@link PageCache} to replay the page later on.
+ * @author Scheide, Samir
+ */
+final class HtmlScanBodySubscriber implements BodySubscriber<HtmlPageScanner> {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HtmlScanBodySubscriber.class);
+
+	/**
+	 * Size of the decoded characters buffer.
+	 */
+	private static final int CHUNK_SIZE = 8 * 1024;
+
+	/**
+	 * Media types of the pages which are scanned. Responses without a type are scanned as well.
+	 */
+	private static final Set<String> HTML_TYPES = Set.of("text/html", "application/xhtml+xml");
+
+	/**
+	 * The scanner reading the page.
+	 */
+	private final HtmlPageScanner scanner;
+
+	/**
+	 * Inflates the body when it is compressed.
+	 */
+	private final ContentDecoder content;
+
+	/**
+	 * Decodes the body charset, replacing malformed input instead of failing.
+	 */
+	private final CharsetDecoder decoder;
+
+	/**
+	 * Completed with the scanner once the page was read or the download cancelled.
+	 */
+	private final CompletableFuture<HtmlPageScanner> body = new CompletableFuture<>();
+
+	/**
+	 * Decoded characters, reused for every chunk.
+	 */
+	private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+
+	/**
+	 * Trailing bytes of a character split between two chunks.
+	 */
+	private ByteBuffer leftover;
+
+	/**
+	 * The subscription to the response bytes.
+	 */
+	private Flow.Subscription subscription;
+
+	/**
+	 * Maximum number of raw bytes copied, zero to copy nothing.
+	 */
+	private final int copyLimit;
+
+	/**
+	 * Maximum number of decoded bytes read, zero or less for no limit.
+	 */
+	private final long maxSize;
+
+	/**
+	 * Why the response is rejected before its body is read, or null.
+	 */
+	private String rejection;
+
+	/**
+	 * Deregisters the cancellation callback of the subscriber.
+	 */
+	private Runnable deregistration;
+
+	/**
+	 * Decoded bytes received so far, or null once the body went over {@link #copyLimit}.
+	 */
+	private ByteBuffer copy;
+
+	/**
+	 * Whether the whole body was received.
+	 */
+	private boolean completed;
+
+	/**
+	 * Default constructor.
+	 * @param scanner {@link #scanner}
+	 * @param charset the charset of the body.
+	 */
+	HtmlScanBodySubscriber(HtmlPageScanner scanner, Charset charset) {
+		this(scanner, charset, ContentDecoder.replay(), 0, 0);
+	}
+
+	/**
+	 * Creates a subscriber also copying the decoded bytes.
+	 * @param scanner {@link #scanner}
+	 * @param charset the charset of the body.
+	 * @param content {@link #content}
+	 * @param copyLimit {@link #copyLimit}
+	 * @param maxSize {@link #maxSize}
+	 */
+	HtmlScanBodySubscriber(HtmlPageScanner scanner, Charset charset, ContentDecoder content, int copyLimit, long maxSize) {
+		this.scanner = scanner;
+		this.content = content;
+		this.copyLimit = copyLimit;
+		this.maxSize = maxSize;
+		this.copy = copyLimit > 0 ? ByteBuffer.allocate(Math.min(copyLimit, CHUNK_SIZE)) : null;
+		this.decoder = charset.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Creates a body handler scanning each response with a new scanner.
+	 * @param scanner creates the scanner of each response.
+	 * @param maxSize maximum size of the pages, zero or less for no limit.
+	 * @return the body handler.
+	 */
+	static BodyHandler<HtmlPageScanner> handler(Supplier<HtmlPageScanner> scanner, long maxSize) {
+		return responseInfo -> new HtmlScanBodySubscriber(scanner.get().status(responseInfo.statusCode()), charset(responseInfo.headers()),
+				ContentDecoder.of(responseInfo.headers()), 0, maxSize).gate(responseInfo.headers());
+	}
+
+	/**
+	 * Creates a body handler scanning each response with a new scanner and copying its decoded bytes.
+	 * @param scanner creates the scanner of each response.
+	 * @param copyLimit maximum number of bytes copied.
+	 * @param maxSize maximum size of the pages, zero or less for no limit.
+	 * @return the body handler, whose body is the subscriber itself.
+	 */
+	static BodyHandler<HtmlScanBodySubscriber> copyingHandler(Supplier<HtmlPageScanner> scanner, int copyLimit, long maxSize) {
+		return responseInfo -> {
+			HtmlScanBodySubscriber subscriber = new HtmlScanBodySubscriber(scanner.get().status(responseInfo.statusCode()), charset(responseInfo.headers()),
+					ContentDecoder.of(responseInfo.headers()), copyLimit, maxSize).gate(responseInfo.headers());
+			return BodySubscribers.mapping(subscriber, scanned -> subscriber);
+		};
+	}
+
+	/**
+	 * Reads the charset of the <b>Content-Type</b> header, falling back to UTF-8 when it is absent or unknown.
+	 * @param headers the response headers.
+	 * @return the body charset.
+	 */
+	static Charset charset(HttpHeaders headers) {
+		String contentType = headers.firstValue("Content-Type").orElse("");
+		int index = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+		if (index < 0) {
+			return StandardCharsets.UTF_8;
+		}
+		String name = contentType.substring(index + "charset=".length()).split(";")[0].replace("\"", "").trim();
+		try {
+			return Charset.forName(name);
+		} catch (IllegalArgumentException ex) {
+			LOGGER.debug("Unknown charset {}, using UTF-8", name);
+			return StandardCharsets.UTF_8;
+		}
+	}
+
+	/**
+	 * Rejects the response when its headers tell it is not an HTML page or it is too large.
+	 * @param headers the response headers.
+	 * @return this subscriber.
+	 */
+	HtmlScanBodySubscriber gate(HttpHeaders headers) {
+		String type = headers.firstValue("Content-Type").map(value -> value.split(";")[0].trim().toLowerCase(Locale.ROOT)).orElse("");
+		long length = headers.firstValueAsLong("Content-Length").orElse(-1);
+		if (!type.isEmpty() && !HTML_TYPES.contains(type)) {
+			rejection = "content type " + type;
+		} else if (maxSize > 0 && length > maxSize) {
+			rejection = String.format("content length of %d bytes", length);
+		}
+		return this;
+	}
+
+	@Override
+	public synchronized void onSubscribe(Flow.Subscription subscription) {
+		this.subscription = subscription;
+		if (rejection == null && scanner.getCancellation().isCancelled()) {
+			rejection = "the crawl was cancelled";
+		}
+		if (rejection != null) {
+			LOGGER.debug("Page rejected before its body, {}", rejection);
+			subscription.cancel();
+			end();
+			body.complete(scanner.reject(rejection));
+			return;
+		}
+		deregistration = scanner.getCancellation().onCancel(this::cancel);
+		subscription.request(1);
+	}
+
+	@Override
+	public synchronized void onNext(List<ByteBuffer> items) {
+		if (body.isDone()) {
+			return;
+		}
+		try {
+			for (ByteBuffer item : items) {
+				content.decode(item, decoded -> {
+					copy(decoded);
+					decode(decoded, false);
+				});
+			}
+		} catch (RuntimeException ex) {
+			subscription.cancel();
+			end();
+			body.completeExceptionally(ex);
+			return;
+		}
+		if (scanner.isSatisfied()) {
+			LOGGER.debug("Page scan satisfied, cancelling the rest of the download");
+			subscription.cancel();
+			end();
+			body.complete(scanner);
+		} else if (maxSize > 0 && content.getDecodedBytes() > maxSize) {
+			LOGGER.debug("Page larger than {} bytes, cancelling the rest of the download", maxSize);
+			subscription.cancel();
+			end();
+			body.complete(scanner.reject(String.format("more than %d bytes", maxSize)));
+		} else {
+			subscription.request(1);
+		}
+	}
+
+	@Override
+	public synchronized void onError(Throwable throwable) {
+		if (body.isDone()) {
+			return;
+		}
+		end();
+		body.completeExceptionally(throwable);
+	}
+
+	@Override
+	public synchronized void onComplete() {
+		if (body.isDone()) {
+			return;
+		}
+		decode(ByteBuffer.allocate(0), true);
+		decoder.flush(chars);
+		chars.flip();
+		scanner.feed(chars).complete();
+		completed = true;
+		end();
+		body.complete(scanner);
+	}
+
+	@Override
+	public CompletionStage<HtmlPageScanner> getBody() {
+		return body;
+	}
+
+	HtmlPageScanner getScanner() {
+		return scanner;
+	}
+
+	/**
+	 * @return the decoded bytes of the body, only when it was received completely and within the copy limit.
+	 */
+	byte[] getCopy() {
+		return completed && copy != null ? Arrays.copyOf(copy.array(), copy.position()) : null;
+	}
+
+	/**
+	 * Aborts the download once the crawl is cancelled. The page is completed rather than failed, since the download may
+	 * be shared with other crawls, which then fetch the page again.
+	 */
+	private synchronized void cancel() {
+		if (body.isDone()) {
+			return;
+		}
+		LOGGER.debug("Crawl cancelled, aborting the download");
+		subscription.cancel();
+		end();
+		body.complete(scanner.reject("the crawl was cancelled"));
+	}
+
+	/**
+	 * Releases the content decoder and adds its byte counts to the scanner.
+	 */
+	private void end() {
+		if (deregistration != null) {
+			deregistration.run();
+		}
+		content.end();
+		scanner.transferred(content.getWireBytes(), content.getDecodedBytes());
+	}
+
+	/**
+	 * Appends the bytes to the copy, without moving the item position, and drops the copy once it is too large.
+	 */
+	private void copy(ByteBuffer item) {
+		if (copy == null) {
+			return;
+		}
+		int size = copy.position() + item.remaining();
+		if (size > copyLimit) {
+			copy = null;
+			return;
+		}
+		if (size > copy.capacity()) {
+			copy = ByteBuffer.allocate((int) Math.min(copyLimit, Math.max(size, 2L * copy.capacity()))).put(copy.flip());
+		}
+		copy.put(item.duplicate());
+	}
+
+	/**
+	 * Decodes the bytes into the characters buffer, handing it to the scanner every time it fills up.
+	 * @param bytes the next bytes of the body.
+	 * @param endOfInput whether no more bytes will come.
+	 */
+	private void decode(ByteBuffer bytes, boolean endOfInput) {
+		ByteBuffer input = bytes;
+		if (leftover != null) {
+			input = ByteBuffer.allocate(leftover.remaining() + bytes.remaining()).put(leftover).put(bytes).flip();
+			leftover = null;
+		}
+		CoderResult result;
+		do {
+			result = decoder.decode(input, chars, endOfInput);
+			chars.flip();
+			scanner.feed(chars);
+			chars.clear();
+		} while (result.isOverflow());
+		if (input.hasRemaining()) {
+			leftover = ByteBuffer.allocate(input.remaining()).put(input).flip();
+		}
+	}
+
+}
@@ -6,6 +6,7 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
  * This class is a facade for making HTTP requests. 
@@ -26,4 +27,40 @@ public interface HttpClientFacade {
 		return HttpClient.newBuilder().build().sendAsync(HttpRequest.newBuilder(uri).GET().build(), BodyHandlers.ofString());
 	}
 	
+	/**
+	 * This method should handle the HTTP {@link HttpMethod#GET} requests whose body is only needed to look for a keyword and links.
+	 * Implementations are free to scan the body while it is downloaded and to stop the download once the scanner is satisfied.
+	 * By default, the whole body is downloaded through {@link #requestAsync(URI)} and then scanned.
+	 * 
+	 * @param uri The URI to send the request to.
+	 * @param scanner Creates the scanner reading the response body.
+	 * @return A {@link CompletableFuture} containing the scanner after reading the body.
+	 */
+	default CompletableFuture<HtmlPageScanner> scanAsync(URI uri, Supplier<HtmlPageScanner> scanner) {
+		return requestAsync(uri).thenApply(response -> scanner.get().status(response.statusCode()).scan(response.body()));
+	}
+	
+	/**
+	 * Same as {@link #scanAsync(URI, Supplier)}, sending the request with the settings of the crawl.
+	 * By default, the settings are ignored.
+	 * 
+	 * @param uri The URI to send the request to.
+	 * @param scanner Creates the scanner reading the response body.
+	 * @param settings The HTTP version, timeouts and redirect policy of the crawl.
+	 * @return A {@link CompletableFuture} containing the scanner after reading the body.
+	 */
+	default CompletableFuture<HtmlPageScanner> scanAsync(URI uri, Supplier<HtmlPageScanner> scanner, HttpClientSettings settings) {
+		return scanAsync(uri, scanner);
+	}
+	
+	/**
+	 * Tells whether the page is already held locally, so requesting it will not reach the external server.
+	 * 
+	 * @param uri The URI to look for.
+	 * @return True when the page is cached. By default, nothing is.
+	 */
+	default boolean isCached(URI uri) {
+		return false;
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,175 @@
+package dev.samir.backend.client;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
+import dev.samir.backend.common.configuration.Environment;
+
+/**
+ * Tuning of the HTTP client sending the crawl requests: the preferred HTTP version, how long connecting to a host and
+ * waiting for a response may take, and which redirects are followed.
+ * <p>
+ * The defaults come from the {@link Environment}, and every crawl may {@link #override(Integer, Integer, String, String)
+ * override} them. The version and request timeout are applied to each request, while the connect timeout and the
+ * redirect policy belong to the client itself, which is why {@link #clientKey()} tells when two settings can share a
+ * client.
+ * </p>
+ * With <b>HTTP/2</b>, every request to the same host is multiplexed over a single connection; otherwise, the number of
+ * connections to a host is bounded by its requests in flight, see {@link Environment#getHostMaxInFlight()}.
+ *
+ * @author Scheide, Samir
+ */
+public final class HttpClientSettings {
+
+	/**
+	 * Bounds of the timeouts a crawl may ask for, in seconds.
+	 */
+	private static final int MIN_TIMEOUT = 1;
+	private static final int MAX_TIMEOUT = 300;
+
+	/**
+	 * The preferred HTTP version, the client falling back to HTTP/1.1 with servers not supporting HTTP/2.
+	 */
+	private final HttpClient.Version version;
+
+	/**
+	 * Maximum time to establish a connection.
+	 */
+	private final Duration connectTimeout;
+
+	/**
+	 * Maximum time to wait for the response headers once the request is sent.
+	 */
+	private final Duration requestTimeout;
+
+	/**
+	 * Which redirects are followed.
+	 */
+	private final HttpClient.Redirect redirect;
+
+	/**
+	 * Default constructor.
+	 * @param version {@link #version}
+	 * @param connectTimeout {@link #connectTimeout}
+	 * @param requestTimeout {@link #requestTimeout}
+	 * @param redirect {@link #redirect}
+	 */
+	public HttpClientSettings(HttpClient.Version version, Duration connectTimeout, Duration requestTimeout, HttpClient.Redirect redirect) {
+		this.version = Objects.requireNonNull(version);
+		this.connectTimeout = Objects.requireNonNull(connectTimeout);
+		this.requestTimeout = Objects.requireNonNull(requestTimeout);
+		this.redirect = Objects.requireNonNull(redirect);
+	}
+
+	/**
+	 * @param environment source of the default settings.
+	 * @return the settings configured by the environment.
+	 */
+	public static HttpClientSettings of(Environment environment) {
+		return new HttpClientSettings(environment.getHttpVersion(), Duration.ofSeconds(environment.getHttpConnectTimeout()),
+				Duration.ofSeconds(environment.getHttpRequestTimeout()), environment.getHttpRedirects());
+	}
+
+	/**
+	 * Creates the settings of a single crawl, null arguments keeping the current values.
+	 * @param connectTimeout connect timeout, in seconds.
+	 * @param requestTimeout request timeout, in seconds.
+	 * @param version <b>HTTP_2</b> or <b>HTTP_1_1</b>.
+	 * @param redirect <b>NEVER</b>, <b>NORMAL</b> or <b>ALWAYS</b>.
+	 * @return the overridden settings.
+	 * @throws IllegalArgumentException if a value is unknown or a timeout is out of bounds.
+	 */
+	public HttpClientSettings override(Integer connectTimeout, Integer requestTimeout, String version, String redirect) {
+		return new HttpClientSettings(
+				version == null ? this.version : version(version),
+				connectTimeout == null ? this.connectTimeout : timeout("connect", connectTimeout),
+				requestTimeout == null ? this.requestTimeout : timeout("request", requestTimeout),
+				redirect == null ? this.redirect : redirect(redirect));
+	}
+
+	/**
+	 * Creates a client with these settings.
+	 * @param executor executes the asynchronous tasks of the client.
+	 * @return the client.
+	 */
+	HttpClient newClient(Executor executor) {
+		return HttpClient.newBuilder()
+			.executor(executor)
+			.version(version)
+			.connectTimeout(connectTimeout)
+			.followRedirects(redirect)
+			.build();
+	}
+
+	/**
+	 * Applies the settings which belong to each request.
+	 * @param request the request.
+	 * @return the request.
+	 */
+	HttpRequest.Builder apply(HttpRequest.Builder request) {
+		return request.version(version).timeout(requestTimeout);
+	}
+
+	/**
+	 * @return the settings of the client these settings need, without the ones applied to each request.
+	 */
+	HttpClientSettings clientKey() {
+		return new HttpClientSettings(HttpClient.Version.HTTP_2, connectTimeout, Duration.ZERO, redirect);
+	}
+
+	public HttpClient.Version getVersion() {
+		return version;
+	}
+
+	public Duration getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public Duration getRequestTimeout() {
+		return requestTimeout;
+	}
+
+	public HttpClient.Redirect getRedirect() {
+		return redirect;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) return true;
+		if (!(other instanceof HttpClientSettings)) return false;
+		HttpClientSettings settings = (HttpClientSettings) other;
+		return version == settings.version && redirect == settings.redirect
+				&& connectTimeout.equals(settings.connectTimeout) && requestTimeout.equals(settings.requestTimeout);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(version, connectTimeout, requestTimeout, redirect);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s, connect timeout %ss, request timeout %ss, %s redirects", version,
+				connectTimeout.toSeconds(), requestTimeout.toSeconds(), redirect);
+	}
+
+	private static HttpClient.Version version(String name) {
+		return HttpClient.Version.valueOf(name.trim().toUpperCase(Locale.ROOT).replace('.', '_').replace('/', '_'));
+	}
+
+	private static HttpClient.Redirect redirect(String name) {
+		return HttpClient.Redirect.valueOf(name.trim().toUpperCase(Locale.ROOT));
+	}
+
+	private static Duration timeout(String name, int seconds) {
+		if (seconds < MIN_TIMEOUT || seconds > MAX_TIMEOUT) {
+			throw new IllegalArgumentException(String.format("The %s timeout must be between %d and %d seconds.", name, MIN_TIMEOUT, MAX_TIMEOUT));
+		}
+		return Duration.ofSeconds(seconds);
+	}
+
+}
@@ -4,52 +4,349 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpTimeoutException;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import dev.samir.backend.Main;
+import dev.samir.backend.common.configuration.Environment;
 
 /**
- * 
+ *
  * @author Scheide, Samir
  */
 public final class HttpHtmlClientFacade implements HttpClientFacade {
 
 	/**
-	 * 
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(HttpHtmlClientFacade.class);
+
+	/**
+	 * Maximum number of clients kept for the settings of the crawls. Crawls asking for more distinct connect timeouts
+	 * or redirect policies share the default client, with only their version and request timeout applied.
+	 */
+	private static final int MAX_CLIENTS = 8;
+
+	/**
+	 * Reads whole bodies, decompressed.
+	 */
+	private static final BodyHandler<byte[]> DECODING_HANDLER = responseInfo -> BodySubscribers.mapping(BodySubscribers.ofByteArray(),
+			body -> ContentDecoder.decode(responseInfo.headers(), body));
+
+	/**
+	 * Bounds of the size of the {@link PageStore} segment files, which is an eighth of the store size in between.
+	 */
+	private static final int MIN_SEGMENT_SIZE = 1024 * 1024;
+	private static final int MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Minimum wait before a hedged request, so hosts answering in a few milliseconds are not hedged on noise.
+	 */
+	private static final long MIN_HEDGE_DELAY = TimeUnit.MILLISECONDS.toNanos(20);
+
+	/**
+	 * Schedules the timeouts and hedges of the requests, which are removed as soon as they are cancelled so a response
+	 * received in time is not held until they are due. The timers hand their work over to {@link Main#EXECUTOR_SERVICE}.
+	 */
+	private static final ScheduledThreadPoolExecutor TIMERS = timers();
+
+	/**
+	 * Pages fetched recently, shared by every crawl.
+	 */
+	private final PageCache cache;
+
+	/**
+	 * Settings of the crawls which do not override them.
 	 */
-	private static final HttpClient HTTP_CLIENT =  HttpClient.newBuilder().executor(Main.EXECUTOR_SERVICE).build();
-	
+	private final HttpClientSettings settings;
+
+	/**
+	 * The client of the default settings.
+	 */
+	private final HttpClient client;
+
+	/**
+	 * Clients by the {@link HttpClientSettings#clientKey() settings} they were built with.
+	 */
+	private final Map<HttpClientSettings, HttpClient> clients = new ConcurrentHashMap<>();
+
+	/**
+	 * Maximum number of decoded bytes of a scanned page.
+	 */
+	private final long maxPageSize;
+
+	/**
+	 * Percentile of the latency of a host after which a request is hedged, zero or less never hedging.
+	 */
+	private final int hedgePercentile;
+
+	/**
+	 * Recent latencies of every host seen so far.
+	 */
+	private final Map<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+
 	/**
-	 * Nice to have "like-cache" table.
+	 * Bounds the hedged requests across every host.
 	 */
-	private static final Map<URI, CompletableFuture<HttpResponse<String>>> CACHE = new ConcurrentHashMap<>();
-	
+	private final RetryBudget hedges = new RetryBudget(0.1, 10);
+
 	/**
-	 * 
+	 * Paces the hedged requests, which the facades in front of this one never see.
 	 */
-	static {
-        // Schedule the task to run every 3 minutes (180 seconds)
-        Executors.newSingleThreadScheduledExecutor()
-        	.scheduleAtFixedRate(CACHE::clear, 0, 180, TimeUnit.SECONDS);
+	private volatile Pacer pacer = Pacer.UNPACED;
+
+	/**
+	 * Default constructor.
+	 * @param environment source of the cache size and time to live, of the directory and size of its disk tier, and of
+	 * the client settings, of the percentile after which requests are hedged, and of the maximum page size.
+	 */
+	public HttpHtmlClientFacade(Environment environment) {
+		this.settings = HttpClientSettings.of(environment);
+		this.maxPageSize = environment.getMaxPageSize() * 1024L;
+		this.hedgePercentile = Math.min(100, environment.getHedgePercentile());
+		this.client = settings.newClient(Main.EXECUTOR_SERVICE);
+		this.clients.put(settings.clientKey(), client);
+		long storeSize = environment.getPageStoreSize() * 1024L * 1024L;
+		this.cache = new PageCache(environment.getPageCacheSize() * 1024L * 1024L,
+				TimeUnit.SECONDS.toNanos(environment.getPageCacheTtl()),
+				environment.getPageStoreDirectory()
+					.map(directory -> new PageStore(directory, storeSize, (int) Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, storeSize / 8))))
+					.orElse(null), Main.EXECUTOR_SERVICE);
 	}
-	
+
 	/**
 	 * This method should handle all the HTTP {@link HttpMethod#GET} requests made to external servers to retrieve the HTML or each URL provided.
 	 * The client is created returning a {@link CompletableFuture}, so it is able to handle multiple requests at the same time.
-	 * 
+	 * Responses are served from the {@link PageCache} when possible, and concurrent requests of the same URI share a single download.
+	 * Expired pages are revalidated with a conditional request, keeping their body when the server answers it did not change.
+	 * Bodies are requested compressed and decompressed once received.
+	 *
 	 * @param uri The URI to send the request to.
 	 * @return A {@link CompletableFuture} containing the HTTP response as a string.
 	 */
 	public final CompletableFuture<HttpResponse<String>> requestAsync(URI uri) {
-		if (!CACHE.containsKey(uri)) {
-			CACHE.put(uri, HTTP_CLIENT.sendAsync(HttpRequest.newBuilder(uri).GET().build(), BodyHandlers.ofString()));
+		return cache.get(uri, (key, stale) -> send(request(key, stale, settings), DECODING_HANDLER, settings)
+				.thenApply(response -> isNotModified(response, stale) ? stale.revalidate(response) : new CachedPage(response, response.body())))
+			.thenCompose(page -> page.hasBody()
+				? CompletableFuture.completedFuture(page.toResponse())
+				: send(request(uri, null, settings), DECODING_HANDLER, settings)
+					.thenApply(response -> new CachedPage(response, response.body()).toResponse()));
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The body is decoded and scanned while it is downloaded by a {@link HtmlScanBodySubscriber}, so the page is never
+	 * held in memory as a whole unless it is small enough to be cached, and the download is cancelled as soon as the scanner
+	 * is satisfied. Compressed bodies are inflated as they stream in, and pages which are not HTML or larger than
+	 * {@link Environment#getMaxPageSize()} are rejected as soon as their headers or their size tell so. Cached pages are scanned from memory; a concurrent
+	 * download of the same URI is joined, unless it was cancelled before the end of the page. Expired pages are revalidated,
+	 * and scanned from memory when they did not change.
+	 */
+	@Override
+	public final CompletableFuture<HtmlPageScanner> scanAsync(URI uri, Supplier<HtmlPageScanner> scanner) {
+		return scanAsync(uri, scanner, settings);
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The exchange fails with a {@link HttpTimeoutException} when the whole response, body included, takes longer than
+	 * the request timeout, and the download is then aborted.
+	 */
+	@Override
+	public final CompletableFuture<HtmlPageScanner> scanAsync(URI uri, Supplier<HtmlPageScanner> scanner, HttpClientSettings settings) {
+		AtomicReference<CompletableFuture<HtmlPageScanner>> download = new AtomicReference<>();
+		CompletableFuture<CachedPage> page = cache.get(uri, (key, stale) -> {
+			CompletableFuture<HttpResponse<HtmlScanBodySubscriber>> response = send(request(key, stale, settings),
+					HtmlScanBodySubscriber.copyingHandler(scanner, cache.getMaxEntryWeight(), maxPageSize), settings);
+			CompletableFuture<CachedPage> loaded = response.thenApply(scanned -> isNotModified(scanned, stale)
+				? stale.revalidate(scanned) : new CachedPage(scanned, scanned.body().getCopy()));
+			// A page which did not change has no body to scan, so the stored one is scanned instead
+			download.set(response.thenCombine(loaded, (scanned, cached) -> isNotModified(scanned, stale)
+				? cached.scan(scanner.get()) : scanned.body().getScanner()));
+			return loaded;
+		});
+		// The loader only runs for the caller which started the download, which already has its own scanner. It waits
+		// for the page to be cached as well, so the page is found by whoever reacts to the scan.
+		if (download.get() != null) {
+			return download.get().thenCombine(page, (scanned, cached) -> scanned);
+		}
+		return page.thenCompose(cached -> cached.hasBody()
+			? CompletableFuture.completedFuture(cached.scan(scanner.get()))
+			: send(request(uri, null, settings), HtmlScanBodySubscriber.handler(scanner, maxPageSize), settings)
+				.thenApply(HttpResponse::body));
+	}
+
+	/**
+	 * Sends the request with the client of the settings, failing once the request timeout is over even if the response
+	 * headers were received in time.
+	 * <p>
+	 * When the exchange takes longer than most recent exchanges with the host, the percentile being
+	 * {@link Environment#getHedgePercentile()}, the same request is sent again and the first response wins, the other
+	 * exchange being cancelled and its body {@link AbortableBodySubscriber aborted}, as is the body of an exchange still
+	 * downloading when the request times out. Hedged requests share a {@link RetryBudget}, so a host slowing down as a whole does not
+	 * get twice the requests. They are sent here, below the {@link PageCache}, since a second request going through it
+	 * would only join the first download, but through the {@link #pacedBy(Pacer) pacer}, so they wait for their host
+	 * like any other request.
+	 * </p>
+	 * @param request the request.
+	 * @param handler reads the body.
+	 * @param settings the client settings.
+	 * @return the response.
+	 */
+	private <T> CompletableFuture<HttpResponse<T>> send(HttpRequest request, BodyHandler<T> handler, HttpClientSettings settings) {
+		HttpClient client = client(settings);
+		LatencyTracker latency = latencies.computeIfAbsent(HostCalls.authority(request.uri()), name -> new LatencyTracker());
+		CompletableFuture<HttpResponse<T>> response = new CompletableFuture<>();
+		Queue<CompletableFuture<?>> exchanges = new ConcurrentLinkedQueue<>();
+		Queue<AbortableBodySubscriber<T>> bodies = new ConcurrentLinkedQueue<>();
+		// Bodies started after the response completed are aborted at once
+		BodyHandler<T> abortable = responseInfo -> {
+			AbortableBodySubscriber<T> body = new AbortableBodySubscriber<>(handler.apply(responseInfo));
+			bodies.add(body);
+			if (response.isDone()) {
+				body.abort();
+			}
+			return body;
+		};
+		// Exchanges which may still answer, the response only failing once the last of them failed
+		AtomicInteger pending = new AtomicInteger(1);
+		response.whenComplete((value, exception) -> {
+			exchanges.forEach(exchange -> exchange.cancel(true));
+			bodies.forEach(AbortableBodySubscriber::abort);
+		});
+		exchange(Pacer.UNPACED, client, request, abortable, latency, response, exchanges, pending);
+		hedges.deposit();
+		long timeout = settings.getRequestTimeout().toMillis();
+		long hedgeAfter = hedgePercentile > 0 ? latency.percentile(hedgePercentile) : -1;
+		if (hedgeAfter >= 0 && TimeUnit.NANOSECONDS.toMillis(hedgeAfter) < timeout) {
+			ScheduledFuture<?> hedge = TIMERS.schedule(() -> Main.EXECUTOR_SERVICE.execute(() -> {
+				if (!response.isDone() && pending.getAndUpdate(count -> count > 0 ? count + 1 : 0) > 0) {
+					if (hedges.tryWithdraw()) {
+						LOGGER.debug("No response from {} after {} ms, sending a hedged request", request.uri(), TimeUnit.NANOSECONDS.toMillis(hedgeAfter));
+						exchange(pacer, client, request, abortable, latency, response, exchanges, pending);
+					} else {
+						pending.decrementAndGet();
+					}
+				}
+			}), Math.max(MIN_HEDGE_DELAY, hedgeAfter), TimeUnit.NANOSECONDS);
+			response.whenComplete((value, exception) -> hedge.cancel(false));
+		}
+		ScheduledFuture<?> expiry = TIMERS.schedule(() -> Main.EXECUTOR_SERVICE.execute(() ->
+			response.completeExceptionally(new HttpTimeoutException(String.format("No complete response from %s within %d ms", request.uri(), timeout)))),
+			timeout, TimeUnit.MILLISECONDS);
+		response.whenComplete((value, exception) -> expiry.cancel(false));
+		return response;
+	}
+
+	/**
+	 * @return the scheduler of the request timers, on a daemon thread.
+	 */
+	private static ScheduledThreadPoolExecutor timers() {
+		ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "http-timers");
+			thread.setDaemon(true);
+			return thread;
+		});
+		timers.setRemoveOnCancelPolicy(true);
+		return timers;
+	}
+
+	/**
+	 * Sends one exchange of the request once the pacer allows it, completing the response with its result unless another
+	 * exchange did first. An exchange still waiting for the pacer when the response completes is never sent.
+	 */
+	private static <T> void exchange(Pacer pacer, HttpClient client, HttpRequest request, BodyHandler<T> handler, LatencyTracker latency,
+			CompletableFuture<HttpResponse<T>> response, Queue<CompletableFuture<?>> exchanges, AtomicInteger pending) {
+		AtomicLong start = new AtomicLong();
+		CompletableFuture<HttpResponse<T>> exchange = pacer.schedule(request.uri(), () -> {
+			if (response.isDone()) {
+				return CompletableFuture.failedFuture(new CancellationException());
+			}
+			start.set(System.nanoTime());
+			return client.sendAsync(request, handler);
+		});
+		exchanges.add(exchange);
+		if (response.isDone()) {
+			exchange.cancel(true);
+		}
+		exchange.whenComplete((value, exception) -> {
+			if (exception == null) {
+				latency.record(System.nanoTime() - start.get());
+				response.complete(value);
+			} else if (pending.decrementAndGet() == 0) {
+				response.completeExceptionally(exception);
+			}
+		});
+	}
+
+	/**
+	 * Sets the pacer of the hedged requests.
+	 * @param pacer {@link #pacer}
+	 */
+	void pacedBy(Pacer pacer) {
+		this.pacer = pacer;
+	}
+
+	/**
+	 * @return the client built with the settings, or the default client when too many were built already.
+	 */
+	private HttpClient client(HttpClientSettings settings) {
+		HttpClientSettings key = settings.clientKey();
+		HttpClient existing = clients.get(key);
+		if (existing != null) {
+			return existing;
+		}
+		if (clients.size() >= MAX_CLIENTS) {
+			LOGGER.debug("Too many HTTP clients, using the default one for {}", settings);
+			return client;
 		}
-		return CACHE.get(uri);
+		return clients.computeIfAbsent(key, k -> settings.newClient(Main.EXECUTOR_SERVICE));
+	}
+
+	/**
+	 * Creates the request of the page, accepting compressed bodies, and conditional when an expired copy can be revalidated.
+	 * @param uri the page URI.
+	 * @param stale the expired copy of the page, or null.
+	 * @param settings the version and timeout of the request.
+	 * @return the request.
+	 */
+	private static HttpRequest request(URI uri, CachedPage stale, HttpClientSettings settings) {
+		HttpRequest.Builder request = settings.apply(HttpRequest.newBuilder(uri).GET())
+				.header("Accept-Encoding", ContentDecoder.ACCEPTED_ENCODINGS);
+		return (stale != null ? stale.conditional(request) : request).build();
+	}
+
+	/**
+	 * @return true when the response confirms the expired copy is still current.
+	 */
+	private static boolean isNotModified(HttpResponse<?> response, CachedPage stale) {
+		return stale != null && response.statusCode() == StatusCode.NOT_MODIFIED.getCode();
 	}
-	
+
+	/**
+	 * {@inheritDoc} <br>
+	 * True when the page is in the {@link PageCache}.
+	 */
+	@Override
+	public boolean isCached(URI uri) {
+		return cache.contains(uri);
+	}
+
 }
@@ -0,0 +1,60 @@
+package dev.samir.backend.client;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the last exchanges with a single host, kept in a fixed size ring so the percentiles follow the host as
+ * it gets faster or slower. Percentiles are computed on demand by sorting a copy of the ring, which costs little next
+ * to the request it is computed for.
+ *
+ * @author Scheide, Samir
+ */
+final class LatencyTracker {
+
+	/**
+	 * Number of latencies kept.
+	 */
+	private static final int SAMPLES = 128;
+
+	/**
+	 * Number of latencies needed before percentiles are trusted.
+	 */
+	static final int MIN_SAMPLES = 20;
+
+	/**
+	 * Latencies in nanoseconds, the oldest being overwritten first.
+	 */
+	private final long[] samples = new long[SAMPLES];
+
+	/**
+	 * Number of latencies recorded since the creation.
+	 */
+	private long count;
+
+	/**
+	 * Records the latency of a successful exchange.
+	 * @param nanos the latency.
+	 */
+	synchronized void record(long nanos) {
+		samples[(int) (count++ % SAMPLES)] = nanos;
+	}
+
+	/**
+	 * @param percentile between 1 and 100.
+	 * @return the latency below which the given percentage of the recent exchanges completed, in nanoseconds, or -1 while
+	 * too few exchanges were recorded.
+	 */
+	long percentile(int percentile) {
+		long[] sorted;
+		synchronized (this) {
+			if (count < MIN_SAMPLES) {
+				return -1;
+			}
+			sorted = Arrays.copyOf(samples, (int) Math.min(count, SAMPLES));
+		}
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+	}
+
+}
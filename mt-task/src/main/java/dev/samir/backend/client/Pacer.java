@@ -0,0 +1,35 @@
+package dev.samir.backend.client;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Decides when a request may reach its host. The {@link PoliteHttpClientFacade} paces the requests it forwards, and
+ * lends itself to the {@link HttpHtmlClientFacade} below it so the requests that facade sends on its own, like hedged
+ * ones, are paced as well.
+ *
+ * @author Scheide, Samir
+ */
+interface Pacer {
+
+	/**
+	 * Sends every request at once.
+	 */
+	Pacer UNPACED = new Pacer() {
+		@Override
+		public <T> CompletableFuture<T> schedule(URI uri, Supplier<CompletableFuture<T>> call) {
+			return call.get();
+		}
+	};
+
+	/**
+	 * Runs the call as soon as the host of the URI allows it.
+	 * @param <T> the type of the call result.
+	 * @param uri the URI the call will request.
+	 * @param call sends the request.
+	 * @return the call result, whose cancellation drops the call when it is still waiting.
+	 */
+	<T> CompletableFuture<T> schedule(URI uri, Supplier<CompletableFuture<T>> call);
+
+}
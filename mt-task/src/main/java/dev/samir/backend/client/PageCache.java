@@ -0,0 +1,384 @@
+package dev.samir.backend.client;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded cache of fetched pages, shared by every crawl.
+ * <p>
+ * Loading is single-flight: the first caller for a URI starts the load and every caller arriving before it completes
+ * joins the same future. Completed pages are kept for the time to live, or less if their <b>max-age</b> says so, and
+ * weighed by their size; once the total weight goes over the maximum, the least recently used pages are evicted.
+ * Failures and pages which are not {@link CachedPage#isCacheable() cacheable} are handed to the callers waiting for
+ * them but never kept.
+ * </p>
+ * Expired pages stay in the cache until they are evicted: the next load of an expired page which has validators is
+ * handed that stale page, so it can be revalidated instead of downloaded again.
+ * With a {@link PageStore}, every page kept is also written to disk, and a page missing from memory is looked up on
+ * disk before being loaded, so pages evicted from memory or cached before a restart are still found. Pages are handed to
+ * their callers before being written, the write running on the executor of the store.
+ * Lookups never wait for a lock: the recency order is only updated when its lock is free, which makes it an
+ * approximation of LRU under contention.
+ *
+ * @author Scheide, Samir
+ */
+final class PageCache {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(PageCache.class);
+
+	/**
+	 * A single page may take at most this fraction of the cache, so one large page never flushes everything else.
+	 */
+	private static final int MAX_ENTRY_FRACTION = 16;
+
+	/**
+	 * Maximum total weight, in bytes.
+	 */
+	private final long maxWeight;
+
+	/**
+	 * How long a page is kept, in nanoseconds.
+	 */
+	private final long timeToLive;
+
+	/**
+	 * Second tier on disk, or null.
+	 */
+	private final PageStore store;
+
+	/**
+	 * Runs the writes to the {@link #store}, off the thread completing the loads.
+	 */
+	private final Executor storeExecutor;
+
+	/**
+	 * Pages loaded or being loaded.
+	 */
+	private final Map<URI, Node> nodes = new ConcurrentHashMap<>();
+
+	/**
+	 * Guards the recency list and the total weight.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Sentinel of the recency list: its next node is the most recently used, its previous one the least.
+	 */
+	private final Node head = new Node(null);
+
+	/**
+	 * Total weight of the pages in the recency list.
+	 */
+	private long weight;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder revalidations = new LongAdder();
+	private final LongAdder storeHits = new LongAdder();
+
+	/**
+	 * Constructor of a cache kept in memory only.
+	 * @param maxWeight {@link #maxWeight}
+	 * @param timeToLive {@link #timeToLive}
+	 */
+	PageCache(long maxWeight, long timeToLive) {
+		this(maxWeight, timeToLive, null, Runnable::run);
+	}
+
+	/**
+	 * Default constructor.
+	 * @param maxWeight {@link #maxWeight}
+	 * @param timeToLive {@link #timeToLive}
+	 * @param store {@link #store}
+	 * @param storeExecutor {@link #storeExecutor}
+	 */
+	PageCache(long maxWeight, long timeToLive, PageStore store, Executor storeExecutor) {
+		this.maxWeight = maxWeight;
+		this.timeToLive = timeToLive;
+		this.store = store;
+		this.storeExecutor = storeExecutor;
+		head.previous = head;
+		head.next = head;
+	}
+
+	/**
+	 * @return the largest body worth downloading into the cache.
+	 */
+	int getMaxEntryWeight() {
+		return (int) Math.min(Integer.MAX_VALUE - 8, maxWeight / MAX_ENTRY_FRACTION);
+	}
+
+	/**
+	 * Returns the page of the URI, loading it unless it is cached or already being loaded. The loader is called by
+	 * the current thread, before this method returns.
+	 * @param uri the page URI.
+	 * @param loader loads the page, given the URI and the expired page to revalidate, if any. It completes with a page
+	 * which is not cacheable when it should not be kept.
+	 * @return the page, shared with every caller of the same URI.
+	 */
+	CompletableFuture<CachedPage> get(URI uri, BiFunction<URI, CachedPage, CompletableFuture<CachedPage>> loader) {
+		long now = System.nanoTime();
+		Node node = nodes.get(uri);
+		if (node != null && !node.isExpired(now)) {
+			hits.increment();
+			touch(node);
+			return node.page;
+		}
+		CachedPage stale = null;
+		if (node != null) {
+			stale = node.linked ? node.page.getNow(null) : null;
+			remove(node);
+		}
+		if (stale != null && !stale.isRevalidatable()) {
+			stale = null;
+		}
+		misses.increment();
+		Node created = new Node(uri);
+		Node existing = nodes.putIfAbsent(uri, created);
+		if (existing != null) {
+			return existing.page;
+		}
+		if (stale == null && store != null) {
+			PageStore.Stored stored = store.get(uri);
+			if (stored != null) {
+				long remaining = stored.getExpiresAt() - System.currentTimeMillis();
+				if (remaining > 0) {
+					storeHits.increment();
+					complete(created, stored.getPage(), TimeUnit.MILLISECONDS.toNanos(remaining));
+					return created.page;
+				}
+				stale = stored.getPage().isRevalidatable() ? stored.getPage() : null;
+			}
+		}
+		if (stale != null) {
+			revalidations.increment();
+		}
+		CompletableFuture<CachedPage> load;
+		try {
+			load = loader.apply(uri, stale);
+		} catch (RuntimeException ex) {
+			load = CompletableFuture.failedFuture(ex);
+		}
+		load.whenComplete((page, exception) -> {
+			if (exception != null) {
+				fail(created, exception);
+				return;
+			}
+			try {
+				long pageTimeToLive = page == null ? 0 : page.getMaxAge().map(Duration::toNanos)
+					.map(maxAge -> Math.min(maxAge, timeToLive)).orElse(timeToLive);
+				complete(created, page, pageTimeToLive);
+				if (store != null && page != null && page.isCacheable() && page.weight() <= getMaxEntryWeight()) {
+					write(uri, page, System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(pageTimeToLive));
+				}
+			} catch (RuntimeException ex) {
+				// The node must complete whatever happens, or every later get of the URI waits for it forever
+				fail(created, ex);
+			}
+		});
+		return created.page;
+	}
+
+	/**
+	 * @param uri the page URI.
+	 * @return true when a complete page is cached for the URI, so getting it will not send any request.
+	 */
+	boolean contains(URI uri) {
+		Node node = nodes.get(uri);
+		if (node != null && node.linked && !node.isExpired(System.nanoTime())) {
+			return true;
+		}
+		return store != null && store.getExpiresAt(uri) > System.currentTimeMillis();
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+
+	long getEvictions() {
+		return evictions.sum();
+	}
+
+	long getRevalidations() {
+		return revalidations.sum();
+	}
+
+	long getStoreHits() {
+		return storeHits.sum();
+	}
+
+	long getWeight() {
+		lock.lock();
+		try {
+			return weight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d page(s), %d byte(s), %d hit(s), %d miss(es), %d eviction(s), %d revalidation(s), %d hit(s) on disk",
+				nodes.size(), getWeight(), getHits(), getMisses(), getEvictions(), getRevalidations(), getStoreHits());
+	}
+
+	/**
+	 * Keeps the page when it may be cached, then hands it to the callers waiting for it.
+	 */
+	private void complete(Node node, CachedPage page, long pageTimeToLive) {
+		if (page != null && page.isCacheable() && page.weight() <= getMaxEntryWeight()) {
+			admit(node, page, pageTimeToLive);
+		} else {
+			nodes.remove(node.uri, node);
+		}
+		node.page.complete(page);
+	}
+
+	/**
+	 * Writes the page to the store on its executor, failures being only logged: the store is a cache.
+	 */
+	private void write(URI uri, CachedPage page, long expiresAt) {
+		try {
+			storeExecutor.execute(() -> {
+				try {
+					store.put(uri, page, expiresAt);
+				} catch (RuntimeException ex) {
+					LOGGER.warn("Could not store the page {}", uri, ex);
+				}
+			});
+		} catch (RuntimeException ex) {
+			LOGGER.warn("Could not store the page {}", uri, ex);
+		}
+	}
+
+	/**
+	 * Drops the node and hands the failure to the callers waiting for it.
+	 */
+	private void fail(Node node, Throwable exception) {
+		nodes.remove(node.uri, node);
+		node.page.completeExceptionally(exception);
+	}
+
+	/**
+	 * Adds the loaded page to the recency list and evicts the least recently used pages over the maximum weight.
+	 */
+	private void admit(Node node, CachedPage page, long pageTimeToLive) {
+		lock.lock();
+		try {
+			if (nodes.get(node.uri) != node) {
+				return;
+			}
+			node.weight = page.weight();
+			node.expiresAt = System.nanoTime() + pageTimeToLive;
+			link(node);
+			weight += node.weight;
+			while (weight > maxWeight && head.previous != head) {
+				Node eldest = head.previous;
+				unlink(eldest);
+				weight -= eldest.weight;
+				nodes.remove(eldest.uri, eldest);
+				evictions.increment();
+			}
+		} finally {
+			lock.unlock();
+		}
+		LOGGER.debug("Cached {}: {}", node.uri, this);
+	}
+
+	/**
+	 * Moves the node to the front of the recency list, unless another thread holds the lock.
+	 */
+	private void touch(Node node) {
+		if (node.linked && lock.tryLock()) {
+			try {
+				if (node.linked) {
+					unlink(node);
+					link(node);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	private void remove(Node node) {
+		lock.lock();
+		try {
+			if (node.linked) {
+				unlink(node);
+				weight -= node.weight;
+			}
+			nodes.remove(node.uri, node);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void link(Node node) {
+		node.previous = head;
+		node.next = head.next;
+		head.next.previous = node;
+		head.next = node;
+		node.linked = true;
+	}
+
+	private void unlink(Node node) {
+		node.previous.next = node.next;
+		node.next.previous = node.previous;
+		node.previous = null;
+		node.next = null;
+		node.linked = false;
+	}
+
+	/**
+	 * A page of the cache. The recency links and weight are guarded by {@link PageCache#lock}.
+	 */
+	private static final class Node {
+
+		private final URI uri;
+		private final CompletableFuture<CachedPage> page = new CompletableFuture<>();
+
+		/**
+		 * When the page expires, only set once it is loaded.
+		 */
+		private volatile long expiresAt = Long.MAX_VALUE;
+
+		/**
+		 * Whether the page is loaded and in the recency list.
+		 */
+		private volatile boolean linked;
+
+		private int weight;
+		private Node previous;
+		private Node next;
+
+		private Node(URI uri) {
+			this.uri = uri;
+		}
+
+		private boolean isExpired(long now) {
+			return expiresAt != Long.MAX_VALUE && now - expiresAt >= 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,472 @@
+package dev.samir.backend.client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.common.LongLongHashMap;
+import dev.samir.backend.common.UrlCanonicalizer;
+
+/**
+ * Second tier of the {@link PageCache}: pages written to append-only segment files on disk and read back through
+ * {@link MappedByteBuffer memory mapped} buffers, so they outlive the process and are not bounded by the heap.
+ * <p>
+ * Every page is appended as a record holding its URI, status, headers, body and expiration time, protected by a
+ * checksum. The in-memory index only maps the fingerprint of each URI to the segment and offset of its latest record,
+ * packed in a single <code>long</code>; the URI of the record is compared on reads, so colliding fingerprints are
+ * simply misses. When the service starts, the existing segments are read in order to rebuild the index, stopping at the
+ * first incomplete record of each segment, so a crash while writing only loses that record.
+ * </p>
+ * Writes are synchronized and go to the active segment until it is full. Every time a new segment is started, the
+ * older ones are compacted: those mostly made of replaced records, or holding expired pages, have their live records
+ * copied to the active segment and are deleted. The oldest segments are then dropped until the store fits its size.
+ * Reads take no lock: records are never modified once written, and a deleted segment stays mapped until nobody
+ * reads it anymore.
+ *
+ * @author Scheide, Samir
+ */
+final class PageStore {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(PageStore.class);
+
+	/**
+	 * Starts every record, telling it from the zeroed end of a segment.
+	 */
+	private static final int MAGIC = 0x50414745;
+
+	/**
+	 * Offsets of the record fields: magic, record length, checksum of the rest of the record, URI fingerprint,
+	 * expiration time in epoch milliseconds, status code, HTTP version, then the lengths of the URI, headers and body.
+	 */
+	private static final int LENGTH = 4;
+	private static final int CHECKSUM = 8;
+	private static final int FINGERPRINT = 12;
+	private static final int EXPIRES_AT = 20;
+	private static final int STATUS = 28;
+	private static final int VERSION = 32;
+	private static final int URI_LENGTH = 36;
+	private static final int HEADERS_LENGTH = 40;
+	private static final int BODY_LENGTH = 44;
+	private static final int HEADER_SIZE = 48;
+
+	private static final String SEGMENT_PREFIX = "pages-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+
+	/**
+	 * Directory of the segment files.
+	 */
+	private final Path directory;
+
+	/**
+	 * Size of each segment file, in bytes.
+	 */
+	private final int segmentSize;
+
+	/**
+	 * Number of segments kept, the oldest ones being dropped beyond it.
+	 */
+	private final int maxSegments;
+
+	/**
+	 * Fingerprint of each URI to the location of its latest record.
+	 */
+	private final LongLongHashMap index = new LongLongHashMap(1024);
+
+	/**
+	 * Segments by identifier, the oldest first.
+	 */
+	private final NavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+	/**
+	 * The segment records are appended to.
+	 */
+	private Segment active;
+
+	/**
+	 * Whether a compaction is running, so starting a segment while copying records does not start another one.
+	 */
+	private boolean compacting;
+
+	/**
+	 * Opens the store, reading the segments left by a previous run.
+	 * @param directory {@link #directory}, created if needed.
+	 * @param maxSize maximum size of the segment files, in bytes.
+	 * @param segmentSize {@link #segmentSize}
+	 * @throws UncheckedIOException if the directory or its segments cannot be opened.
+	 */
+	PageStore(Path directory, long maxSize, int segmentSize) {
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.maxSegments = (int) Math.max(2, Math.min(Integer.MAX_VALUE, maxSize / segmentSize));
+		try {
+			Files.createDirectories(directory);
+			List<Integer> identifiers;
+			try (Stream<Path> files = Files.list(directory)) {
+				identifiers = files.map(path -> path.getFileName().toString())
+					.filter(name -> name.matches(SEGMENT_PREFIX + "\\d{1,9}" + SEGMENT_SUFFIX.replace(".", "\\.")))
+					.map(name -> Integer.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+					.sorted().collect(Collectors.toList());
+			}
+			for (int identifier : identifiers) {
+				recover(open(identifier));
+			}
+			// Appending after the last record of a previous run could overwrite a record it did not finish
+			active = open(identifiers.isEmpty() ? 1 : identifiers.get(identifiers.size() - 1) + 1);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not open the page store in " + directory, ex);
+		}
+		LOGGER.info("Opened the page store in {}: {}", directory, this);
+	}
+
+	/**
+	 * Reads the latest page stored for the URI.
+	 * @param uri the page URI.
+	 * @return the page and its expiration time, or null when it is not stored.
+	 */
+	Stored get(URI uri) {
+		ByteBuffer record = find(uri);
+		if (record == null) {
+			return null;
+		}
+		int start = record.position();
+		int uriLength = record.getInt(start + URI_LENGTH);
+		int headersLength = record.getInt(start + HEADERS_LENGTH);
+		byte[] headers = new byte[headersLength];
+		byte[] body = new byte[record.getInt(start + BODY_LENGTH)];
+		record.position(start + HEADER_SIZE + uriLength);
+		record.get(headers).get(body);
+		HttpClient.Version[] versions = HttpClient.Version.values();
+		int version = record.getInt(start + VERSION);
+		CachedPage page = new CachedPage(uri, record.getInt(start + STATUS),
+				versions[Math.min(Math.max(version, 0), versions.length - 1)], decodeHeaders(headers), body);
+		return new Stored(page, record.getLong(start + EXPIRES_AT));
+	}
+
+	/**
+	 * @param uri the page URI.
+	 * @return the expiration time of the page in epoch milliseconds, or {@link Long#MIN_VALUE} when it is not stored.
+	 */
+	long getExpiresAt(URI uri) {
+		ByteBuffer record = find(uri);
+		return record == null ? Long.MIN_VALUE : record.getLong(record.position() + EXPIRES_AT);
+	}
+
+	/**
+	 * Appends the page, replacing any previous record of the URI. Pages larger than a segment are not stored, and
+	 * failures are only logged: the store is a cache.
+	 * @param uri the page URI.
+	 * @param page the page, with its body.
+	 * @param expiresAt expiration time of the page, in epoch milliseconds.
+	 */
+	synchronized void put(URI uri, CachedPage page, long expiresAt) {
+		byte[] uriBytes = uri.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] headers = encodeHeaders(page.getHeaders());
+		byte[] body = page.getBody();
+		long length = (long) HEADER_SIZE + uriBytes.length + headers.length + body.length;
+		if (length > segmentSize) {
+			return;
+		}
+		ByteBuffer record = ByteBuffer.allocate((int) length);
+		record.putInt(MAGIC).putInt((int) length).putInt(0).putLong(UrlCanonicalizer.fingerprint(uri.toString()))
+			.putLong(expiresAt).putInt(page.getStatus()).putInt(page.getVersion() == null ? 0 : page.getVersion().ordinal())
+			.putInt(uriBytes.length).putInt(headers.length).putInt(body.length)
+			.put(uriBytes).put(headers).put(body);
+		record.putInt(CHECKSUM, checksum(record, 0, (int) length));
+		try {
+			append(record.flip(), expiresAt);
+		} catch (IOException ex) {
+			LOGGER.warn("Could not store {} in {}", uri, directory, ex);
+		}
+	}
+
+	/**
+	 * Copies the live records of the segments mostly made of replaced records or holding expired pages to the active
+	 * segment and deletes them, dropping the expired pages, then drops the oldest segments beyond the maximum size.
+	 */
+	synchronized void compact() {
+		compacting = true;
+		try {
+			long now = System.currentTimeMillis();
+			for (Segment segment : new ArrayList<>(segments.values())) {
+				if (segment != active && (segment.live * 2 < segment.written || segment.earliestExpiration <= now)) {
+					rewrite(segment, now);
+				}
+			}
+			while (segments.size() > maxSegments) {
+				drop(segments.firstEntry().getValue());
+			}
+		} catch (IOException ex) {
+			LOGGER.warn("Could not compact the page store in {}", directory, ex);
+		} finally {
+			compacting = false;
+		}
+		LOGGER.debug("Compacted the page store: {}", this);
+	}
+
+	/**
+	 * @return number of pages stored.
+	 */
+	int size() {
+		return index.size();
+	}
+
+	/**
+	 * @return number of segment files.
+	 */
+	int getSegments() {
+		return segments.size();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d page(s) in %d segment(s) of %d byte(s)", size(), getSegments(), segmentSize);
+	}
+
+	/**
+	 * Looks the URI up in the index.
+	 * @return a view of the segment positioned at the record of the URI, or null.
+	 */
+	private ByteBuffer find(URI uri) {
+		String key = uri.toString();
+		long location = index.get(UrlCanonicalizer.fingerprint(key));
+		Segment segment = location == LongLongHashMap.MISSING ? null : segments.get(segment(location));
+		if (segment == null) {
+			return null;
+		}
+		ByteBuffer record = segment.buffer.duplicate();
+		int start = offset(location);
+		byte[] uriBytes = new byte[record.getInt(start + URI_LENGTH)];
+		record.position(start + HEADER_SIZE);
+		record.get(uriBytes);
+		if (!key.equals(new String(uriBytes, StandardCharsets.UTF_8))) {
+			return null;
+		}
+		return record.position(start);
+	}
+
+	/**
+	 * Appends a complete record to the active segment, starting a new one when it is full.
+	 */
+	private void append(ByteBuffer record, long expiresAt) throws IOException {
+		int length = record.remaining();
+		if (active.written + length > active.buffer.capacity()) {
+			active = open(active.identifier + 1);
+			if (!compacting) {
+				compact();
+			}
+		}
+		int start = active.written;
+		active.buffer.duplicate().position(start).put(record);
+		active.written += length;
+		index(active, record.getLong(FINGERPRINT), start, length, expiresAt);
+	}
+
+	/**
+	 * Points the index to a record, moving the live bytes from the segment of the record it replaces.
+	 */
+	private void index(Segment segment, long fingerprint, int start, int length, long expiresAt) {
+		long previous = index.put(fingerprint, location(segment, start));
+		if (previous != LongLongHashMap.MISSING) {
+			Segment replaced = segments.get(segment(previous));
+			if (replaced != null) {
+				replaced.live -= replaced.buffer.getInt(offset(previous) + LENGTH);
+			}
+		}
+		segment.live += length;
+		segment.earliestExpiration = Math.min(segment.earliestExpiration, expiresAt);
+	}
+
+	/**
+	 * Reads the records of a segment left by a previous run into the index.
+	 */
+	private void recover(Segment segment) {
+		ByteBuffer buffer = segment.buffer;
+		int start = 0;
+		while (start + HEADER_SIZE <= buffer.capacity() && buffer.getInt(start) == MAGIC) {
+			int length = buffer.getInt(start + LENGTH);
+			if (length < HEADER_SIZE || length > buffer.capacity() - start
+					|| buffer.getInt(start + CHECKSUM) != checksum(buffer, start, length)) {
+				LOGGER.warn("Ignoring the incomplete end of {}, from byte {}", segment.path, start);
+				break;
+			}
+			index(segment, buffer.getLong(start + FINGERPRINT), start, length, buffer.getLong(start + EXPIRES_AT));
+			start += length;
+		}
+		segment.written = start;
+	}
+
+	/**
+	 * Copies the records of the segment which are still current and not expired to the active segment, then deletes it.
+	 */
+	private void rewrite(Segment segment, long now) throws IOException {
+		ByteBuffer buffer = segment.buffer;
+		for (int start = 0; start < segment.written; start += buffer.getInt(start + LENGTH)) {
+			long fingerprint = buffer.getLong(start + FINGERPRINT);
+			long location = location(segment, start);
+			if (index.get(fingerprint) != location) {
+				continue;
+			}
+			long expiresAt = buffer.getLong(start + EXPIRES_AT);
+			if (expiresAt <= now) {
+				index.remove(fingerprint, location);
+			} else {
+				append(buffer.duplicate().position(start).limit(start + buffer.getInt(start + LENGTH)).slice(), expiresAt);
+			}
+		}
+		delete(segment);
+	}
+
+	/**
+	 * Removes the records of the segment from the index and deletes it.
+	 */
+	private void drop(Segment segment) throws IOException {
+		ByteBuffer buffer = segment.buffer;
+		for (int start = 0; start < segment.written; start += buffer.getInt(start + LENGTH)) {
+			index.remove(buffer.getLong(start + FINGERPRINT), location(segment, start));
+		}
+		delete(segment);
+		if (segment == active) {
+			active = open(segment.identifier + 1);
+		}
+	}
+
+	private void delete(Segment segment) throws IOException {
+		segments.remove(segment.identifier);
+		// The file is unlinked right away, its mapping is released once the buffer is collected
+		Files.deleteIfExists(segment.path);
+	}
+
+	/**
+	 * Maps a segment file, creating it with the segment size when it does not exist.
+	 */
+	private Segment open(int identifier) throws IOException {
+		Path path = directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, identifier, SEGMENT_SUFFIX));
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long size = channel.size() == 0 ? segmentSize : Math.min(channel.size(), Integer.MAX_VALUE);
+			Segment segment = new Segment(identifier, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+			segments.put(identifier, segment);
+			return segment;
+		}
+	}
+
+	private static long location(Segment segment, int start) {
+		return ((long) segment.identifier << 32) | start;
+	}
+
+	private static int segment(long location) {
+		return (int) (location >>> 32);
+	}
+
+	private static int offset(long location) {
+		return (int) location;
+	}
+
+	/**
+	 * Checksum of a record, from its fingerprint to its end.
+	 */
+	private static int checksum(ByteBuffer buffer, int start, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate().position(start + FINGERPRINT).limit(start + length));
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Writes the headers as <code>name:value</code> lines.
+	 */
+	private static byte[] encodeHeaders(HttpHeaders headers) {
+		StringBuilder text = new StringBuilder();
+		headers.map().forEach((name, values) -> values.forEach(value -> text.append(name).append(':').append(value).append('\n')));
+		return text.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static HttpHeaders decodeHeaders(byte[] bytes) {
+		Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+			int colon = line.indexOf(':', 1);
+			if (colon > 0) {
+				headers.computeIfAbsent(line.substring(0, colon), name -> new ArrayList<>()).add(line.substring(colon + 1));
+			}
+		}
+		return HttpHeaders.of(headers, (name, value) -> true);
+	}
+
+	/**
+	 * A page read from the store, with its expiration time in epoch milliseconds.
+	 */
+	static final class Stored {
+
+		private final CachedPage page;
+		private final long expiresAt;
+
+		private Stored(CachedPage page, long expiresAt) {
+			this.page = page;
+			this.expiresAt = expiresAt;
+		}
+
+		CachedPage getPage() {
+			return page;
+		}
+
+		long getExpiresAt() {
+			return expiresAt;
+		}
+
+	}
+
+	/**
+	 * A mapped segment file. Its counters are guarded by the store.
+	 */
+	private static final class Segment {
+
+		private final int identifier;
+		private final Path path;
+		private final MappedByteBuffer buffer;
+
+		/**
+		 * Bytes taken by the records, where the next one is appended.
+		 */
+		private int written;
+
+		/**
+		 * Bytes taken by the records the index points to.
+		 */
+		private long live;
+
+		/**
+		 * Earliest expiration time of the records, in epoch milliseconds.
+		 */
+		private long earliestExpiration = Long.MAX_VALUE;
+
+		private Segment(int identifier, Path path, MappedByteBuffer buffer) {
+			this.identifier = identifier;
+			this.path = path;
+			this.buffer = buffer;
+		}
+
+	}
+
+}
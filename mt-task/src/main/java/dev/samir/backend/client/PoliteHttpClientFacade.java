@@ -0,0 +1,292 @@
+package dev.samir.backend.client;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.Main;
+import dev.samir.backend.common.configuration.Environment;
+
+/**
+ * Fetch scheduler placed in front of another {@link HttpClientFacade}, pacing the requests sent to each host.
+ * <p>
+ * Every host has its own {@link TokenBucket} and a maximum number of requests in flight; requests beyond that wait
+ * in a per host queue. The bucket rate is the slowest between the configured rate for the host and the
+ * <b>Crawl-delay</b> found in its robots.txt, which is fetched once per host. On top of that, a global bucket limits
+ * the total rate across every host.
+ * </p>
+ * Waiting never blocks a thread: requests that must wait for a token are scheduled on a delayed executor. Pages the
+ * delegate {@link HttpClientFacade#isCached(URI) has cached} never reach the host, so they are not paced. A
+ * {@link HttpHtmlClientFacade} delegate is handed this facade as its {@link Pacer}, so its hedged requests take a slot
+ * and a token like any other.
+ *
+ * @see Environment#getRateLimit()
+ * @see Environment#getHostRateLimit()
+ * @see Environment#getHostRateLimits()
+ * @see Environment#getHostMaxInFlight()
+ * @author Scheide, Samir
+ */
+public final class PoliteHttpClientFacade implements HttpClientFacade, Pacer {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(PoliteHttpClientFacade.class);
+
+	/**
+	 * The facade actually sending the requests.
+	 */
+	private final HttpClientFacade delegate;
+
+	/**
+	 * Rate shared by every host.
+	 */
+	private final TokenBucket global;
+
+	/**
+	 * Rate of hosts without a specific configuration.
+	 */
+	private final double hostRate;
+
+	/**
+	 * Rates configured for specific hosts.
+	 */
+	private final Map<String, Double> hostRates;
+
+	/**
+	 * Maximum number of requests in flight for each host.
+	 */
+	private final int hostMaxInFlight;
+
+	/**
+	 * Executor used to run requests once their wait is over.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Scheduling state of every host seen so far.
+	 */
+	private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+	/**
+	 * Default constructor.
+	 * @param delegate {@link #delegate}
+	 * @param environment source of the rates and limits.
+	 */
+	public PoliteHttpClientFacade(HttpClientFacade delegate, Environment environment) {
+		this(delegate, environment, Main.EXECUTOR_SERVICE);
+	}
+
+	PoliteHttpClientFacade(HttpClientFacade delegate, Environment environment, Executor executor) {
+		this.delegate = delegate;
+		this.global = TokenBucket.of(environment.getRateLimit(), Duration.ZERO);
+		this.hostRate = environment.getHostRateLimit();
+		this.hostRates = environment.getHostRateLimits();
+		this.hostMaxInFlight = environment.getHostMaxInFlight();
+		this.executor = executor;
+		if (delegate instanceof HttpHtmlClientFacade) {
+			((HttpHtmlClientFacade) delegate).pacedBy(this);
+		}
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The request is only sent to the delegate once the host has a free slot and a token.
+	 */
+	@Override
+	public CompletableFuture<HttpResponse<String>> requestAsync(URI uri) {
+		return schedule(uri, () -> delegate.requestAsync(uri));
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The request is only sent to the delegate once the host has a free slot and a token.
+	 */
+	@Override
+	public CompletableFuture<HtmlPageScanner> scanAsync(URI uri, Supplier<HtmlPageScanner> scanner) {
+		return schedule(uri, () -> delegate.scanAsync(uri, scanner));
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The request is only sent to the delegate once the host has a free slot and a token.
+	 */
+	@Override
+	public CompletableFuture<HtmlPageScanner> scanAsync(URI uri, Supplier<HtmlPageScanner> scanner, HttpClientSettings settings) {
+		return schedule(uri, () -> delegate.scanAsync(uri, scanner, settings));
+	}
+
+	@Override
+	public boolean isCached(URI uri) {
+		return delegate.isCached(uri);
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * Cancelling the result drops the call when it is still waiting, and cancels the future of the delegate otherwise.
+	 */
+	@Override
+	public <T> CompletableFuture<T> schedule(URI uri, Supplier<CompletableFuture<T>> call) {
+		if (delegate.isCached(uri)) {
+			return HostCalls.invoke(call);
+		}
+		Host host = hosts.computeIfAbsent(HostCalls.authority(uri), name -> new Host(uri, name));
+		CompletableFuture<T> result = new CompletableFuture<>();
+		host.bucket.thenAccept(bucket -> host.submit(() -> {
+			// A request cancelled while waiting is never sent, and frees its slot at once
+			if (result.isDone()) {
+				host.release();
+				return;
+			}
+			long wait = Math.max(global.reserve(), bucket.reserve());
+			CompletableFuture<T> response = wait > 0
+				? CompletableFuture.supplyAsync(() -> result.isDone() ? CompletableFuture.<T>failedFuture(new CancellationException()) : HostCalls.invoke(call),
+						CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS, executor))
+					.thenCompose(future -> future)
+				: HostCalls.invoke(call);
+			result.whenComplete((value, exception) -> {
+				if (result.isCancelled()) response.cancel(true);
+			});
+			response.whenComplete((value, exception) -> {
+				host.release();
+				if (exception != null) result.completeExceptionally(exception);
+				else result.complete(value);
+			});
+		}));
+		return result;
+	}
+
+	/**
+	 * Fetches the robots.txt of the host and creates its bucket. Missing or unreachable files mean no crawl delay.
+	 */
+	private CompletableFuture<TokenBucket> loadBucket(URI uri, String name) {
+		double rate = hostRates.getOrDefault(Optional.ofNullable(uri.getHost()).orElse(name).toLowerCase(Locale.ROOT), hostRate);
+		CompletableFuture<HttpResponse<String>> robots;
+		try {
+			robots = Optional.ofNullable(delegate.requestAsync(URI.create(uri.getScheme() + "://" + uri.getRawAuthority() + "/robots.txt")))
+				.orElseGet(() -> CompletableFuture.completedFuture(null));
+		} catch (RuntimeException ex) {
+			robots = CompletableFuture.failedFuture(ex);
+		}
+		return robots
+			.thenApply(response -> response != null && response.statusCode() == StatusCode.OK.getCode()
+				? crawlDelay(response.body()) : Duration.ZERO)
+			.exceptionally(exception -> {
+				LOGGER.debug("robots.txt of {} could not be fetched: {}", name, exception.getMessage());
+				return Duration.ZERO;
+			})
+			.thenApply(delay -> {
+				LOGGER.info("Pacing {} at {} request(s) per second with a crawl delay of {}", name, rate > 0 ? rate : "unlimited", delay);
+				return TokenBucket.of(rate, delay);
+			});
+	}
+
+	/**
+	 * Reads the <b>Crawl-delay</b> of the group applying to every user agent (<code>User-agent: *</code>).
+	 * @param robots contents of a robots.txt file.
+	 * @return the delay, or zero when there is none.
+	 */
+	static Duration crawlDelay(String robots) {
+		if (robots == null) {
+			return Duration.ZERO;
+		}
+		boolean anyAgent = false;
+		boolean readingAgents = false;
+		for (String line : robots.split("\\r?\\n|\\r")) {
+			int comment = line.indexOf('#');
+			String directive = (comment >= 0 ? line.substring(0, comment) : line).trim();
+			int colon = directive.indexOf(':');
+			if (colon < 0) continue;
+			String field = directive.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+			String value = directive.substring(colon + 1).trim();
+			if ("user-agent".equals(field)) {
+				// Consecutive user agent lines belong to the same group
+				anyAgent = (readingAgents && anyAgent) || "*".equals(value);
+				readingAgents = true;
+				continue;
+			}
+			readingAgents = false;
+			if (anyAgent && "crawl-delay".equals(field)) {
+				try {
+					return Duration.ofMillis((long) (Double.parseDouble(value) * 1000));
+				} catch (NumberFormatException ex) {
+					LOGGER.debug("Ignoring invalid crawl delay {}", value);
+				}
+			}
+		}
+		return Duration.ZERO;
+	}
+
+	/**
+	 * Scheduling state of a single host: its bucket and its queue of requests waiting for a free slot.
+	 */
+	private final class Host {
+
+		/**
+		 * Completed once the robots.txt was read.
+		 */
+		private final CompletableFuture<TokenBucket> bucket;
+
+		/**
+		 * Requests waiting for a free slot.
+		 */
+		private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * Number of requests started and not yet completed.
+		 */
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		/**
+		 * Work-in-progress counter which guarantees a single thread dispatches at a time.
+		 */
+		private final AtomicInteger dispatching = new AtomicInteger();
+
+		private Host(URI uri, String name) {
+			this.bucket = loadBucket(uri, name);
+		}
+
+		private void submit(Runnable request) {
+			waiting.add(request);
+			dispatch();
+		}
+
+		private void release() {
+			inFlight.decrementAndGet();
+			dispatch();
+		}
+
+		private void dispatch() {
+			if (dispatching.getAndIncrement() != 0) {
+				return;
+			}
+			int missed = 1;
+			do {
+				while (inFlight.get() < hostMaxInFlight) {
+					Runnable request = waiting.poll();
+					if (request == null) break;
+					inFlight.incrementAndGet();
+					request.run();
+				}
+				missed = dispatching.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+	}
+
+}
@@ -0,0 +1,287 @@
+package dev.samir.backend.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.Main;
+import dev.samir.backend.common.configuration.Environment;
+
+/**
+ * Fetch resilience placed in front of another {@link HttpClientFacade}, so a single failing page does not cost the
+ * crawl and a host which is down does not hold it.
+ * <p>
+ * Every request is a <b>GET</b>, so a request failing with an {@link IOException}, timeouts included, is sent again
+ * after a randomized exponential backoff, as is a response whose status tells the host is overloaded. Retries share a
+ * {@link RetryBudget}, which bounds them to a tenth of the requests when a whole host fails. Placed in front of a
+ * {@link PoliteHttpClientFacade}, retries are paced like any other request.
+ * </p>
+ * Each host also has a {@link CircuitBreaker}: once it failed too many times in a row, its requests fail at once with a
+ * {@link CircuitOpenException} until the cool down is over. Cancelling a request cancels its attempt in flight and
+ * its pending retry. Pages the delegate {@link HttpClientFacade#isCached(URI)
+ * has cached} never reach the host, so they go straight through.
+ *
+ * @see Environment#getFetchRetries()
+ * @see Environment#getFetchBackoff()
+ * @see Environment#getBreakerFailures()
+ * @see Environment#getBreakerCooldown()
+ * @author Scheide, Samir
+ */
+public final class ResilientHttpClientFacade implements HttpClientFacade {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResilientHttpClientFacade.class);
+
+	/**
+	 * Upper bound of the backoff, however many attempts were made.
+	 */
+	private static final long MAX_BACKOFF = TimeUnit.SECONDS.toNanos(10);
+
+	/**
+	 * Statuses of responses worth requesting again, since the host may answer once it is less loaded.
+	 */
+	private static final Set<Integer> RETRYABLE_STATUSES = Set.of(StatusCode.TOO_MANY_REQUESTS.getCode(),
+			StatusCode.INTERNAL_SERVER_ERROR.getCode(), StatusCode.BAD_GATEWAY.getCode(),
+			StatusCode.SERVICE_UNAVAILABLE.getCode(), StatusCode.GATEWAY_TIMEOUT.getCode());
+
+	/**
+	 * The facade actually sending the requests.
+	 */
+	private final HttpClientFacade delegate;
+
+	/**
+	 * Maximum number of retries of a request.
+	 */
+	private final int retries;
+
+	/**
+	 * Backoff before the first retry, doubled at each further one.
+	 */
+	private final long backoffNanos;
+
+	/**
+	 * Consecutive failures opening the circuit of a host.
+	 */
+	private final int breakerFailures;
+
+	/**
+	 * How long the circuit of a host stays open.
+	 */
+	private final long breakerCoolDownNanos;
+
+	/**
+	 * Bounds the retries across every host.
+	 */
+	private final RetryBudget budget = new RetryBudget(0.1, 10);
+
+	/**
+	 * Executor used to run retries once their backoff is over.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Circuit breakers of every host seen so far.
+	 */
+	private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	/**
+	 * Default constructor.
+	 * @param delegate {@link #delegate}
+	 * @param environment source of the retries, backoff and circuit breaker settings.
+	 */
+	public ResilientHttpClientFacade(HttpClientFacade delegate, Environment environment) {
+		this(delegate, environment, Main.EXECUTOR_SERVICE);
+	}
+
+	ResilientHttpClientFacade(HttpClientFacade delegate, Environment environment, Executor executor) {
+		this.delegate = delegate;
+		this.retries = Math.max(0, environment.getFetchRetries());
+		this.backoffNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, environment.getFetchBackoff()));
+		this.breakerFailures = environment.getBreakerFailures();
+		this.breakerCoolDownNanos = TimeUnit.SECONDS.toNanos(environment.getBreakerCooldown());
+		this.executor = executor;
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * Failed requests and responses of overloaded hosts are retried.
+	 */
+	@Override
+	public CompletableFuture<HttpResponse<String>> requestAsync(URI uri) {
+		return execute(uri, () -> delegate.requestAsync(uri), HttpResponse::statusCode);
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * Failed requests and pages of overloaded hosts are retried, each attempt with a new scanner.
+	 */
+	@Override
+	public CompletableFuture<HtmlPageScanner> scanAsync(URI uri, Supplier<HtmlPageScanner> scanner) {
+		return execute(uri, () -> delegate.scanAsync(uri, scanner), HtmlPageScanner::getStatus);
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * Failed requests and pages of overloaded hosts are retried, each attempt with a new scanner.
+	 */
+	@Override
+	public CompletableFuture<HtmlPageScanner> scanAsync(URI uri, Supplier<HtmlPageScanner> scanner, HttpClientSettings settings) {
+		return execute(uri, () -> delegate.scanAsync(uri, scanner, settings), HtmlPageScanner::getStatus);
+	}
+
+	@Override
+	public boolean isCached(URI uri) {
+		return delegate.isCached(uri);
+	}
+
+	/**
+	 * Runs the call through the circuit breaker of the host, retrying it while it fails.
+	 * @param <T> the type of the call result.
+	 * @param uri the URI the call will request.
+	 * @param call sends the request.
+	 * @param status reads the response status of a result, telling whether the host failed.
+	 * @return the first result which is not a failure, or the last failure.
+	 */
+	<T> CompletableFuture<T> execute(URI uri, Supplier<CompletableFuture<T>> call, ToIntFunction<T> status) {
+		if (delegate.isCached(uri)) {
+			return HostCalls.invoke(call);
+		}
+		String host = HostCalls.authority(uri);
+		CircuitBreaker breaker = breakers.computeIfAbsent(host, name -> new CircuitBreaker(breakerFailures, breakerCoolDownNanos));
+		budget.deposit();
+		Execution<T> execution = new Execution<>(uri, host, breaker, call, status);
+		execution.attempt(0);
+		return execution.result;
+	}
+
+	/**
+	 * Computes the backoff before a retry, picked at random between half and the whole of the exponential bound, so
+	 * retries of pages which failed together do not hit the host together again while still backing off.
+	 * @param attempt the number of the failed attempt, starting at zero.
+	 * @return the backoff in nanoseconds.
+	 */
+	long backoff(int attempt) {
+		long bound = attempt >= Long.numberOfLeadingZeros(backoffNanos) - 1 ? MAX_BACKOFF : Math.min(MAX_BACKOFF, backoffNanos << attempt);
+		return ThreadLocalRandom.current().nextLong(bound / 2, bound + 1);
+	}
+
+	/**
+	 * @return true when the failure is the cancellation of the request.
+	 */
+	private static boolean isCancellation(Throwable exception) {
+		for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+			if (cause instanceof CancellationException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true when the failure comes from the network or the host, rather than from the circuit being open or
+	 * from reading the page.
+	 */
+	private static boolean isHostFailure(Throwable exception) {
+		for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+			if (cause instanceof CircuitOpenException) {
+				return false;
+			}
+			if (cause instanceof IOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The attempts of a single request. Cancelling its result cancels the attempt in flight, and no retry is made.
+	 */
+	private final class Execution<T> {
+
+		private final URI uri;
+		private final String host;
+		private final CircuitBreaker breaker;
+		private final Supplier<CompletableFuture<T>> call;
+
+		/**
+		 * Reads the response status of a result.
+		 */
+		private final ToIntFunction<T> status;
+
+		/**
+		 * The first result which is not a failure, or the last failure.
+		 */
+		private final CompletableFuture<T> result = new CompletableFuture<>();
+
+		/**
+		 * The attempt in flight.
+		 */
+		private volatile CompletableFuture<T> current;
+
+		private Execution(URI uri, String host, CircuitBreaker breaker, Supplier<CompletableFuture<T>> call, ToIntFunction<T> status) {
+			this.uri = uri;
+			this.host = host;
+			this.breaker = breaker;
+			this.call = call;
+			this.status = status;
+			result.whenComplete((value, exception) -> {
+				CompletableFuture<T> attempt = current;
+				if (result.isCancelled() && attempt != null) attempt.cancel(true);
+			});
+		}
+
+		private void attempt(int attempt) {
+			if (result.isDone()) {
+				return;
+			}
+			if (!breaker.tryAcquire()) {
+				result.completeExceptionally(new CircuitOpenException(String.format("%s is skipped, %s failed too many times", uri, host)));
+				return;
+			}
+			current = HostCalls.invoke(call);
+			if (result.isCancelled()) {
+				current.cancel(true);
+			}
+			current.whenComplete((value, exception) -> {
+				if (exception != null && isCancellation(exception)) {
+					breaker.onCancelled();
+					result.completeExceptionally(exception);
+					return;
+				}
+				boolean failed = exception != null ? isHostFailure(exception) : value != null && RETRYABLE_STATUSES.contains(status.applyAsInt(value));
+				if (failed) {
+					breaker.onFailure();
+				} else {
+					breaker.onSuccess();
+				}
+				if (failed && attempt < retries && !result.isDone() && budget.tryWithdraw()) {
+					long backoff = backoff(attempt);
+					LOGGER.debug("Retrying {} in {} ms after attempt {} failed: {}", uri, TimeUnit.NANOSECONDS.toMillis(backoff), attempt + 1,
+							exception != null ? exception.getMessage() : "status " + status.applyAsInt(value));
+					CompletableFuture.delayedExecutor(backoff, TimeUnit.NANOSECONDS, executor).execute(() -> attempt(attempt + 1));
+				} else if (exception != null) {
+					result.completeExceptionally(exception);
+				} else {
+					result.complete(value);
+				}
+			});
+		}
+
+	}
+
+}
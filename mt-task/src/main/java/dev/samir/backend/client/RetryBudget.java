@@ -0,0 +1,56 @@
+package dev.samir.backend.client;
+
+/**
+ * Bounds the extra requests sent on top of the ones asked for, retries or hedges, to a ratio of them. Each request
+ * deposits a fraction of a token and each extra request withdraws a whole one, so when a host fails or slows down as a
+ * whole, the extra load it gets stays at that ratio instead of multiplying every request.
+ *
+ * @author Scheide, Samir
+ */
+final class RetryBudget {
+
+	/**
+	 * Fraction of a token deposited by each request.
+	 */
+	private final double ratio;
+
+	/**
+	 * Maximum number of tokens, which is also the number of extra requests allowed before any request was made.
+	 */
+	private final double capacity;
+
+	/**
+	 * Tokens available.
+	 */
+	private double tokens;
+
+	/**
+	 * Default constructor.
+	 * @param ratio {@link #ratio}
+	 * @param capacity {@link #capacity}
+	 */
+	RetryBudget(double ratio, int capacity) {
+		this.ratio = ratio;
+		this.capacity = capacity;
+		this.tokens = capacity;
+	}
+
+	/**
+	 * Records a request.
+	 */
+	synchronized void deposit() {
+		tokens = Math.min(capacity, tokens + ratio);
+	}
+
+	/**
+	 * @return true when an extra request may be sent, its token being taken.
+	 */
+	synchronized boolean tryWithdraw() {
+		if (tokens < 1) {
+			return false;
+		}
+		tokens--;
+		return true;
+	}
+
+}
@@ -23,6 +23,12 @@ public enum StatusCode {
      */
     ACCEPTED(202, "Accepted"),
     
+    /**
+     * 304 Not Modified, see <a href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec10.html#sec10.3.5">HTTP/1.1
+     * documentation</a>.
+     */
+    NOT_MODIFIED(304, "Not Modified"),
+    
     /**
      * 400 Bad Request, see <a href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec10.html#sec10.4.1">HTTP/1.1
      * documentation</a>.
@@ -34,7 +40,18 @@ public enum StatusCode {
      * documentation</a>.
      */
     NOT_FOUND(404, "Not Found"),
-    
+
+    /**
+     * 410 Gone, see <a href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec10.html#sec10.4.11">HTTP/1.1
+     * documentation</a>.
+     */
+    GONE(410, "Gone"),
+
+    /**
+     * 429 Too Many Requests, see <a href="https://www.rfc-editor.org/rfc/rfc6585#section-4">RFC 6585</a>.
+     */
+    TOO_MANY_REQUESTS(429, "Too Many Requests"),
+
     /**
      * 500 Internal Server Error, see <a href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec10.html#sec10.5.1">HTTP/1.1
      * documentation</a>.
@@ -0,0 +1,82 @@
+package dev.samir.backend.client;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket, implemented as a generic cell rate algorithm: instead of counting tokens and refilling them
+ * from a timer, it keeps the theoretical arrival time of the next request and moves it forward by one interval
+ * on each reservation. Refilling is implicit, so there are no background threads and each reservation costs
+ * a single compare-and-set.
+ *
+ * @author Scheide, Samir
+ */
+final class TokenBucket {
+
+	/**
+	 * A bucket that never makes anyone wait.
+	 */
+	static final TokenBucket UNLIMITED = new TokenBucket(0, 0);
+
+	/**
+	 * Time between two tokens.
+	 */
+	private final long intervalNanos;
+
+	/**
+	 * How far ahead of the schedule requests may run, which is what allows bursts up to the bucket capacity.
+	 */
+	private final long toleranceNanos;
+
+	/**
+	 * Theoretical arrival time of the next request, in {@link System#nanoTime()} units.
+	 */
+	private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+	/**
+	 * Default constructor.
+	 * @param intervalNanos {@link #intervalNanos}
+	 * @param capacity maximum number of requests let through at once.
+	 */
+	private TokenBucket(long intervalNanos, int capacity) {
+		this.intervalNanos = intervalNanos;
+		this.toleranceNanos = intervalNanos * Math.max(0, capacity - 1);
+	}
+
+	/**
+	 * Creates a bucket allowing the given rate, whichever is the slowest between the requests per second and the delay.
+	 * @param requestsPerSecond rate of requests, where zero or less means no limit.
+	 * @param delay minimum delay between two requests, as the robots.txt <b>Crawl-delay</b>. Zero means no delay.
+	 * @return the bucket, or {@link #UNLIMITED}.
+	 */
+	static TokenBucket of(double requestsPerSecond, Duration delay) {
+		long rateInterval = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+		long interval = Math.max(rateInterval, delay.toNanos());
+		if (interval <= 0) {
+			return UNLIMITED;
+		}
+		// A crawl delay means one request at a time, whereas a plain rate may be spent in bursts of up to one second
+		int capacity = delay.isZero() ? (int) Math.max(1, Math.ceil(requestsPerSecond)) : 1;
+		return new TokenBucket(interval, capacity);
+	}
+
+	/**
+	 * Takes a token, borrowing it from the future if the bucket is empty.
+	 * @return how long, in nanoseconds, the caller must wait before using the token.
+	 */
+	long reserve() {
+		if (intervalNanos == 0) {
+			return 0;
+		}
+		long now = System.nanoTime();
+		while (true) {
+			long arrival = theoreticalArrival.get();
+			long next = Math.max(arrival, now) + intervalNanos;
+			if (theoreticalArrival.compareAndSet(arrival, next)) {
+				return Math.max(0, arrival - toleranceNanos - now);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package dev.samir.backend.common;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cooperative cancellation shared by everything working for the same crawl. Work in progress registers a callback
+ * aborting it, and deregisters it once done, so a long crawl does not accumulate the callbacks of the pages it fetched.
+ * <p>
+ * Callbacks run once, on the thread cancelling the token, and must therefore be quick. A callback registered after the
+ * cancellation runs right away.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class CancellationToken {
+
+	/**
+	 * A token which is never cancelled.
+	 */
+	public static final CancellationToken NONE = new CancellationToken(false);
+
+	/**
+	 * Whether {@link #cancel()} has any effect.
+	 */
+	private final boolean cancellable;
+
+	/**
+	 * Callbacks of the work in progress.
+	 */
+	private final Set<Runnable> callbacks = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean cancelled;
+
+	/**
+	 * Default constructor.
+	 */
+	public CancellationToken() {
+		this(true);
+	}
+
+	private CancellationToken(boolean cancellable) {
+		this.cancellable = cancellable;
+	}
+
+	/**
+	 * Cancels the token and runs every registered callback.
+	 * @return true if the token was not cancelled yet.
+	 */
+	public boolean cancel() {
+		if (!cancellable || cancelled) {
+			return false;
+		}
+		cancelled = true;
+		callbacks.forEach(this::run);
+		return true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Registers a callback run when the token is cancelled.
+	 * @param callback aborts some work in progress.
+	 * @return deregisters the callback, once the work is done.
+	 */
+	public Runnable onCancel(Runnable callback) {
+		if (!cancellable) {
+			return () -> {};
+		}
+		callbacks.add(callback);
+		if (cancelled) {
+			run(callback);
+		}
+		return () -> callbacks.remove(callback);
+	}
+
+	/**
+	 * Runs the callback unless another thread already did.
+	 */
+	private void run(Runnable callback) {
+		if (callbacks.remove(callback)) {
+			callback.run();
+		}
+	}
+
+}
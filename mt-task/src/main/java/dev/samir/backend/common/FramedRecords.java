@@ -0,0 +1,146 @@
+package dev.samir.backend.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffer of records for an append-only log file, each framed by its length and a checksum, so a crash while writing
+ * only loses the records which were not completely written.
+ * <p>
+ * A record is its type byte followed by its payload. Records are appended to the buffer in memory, then
+ * {@link #write(FileChannel, ByteBuffer) written} and synced in batches: a batch which could not be written completely
+ * is truncated from the file, so the records written after it do not follow an incomplete one. When reading a log,
+ * {@link #next(DataInputStream, int, Object)} stops at its first incomplete record.
+ * </p>
+ * Not thread safe: the owner of the buffer guards it.
+ * @author Scheide, Samir
+ */
+public final class FramedRecords {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(FramedRecords.class);
+
+	/**
+	 * Framed records appended and not yet taken.
+	 */
+	private final ByteArrayOutputStream frames = new ByteArrayOutputStream();
+	private final DataOutputStream framesOutput = new DataOutputStream(frames);
+
+	/**
+	 * Payload of the record being appended.
+	 */
+	private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+	private final DataOutputStream payloadOutput = new DataOutputStream(payload);
+
+	/**
+	 * Appends a framed record. Nothing is appended when its payload cannot be written.
+	 * @param type the type of the record.
+	 * @param writer writes the payload of the record.
+	 * @throws IOException if the payload cannot be written, which only happens for strings too long to be written as
+	 * modified UTF-8, since it is written to memory.
+	 */
+	public void append(byte type, Payload writer) throws IOException {
+		payload.reset();
+		payloadOutput.writeByte(type);
+		writer.write(payloadOutput);
+		byte[] bytes = payload.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		framesOutput.writeInt(bytes.length);
+		framesOutput.writeInt((int) crc.getValue());
+		framesOutput.write(bytes);
+	}
+
+	/**
+	 * @return the size of the records appended and not yet taken, in bytes.
+	 */
+	public int size() {
+		return frames.size();
+	}
+
+	/**
+	 * Takes the records appended so far, emptying the buffer.
+	 * @return the framed records.
+	 */
+	public ByteBuffer take() {
+		ByteBuffer records = ByteBuffer.wrap(frames.toByteArray());
+		frames.reset();
+		return records;
+	}
+
+	/**
+	 * Writes records at the current position of the file, then syncs it. When the records cannot be written or synced,
+	 * the file is truncated back to where it was and the records rewound, so they can be written again; a file which
+	 * cannot be truncated back is closed, nothing being written after its incomplete record.
+	 * @param channel the log file.
+	 * @param records framed records.
+	 * @throws IOException if the records could not be written or synced.
+	 */
+	public static void write(FileChannel channel, ByteBuffer records) throws IOException {
+		long position = channel.position();
+		try {
+			while (records.hasRemaining()) {
+				channel.write(records);
+			}
+			channel.force(false);
+		} catch (IOException ex) {
+			records.rewind();
+			try {
+				channel.truncate(position);
+				channel.position(position);
+			} catch (IOException truncation) {
+				ex.addSuppressed(truncation);
+				channel.close();
+			}
+			throw ex;
+		}
+	}
+
+	/**
+	 * Reads the next record of a log.
+	 * @param log the log, positioned at the start of a record.
+	 * @param maxSize largest record accepted, anything larger being the garbage of an incomplete write.
+	 * @param source the log, named when its end is incomplete.
+	 * @return the type and payload of the record, or null at the end of the log or at its first incomplete record.
+	 * @throws IOException if the log cannot be read.
+	 */
+	public static byte[] next(DataInputStream log, int maxSize, Object source) throws IOException {
+		try {
+			int length = log.readInt();
+			int checksum = log.readInt();
+			byte[] record = length > 0 && length <= maxSize ? new byte[length] : null;
+			if (record != null) {
+				log.readFully(record);
+				CRC32 crc = new CRC32();
+				crc.update(record);
+				if ((int) crc.getValue() == checksum) {
+					return record;
+				}
+			}
+			LOGGER.warn("Ignoring the incomplete end of {}", source);
+			return null;
+		} catch (EOFException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the payload of a record.
+	 */
+	@FunctionalInterface
+	public interface Payload {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+}
@@ -1,6 +1,7 @@
 package dev.samir.backend.common;
 
 import java.lang.reflect.Type;
+import java.util.Locale;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -84,7 +85,7 @@ public final class GsonTransformer implements TransformToJson, TransformFromObje
 	static final class CrawlStatusSerializer implements JsonSerializer<CrawlStatus> {
 		@Override
 		public JsonElement serialize(CrawlStatus src, Type typeOfSrc, JsonSerializationContext context) {
-			return new JsonPrimitive(src.name().toLowerCase());
+			return new JsonPrimitive(src.name().toLowerCase(Locale.ROOT));
 		}
 	}
 
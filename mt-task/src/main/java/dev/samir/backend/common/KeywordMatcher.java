@@ -0,0 +1,102 @@
+package dev.samir.backend.common;
+
+import java.nio.CharBuffer;
+
+/**
+ * Case insensitive keyword search over a stream of characters, using the Knuth-Morris-Pratt algorithm.
+ * <p>
+ * The matcher itself is immutable and may be shared by every fetch of a crawl. The progress of a search is a single
+ * <code>int</code> state kept by the caller, so text can be fed in chunks of any size: a keyword split across two
+ * chunks is still found, and no chunk is ever retained.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class KeywordMatcher {
+
+	/**
+	 * The case folded keyword.
+	 */
+	private final char[] keyword;
+
+	/**
+	 * For each prefix of the keyword, the length of its longest proper prefix which is also a suffix.
+	 */
+	private final int[] failure;
+
+	/**
+	 * Default constructor.
+	 * @param keyword the keyword to be searched.
+	 */
+	public KeywordMatcher(String keyword) {
+		this.keyword = new char[keyword.length()];
+		for (int i = 0; i < keyword.length(); i++) {
+			this.keyword[i] = fold(keyword.charAt(i));
+		}
+		this.failure = new int[this.keyword.length];
+		for (int i = 1, length = 0; i < this.keyword.length; i++) {
+			while (length > 0 && this.keyword[i] != this.keyword[length]) length = failure[length - 1];
+			if (this.keyword[i] == this.keyword[length]) length++;
+			failure[i] = length;
+		}
+	}
+
+	/**
+	 * The state of a search that has not read anything yet.
+	 */
+	public int initialState() {
+		return 0;
+	}
+
+	/**
+	 * Feeds the remaining characters of the chunk into the search, without moving the buffer position.
+	 * @param state the current state of the search.
+	 * @param chunk the next characters of the text.
+	 * @return the new state of the search.
+	 */
+	public int advance(int state, CharBuffer chunk) {
+		for (int i = chunk.position(); i < chunk.limit() && !isFound(state); i++) {
+			state = advance(state, chunk.get(i));
+		}
+		return state;
+	}
+
+	/**
+	 * Feeds a single character into the search. Once the keyword is found, the state does not change anymore.
+	 * @param state the current state of the search.
+	 * @param character the next character of the text.
+	 * @return the new state of the search.
+	 */
+	public int advance(int state, char character) {
+		if (isFound(state)) {
+			return state;
+		}
+		char folded = fold(character);
+		while (state > 0 && keyword[state] != folded) state = failure[state - 1];
+		return keyword[state] == folded ? state + 1 : state;
+	}
+
+	/**
+	 * @param state the current state of the search.
+	 * @return true if the keyword was found.
+	 */
+	public boolean isFound(int state) {
+		return state == keyword.length;
+	}
+
+	/**
+	 * Searches the whole text at once.
+	 * @param text the text to be searched.
+	 * @return true if the text contains the keyword.
+	 */
+	public boolean matches(CharSequence text) {
+		return isFound(advance(initialState(), CharBuffer.wrap(text)));
+	}
+
+	/**
+	 * Folds the case of the character the same way {@link String#equalsIgnoreCase(String)} compares them.
+	 */
+	private static char fold(char character) {
+		return Character.toLowerCase(Character.toUpperCase(character));
+	}
+
+}
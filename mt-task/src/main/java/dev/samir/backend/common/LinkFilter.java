@@ -0,0 +1,74 @@
+package dev.samir.backend.common;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Rejects links before they are fetched when their URL alone tells they cannot be an HTML page worth scanning: the
+ * extension of their last path segment is one of the skipped ones, or they match the skipped links pattern.
+ * <p>
+ * Extensions are compared case insensitively, and only in the path, so <code>/download?file=a.pdf</code> is still
+ * fetched. Links are expected to be {@link UrlCanonicalizer resolved} already.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class LinkFilter {
+
+	/**
+	 * Extensions of documents, images, archives, media, fonts, scripts and style sheets.
+	 */
+	public static final Set<String> DEFAULT_EXTENSIONS = Set.of(
+			"pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "odt", "ods", "odp", "rtf", "csv", "epub",
+			"jpg", "jpeg", "png", "gif", "webp", "svg", "ico", "bmp", "tif", "tiff", "avif",
+			"zip", "gz", "tgz", "tar", "rar", "7z", "bz2", "xz", "jar", "war", "apk", "exe", "msi", "dmg", "iso", "bin",
+			"mp3", "mp4", "m4a", "m4v", "avi", "mov", "mkv", "wmv", "flv", "webm", "wav", "ogg", "flac",
+			"woff", "woff2", "ttf", "otf", "eot", "css", "js", "map");
+
+	/**
+	 * Extensions of the links never fetched, in lower case.
+	 */
+	private final Set<String> extensions;
+
+	/**
+	 * Links never fetched, or null.
+	 */
+	private final Pattern skipped;
+
+	/**
+	 * Default constructor.
+	 * @param extensions {@link #extensions}
+	 * @param skipped {@link #skipped}
+	 */
+	public LinkFilter(Set<String> extensions, Pattern skipped) {
+		this.extensions = extensions;
+		this.skipped = skipped;
+	}
+
+	/**
+	 * @param url an absolute URL.
+	 * @return true when the link may be an HTML page and is not skipped.
+	 */
+	public boolean accepts(String url) {
+		return !extensions.contains(extension(url)) && (skipped == null || !skipped.matcher(url).find());
+	}
+
+	/**
+	 * @return the lower case extension of the last path segment of the URL, or an empty string.
+	 */
+	static String extension(String url) {
+		int scheme = url.indexOf("://");
+		int start = url.indexOf('/', scheme < 0 ? 0 : scheme + 3);
+		if (start < 0) {
+			return "";
+		}
+		int end = start;
+		while (end < url.length() && url.charAt(end) != '?' && url.charAt(end) != '#') {
+			end++;
+		}
+		int segment = url.lastIndexOf('/', end - 1);
+		int dot = url.lastIndexOf('.', end - 1);
+		return dot > segment ? url.substring(dot + 1, end).toLowerCase(Locale.ROOT) : "";
+	}
+
+}
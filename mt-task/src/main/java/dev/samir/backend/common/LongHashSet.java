@@ -0,0 +1,135 @@
+package dev.samir.backend.common;
+
+/**
+ * Set of primitive <code>long</code> values, stored in a single open addressing array with linear probing.
+ * <p>
+ * Each value takes 8 to 16 bytes, against roughly a hundred bytes plus the string itself for every URL held in a
+ * {@link java.util.concurrent.ConcurrentHashMap} key set. It is meant for hashes, so values are assumed to be well
+ * spread and are only mixed lightly. Methods are synchronized: the set belongs to a single crawl and its operations
+ * are a handful of array reads.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class LongHashSet {
+
+	/**
+	 * Marks the free slots of {@link #table}, zero itself being tracked by {@link #containsZero}.
+	 */
+	private static final long FREE = 0L;
+
+	/**
+	 * The table is grown once it is more than 5/8 full.
+	 */
+	private static final int LOAD_NUMERATOR = 5;
+	private static final int LOAD_DENOMINATOR = 8;
+
+	/**
+	 * The values, or {@link #FREE}. Its length is always a power of two.
+	 */
+	private long[] table;
+
+	/**
+	 * Whether zero, which cannot be stored in {@link #table}, belongs to the set.
+	 */
+	private boolean containsZero;
+
+	/**
+	 * Number of values, zero included.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty set.
+	 * @param expectedSize number of values the set should hold without growing.
+	 */
+	public LongHashSet(int expectedSize) {
+		int capacity = 16;
+		while ((long) capacity * LOAD_NUMERATOR / LOAD_DENOMINATOR < expectedSize) {
+			capacity <<= 1;
+		}
+		this.table = new long[capacity];
+	}
+
+	/**
+	 * @param value the value to add.
+	 * @return true if the value was not in the set yet.
+	 */
+	public synchronized boolean add(long value) {
+		if (value == FREE) {
+			if (containsZero) return false;
+			containsZero = true;
+			size++;
+			return true;
+		}
+		int mask = table.length - 1;
+		for (int slot = slot(value, mask); ; slot = (slot + 1) & mask) {
+			long current = table[slot];
+			if (current == value) {
+				return false;
+			}
+			if (current == FREE) {
+				table[slot] = value;
+				if (++size * LOAD_DENOMINATOR > table.length * LOAD_NUMERATOR) {
+					grow();
+				}
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @param value the value to look for.
+	 * @return true if the value is in the set.
+	 */
+	public synchronized boolean contains(long value) {
+		if (value == FREE) {
+			return containsZero;
+		}
+		int mask = table.length - 1;
+		for (int slot = slot(value, mask); ; slot = (slot + 1) & mask) {
+			long current = table[slot];
+			if (current == value) return true;
+			if (current == FREE) return false;
+		}
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return a copy of the values, in no particular order.
+	 */
+	public synchronized long[] toArray() {
+		long[] values = new long[size];
+		int index = 0;
+		if (containsZero) {
+			values[index++] = FREE;
+		}
+		for (long value : table) {
+			if (value != FREE) {
+				values[index++] = value;
+			}
+		}
+		return values;
+	}
+
+	private void grow() {
+		long[] previous = table;
+		table = new long[previous.length << 1];
+		int mask = table.length - 1;
+		for (long value : previous) {
+			if (value == FREE) continue;
+			int slot = slot(value, mask);
+			while (table[slot] != FREE) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = value;
+		}
+	}
+
+	private static int slot(long value, int mask) {
+		return (int) (value ^ (value >>> 32)) & mask;
+	}
+
+}
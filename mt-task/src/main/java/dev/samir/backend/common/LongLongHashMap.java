@@ -0,0 +1,170 @@
+package dev.samir.backend.common;
+
+import java.util.Arrays;
+
+/**
+ * Map of primitive <code>long</code> keys to non negative <code>long</code> values, stored in two parallel open
+ * addressing arrays with linear probing.
+ * <p>
+ * Each entry takes 16 to 32 bytes, against roughly eighty bytes for the boxed keys, values and node of a
+ * {@link java.util.concurrent.ConcurrentHashMap}. Just like {@link LongHashSet}, keys are assumed to be hashes and are
+ * only mixed lightly, and methods are synchronized since they are a handful of array accesses. Removed entries are
+ * not marked but shifted back, so lookups never walk over tombstones.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class LongLongHashMap {
+
+	/**
+	 * Returned for keys without a value, which is why values must not be negative.
+	 */
+	public static final long MISSING = -1L;
+
+	/**
+	 * Marks the free slots of {@link #values}.
+	 */
+	private static final long FREE = MISSING;
+
+	/**
+	 * The table is grown once it is more than 5/8 full.
+	 */
+	private static final int LOAD_NUMERATOR = 5;
+	private static final int LOAD_DENOMINATOR = 8;
+
+	/**
+	 * The keys, meaningful where {@link #values} is not {@link #FREE}. Its length is always a power of two.
+	 */
+	private long[] keys;
+
+	/**
+	 * The values, or {@link #FREE}.
+	 */
+	private long[] values;
+
+	/**
+	 * Number of entries.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty map.
+	 * @param expectedSize number of entries the map should hold without growing.
+	 */
+	public LongLongHashMap(int expectedSize) {
+		int capacity = 16;
+		while ((long) capacity * LOAD_NUMERATOR / LOAD_DENOMINATOR < expectedSize) {
+			capacity <<= 1;
+		}
+		this.keys = new long[capacity];
+		this.values = newValues(capacity);
+	}
+
+	/**
+	 * @param key the key to look for.
+	 * @return the value of the key, or {@link #MISSING}.
+	 */
+	public synchronized long get(long key) {
+		int mask = keys.length - 1;
+		for (int slot = slot(key, mask); values[slot] != FREE; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+		}
+		return MISSING;
+	}
+
+	/**
+	 * @param key the key.
+	 * @param value the value, not negative.
+	 * @return the previous value of the key, or {@link #MISSING}.
+	 */
+	public synchronized long put(long key, long value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Values must not be negative.");
+		}
+		int mask = keys.length - 1;
+		int slot = slot(key, mask);
+		for (; values[slot] != FREE; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				long previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+		}
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size * LOAD_DENOMINATOR > keys.length * LOAD_NUMERATOR) {
+			grow();
+		}
+		return MISSING;
+	}
+
+	/**
+	 * Removes the key only while it is still mapped to the given value.
+	 * @param key the key.
+	 * @param value the expected value.
+	 * @return true if the entry was removed.
+	 */
+	public synchronized boolean remove(long key, long value) {
+		int mask = keys.length - 1;
+		for (int slot = slot(key, mask); values[slot] != FREE; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				if (values[slot] != value) {
+					return false;
+				}
+				shiftBack(slot, mask);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Fills the freed slot with the next entries of its probe sequence which belong before it.
+	 */
+	private void shiftBack(int free, int mask) {
+		for (int slot = (free + 1) & mask; values[slot] != FREE; slot = (slot + 1) & mask) {
+			int home = slot(keys[slot], mask);
+			// The entry may move only if its home is not between the free slot and its own slot
+			if (((slot - home) & mask) >= ((slot - free) & mask)) {
+				keys[free] = keys[slot];
+				values[free] = values[slot];
+				free = slot;
+			}
+		}
+		values[free] = FREE;
+	}
+
+	private void grow() {
+		long[] previousKeys = keys;
+		long[] previousValues = values;
+		keys = new long[previousKeys.length << 1];
+		values = newValues(keys.length);
+		int mask = keys.length - 1;
+		for (int i = 0; i < previousKeys.length; i++) {
+			if (previousValues[i] == FREE) continue;
+			int slot = slot(previousKeys[i], mask);
+			while (values[slot] != FREE) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = previousKeys[i];
+			values[slot] = previousValues[i];
+		}
+	}
+
+	private static long[] newValues(int capacity) {
+		long[] values = new long[capacity];
+		Arrays.fill(values, FREE);
+		return values;
+	}
+
+	private static int slot(long key, int mask) {
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+
+}
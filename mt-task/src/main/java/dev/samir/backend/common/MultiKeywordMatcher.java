@@ -0,0 +1,201 @@
+package dev.samir.backend.common;
+
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Case insensitive search of many keywords at once over a stream of characters, using the Aho-Corasick algorithm, so
+ * a page is read a single time whatever the number of keywords.
+ * <p>
+ * The keywords form a trie whose nodes are the states of the search, each one linked to the longest proper suffix of
+ * its text which is also a node. Reading a character follows the edge of the trie or falls back through those links,
+ * and the keywords ending at the new state are found. Just like the {@link KeywordMatcher}, the matcher is immutable
+ * and shared, and the progress of a search is a single <code>int</code> state kept by the caller along with the
+ * keywords found, so text can be fed in chunks of any size.
+ * </p>
+ * The edges of every node are kept sorted in two flat arrays, a search being a binary search among the few edges of
+ * a node rather than a map lookup.
+ *
+ * @author Scheide, Samir
+ */
+public final class MultiKeywordMatcher {
+
+	/**
+	 * Number of keywords searched.
+	 */
+	private final int size;
+
+	/**
+	 * Index in {@link #labels} and {@link #targets} of the first edge of each node, plus the end of the last one.
+	 */
+	private final int[] edges;
+
+	/**
+	 * Case folded character of each edge, sorted within a node.
+	 */
+	private final char[] labels;
+
+	/**
+	 * Node each edge leads to.
+	 */
+	private final int[] targets;
+
+	/**
+	 * For each node, the node of its longest proper suffix in the trie.
+	 */
+	private final int[] failure;
+
+	/**
+	 * For each node, the index of the keywords ending there, including the ones ending at its suffixes.
+	 */
+	private final int[][] outputs;
+
+	/**
+	 * Default constructor.
+	 * @param keywords the keywords to be searched, identified by their index.
+	 */
+	public MultiKeywordMatcher(List<String> keywords) {
+		this.size = keywords.size();
+		// The trie is built with maps, then flattened
+		List<TreeMap<Character, Integer>> children = new ArrayList<>();
+		List<int[]> ends = new ArrayList<>();
+		children.add(new TreeMap<>());
+		ends.add(new int[0]);
+		for (int index = 0; index < keywords.size(); index++) {
+			int node = 0;
+			for (char character : keywords.get(index).toCharArray()) {
+				Integer next = children.get(node).get(fold(character));
+				if (next == null) {
+					next = children.size();
+					children.get(node).put(fold(character), next);
+					children.add(new TreeMap<>());
+					ends.add(new int[0]);
+				}
+				node = next;
+			}
+			int[] found = Arrays.copyOf(ends.get(node), ends.get(node).length + 1);
+			found[found.length - 1] = index;
+			ends.set(node, found);
+		}
+		int nodes = children.size();
+		this.edges = new int[nodes + 1];
+		this.labels = new char[nodes - 1];
+		this.targets = new int[nodes - 1];
+		for (int node = 0, edge = 0; node < nodes; node++) {
+			edges[node] = edge;
+			for (Map.Entry<Character, Integer> child : children.get(node).entrySet()) {
+				labels[edge] = child.getKey();
+				targets[edge++] = child.getValue();
+			}
+		}
+		edges[nodes] = nodes - 1;
+		// Suffix links are set breadth first, a node's suffix being shallower than the node
+		this.failure = new int[nodes];
+		this.outputs = new int[nodes][];
+		outputs[0] = ends.get(0);
+		Queue<Integer> queue = new ArrayDeque<>();
+		for (int edge = edges[0]; edge < edges[1]; edge++) {
+			outputs[targets[edge]] = ends.get(targets[edge]);
+			queue.add(targets[edge]);
+		}
+		while (!queue.isEmpty()) {
+			int node = queue.poll();
+			for (int edge = edges[node]; edge < edges[node + 1]; edge++) {
+				int child = targets[edge];
+				int suffix = failure[node];
+				while (suffix > 0 && child(suffix, labels[edge]) < 0) suffix = failure[suffix];
+				int next = child(suffix, labels[edge]);
+				failure[child] = Math.max(next, 0);
+				int[] own = ends.get(child);
+				int[] inherited = outputs[failure[child]];
+				int[] found = Arrays.copyOf(own, own.length + inherited.length);
+				System.arraycopy(inherited, 0, found, own.length, inherited.length);
+				outputs[child] = found;
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * The state of a search that has not read anything yet.
+	 */
+	public int initialState() {
+		return 0;
+	}
+
+	/**
+	 * Feeds the remaining characters of the chunk into the search, without moving the buffer position.
+	 * @param state the current state of the search.
+	 * @param chunk the next characters of the text.
+	 * @param found the index of the keywords found so far, where the ones found in the chunk are set.
+	 * @return the new state of the search.
+	 */
+	public int advance(int state, CharBuffer chunk, BitSet found) {
+		for (int i = chunk.position(); i < chunk.limit(); i++) {
+			state = advance(state, chunk.get(i), found);
+		}
+		return state;
+	}
+
+	/**
+	 * Feeds a single character into the search.
+	 * @param state the current state of the search.
+	 * @param character the next character of the text.
+	 * @param found the index of the keywords found so far, where the ones ending at this character are set.
+	 * @return the new state of the search.
+	 */
+	public int advance(int state, char character, BitSet found) {
+		char folded = fold(character);
+		int next = child(state, folded);
+		while (next < 0 && state > 0) {
+			state = failure[state];
+			next = child(state, folded);
+		}
+		state = Math.max(next, 0);
+		for (int index : outputs[state]) {
+			found.set(index);
+		}
+		return state;
+	}
+
+	/**
+	 * @return the number of keywords searched.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Searches the whole text at once.
+	 * @param text the text to be searched.
+	 * @return the index of the keywords the text contains.
+	 */
+	public BitSet matches(CharSequence text) {
+		BitSet found = new BitSet(size);
+		advance(initialState(), CharBuffer.wrap(text), found);
+		return found;
+	}
+
+	/**
+	 * @return the node the edge of the character leads to, or -1 if the node has no such edge.
+	 */
+	private int child(int node, char character) {
+		int index = Arrays.binarySearch(labels, edges[node], edges[node + 1], character);
+		return index >= 0 ? targets[index] : -1;
+	}
+
+	/**
+	 * Folds the case of the character the same way {@link KeywordMatcher} does.
+	 */
+	private static char fold(char character) {
+		return Character.toLowerCase(Character.toUpperCase(character));
+	}
+
+}
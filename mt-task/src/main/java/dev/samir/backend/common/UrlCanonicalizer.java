@@ -0,0 +1,306 @@
+package dev.samir.backend.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Resolves links and reduces URLs to a canonical form, so the same page reached through different spellings is
+ * fetched once.
+ * <p>
+ * Resolution follows RFC 3986 directly on strings, without creating a {@link java.net.URI} for every link. The
+ * canonical form has:
+ * <ul>
+ * 	<li>a lower case scheme and host, without the default port;</li>
+ * 	<li>no fragment and no dot segments;</li>
+ * 	<li>no tracking parameters (<code>utm_*</code>, <code>gclid</code>, ...) and the other parameters sorted by name;</li>
+ * 	<li>characters not allowed in a URI percent-encoded, so it is always accepted by {@link java.net.URI#create(String)}.</li>
+ * </ul>
+ * Only http and https URLs are kept. The path case and its trailing slash are significant to servers and are kept
+ * as is; the {@link #fingerprint(String) fingerprint} is what considers <code>/a</code> and <code>/a/</code> the same page.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class UrlCanonicalizer {
+
+	/**
+	 * Query parameters which only track where the visitor came from.
+	 */
+	private static final Set<String> TRACKING_PARAMETERS = Set.of("gclid", "dclid", "fbclid", "msclkid", "yclid", "igshid",
+			"mc_cid", "mc_eid", "_ga", "_gl", "utm");
+
+	/**
+	 * Prefix of the campaign tracking parameters.
+	 */
+	private static final String TRACKING_PREFIX = "utm_";
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Constructor disabled.
+	 * @throws IllegalAccessException everytime this method is called.
+	 */
+	private UrlCanonicalizer() throws IllegalAccessException {
+		throw new IllegalAccessException("Constructor should not be used.");
+	}
+
+	/**
+	 * @param url an absolute URL.
+	 * @return the canonical URL, or null when it is not an absolute http or https URL.
+	 */
+	public static String canonicalize(String url) {
+		return resolve(null, url);
+	}
+
+	/**
+	 * Resolves the reference against the base and canonicalizes the result.
+	 * @param base the canonical URL the reference is relative to, or null when the reference must be absolute.
+	 * @param href the reference, as found in the page.
+	 * @return the canonical URL, or null when the reference is malformed or not an http or https URL.
+	 */
+	public static String resolve(String base, String href) {
+		if (href == null) {
+			return null;
+		}
+		String reference = stripFragment(href.trim());
+		int schemeEnd = schemeEnd(reference);
+		if (schemeEnd > 0) {
+			return absolute(reference.substring(0, schemeEnd).toLowerCase(Locale.ROOT), reference.substring(schemeEnd + 1));
+		}
+		if (base == null) {
+			return null;
+		}
+		base = stripFragment(base);
+		int baseSchemeEnd = schemeEnd(base);
+		if (baseSchemeEnd <= 0 || !base.startsWith("//", baseSchemeEnd + 1)) {
+			return null;
+		}
+		String scheme = base.substring(0, baseSchemeEnd).toLowerCase(Locale.ROOT);
+		if (reference.startsWith("//")) {
+			return absolute(scheme, reference);
+		}
+		int authorityStart = baseSchemeEnd + 3;
+		int authorityEnd = indexOfAny(base, authorityStart, "/?");
+		int baseQuery = base.indexOf('?', authorityEnd);
+		String authority = base.substring(authorityStart, authorityEnd);
+		String basePath = base.substring(authorityEnd, baseQuery < 0 ? base.length() : baseQuery);
+
+		int query = reference.indexOf('?');
+		String path = query < 0 ? reference : reference.substring(0, query);
+		if (path.isEmpty()) {
+			// Empty references keep the base path, and its query too unless they bring their own
+			return build(scheme, authority, basePath,
+					query >= 0 ? reference.substring(query + 1) : baseQuery >= 0 ? base.substring(baseQuery + 1) : null);
+		}
+		if (!path.startsWith("/")) {
+			path = basePath.isEmpty() ? "/" + path : basePath.substring(0, basePath.lastIndexOf('/') + 1) + path;
+		}
+		return build(scheme, authority, path, query >= 0 ? reference.substring(query + 1) : null);
+	}
+
+	/**
+	 * Hashes the URL into 64 bits, ignoring the trailing slash of its path so <code>/a</code> and <code>/a/</code>
+	 * share the same fingerprint. With 64 bits, a crawl of millions of pages has a negligible chance of collision.
+	 * @param url a canonical URL.
+	 * @return the fingerprint.
+	 */
+	public static long fingerprint(String url) {
+		int query = url.indexOf('?');
+		int end = query < 0 ? url.length() : query;
+		int skip = end > 0 && url.charAt(end - 1) == '/' ? end - 1 : -1;
+		// FNV-1a over the characters, then the MurmurHash3 finalizer to spread the bits
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < url.length(); i++) {
+			if (i == skip) continue;
+			hash = (hash ^ url.charAt(i)) * 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * Canonicalizes an absolute URL split after its scheme.
+	 * @param scheme the lower case scheme.
+	 * @param rest everything after the colon, starting with the authority.
+	 */
+	private static String absolute(String scheme, String rest) {
+		if (!rest.startsWith("//")) {
+			return null;
+		}
+		int authorityEnd = indexOfAny(rest, 2, "/?");
+		int query = rest.indexOf('?', authorityEnd);
+		return build(scheme, rest.substring(2, authorityEnd), rest.substring(authorityEnd, query < 0 ? rest.length() : query),
+				query < 0 ? null : rest.substring(query + 1));
+	}
+
+	private static String build(String scheme, String authority, String path, String query) {
+		if (!"http".equals(scheme) && !"https".equals(scheme)) {
+			return null;
+		}
+		String host = authority(scheme, authority);
+		if (host == null) {
+			return null;
+		}
+		StringBuilder url = new StringBuilder(scheme.length() + host.length() + path.length() + 16)
+			.append(scheme).append("://").append(host);
+		encode(removeDotSegments(path), url);
+		if (query != null) {
+			appendQuery(query, url);
+		}
+		return url.toString();
+	}
+
+	/**
+	 * Lower cases the host and removes the default port, keeping the user information as is.
+	 * @return the canonical authority, or null when it is empty or holds characters not allowed in an authority.
+	 */
+	private static String authority(String scheme, String authority) {
+		int at = authority.lastIndexOf('@');
+		String host = authority.substring(at + 1).toLowerCase(Locale.ROOT);
+		int colon = host.lastIndexOf(':');
+		if (colon >= 0 && colon > host.lastIndexOf(']')) {
+			String port = host.substring(colon + 1);
+			if (port.isEmpty() || ("http".equals(scheme) && "80".equals(port)) || ("https".equals(scheme) && "443".equals(port))) {
+				host = host.substring(0, colon);
+			}
+		}
+		if (host.isEmpty() || host.startsWith(":")) {
+			return null;
+		}
+		String canonical = authority.substring(0, at + 1) + host;
+		for (int i = 0; i < canonical.length(); i++) {
+			char c = canonical.charAt(i);
+			if (!isUnreserved(c) && !isSubDelimiter(c) && ":@[]%".indexOf(c) < 0) {
+				return null;
+			}
+		}
+		return canonical;
+	}
+
+	/**
+	 * Removes the <code>.</code> and <code>..</code> segments of an absolute path, as of RFC 3986 section 5.2.4.
+	 */
+	private static String removeDotSegments(String path) {
+		if (path.indexOf("/.") < 0) {
+			return path;
+		}
+		List<String> segments = new ArrayList<>();
+		String[] split = path.split("/", -1);
+		for (int i = 1; i < split.length; i++) {
+			String segment = split[i];
+			boolean last = i == split.length - 1;
+			if (".".equals(segment)) {
+				if (last) segments.add("");
+			} else if ("..".equals(segment)) {
+				if (!segments.isEmpty()) segments.remove(segments.size() - 1);
+				if (last) segments.add("");
+			} else {
+				segments.add(segment);
+			}
+		}
+		return segments.isEmpty() ? "/" : "/" + String.join("/", segments);
+	}
+
+	/**
+	 * Drops the empty and tracking parameters, sorts the others by name and appends them, if any are left.
+	 */
+	private static void appendQuery(String query, StringBuilder url) {
+		List<String> parameters = new ArrayList<>();
+		for (String parameter : query.split("&")) {
+			if (!parameter.isEmpty() && !isTracking(parameterName(parameter))) {
+				parameters.add(parameter);
+			}
+		}
+		if (parameters.isEmpty()) {
+			return;
+		}
+		// The sort is stable, so repeated parameters keep their relative order
+		parameters.sort(Comparator.comparing(UrlCanonicalizer::parameterName));
+		url.append('?');
+		for (int i = 0; i < parameters.size(); i++) {
+			if (i > 0) url.append('&');
+			encode(parameters.get(i), url);
+		}
+	}
+
+	private static String parameterName(String parameter) {
+		int equals = parameter.indexOf('=');
+		return equals < 0 ? parameter : parameter.substring(0, equals);
+	}
+
+	private static boolean isTracking(String name) {
+		String lowerCase = name.toLowerCase(Locale.ROOT);
+		return lowerCase.startsWith(TRACKING_PREFIX) || TRACKING_PARAMETERS.contains(lowerCase);
+	}
+
+	/**
+	 * Appends the path or query, percent-encoding every character not allowed there.
+	 */
+	private static void encode(String value, StringBuilder url) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '%' && i + 2 < value.length() && isHex(value.charAt(i + 1)) && isHex(value.charAt(i + 2))) {
+				url.append(c);
+			} else if (c != '%' && (isUnreserved(c) || isSubDelimiter(c) || ":@/?".indexOf(c) >= 0)) {
+				url.append(c);
+			} else {
+				int end = Character.isHighSurrogate(c) && i + 1 < value.length() ? i + 2 : i + 1;
+				for (byte b : value.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+					url.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+				}
+				i = end - 1;
+			}
+		}
+	}
+
+	private static String stripFragment(String url) {
+		int fragment = url.indexOf('#');
+		return fragment < 0 ? url : url.substring(0, fragment);
+	}
+
+	/**
+	 * @return the index of the colon ending the scheme, or -1 when the reference has no scheme.
+	 */
+	private static int schemeEnd(String reference) {
+		for (int i = 0; i < reference.length(); i++) {
+			char c = reference.charAt(i);
+			if (c == ':') {
+				return i > 0 ? i : -1;
+			}
+			boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+			if (!letter && (i == 0 || !((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.'))) {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	private static int indexOfAny(String value, int from, String characters) {
+		for (int i = from; i < value.length(); i++) {
+			if (characters.indexOf(value.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return value.length();
+	}
+
+	private static boolean isUnreserved(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~';
+	}
+
+	private static boolean isSubDelimiter(char c) {
+		return "!$&'()*+,;=".indexOf(c) >= 0;
+	}
+
+	private static boolean isHex(char c) {
+		return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+	}
+
+}
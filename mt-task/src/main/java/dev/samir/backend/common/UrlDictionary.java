@@ -0,0 +1,297 @@
+package dev.samir.backend.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary of URLs, interning each URL once for a crawl and identifying it by a sequential <code>int</code>, in the
+ * order the URLs were added: the dictionary is the result set of the crawl, its identifiers <code>[0, size)</code>
+ * being its URLs in order.
+ * <p>
+ * The URLs are front-coded in a single byte array, in blocks of {@link #BLOCK} URLs: the first URL of a block is
+ * stored whole, each following one as the length of the prefix it shares with the previous one and the rest of its
+ * bytes. URLs found one after the other usually share the base URL and most of their path, so a URL takes its own
+ * suffix plus a dozen bytes of index, against roughly a hundred bytes plus the string itself as a key of a
+ * {@link java.util.concurrent.ConcurrentHashMap}. Reading a URL decodes its block up to it.
+ * </p>
+ * The dictionary never forgets a URL, so it belongs to a single crawl and is dropped along with it, its arrays starting
+ * small enough for the many crawls finding few results. Interning is synchronized, the lock being shared by the threads
+ * of that crawl only, while the URL is encoded and hashed before taking it. Reading a URL takes no lock: the arrays are
+ * only written past the number of URLs published, and replaced by larger copies when full, so readers never wait for
+ * the crawl.
+ * @author Scheide, Samir
+ */
+public final class UrlDictionary {
+
+	/**
+	 * Number of URLs of a block, the first being stored whole.
+	 */
+	private static final int BLOCK = 16;
+
+	/**
+	 * The front-coded URLs, as UTF-8.
+	 */
+	private volatile byte[] arena = new byte[1 << 8];
+
+	/**
+	 * Length of {@link #arena} in use.
+	 */
+	private int end;
+
+	/**
+	 * Offset of each block in {@link #arena}.
+	 */
+	private volatile int[] blocks = new int[4];
+
+	/**
+	 * Hash of each URL by identifier, comparing URLs without decoding them.
+	 */
+	private int[] hashes = new int[BLOCK];
+
+	/**
+	 * Open addressing table of the identifiers plus one, zero marking the free slots. Its length is always a power of
+	 * two, at most half of it being used.
+	 */
+	private int[] table = new int[1 << 5];
+
+	/**
+	 * Number of URLs, the next identifier. Written once the URL it publishes is in the arrays.
+	 */
+	private volatile int size;
+
+	/**
+	 * Bytes of the last URL interned, the next one being front-coded against them.
+	 */
+	private byte[] last = new byte[0];
+
+	/**
+	 * @param url the URL.
+	 * @return the identifier of the URL, interning it if needed.
+	 */
+	public int intern(String url) {
+		byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+		int id = insert(bytes, hash(bytes));
+		return id >= 0 ? id : -id - 1;
+	}
+
+	/**
+	 * @param url the URL.
+	 * @return true if the URL was not interned yet, and is now.
+	 */
+	public boolean add(String url) {
+		byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+		return insert(bytes, hash(bytes)) >= 0;
+	}
+
+	/**
+	 * @param url the URL.
+	 * @return the identifier of the URL, or -1 if it was never interned.
+	 */
+	public int find(String url) {
+		byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+		return find(bytes, hash(bytes));
+	}
+
+	/**
+	 * @return the identifier of the URL if it was just interned, or minus one minus its identifier if it already was.
+	 */
+	private synchronized int insert(byte[] bytes, int hash) {
+		int slot = slot(bytes, hash);
+		if (table[slot] != 0) {
+			return -table[slot];
+		}
+		int id = size;
+		append(id, bytes);
+		if (id == hashes.length) {
+			hashes = Arrays.copyOf(hashes, id << 1);
+		}
+		hashes[id] = hash;
+		table[slot] = id + 1;
+		size = id + 1;
+		if (size * 2 > table.length) {
+			grow();
+		}
+		return id;
+	}
+
+	private synchronized int find(byte[] bytes, int hash) {
+		return table[slot(bytes, hash)] - 1;
+	}
+
+	/**
+	 * @param id an identifier returned by {@link #intern(String)}.
+	 * @return the URL.
+	 */
+	public String url(int id) {
+		// The size is read before the arrays, which hold at least as many URLs
+		if (id < 0 || id >= size) {
+			throw new IllegalArgumentException("Unknown URL identifier: " + id);
+		}
+		return new String(decode(id, arena, blocks), StandardCharsets.UTF_8);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the bytes the front-coded URLs take.
+	 */
+	public synchronized int encodedSize() {
+		return end;
+	}
+
+	/**
+	 * Front-codes the URL at the end of the arena.
+	 */
+	private void append(int id, byte[] bytes) {
+		int prefix = 0;
+		if (id % BLOCK == 0) {
+			int[] offsets = blocks;
+			if (id / BLOCK == offsets.length) {
+				offsets = Arrays.copyOf(offsets, offsets.length << 1);
+				blocks = offsets;
+			}
+			offsets[id / BLOCK] = end;
+		} else {
+			int max = Math.min(last.length, bytes.length);
+			while (prefix < max && last[prefix] == bytes[prefix]) {
+				prefix++;
+			}
+		}
+		int suffix = bytes.length - prefix;
+		byte[] target = ensureCapacity(2 * 5 + suffix);
+		if (id % BLOCK != 0) {
+			writeVarInt(target, prefix);
+		}
+		writeVarInt(target, suffix);
+		System.arraycopy(bytes, prefix, target, end, suffix);
+		end += suffix;
+		last = bytes;
+	}
+
+	/**
+	 * Decodes a URL from the first URL of its block. The bytes of the URL are the suffix of its own entry, preceded by
+	 * the bytes of the previous URL it shares, so they are filled from its entry back to the first of the block.
+	 */
+	private static byte[] decode(int id, byte[] arena, int[] blocks) {
+		int first = id - id % BLOCK;
+		int[] positions = new int[BLOCK];
+		int[] prefixes = new int[BLOCK];
+		int[] suffixes = new int[BLOCK];
+		int position = blocks[id / BLOCK];
+		for (int current = first; current <= id; current++) {
+			int entry = current - first;
+			if (entry > 0) {
+				prefixes[entry] = readVarInt(arena, position);
+				position += varIntSize(prefixes[entry]);
+			}
+			suffixes[entry] = readVarInt(arena, position);
+			position += varIntSize(suffixes[entry]);
+			positions[entry] = position;
+			position += suffixes[entry];
+		}
+		int entry = id - first;
+		byte[] bytes = new byte[prefixes[entry] + suffixes[entry]];
+		// Bytes below the limit come from an earlier URL
+		int limit = bytes.length;
+		for (; entry >= 0 && limit > 0; entry--) {
+			int to = Math.min(prefixes[entry] + suffixes[entry], limit);
+			if (to > prefixes[entry]) {
+				System.arraycopy(arena, positions[entry], bytes, prefixes[entry], to - prefixes[entry]);
+			}
+			limit = Math.min(limit, prefixes[entry]);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Probes the table for the URL.
+	 * @return the slot holding it, or the free slot where it belongs.
+	 */
+	private int slot(byte[] bytes, int hash) {
+		int mask = table.length - 1;
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			int current = table[slot];
+			if (current == 0) {
+				return slot;
+			}
+			if (hashes[current - 1] == hash && Arrays.equals(decode(current - 1, arena, blocks), bytes)) {
+				return slot;
+			}
+		}
+	}
+
+	private void grow() {
+		table = new int[table.length << 1];
+		int mask = table.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * @return the arena, replaced by a larger copy if the bytes do not fit.
+	 */
+	private byte[] ensureCapacity(int length) {
+		byte[] current = arena;
+		if (end + length > current.length) {
+			long capacity = Math.max((long) current.length << 1, (long) end + length);
+			if (capacity > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("The URL dictionary is full");
+			}
+			current = Arrays.copyOf(current, (int) capacity);
+			arena = current;
+		}
+		return current;
+	}
+
+	private void writeVarInt(byte[] target, int value) {
+		while ((value & ~0x7F) != 0) {
+			target[end++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		target[end++] = (byte) value;
+	}
+
+	private static int readVarInt(byte[] arena, int position) {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = arena[position++];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	private static int varIntSize(int value) {
+		int size = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * FNV-1a over the bytes, then the MurmurHash3 finalizer to spread the bits.
+	 */
+	private static int hash(byte[] bytes) {
+		int hash = 0x811c9dc5;
+		for (byte b : bytes) {
+			hash = (hash ^ b) * 0x01000193;
+		}
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+
+}
@@ -1,11 +1,18 @@
 package dev.samir.backend.common.configuration;
 
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import dev.samir.backend.common.LinkFilter;
 import dev.samir.backend.common.RandomUtils;
 import dev.samir.backend.common.validation.Validation;
 
@@ -13,7 +20,12 @@ import dev.samir.backend.common.validation.Validation;
  * This class is used to retrieve the environment variables that are used in the application.
  * These variable are set as static constants and uses the {@link System#getenv(String)} method to retrieve them.
  * <p>
- * Variables: <pre>BASE_URL, ID_LENGTH_CREATION, ID_LENGTHS_VALIDATION, RESULTS_SIZE</pre>
+ * Variables: <pre>BASE_URL, ID_LENGTH_CREATION, ID_LENGTHS_VALIDATION, RESULTS_SIZE, CRAWL_CONCURRENCY, FRONTIER_SIZE, EXECUTION_MODE,
+ * RATE_LIMIT, HOST_RATE_LIMIT, HOST_RATE_LIMITS, HOST_MAX_IN_FLIGHT, PAGE_CACHE_SIZE, PAGE_CACHE_TTL,
+ * PAGE_STORE_DIR, PAGE_STORE_SIZE, HTTP_VERSION, HTTP_CONNECT_TIMEOUT, HTTP_REQUEST_TIMEOUT, HTTP_REDIRECTS,
+ * FETCH_RETRIES, FETCH_BACKOFF, HEDGE_PERCENTILE, BREAKER_FAILURES, BREAKER_COOLDOWN, MAX_PAGE_SIZE, SKIP_EXTENSIONS,
+ * SKIP_LINKS, CHECKPOINT_DIR, CHECKPOINT_INTERVAL, WAL_DIR, WAL_SEGMENT_SIZE, RESULTS_DIR, RETENTION_TTL,
+ * RETENTION_MAX_CRAWLS, RETENTION_MAX_URLS, RETENTION_EXPIRED_WINDOW, RESULTS_PAGE_SIZE, STREAM_MAX</pre>
  * </p>
  * @author Scheide, Samir
  */
@@ -77,4 +89,308 @@ public final class Environment {
 		return Optional.ofNullable(configuration.maxResultsSize()).map(Integer::valueOf).orElse(100);
 	}
 	
+	/**
+	 * The environment variable named <b>CRAWL_CONCURRENCY</b> is used to set how many pages a single crawl may be
+	 * fetching at the same time. If not set, it will have a default value of <b>64</b>.
+	 */
+	public Integer getCrawlConcurrency() {
+		return Optional.ofNullable(configuration.crawlConcurrency()).map(Integer::valueOf).orElse(64);
+	}
+	
+	/**
+	 * The environment variable named <b>FRONTIER_SIZE</b> is used to set how many URLs a single crawl may keep waiting
+	 * to be fetched. Links found while the frontier is full are dropped. If not set, it will have a default value of <b>10000</b>.
+	 */
+	public Integer getFrontierSize() {
+		return Optional.ofNullable(configuration.frontierSize()).map(Integer::valueOf).orElse(10_000);
+	}
+	
+	/**
+	 * The environment variable named <b>EXECUTION_MODE</b> is used to choose how asynchronous work is executed:
+	 * <b>fixed</b> for a fixed thread pool or <b>virtual</b> for one virtual thread per task. If not set, it will
+	 * have a default value of <b>fixed</b>.
+	 * 
+	 * @see ExecutionMode
+	 */
+	public ExecutionMode getExecutionMode() {
+		return Optional.ofNullable(configuration.executionMode())
+			.filter(s -> !s.isBlank()).map(String::trim).map(s -> s.toUpperCase(Locale.ROOT)).map(ExecutionMode::valueOf)
+			.orElse(ExecutionMode.FIXED);
+	}
+	
+	/**
+	 * The environment variable named <b>RATE_LIMIT</b> is used to set the maximum number of requests per second sent
+	 * across every host. If not set, or set to <b>0</b>, there is no global limit.
+	 */
+	public Double getRateLimit() {
+		return Optional.ofNullable(configuration.rateLimit()).map(Double::valueOf).orElse(0d);
+	}
+	
+	/**
+	 * The environment variable named <b>HOST_RATE_LIMIT</b> is used to set the maximum number of requests per second
+	 * sent to each host without a specific rate in {@link #getHostRateLimits()}. If not set, or set to <b>0</b>, hosts
+	 * are only paced by the <b>Crawl-delay</b> of their robots.txt.
+	 */
+	public Double getHostRateLimit() {
+		return Optional.ofNullable(configuration.hostRateLimit()).map(Double::valueOf).orElse(0d);
+	}
+	
+	/**
+	 * The environment variable named <b>HOST_RATE_LIMITS</b> is used to set the maximum number of requests per second
+	 * of specific hosts, as a comma separated list of <code>host=rate</code> pairs. Eg. <code>example.com=5,cdn.example.com=50</code>.
+	 */
+	public Map<String, Double> getHostRateLimits() {
+		return Arrays.stream(Optional.ofNullable(configuration.hostRateLimits()).orElse("").split(","))
+			.map(String::trim).filter(s -> !s.isEmpty())
+			.map(s -> {
+				String[] pair = s.split("=", 2);
+				if (pair.length != 2) throw new IllegalArgumentException("Host rate limits must be written as host=rate pairs.");
+				return pair;
+			})
+			.collect(Collectors.toMap(pair -> pair[0].trim().toLowerCase(Locale.ROOT), pair -> Double.valueOf(pair[1].trim())));
+	}
+	
+	/**
+	 * The environment variable named <b>HOST_MAX_IN_FLIGHT</b> is used to set how many requests may be sent to the same
+	 * host at the same time, across every crawl. If not set, it will have a default value of <b>32</b>.
+	 */
+	public Integer getHostMaxInFlight() {
+		return Optional.ofNullable(configuration.hostMaxInFlight()).map(Integer::valueOf).orElse(32);
+	}
+	
+	/**
+	 * The environment variable named <b>PAGE_CACHE_SIZE</b> is used to set how many megabytes of fetched pages are kept
+	 * in memory. Zero disables the cache. If not set, it will have a default value of <b>64</b>.
+	 */
+	public Integer getPageCacheSize() {
+		return Optional.ofNullable(configuration.pageCacheSize()).map(Integer::valueOf).orElse(64);
+	}
+	
+	/**
+	 * The environment variable named <b>PAGE_CACHE_TTL</b> is used to set for how many seconds a fetched page is kept
+	 * in memory. If not set, it will have a default value of <b>180</b>.
+	 */
+	public Integer getPageCacheTtl() {
+		return Optional.ofNullable(configuration.pageCacheTtl()).map(Integer::valueOf).orElse(180);
+	}
+	
+	/**
+	 * The environment variable named <b>PAGE_STORE_DIR</b> is used to set the directory where fetched pages are also
+	 * written, so they are kept beyond the memory cache and across restarts. If not set, pages are only kept in memory.
+	 */
+	public Optional<Path> getPageStoreDirectory() {
+		return Optional.ofNullable(configuration.pageStoreDir()).filter(s -> !s.isBlank()).map(String::trim).map(Paths::get);
+	}
+	
+	/**
+	 * The environment variable named <b>PAGE_STORE_SIZE</b> is used to set how many megabytes of fetched pages are kept
+	 * in the <b>PAGE_STORE_DIR</b> directory. If not set, it will have a default value of <b>1024</b>.
+	 */
+	public Integer getPageStoreSize() {
+		return Optional.ofNullable(configuration.pageStoreSize()).map(Integer::valueOf).orElse(1024);
+	}
+	
+	/**
+	 * The environment variable named <b>HTTP_VERSION</b> is used to set the preferred HTTP version of the requests,
+	 * <b>HTTP_2</b> or <b>HTTP_1_1</b>. Hosts not supporting HTTP/2 are still reached with HTTP/1.1. If not set, it will
+	 * have a default value of <b>HTTP_2</b>.
+	 */
+	public HttpClient.Version getHttpVersion() {
+		return Optional.ofNullable(configuration.httpVersion())
+			.filter(s -> !s.isBlank()).map(String::trim).map(s -> s.toUpperCase(Locale.ROOT)).map(HttpClient.Version::valueOf)
+			.orElse(HttpClient.Version.HTTP_2);
+	}
+	
+	/**
+	 * The environment variable named <b>HTTP_CONNECT_TIMEOUT</b> is used to set for how many seconds connecting to a host
+	 * may take. If not set, it will have a default value of <b>10</b>.
+	 */
+	public Integer getHttpConnectTimeout() {
+		return Optional.ofNullable(configuration.httpConnectTimeout()).map(Integer::valueOf).orElse(10);
+	}
+	
+	/**
+	 * The environment variable named <b>HTTP_REQUEST_TIMEOUT</b> is used to set for how many seconds a request may wait
+	 * for its response, so a stalled host never holds a crawl. If not set, it will have a default value of <b>30</b>.
+	 */
+	public Integer getHttpRequestTimeout() {
+		return Optional.ofNullable(configuration.httpRequestTimeout()).map(Integer::valueOf).orElse(30);
+	}
+	
+	/**
+	 * The environment variable named <b>HTTP_REDIRECTS</b> is used to choose which redirects are followed: <b>NEVER</b>,
+	 * <b>NORMAL</b> (all but from https to http) or <b>ALWAYS</b>. If not set, it will have a default value of <b>NORMAL</b>.
+	 */
+	public HttpClient.Redirect getHttpRedirects() {
+		return Optional.ofNullable(configuration.httpRedirects())
+			.filter(s -> !s.isBlank()).map(String::trim).map(s -> s.toUpperCase(Locale.ROOT)).map(HttpClient.Redirect::valueOf)
+			.orElse(HttpClient.Redirect.NORMAL);
+	}
+	
+	/**
+	 * The environment variable named <b>FETCH_RETRIES</b> is used to set how many times a page failing to be fetched
+	 * is requested again. If not set, it will have a default value of <b>2</b>.
+	 */
+	public Integer getFetchRetries() {
+		return Optional.ofNullable(configuration.fetchRetries()).map(Integer::valueOf).orElse(2);
+	}
+	
+	/**
+	 * The environment variable named <b>FETCH_BACKOFF</b> is used to set the base delay in milliseconds before a retry,
+	 * doubled at each further attempt and randomized. If not set, it will have a default value of <b>200</b>.
+	 */
+	public Integer getFetchBackoff() {
+		return Optional.ofNullable(configuration.fetchBackoff()).map(Integer::valueOf).orElse(200);
+	}
+	
+	/**
+	 * The environment variable named <b>HEDGE_PERCENTILE</b> is used to set the percentile of the latency of a host after
+	 * which a second request of the same page is sent, the first response being kept. Zero disables hedged requests.
+	 * If not set, it will have a default value of <b>95</b>.
+	 */
+	public Integer getHedgePercentile() {
+		return Optional.ofNullable(configuration.hedgePercentile()).map(Integer::valueOf).orElse(95);
+	}
+	
+	/**
+	 * The environment variable named <b>BREAKER_FAILURES</b> is used to set after how many consecutive failures requests
+	 * to a host fail at once. Zero disables the circuit breaker. If not set, it will have a default value of <b>5</b>.
+	 */
+	public Integer getBreakerFailures() {
+		return Optional.ofNullable(configuration.breakerFailures()).map(Integer::valueOf).orElse(5);
+	}
+	
+	/**
+	 * The environment variable named <b>BREAKER_COOLDOWN</b> is used to set for how many seconds requests to a failing
+	 * host fail at once before it is tried again. If not set, it will have a default value of <b>30</b>.
+	 */
+	public Integer getBreakerCooldown() {
+		return Optional.ofNullable(configuration.breakerCooldown()).map(Integer::valueOf).orElse(30);
+	}
+	
+	/**
+	 * The environment variable named <b>MAX_PAGE_SIZE</b> is used to set how many kilobytes of a page are read at most,
+	 * once decompressed. Larger pages are cancelled, and their links ignored. If not set, it will have a default value
+	 * of <b>5120</b>.
+	 */
+	public Integer getMaxPageSize() {
+		return Optional.ofNullable(configuration.maxPageSize()).map(Integer::valueOf).orElse(5120);
+	}
+	
+	/**
+	 * The environment variable named <b>SKIP_EXTENSIONS</b> is used to set, as a comma separated list, the extensions of
+	 * the links which are never fetched since they cannot be HTML pages. If not set, documents, images, archives,
+	 * media, fonts, scripts and style sheets are skipped, see {@link LinkFilter#DEFAULT_EXTENSIONS}.
+	 */
+	public Set<String> getSkipExtensions() {
+		return Optional.ofNullable(configuration.skipExtensions())
+			.map(s -> Arrays.stream(s.split(","))
+				.map(String::trim).filter(e -> !e.isEmpty())
+				.map(e -> e.toLowerCase(Locale.ROOT)).map(e -> e.startsWith(".") ? e.substring(1) : e)
+				.collect(Collectors.toSet()))
+			.orElse(LinkFilter.DEFAULT_EXTENSIONS);
+	}
+	
+	/**
+	 * The environment variable named <b>SKIP_LINKS</b> is used to set a regular expression of the links which are never
+	 * fetched, found anywhere in the URL. Eg. <code>/(login|logout|calendar)/</code>. If not set, no link is skipped this way.
+	 */
+	public Optional<Pattern> getSkipLinks() {
+		return Optional.ofNullable(configuration.skipLinks()).filter(s -> !s.isBlank()).map(Pattern::compile);
+	}
+	
+	/**
+	 * The environment variable named <b>CHECKPOINT_DIR</b> is used to set the directory where the progress of the crawls
+	 * is written, so the crawls still running are resumed when the service restarts. If not set, crawls are lost on restart.
+	 */
+	public Optional<Path> getCheckpointDirectory() {
+		return Optional.ofNullable(configuration.checkpointDir()).filter(s -> !s.isBlank()).map(String::trim).map(Paths::get);
+	}
+	
+	/**
+	 * The environment variable named <b>CHECKPOINT_INTERVAL</b> is used to set every how many seconds the progress of
+	 * the crawls is written to the <b>CHECKPOINT_DIR</b> directory, which is at most what a crash loses. If not set, it
+	 * will have a default value of <b>5</b>.
+	 */
+	public Integer getCheckpointInterval() {
+		return Optional.ofNullable(configuration.checkpointInterval()).map(Integer::valueOf).orElse(5);
+	}
+	
+	/**
+	 * The environment variable named <b>WAL_DIR</b> is used to set the directory of the write-ahead log where the crawls
+	 * and their results are persisted, so they survive a restart. If not set, they are only kept in memory.
+	 */
+	public Optional<Path> getWalDirectory() {
+		return Optional.ofNullable(configuration.walDir()).filter(s -> !s.isBlank()).map(String::trim).map(Paths::get);
+	}
+	
+	/**
+	 * The environment variable named <b>WAL_SEGMENT_SIZE</b> is used to set how many megabytes the write-ahead log grows
+	 * before it is compacted into a snapshot of every crawl. If not set, it will have a default value of <b>64</b>.
+	 */
+	public Integer getWalSegmentSize() {
+		return Optional.ofNullable(configuration.walSegmentSize()).map(Integer::valueOf).orElse(64);
+	}
+	
+	/**
+	 * The environment variable named <b>RESULTS_DIR</b> is used to set the directory of the memory-mapped files where
+	 * the result URLs are kept off the heap. If not set, they are kept on the heap.
+	 */
+	public Optional<Path> getResultsDirectory() {
+		return Optional.ofNullable(configuration.resultsDir()).filter(s -> !s.isBlank()).map(String::trim).map(Paths::get);
+	}
+	
+	/**
+	 * The environment variable named <b>RETENTION_TTL</b> is used to set for how many minutes a finished crawl is kept
+	 * before it is evicted, fetching it afterwards failing as expired. If not set, it will have a default value of
+	 * <b>1440</b>.
+	 */
+	public Integer getRetentionTtl() {
+		return Optional.ofNullable(configuration.retentionTtl()).map(Integer::valueOf).orElse(1440);
+	}
+	
+	/**
+	 * The environment variable named <b>RETENTION_MAX_CRAWLS</b> is used to set how many crawls are kept at most, the
+	 * oldest finished ones being evicted first. If not set, it will have a default value of <b>10000</b>.
+	 */
+	public Integer getRetentionMaxCrawls() {
+		return Optional.ofNullable(configuration.retentionMaxCrawls()).map(Integer::valueOf).orElse(10000);
+	}
+	
+	/**
+	 * The environment variable named <b>RETENTION_MAX_URLS</b> is used to set how many result URLs, summed over every
+	 * crawl, are kept at most, the oldest finished crawls being evicted first. If not set, it will have a default value
+	 * of <b>10000000</b>.
+	 */
+	public Long getRetentionMaxUrls() {
+		return Optional.ofNullable(configuration.retentionMaxUrls()).map(Long::valueOf).orElse(10_000_000L);
+	}
+	
+	/**
+	 * The environment variable named <b>RETENTION_EXPIRED_WINDOW</b> is used to set for how many minutes, at least, an
+	 * evicted crawl is remembered, fetching it failing as expired rather than not found. If not set, it will have a
+	 * default value of <b>10080</b>.
+	 */
+	public Integer getRetentionExpiredWindow() {
+		return Optional.ofNullable(configuration.retentionExpiredWindow()).map(Integer::valueOf).orElse(10080);
+	}
+	
+	/**
+	 * The environment variable named <b>RESULTS_PAGE_SIZE</b> is used to set how many result URLs a page of
+	 * <code>GET /crawl/:id?since=</code> holds at most, and by default. If not set, it will have a default value of
+	 * <b>1000</b>.
+	 */
+	public Integer getResultsPageSize() {
+		return Optional.ofNullable(configuration.resultsPageSize()).map(Integer::valueOf).orElse(1000);
+	}
+	
+	/**
+	 * The environment variable named <b>STREAM_MAX</b> is used to set how many result streams of
+	 * <code>GET /crawl/:id/stream</code> are open at most, each one holding a server thread, the next ones being
+	 * answered as unavailable. If not set, it will have a default value of <b>50</b>, a quarter of the server threads.
+	 */
+	public Integer getStreamMax() {
+		return Optional.ofNullable(configuration.streamMax()).map(Integer::valueOf).orElse(50);
+	}
+	
 }
@@ -13,6 +13,74 @@ public interface EnvironmentConfiguration {
 	
 	static final String ENV_RESULTS_SIZE = "RESULTS_SIZE";
 	
+	static final String ENV_CRAWL_CONCURRENCY = "CRAWL_CONCURRENCY";
+	
+	static final String ENV_FRONTIER_SIZE = "FRONTIER_SIZE";
+	
+	static final String ENV_EXECUTION_MODE = "EXECUTION_MODE";
+	
+	static final String ENV_RATE_LIMIT = "RATE_LIMIT";
+	
+	static final String ENV_HOST_RATE_LIMIT = "HOST_RATE_LIMIT";
+	
+	static final String ENV_HOST_RATE_LIMITS = "HOST_RATE_LIMITS";
+	
+	static final String ENV_HOST_MAX_IN_FLIGHT = "HOST_MAX_IN_FLIGHT";
+	
+	static final String ENV_PAGE_CACHE_SIZE = "PAGE_CACHE_SIZE";
+	
+	static final String ENV_PAGE_CACHE_TTL = "PAGE_CACHE_TTL";
+	
+	static final String ENV_PAGE_STORE_DIR = "PAGE_STORE_DIR";
+	
+	static final String ENV_PAGE_STORE_SIZE = "PAGE_STORE_SIZE";
+	
+	static final String ENV_HTTP_VERSION = "HTTP_VERSION";
+	
+	static final String ENV_HTTP_CONNECT_TIMEOUT = "HTTP_CONNECT_TIMEOUT";
+	
+	static final String ENV_HTTP_REQUEST_TIMEOUT = "HTTP_REQUEST_TIMEOUT";
+	
+	static final String ENV_HTTP_REDIRECTS = "HTTP_REDIRECTS";
+	
+	static final String ENV_FETCH_RETRIES = "FETCH_RETRIES";
+	
+	static final String ENV_FETCH_BACKOFF = "FETCH_BACKOFF";
+	
+	static final String ENV_HEDGE_PERCENTILE = "HEDGE_PERCENTILE";
+	
+	static final String ENV_BREAKER_FAILURES = "BREAKER_FAILURES";
+	
+	static final String ENV_BREAKER_COOLDOWN = "BREAKER_COOLDOWN";
+	
+	static final String ENV_MAX_PAGE_SIZE = "MAX_PAGE_SIZE";
+	
+	static final String ENV_SKIP_EXTENSIONS = "SKIP_EXTENSIONS";
+	
+	static final String ENV_SKIP_LINKS = "SKIP_LINKS";
+	
+	static final String ENV_CHECKPOINT_DIR = "CHECKPOINT_DIR";
+	
+	static final String ENV_CHECKPOINT_INTERVAL = "CHECKPOINT_INTERVAL";
+	
+	static final String ENV_WAL_DIR = "WAL_DIR";
+	
+	static final String ENV_WAL_SEGMENT_SIZE = "WAL_SEGMENT_SIZE";
+	
+	static final String ENV_RESULTS_DIR = "RESULTS_DIR";
+	
+	static final String ENV_RETENTION_TTL = "RETENTION_TTL";
+	
+	static final String ENV_RETENTION_MAX_CRAWLS = "RETENTION_MAX_CRAWLS";
+	
+	static final String ENV_RETENTION_MAX_URLS = "RETENTION_MAX_URLS";
+	
+	static final String ENV_RETENTION_EXPIRED_WINDOW = "RETENTION_EXPIRED_WINDOW";
+	
+	static final String ENV_RESULTS_PAGE_SIZE = "RESULTS_PAGE_SIZE";
+	
+	static final String ENV_STREAM_MAX = "STREAM_MAX";
+	
 	default String baseUrl() {
 		return System.getenv(ENV_BASE_URL);
 	}
@@ -29,4 +97,140 @@ public interface EnvironmentConfiguration {
 		return System.getenv(ENV_RESULTS_SIZE);
 	}
 	
+	default String crawlConcurrency() {
+		return System.getenv(ENV_CRAWL_CONCURRENCY);
+	}
+	
+	default String frontierSize() {
+		return System.getenv(ENV_FRONTIER_SIZE);
+	}
+	
+	default String executionMode() {
+		return System.getenv(ENV_EXECUTION_MODE);
+	}
+	
+	default String rateLimit() {
+		return System.getenv(ENV_RATE_LIMIT);
+	}
+	
+	default String hostRateLimit() {
+		return System.getenv(ENV_HOST_RATE_LIMIT);
+	}
+	
+	default String hostRateLimits() {
+		return System.getenv(ENV_HOST_RATE_LIMITS);
+	}
+	
+	default String hostMaxInFlight() {
+		return System.getenv(ENV_HOST_MAX_IN_FLIGHT);
+	}
+	
+	default String pageCacheSize() {
+		return System.getenv(ENV_PAGE_CACHE_SIZE);
+	}
+	
+	default String pageCacheTtl() {
+		return System.getenv(ENV_PAGE_CACHE_TTL);
+	}
+	
+	default String pageStoreDir() {
+		return System.getenv(ENV_PAGE_STORE_DIR);
+	}
+	
+	default String pageStoreSize() {
+		return System.getenv(ENV_PAGE_STORE_SIZE);
+	}
+	
+	default String httpVersion() {
+		return System.getenv(ENV_HTTP_VERSION);
+	}
+	
+	default String httpConnectTimeout() {
+		return System.getenv(ENV_HTTP_CONNECT_TIMEOUT);
+	}
+	
+	default String httpRequestTimeout() {
+		return System.getenv(ENV_HTTP_REQUEST_TIMEOUT);
+	}
+	
+	default String httpRedirects() {
+		return System.getenv(ENV_HTTP_REDIRECTS);
+	}
+	
+	default String fetchRetries() {
+		return System.getenv(ENV_FETCH_RETRIES);
+	}
+	
+	default String fetchBackoff() {
+		return System.getenv(ENV_FETCH_BACKOFF);
+	}
+	
+	default String hedgePercentile() {
+		return System.getenv(ENV_HEDGE_PERCENTILE);
+	}
+	
+	default String breakerFailures() {
+		return System.getenv(ENV_BREAKER_FAILURES);
+	}
+	
+	default String breakerCooldown() {
+		return System.getenv(ENV_BREAKER_COOLDOWN);
+	}
+	
+	default String maxPageSize() {
+		return System.getenv(ENV_MAX_PAGE_SIZE);
+	}
+	
+	default String skipExtensions() {
+		return System.getenv(ENV_SKIP_EXTENSIONS);
+	}
+	
+	default String skipLinks() {
+		return System.getenv(ENV_SKIP_LINKS);
+	}
+	
+	default String checkpointDir() {
+		return System.getenv(ENV_CHECKPOINT_DIR);
+	}
+	
+	default String checkpointInterval() {
+		return System.getenv(ENV_CHECKPOINT_INTERVAL);
+	}
+	
+	default String walDir() {
+		return System.getenv(ENV_WAL_DIR);
+	}
+	
+	default String walSegmentSize() {
+		return System.getenv(ENV_WAL_SEGMENT_SIZE);
+	}
+	
+	default String resultsDir() {
+		return System.getenv(ENV_RESULTS_DIR);
+	}
+	
+	default String retentionTtl() {
+		return System.getenv(ENV_RETENTION_TTL);
+	}
+	
+	default String retentionMaxCrawls() {
+		return System.getenv(ENV_RETENTION_MAX_CRAWLS);
+	}
+	
+	default String retentionMaxUrls() {
+		return System.getenv(ENV_RETENTION_MAX_URLS);
+	}
+	
+	default String retentionExpiredWindow() {
+		return System.getenv(ENV_RETENTION_EXPIRED_WINDOW);
+	}
+	
+	default String resultsPageSize() {
+		return System.getenv(ENV_RESULTS_PAGE_SIZE);
+	}
+	
+	default String streamMax() {
+		return System.getenv(ENV_STREAM_MAX);
+	}
+	
 }
@@ -0,0 +1,53 @@
+package dev.samir.backend.common.configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.Main;
+
+/**
+ * How the application runs its asynchronous work: HTTP exchanges, parsing and crawl processing.
+ * It is chosen at startup by the environment variable named <b>EXECUTION_MODE</b>.
+ *
+ * @see Main#EXECUTOR_SERVICE
+ * @author Scheide, Samir
+ */
+public enum ExecutionMode {
+
+	/**
+	 * A fixed pool of two threads per available processor. This is the default mode.
+	 */
+	FIXED {
+		@Override
+		public ExecutorService newExecutorService() {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+		}
+	},
+
+	/**
+	 * One virtual thread per task, with no pool size ceiling. Virtual threads only exist from Java 21 onwards,
+	 * so the factory is looked up at runtime; on older runtimes the application falls back to {@link #FIXED}.
+	 */
+	VIRTUAL {
+		@Override
+		public ExecutorService newExecutorService() {
+			try {
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException ex) {
+				LoggerFactory.getLogger(ExecutionMode.class).warn(
+						"Virtual threads are not available on Java {}, falling back to {} execution mode",
+						Runtime.version().feature(), FIXED);
+				return FIXED.newExecutorService();
+			}
+		}
+	};
+
+	/**
+	 * Creates the executor service backing this mode.
+	 * @return a new executor service.
+	 */
+	public abstract ExecutorService newExecutorService();
+
+}
@@ -20,9 +20,9 @@ public final class RegularExpressions {
 	public static final Pattern URL_COMPILED_REGEX = Pattern.compile("^(https?)://[-a-zA-Z0-9+&@#/%?=~_|!:,.;]*[-a-zA-Z0-9+&@#/%=~_|]$");
 	
 	/**
-	 * A regular expression that matches anchor tags checking for the presence of a href value.
+	 * A regular expression that matches a non-negative number of up to 9 digits, so it fits an <code>int</code>.
 	 */
-	public static final Pattern A_HREF_COMPILED_REGEX = Pattern.compile("<a\\s+[^>]*?href=[\"']([^\"']+)[\"'][^>]*?>.*?</a>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	public static final Pattern CURSOR_COMPILED_REGEX = Pattern.compile("^[0-9]{1,9}$");
 	
 	/**
 	 * Constructor disabled.
@@ -1,8 +1,10 @@
 package dev.samir.backend.common.validation;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,7 +18,8 @@ import dev.samir.backend.route.model.CrawlStatus;
  * <ul>
  *   <li>The identifier (ID) created must be alphanumeric;</li>
  *   <li>The length of the identifier (ID) generated for each crawl must be equals to 8;</li>
- *   <li>The keyword sent to match the HTML contents must be between 4 and 32 characters.</li>
+ *   <li>The keyword sent to match the HTML contents must be between 4 and 32 characters;</li>
+ *   <li>A batch of crawls must have between 1 and 64 keywords.</li>
  * </ul>
  * @see Environment
  * @see RegularExpressions
@@ -81,6 +84,47 @@ public interface Validation {
 			.orElseThrow(() -> new IllegalArgumentException("The keyword must have between 4 and 32 characters long."));
 	}
 	
+	/**
+	 * Check if the keywords of a batch of crawls are valid.
+	 * @param keywords terms to be searched, each one by a crawl of its own.
+	 * @return checks if there are between 1 and 64 keywords, each one valid by {@link #applyKeywordValidation(String)}.
+	 */
+	default List<String> applyKeywordsValidation(List<String> keywords) {
+		LOGGER.debug("Parameter KEYWORDS: {}", keywords);
+		return Optional.ofNullable(keywords)
+			.filter(k -> !k.isEmpty() && k.size() <= 64)
+			.map(k -> k.stream().map(this::applyKeywordValidation).collect(Collectors.toList()))
+			.orElseThrow(() -> new IllegalArgumentException("The keywords must be a list of 1 to 64 keywords."));
+	}
+	
+	/**
+	 * Check if the results cursor is valid.
+	 * @param cursor number of results already read, as returned with the previous page.
+	 * @return the cursor, zero when not given, if it is a non-negative number.
+	 */
+	default int applyCursorValidation(String cursor) {
+		LOGGER.debug("Parameter SINCE: {}", cursor);
+		return Optional.ofNullable(cursor)
+			.map(c -> Optional.of(c).filter(RegularExpressions.CURSOR_COMPILED_REGEX.asMatchPredicate()).map(Integer::valueOf)
+					.orElseThrow(() -> new IllegalArgumentException("The cursor must be a number returned with the previous results.")))
+			.orElse(0);
+	}
+	
+	/**
+	 * Check if the results page limit is valid.
+	 * @param limit maximum number of results of the page.
+	 * @return the limit, {@link Environment#getResultsPageSize()} when not given, if it is between 1 and that size.
+	 */
+	default int applyLimitValidation(String limit) {
+		LOGGER.debug("Parameter LIMIT: {}", limit);
+		int pageSize = getEnvironment().getResultsPageSize();
+		return Optional.ofNullable(limit)
+			.map(l -> Optional.of(l).filter(RegularExpressions.CURSOR_COMPILED_REGEX.asMatchPredicate()).map(Integer::valueOf)
+					.filter(value -> value >= 1 && value <= pageSize)
+					.orElseThrow(() -> new IllegalArgumentException(String.format("The limit must be between 1 and %d.", pageSize))))
+			.orElse(pageSize);
+	}
+	
 	/**
 	 * 
 	 * @return
@@ -1,8 +1,12 @@
 package dev.samir.backend.persistence;
 
+import java.util.Collection;
 import java.util.Random;
+import java.util.function.Consumer;
 
+import dev.samir.backend.persistence.model.CrawlSnapshot;
 import dev.samir.backend.persistence.model.CrawlTableResultSet;
+import dev.samir.backend.route.model.CrawlStatus;
 
 /**
  * 
@@ -37,6 +41,15 @@ public interface DataAccessObject {
 	 */
 	CrawlTableResultSet updateUrl(String id, String url);
 	
+	/**
+	 * Atomically adds the URL to the crawl unless it already holds the limit of URLs.
+	 * @param id crawl ID
+	 * @param url the URL the keyword was found.
+	 * @param limit maximum number of URLs of the crawl.
+	 * @return true if the URL was added, false if it was already there or the limit was reached.
+	 */
+	boolean updateUrl(String id, String url, int limit);
+	
 	/**
 	 * d
 	 * @param id
@@ -45,4 +58,56 @@ public interface DataAccessObject {
 	 */
 	CrawlTableResultSet updateStatus(String id, String status, String message);
 	
+	/**
+	 * Atomically moves the crawl status, only if it still is the expected one and the transition is allowed.
+	 * @param id crawl ID
+	 * @param expected the status the crawl should be in.
+	 * @param status the new status.
+	 * @param message optional message, usually the failure description.
+	 * @return true if the status was changed.
+	 * @see CrawlStatus#canTransitionTo(CrawlStatus)
+	 */
+	boolean compareAndSetStatus(String id, CrawlStatus expected, CrawlStatus status, String message);
+	
+	/**
+	 * Keeps the snapshot of a halted crawl, replacing the previous one.
+	 * @param id crawl ID
+	 * @param snapshot where the crawl stopped, or null once it was resumed.
+	 * @return the crawl.
+	 */
+	CrawlTableResultSet updateSnapshot(String id, CrawlSnapshot snapshot);
+	
+	/**
+	 * Puts back a crawl recovered after a restart, creating it when it does not exist.
+	 * @param id crawl ID
+	 * @param status the status of the crawl, set whatever its current one.
+	 * @param urls the URLs the keyword was found, added to the ones already stored.
+	 * @return the crawl.
+	 */
+	CrawlTableResultSet restore(String id, CrawlStatus status, Collection<String> urls);
+	
+	/**
+	 * Visits every stored crawl, such as to write them all at once.
+	 * @param action applied to each crawl.
+	 */
+	void forEach(Consumer<CrawlTableResultSet> action);
+	
+	/**
+	 * Drops a finished crawl, so fetching it afterwards fails as expired rather than not found.
+	 * @param id crawl ID
+	 * @return true if the crawl was dropped, false if it is not stored or not finished.
+	 */
+	boolean evict(String id);
+	
+	/**
+	 * @return the fingerprint of the ID of every evicted crawl still remembered, such as to write them all at once.
+	 */
+	long[] evicted();
+	
+	/**
+	 * Puts back an eviction recovered after a restart, so fetching the crawl still fails as expired.
+	 * @param fingerprint fingerprint of the crawl ID.
+	 */
+	void restoreEvicted(long fingerprint);
+	
 }
@@ -0,0 +1,98 @@
+package dev.samir.backend.persistence;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import dev.samir.backend.common.LongHashSet;
+
+/**
+ * Fingerprints of the IDs of the evicted crawls, remembered for a window of time, so fetching a crawl evicted recently
+ * fails as expired; past the window, it is as unknown as a crawl never created.
+ * <p>
+ * The fingerprints are kept in two generations: once the current one is older than the window, it replaces the
+ * previous one, which is dropped. A fingerprint is thus remembered between one and two windows, and only the
+ * evictions of the last two windows are kept, in memory and in the snapshots of the {@link WriteAheadLogDao}.
+ * </p>
+ * @author Scheide, Samir
+ */
+final class EvictedFingerprints {
+
+	/**
+	 * How long a generation collects fingerprints, in milliseconds.
+	 */
+	private final long window;
+
+	/**
+	 * Current time, in milliseconds.
+	 */
+	private final LongSupplier clock;
+
+	/**
+	 * Fingerprints added since {@link #started}, and during the window before.
+	 */
+	private LongHashSet current = new LongHashSet(1024);
+	private LongHashSet previous = new LongHashSet(0);
+
+	/**
+	 * When the current generation started.
+	 */
+	private long started;
+
+	/**
+	 * Default constructor.
+	 * @param window how long a fingerprint is remembered at least.
+	 */
+	EvictedFingerprints(Duration window) {
+		this(window, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param window how long a fingerprint is remembered at least.
+	 * @param clock {@link #clock}
+	 */
+	EvictedFingerprints(Duration window, LongSupplier clock) {
+		this.window = window.toMillis();
+		this.clock = clock;
+		this.started = clock.getAsLong();
+	}
+
+	synchronized void add(long fingerprint) {
+		rotate();
+		current.add(fingerprint);
+	}
+
+	synchronized boolean contains(long fingerprint) {
+		rotate();
+		return current.contains(fingerprint) || previous.contains(fingerprint);
+	}
+
+	/**
+	 * @return the fingerprints remembered, in no particular order.
+	 */
+	synchronized long[] toArray() {
+		rotate();
+		LongHashSet remembered = new LongHashSet(current.size() + previous.size());
+		for (long fingerprint : previous.toArray()) {
+			remembered.add(fingerprint);
+		}
+		for (long fingerprint : current.toArray()) {
+			remembered.add(fingerprint);
+		}
+		return remembered.toArray();
+	}
+
+	/**
+	 * Starts a new generation once the current one is older than the window.
+	 */
+	private void rotate() {
+		long now = clock.getAsLong();
+		if (now - started < window) {
+			return;
+		}
+		// After two windows without any call, the current generation is past the window as well
+		previous = now - started < 2 * window ? current : new LongHashSet(0);
+		current = new LongHashSet(1024);
+		started = now;
+	}
+
+}
@@ -0,0 +1,31 @@
+package dev.samir.backend.persistence;
+
+import dev.samir.backend.client.StatusCode;
+
+/**
+ * Thrown whenever a crawl existed but was evicted by the retention policy. The exception has a 1004 error code,
+ * translated to a {@link StatusCode#GONE} status rather than a {@link StatusCode#NOT_FOUND}, so clients tell an ID they
+ * mistyped from the results they fetched too late.
+ * 
+ * @author Scheide, Samir <samir.scheide@gmail.com>
+ */
+class ExpiredException extends DataAccessObjectException {
+
+	/**
+	 * Serial version UID for serialization.
+	 */
+	private static final long serialVersionUID = -3209182735472310418L;
+
+	/**
+	 * A message that describes the exception.
+	 */
+	private static final String MESSAGE = "The crawl has expired and its results are not kept anymore.";
+
+	/**
+	 * Default constructor.
+	 */
+	public ExpiredException() {
+		super(1004, MESSAGE);
+	}
+	
+}
@@ -1,14 +1,19 @@
 package dev.samir.backend.persistence;
 
+import java.time.Duration;
+import java.util.Collection;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import dev.samir.backend.common.GenerateRandom;
+import dev.samir.backend.common.UrlCanonicalizer;
 import dev.samir.backend.common.validation.Validation;
+import dev.samir.backend.persistence.model.CrawlSnapshot;
 import dev.samir.backend.persistence.model.CrawlTableResultSet;
 import dev.samir.backend.route.model.CrawlStatus;
 
@@ -32,6 +37,17 @@ public final class InMemmoryDao implements DataAccessObject {
 	 */
     private static final Map<String, CrawlTableResultSet> ANALYSIS_TABLE = new ConcurrentHashMap<>();
     
+    /**
+     * How long an evicted crawl is remembered by default, see {@link dev.samir.backend.common.configuration.Environment#getRetentionExpiredWindow()}.
+     */
+    private static final Duration EXPIRED_WINDOW = Duration.ofDays(7);
+    
+    /**
+     * Fingerprints of the IDs of the crawls evicted from the ANALYSIS_TABLE, a few bytes each, so fetching them fails
+     * as expired within the expired window.
+     */
+    private static volatile EvictedFingerprints evicted = new EvictedFingerprints(EXPIRED_WINDOW);
+    
     /**
      * Default validation for this
      */
@@ -47,6 +63,18 @@ public final class InMemmoryDao implements DataAccessObject {
 		this.generateRandom = generateRandom;
 	}
     
+    /**
+     * Creates the data access object, evicted crawls being remembered for the given window. The crawls are shared by
+     * every instance, the window included.
+     * @param validation {@link #validation}
+     * @param generateRandom {@link #generateRandom}
+     * @param expiredWindow how long an evicted crawl is remembered at least, see {@link EvictedFingerprints}.
+     */
+    public InMemmoryDao(Validation validation, GenerateRandom generateRandom, Duration expiredWindow) {
+    	this(validation, generateRandom);
+    	evicted = new EvictedFingerprints(expiredWindow);
+    }
+    
 	/**
 	 * If the ID is null or empty, an IllegalArgumentException is thrown because not having the identifier becomes impossible to retrieve the analysis.
 	 * Whereas, if the ID is not found in the database, a warning is logged and it is returned the same null element, expliciting the absence of the record. 
@@ -57,6 +85,10 @@ public final class InMemmoryDao implements DataAccessObject {
 		return Optional.ofNullable(validation.applyIdValidation(id))
 			.map(ANALYSIS_TABLE::get)
             .orElseThrow(() -> {
+            	if (evicted.contains(UrlCanonicalizer.fingerprint(id))) {
+            		LOGGER.warn("crawl has expired: {}", id);
+            		throw new ExpiredException();
+            	}
             	LOGGER.error("crawl was not found: {}", id);
             	throw new NotFoundException();
             });
@@ -87,28 +119,31 @@ public final class InMemmoryDao implements DataAccessObject {
 	 */
 	@Override
 	public CrawlTableResultSet updateUrl(String id, String url) {
-		
-		LOGGER.debug("Updating ID: {}, Url: {}", id, url);
-		
-		Optional.ofNullable(validation.applyURLValidation(url))
-			.ifPresent(validUrl -> Optional.ofNullable(ANALYSIS_TABLE.get(validation.applyIdValidation(id)))
-					.ifPresentOrElse(result -> {
-						result.getUrls().add(url);
-						ANALYSIS_TABLE.put(id, result);
-					}, () -> {
-						LOGGER.error("error while updating crawl {} with url {}", id, url);
-						throw new NotUpdatedException();
-				})
-			);
-		
+		updateUrl(id, url, Integer.MAX_VALUE);
 		return ANALYSIS_TABLE.get(id);
-		
+	}
+	
+	/**
+	 * Adds the URL through {@link CrawlTableResultSet#addUrl(String, int)}, so concurrent crawls never lock each other
+	 * and the limit is checked and applied as a single operation.
+	 */
+	@Override
+	public boolean updateUrl(String id, String url, int limit) {
+		LOGGER.debug("Updating ID: {}, Url: {}", id, url);
+		String validUrl = validation.applyURLValidation(url);
+		return Optional.ofNullable(ANALYSIS_TABLE.get(validation.applyIdValidation(id)))
+			.orElseThrow(() -> {
+				LOGGER.error("error while updating crawl {} with url {}", id, url);
+				throw new NotUpdatedException();
+			})
+			.addUrl(validUrl, limit);
 	}
 	
 	/**
 	 * Updates the status of the analysis with the given ID.
 	 * If the ID is null or empty,, an IllegalArgumentException is thrown.
 	 * If the status is null or empty, an IllegalArgumentException is thrown.
+	 * When the current status does not allow the transition, the analysis is returned unchanged.
 	 * @param id the ID of the analysis to update
 	 * @param status the new status to set
 	 */
@@ -116,23 +151,96 @@ public final class InMemmoryDao implements DataAccessObject {
 	public final CrawlTableResultSet updateStatus(String id, String status, String optionalMessage) {
 		LOGGER.debug("Updating ID: {}, Status: {}", id, status);
 		
-		Optional.ofNullable(validation.applyStatusValidation(status))
-			.ifPresent(incomingStatus -> Optional.ofNullable(get(id)).ifPresentOrElse(current -> {
-				if (!CrawlStatus.DONE.equals(CrawlStatus.valueOf(current.getStatus()))) {
-					current.setStatus(status);
-					current.setMessage(optionalMessage);
-					ANALYSIS_TABLE.put(id, current);
-				} else {
-					LOGGER.warn("Current crawl status {} does not allow update to {}",
-							current.getStatus(), incomingStatus);
-				}
-			}, () -> {
-				LOGGER.error("error while updating crawl {} status to {}", id, status);
-				throw new NotUpdatedException();
-			})
-		);
+		CrawlStatus incomingStatus = validation.applyStatusValidation(status);
+		CrawlTableResultSet current = get(id);
+		CrawlStatus currentStatus;
+		do {
+			currentStatus = CrawlStatus.valueOf(current.getStatus());
+			if (!currentStatus.canTransitionTo(incomingStatus)) {
+				LOGGER.warn("Current crawl status {} does not allow update to {}", currentStatus, incomingStatus);
+				return current;
+			}
+		} while (!compareAndSetStatus(current, currentStatus, incomingStatus, optionalMessage));
 		
-		return ANALYSIS_TABLE.get(id);
+		return current;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean compareAndSetStatus(String id, CrawlStatus expected, CrawlStatus status, String message) {
+		LOGGER.debug("Updating ID: {}, Status: {} to {}", id, expected, status);
+		return expected.canTransitionTo(status) && compareAndSetStatus(get(id), expected, status, message);
+	}
+	
+	private boolean compareAndSetStatus(CrawlTableResultSet current, CrawlStatus expected, CrawlStatus status, String message) {
+		if (!current.compareAndSetStatus(expected, status)) {
+			return false;
+		}
+		current.setMessage(message);
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CrawlTableResultSet updateSnapshot(String id, CrawlSnapshot snapshot) {
+		LOGGER.debug("Updating ID: {}, Snapshot of {} pending URL(s)", id, snapshot != null ? snapshot.getPending().size() : 0);
+		CrawlTableResultSet current = get(id);
+		current.setSnapshot(snapshot);
+		return current;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public CrawlTableResultSet restore(String id, CrawlStatus status, Collection<String> urls) {
+		LOGGER.debug("Restoring ID: {}, Status: {} with {} url(s)", id, status, urls.size());
+		CrawlTableResultSet current = ANALYSIS_TABLE.computeIfAbsent(validation.applyIdValidation(id), key -> new CrawlTableResultSet(key, null));
+		current.setStatus(status.name());
+		urls.forEach(url -> current.addUrl(url, Integer.MAX_VALUE));
+		return current;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void forEach(Consumer<CrawlTableResultSet> action) {
+		ANALYSIS_TABLE.values().forEach(action);
+	}
+
+	/**
+	 * Marks the crawl as evicted before removing it, so a concurrent {@link #get(String)} never finds it missing.
+	 */
+	@Override
+	public boolean evict(String id) {
+		CrawlTableResultSet current = ANALYSIS_TABLE.get(id);
+		if (current == null || current.getFinishedAt() == 0) {
+			return false;
+		}
+		LOGGER.debug("Evicting ID: {} with {} url(s)", id, current.getUrls().size());
+		evicted.add(UrlCanonicalizer.fingerprint(id));
+		return ANALYSIS_TABLE.remove(id, current);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long[] evicted() {
+		return evicted.toArray();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void restoreEvicted(long fingerprint) {
+		evicted.add(fingerprint);
 	}
 
 	/**
@@ -142,6 +250,7 @@ public final class InMemmoryDao implements DataAccessObject {
 	 */
 	final void clear() {
 		ANALYSIS_TABLE.clear();
+		evicted = new EvictedFingerprints(EXPIRED_WINDOW);
 		LOGGER.debug("InMemmoryDao cleared.");
 	}
 	
@@ -0,0 +1,162 @@
+package dev.samir.backend.persistence;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.persistence.model.CrawlSnapshot;
+import dev.samir.backend.persistence.model.CrawlTableResultSet;
+import dev.samir.backend.route.model.CrawlStatus;
+
+/**
+ * {@link DataAccessObject} keeping the result URLs of the crawls off the heap, in a {@link MappedUrlStore}, while
+ * another data access object, usually the {@link InMemmoryDao}, keeps everything else.
+ * <p>
+ * The URL set of each crawl is replaced by a view of the store as soon as the crawl is created or restored, before any
+ * result is added to it. The crawls themselves stay on the heap, being a few objects each, so their status is still
+ * moved atomically. Reading the results of a crawl decodes its URLs while they are iterated, without copying the set.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class MappedResultsDao implements DataAccessObject {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(MappedResultsDao.class);
+
+	/**
+	 * Initial number of slots of the hash table of the store, doubled as needed.
+	 */
+	private static final int CAPACITY = 1 << 16;
+
+	/**
+	 * Keeps the crawls.
+	 */
+	private final DataAccessObject delegate;
+
+	/**
+	 * Keeps the result URLs.
+	 */
+	private final MappedUrlStore store;
+
+	/**
+	 * Default constructor.
+	 * @param delegate {@link #delegate}
+	 * @param directory directory of the files of the {@link #store}.
+	 */
+	public MappedResultsDao(DataAccessObject delegate, Path directory) {
+		this(delegate, new MappedUrlStore(directory, MappedUrlStore.CHUNK_SIZE, CAPACITY));
+	}
+
+	MappedResultsDao(DataAccessObject delegate, MappedUrlStore store) {
+		this.delegate = delegate;
+		this.store = store;
+	}
+
+	@Override
+	public CrawlTableResultSet get(String id) {
+		return delegate.get(id);
+	}
+
+	@Override
+	public CrawlTableResultSet persist(String url) {
+		return offHeap(delegate.persist(url));
+	}
+
+	@Override
+	public CrawlTableResultSet updateUrl(String id, String url) {
+		return delegate.updateUrl(id, url);
+	}
+
+	@Override
+	public boolean updateUrl(String id, String url, int limit) {
+		return delegate.updateUrl(id, url, limit);
+	}
+
+	@Override
+	public CrawlTableResultSet updateStatus(String id, String status, String message) {
+		return delegate.updateStatus(id, status, message);
+	}
+
+	@Override
+	public boolean compareAndSetStatus(String id, CrawlStatus expected, CrawlStatus status, String message) {
+		return delegate.compareAndSetStatus(id, expected, status, message);
+	}
+
+	@Override
+	public CrawlTableResultSet updateSnapshot(String id, CrawlSnapshot snapshot) {
+		return delegate.updateSnapshot(id, snapshot);
+	}
+
+	@Override
+	public CrawlTableResultSet restore(String id, CrawlStatus status, Collection<String> urls) {
+		CrawlTableResultSet crawl = offHeap(delegate.restore(id, status, List.of()));
+		urls.forEach(url -> crawl.addUrl(url, Integer.MAX_VALUE));
+		return crawl;
+	}
+
+	@Override
+	public void forEach(Consumer<CrawlTableResultSet> action) {
+		delegate.forEach(action);
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The URLs of the crawl are released, the space they take in the store going to the next crawls.
+	 */
+	@Override
+	public boolean evict(String id) {
+		CrawlTableResultSet crawl;
+		try {
+			crawl = delegate.get(id);
+		} catch (DataAccessObjectException | IllegalArgumentException ex) {
+			// Not stored, or not even valid
+			return false;
+		}
+		if (!delegate.evict(id)) {
+			return false;
+		}
+		if (crawl.getUrls() instanceof MappedUrlStore.UrlSet) {
+			((MappedUrlStore.UrlSet) crawl.getUrls()).release();
+		}
+		return true;
+	}
+
+	@Override
+	public long[] evicted() {
+		return delegate.evicted();
+	}
+
+	@Override
+	public void restoreEvicted(long fingerprint) {
+		delegate.restoreEvicted(fingerprint);
+	}
+
+	/**
+	 * Deletes the files of the store. The results are lost, the crawls not being usable anymore.
+	 */
+	public void close() {
+		store.close();
+	}
+
+	/**
+	 * Moves the URLs of a crawl to the store, unless they already are.
+	 */
+	private CrawlTableResultSet offHeap(CrawlTableResultSet crawl) {
+		Set<String> urls = crawl.getUrls();
+		if (!(urls instanceof MappedUrlStore.UrlSet)) {
+			MappedUrlStore.UrlSet mapped = store.newSet();
+			mapped.addAll(urls);
+			crawl.setUrls(mapped);
+			LOGGER.debug("Keeping the results of crawl {} off the heap", crawl.getId());
+		}
+		return crawl;
+	}
+
+}
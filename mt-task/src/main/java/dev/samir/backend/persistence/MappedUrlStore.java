@@ -0,0 +1,717 @@
+package dev.samir.backend.persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import dev.samir.backend.persistence.model.VersionedUrlSet;
+
+/**
+ * Off-heap store of the result URLs of every crawl, kept in memory-mapped files so millions of URLs cost the heap
+ * nothing but a small {@link UrlSet} per crawl.
+ * <p>
+ * The arena is mapped in chunks, since a single mapping cannot exceed 2 GB, and handed out in blocks: a crawl appends
+ * its URLs to its own blocks, in the order they are added, so they are read forward, decoding them one at a time. The
+ * ordinal of the first URL of each block is kept along with it, so a page is read from the block holding its first URL
+ * rather than from the first block. Duplicates are found through an open-addressing hash table of entry offsets, mapped as well, which
+ * doubles once half full. Entries are never moved nor modified once appended, so they are read without locking, while
+ * appending takes the lock of the store.
+ * </p>
+ * Once a crawl is evicted its set is {@link UrlSet#release() released}: its entries leave the table and its blocks are
+ * handed to the next crawls, so the arena only grows with the URLs kept at once. A reader of a released set may be
+ * reading a block being reused, so it checks the set was not released after reading, and finds it empty when it was.
+ * <p>
+ * The files are scratch space, deleted when the store is closed or the process ends: durability is left to the
+ * {@link WriteAheadLogDao}.
+ * </p>
+ * @author Scheide, Samir
+ */
+final class MappedUrlStore implements Closeable {
+
+	/**
+	 * Size of each mapping of the arena, and of the table, in bytes.
+	 */
+	static final int CHUNK_SIZE = 1 << 30;
+
+	/**
+	 * Size of the blocks handed to the crawls, in bytes, unless the chunks are smaller.
+	 */
+	static final int BLOCK_SIZE = 1 << 16;
+
+	/**
+	 * Bytes of an entry before its URL: the crawl and the URL length.
+	 */
+	private static final int ENTRY_HEADER = 8;
+	private static final int LENGTH = Integer.BYTES;
+
+	/**
+	 * URL length closing the entries of a block, when the next entry did not fit in it.
+	 */
+	private static final int END = -1;
+
+	/**
+	 * Offsets take the low bits of a slot of the table, the high bits of the hash of the entry the others, so most
+	 * mismatches are ruled out without reading the arena. Offsets are limited to 1 TB.
+	 */
+	private static final int OFFSET_BITS = 40;
+	private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+
+	/**
+	 * Directory of the files.
+	 */
+	private final Path directory;
+
+	/**
+	 * Size of each mapping, in bytes.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * Size of each block, dividing the chunk size.
+	 */
+	private final int blockSize;
+
+	/**
+	 * The arena file, grown one chunk at a time.
+	 */
+	private final FileChannel arena;
+
+	/**
+	 * The mapped chunks of the arena. Replaced, never modified, when a chunk is added.
+	 */
+	private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+	/**
+	 * Offset of the next block never handed out. The first block is skipped, offset zero meaning no entry.
+	 */
+	private long end;
+
+	/**
+	 * Blocks released by evicted crawls, handed out before new ones.
+	 */
+	private long[] free = new long[16];
+	private int freeBlocks;
+
+	/**
+	 * The hash table of the entries.
+	 */
+	private Table table;
+
+	/**
+	 * Number of entries of the table.
+	 */
+	private long entries;
+
+	/**
+	 * Identifies the {@link UrlSet sets} of the store.
+	 */
+	private final AtomicInteger crawls = new AtomicInteger();
+
+	/**
+	 * Number of table files created, naming the next one.
+	 */
+	private int tables;
+
+	/**
+	 * Default constructor.
+	 * @param directory {@link #directory}, created if needed.
+	 * @param chunkSize {@link #chunkSize}, a multiple of the {@link #BLOCK_SIZE} when larger than it.
+	 * @param capacity initial number of slots of the table, a power of two.
+	 * @throws UncheckedIOException if the files cannot be created.
+	 */
+	MappedUrlStore(Path directory, int chunkSize, int capacity) {
+		this.directory = directory;
+		this.chunkSize = chunkSize;
+		this.blockSize = Math.min(BLOCK_SIZE, chunkSize);
+		if (chunkSize % blockSize != 0) {
+			throw new IllegalArgumentException("The chunk size must be a multiple of " + blockSize + " bytes");
+		}
+		this.end = blockSize;
+		try {
+			Files.createDirectories(directory);
+			this.arena = open("results-arena.bin");
+			this.table = new Table(capacity);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not create the results store in " + directory, ex);
+		}
+	}
+
+	/**
+	 * @return a new empty set of URLs.
+	 */
+	UrlSet newSet() {
+		return new UrlSet(crawls.incrementAndGet());
+	}
+
+	/**
+	 * @return the size of the arena, in bytes.
+	 */
+	synchronized long getArenaSize() {
+		return end;
+	}
+
+	/**
+	 * Closes the files, deleting them. The sets of the store must not be used anymore.
+	 */
+	@Override
+	public synchronized void close() {
+		try {
+			arena.close();
+			table.channel.close();
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not close the results store in " + directory, ex);
+		}
+	}
+
+	/**
+	 * Appends the URL to the set unless it already holds it, or was released.
+	 */
+	private synchronized boolean add(UrlSet set, String url) {
+		if (set.released) {
+			return false;
+		}
+		byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+		int length = ENTRY_HEADER + bytes.length;
+		if (length > blockSize) {
+			throw new IllegalArgumentException("URL too long for the results store: " + length + " bytes");
+		}
+		if ((entries + 1) * 2 > table.capacity) {
+			resize();
+		}
+		long hash = hash(set.crawl, bytes);
+		long slot = find(set.crawl, bytes, hash);
+		if (table.get(slot) != 0) {
+			return false;
+		}
+		if (set.tail + length > set.limit) {
+			// The rest of the block is skipped by the readers, told so when a header still fits
+			if (set.tail + ENTRY_HEADER <= set.limit) {
+				chunk(set.tail).putInt(position(set.tail) + LENGTH, END);
+			}
+			set.append(allocate());
+		}
+		long offset = set.tail;
+		ByteBuffer chunk = chunk(offset);
+		int position = position(offset);
+		chunk.putInt(position, set.crawl);
+		chunk.putInt(position + LENGTH, bytes.length);
+		chunk.put(position + ENTRY_HEADER, bytes);
+		set.tail = offset + length;
+		table.set(slot, (hash & ~OFFSET_MASK) | offset);
+		entries++;
+		// Published last, the entry being complete for the readers of the set
+		set.size = set.size + 1;
+		return true;
+	}
+
+	private synchronized boolean contains(UrlSet set, String url) {
+		if (set.released) {
+			return false;
+		}
+		byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+		return table.get(find(set.crawl, bytes, hash(set.crawl, bytes))) != 0;
+	}
+
+	/**
+	 * Removes the entries of the set from the table and hands its blocks over to the next crawls.
+	 */
+	private synchronized void release(UrlSet set) {
+		if (set.released) {
+			return;
+		}
+		set.released = true;
+		// No write to the reused blocks may be seen before the set is
+		VarHandle.fullFence();
+		Reader reader = new Reader(set.blocks, set.size);
+		while (reader.hasNext()) {
+			long offset = reader.next();
+			byte[] bytes = bytes(offset);
+			delete(find(set.crawl, bytes, hash(set.crawl, bytes)));
+			entries--;
+		}
+		for (int i = 0; i < set.blockCount; i++) {
+			if (freeBlocks == free.length) {
+				free = Arrays.copyOf(free, free.length * 2);
+			}
+			free[freeBlocks++] = set.blocks[i];
+		}
+		set.tail = 0;
+		set.limit = 0;
+	}
+
+	/**
+	 * Probes the table for the URL of the crawl.
+	 * @return the slot holding it, or the empty slot where it belongs.
+	 */
+	private long find(int crawl, byte[] bytes, long hash) {
+		long mask = table.capacity - 1;
+		for (long slot = hash & mask; ; slot = (slot + 1) & mask) {
+			long value = table.get(slot);
+			if (value == 0 || ((value ^ hash) & ~OFFSET_MASK) == 0 && matches(value & OFFSET_MASK, crawl, bytes)) {
+				return slot;
+			}
+		}
+	}
+
+	/**
+	 * Empties the slot, moving back the entries after it which would not be found anymore past the hole.
+	 */
+	private void delete(long slot) {
+		long mask = table.capacity - 1;
+		long hole = slot;
+		for (long next = (hole + 1) & mask; ; next = (next + 1) & mask) {
+			long value = table.get(next);
+			if (value == 0) {
+				break;
+			}
+			long offset = value & OFFSET_MASK;
+			long home = hash(chunk(offset).getInt(position(offset)), bytes(offset)) & mask;
+			// The entry stays unless its probe from its home slot goes through the hole
+			if (((next - home) & mask) >= ((next - hole) & mask)) {
+				table.set(hole, value);
+				hole = next;
+			}
+		}
+		table.set(hole, 0);
+	}
+
+	private boolean matches(long offset, int crawl, byte[] bytes) {
+		ByteBuffer chunk = chunk(offset);
+		int position = position(offset);
+		if (chunk.getInt(position) != crawl || chunk.getInt(position + LENGTH) != bytes.length) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (chunk.get(position + ENTRY_HEADER + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hands out a block, a released one if any, or else the next one of the arena, mapping a new chunk when needed.
+	 * @return the offset of the block.
+	 * @throws IllegalStateException if the arena is as large as the offsets of the table allow.
+	 */
+	private long allocate() {
+		if (freeBlocks > 0) {
+			return free[--freeBlocks];
+		}
+		if (end + blockSize - 1 > OFFSET_MASK) {
+			throw new IllegalStateException("The results store in " + directory + " is full: " + end + " bytes");
+		}
+		int chunk = (int) (end / chunkSize);
+		if (chunk >= chunks.length) {
+			try {
+				ByteBuffer[] grown = Arrays.copyOf(chunks, chunk + 1);
+				for (int i = chunks.length; i <= chunk; i++) {
+					grown[i] = arena.map(FileChannel.MapMode.READ_WRITE, (long) i * chunkSize, chunkSize);
+				}
+				chunks = grown;
+			} catch (IOException ex) {
+				throw new UncheckedIOException("Could not grow the results store in " + directory, ex);
+			}
+		}
+		long block = end;
+		end += blockSize;
+		return block;
+	}
+
+	/**
+	 * Doubles the table, moving every entry to its slot in the new one.
+	 */
+	private void resize() {
+		Table previous = table;
+		try {
+			table = new Table(previous.capacity * 2);
+		} catch (IOException ex) {
+			table = previous;
+			throw new UncheckedIOException("Could not grow the results store in " + directory, ex);
+		}
+		for (long slot = 0; slot < previous.capacity; slot++) {
+			long value = previous.get(slot);
+			if (value != 0) {
+				long offset = value & OFFSET_MASK;
+				byte[] bytes = bytes(offset);
+				int crawl = chunk(offset).getInt(position(offset));
+				table.set(find(crawl, bytes, hash(crawl, bytes)), value);
+			}
+		}
+		try {
+			previous.channel.close();
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not grow the results store in " + directory, ex);
+		}
+	}
+
+	/**
+	 * @return the URL bytes of an entry.
+	 */
+	private byte[] bytes(long offset) {
+		ByteBuffer chunk = chunk(offset);
+		int position = position(offset);
+		byte[] bytes = new byte[chunk.getInt(position + LENGTH)];
+		chunk.get(position + ENTRY_HEADER, bytes);
+		return bytes;
+	}
+
+	/**
+	 * Decodes the URL of an entry, of the length a {@link Reader} checked.
+	 */
+	private String url(long offset, int length) {
+		byte[] bytes = new byte[length];
+		chunk(offset).get(position(offset) + ENTRY_HEADER, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private ByteBuffer chunk(long offset) {
+		return chunks[(int) (offset / chunkSize)];
+	}
+
+	private int position(long offset) {
+		return (int) (offset % chunkSize);
+	}
+
+	private FileChannel open(String name) throws IOException {
+		return FileChannel.open(directory.resolve(name), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	/**
+	 * Hashes the URL of a crawl, FNV-1a over the bytes then the MurmurHash3 finalizer to spread the bits.
+	 */
+	private static long hash(int crawl, byte[] bytes) {
+		long hash = 0xcbf29ce484222325L ^ crawl * 0x9e3779b97f4a7c15L;
+		for (byte b : bytes) {
+			hash = (hash ^ b) * 0x100000001b3L;
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+	/**
+	 * The URLs of a crawl, a view of the store: URLs are decoded while iterating, in the order they were added, and
+	 * never held by the set. Each URL added publishes a new size, which is all a {@link #snapshot()} holds, the entries
+	 * before it never changing. URLs cannot be removed, but the whole set can be {@link #release() released}.
+	 */
+	final class UrlSet extends AbstractSet<String> implements VersionedUrlSet {
+
+		/**
+		 * Identifies the crawl within the store.
+		 */
+		private final int crawl;
+
+		/**
+		 * Offsets of the blocks of the crawl, in order, and the ordinal of the first URL of each. Written under the lock
+		 * of the store before the {@link #blockCount} publishing them.
+		 */
+		private long[] blocks = new long[4];
+		private int[] firsts = new int[4];
+
+		/**
+		 * Number of blocks. Read after the {@link #size}, so the blocks of every entry counted are found.
+		 */
+		private volatile int blockCount;
+
+		/**
+		 * Offset the next entry is appended at, and end of its block. Only used under the lock of the store.
+		 */
+		private long tail;
+		private long limit;
+
+		/**
+		 * Number of URLs. Written under the lock of the store.
+		 */
+		private volatile int size;
+
+		/**
+		 * Whether the set was released, its blocks being reused.
+		 */
+		private volatile boolean released;
+
+		private UrlSet(int crawl) {
+			this.crawl = crawl;
+		}
+
+		@Override
+		public boolean add(String url) {
+			return MappedUrlStore.this.add(this, url);
+		}
+
+		@Override
+		public boolean contains(Object url) {
+			return url instanceof String && MappedUrlStore.this.contains(this, (String) url);
+		}
+
+		@Override
+		public int size() {
+			return released ? 0 : size;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return snapshot().iterator();
+		}
+
+		@Override
+		public Set<String> snapshot() {
+			int count = size;
+			return new Snapshot(this, blocks, count);
+		}
+
+		/**
+		 * {@inheritDoc} <br>
+		 * The entries are read forward from the block holding the URL at the cursor, found by a binary search of the
+		 * first ordinal of each block, so only the URLs before the cursor in that block are skipped.
+		 */
+		@Override
+		public List<String> range(int from, int limit) {
+			int count = size;
+			int to = (int) Math.min(count, (long) from + limit);
+			if (from >= to) {
+				return List.of();
+			}
+			int published = blockCount;
+			int[] ordinals = firsts;
+			int block = seek(ordinals, published, from);
+			Reader reader = new Reader(blocks, count, block, ordinals[block]);
+			List<String> urls = new ArrayList<>(to - from);
+			for (int ordinal = ordinals[block]; ordinal < to; ordinal++) {
+				long offset = reader.next();
+				if (offset < 0) {
+					break;
+				}
+				if (ordinal >= from) {
+					urls.add(url(offset, reader.length));
+				}
+			}
+			return isIntact() && urls.size() == to - from ? urls : List.of();
+		}
+
+		/**
+		 * Drops the URLs, handing the space they take over to the next crawls. The set reads as empty from then on.
+		 */
+		void release() {
+			MappedUrlStore.this.release(this);
+		}
+
+		/**
+		 * Adds a block to the set, where the next entries go.
+		 */
+		private void append(long block) {
+			int count = blockCount;
+			if (count == blocks.length) {
+				blocks = Arrays.copyOf(blocks, count * 2);
+				firsts = Arrays.copyOf(firsts, count * 2);
+			}
+			blocks[count] = block;
+			firsts[count] = size;
+			blockCount = count + 1;
+			tail = block;
+			limit = block + blockSize;
+		}
+
+		/**
+		 * @return the last of the first blocks whose first URL is not after the ordinal, the one holding it.
+		 */
+		private int seek(int[] ordinals, int count, int ordinal) {
+			int low = 0;
+			int high = count - 1;
+			while (low < high) {
+				int middle = (low + high + 1) >>> 1;
+				if (ordinals[middle] <= ordinal) {
+					low = middle;
+				} else {
+					high = middle - 1;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * @return true when what was read from the set so far can be trusted, the set not being released meanwhile.
+		 */
+		private boolean isIntact() {
+			// The entries read must not be reordered after the check
+			VarHandle.acquireFence();
+			return !released;
+		}
+
+	}
+
+	/**
+	 * Walks the first entries of a set forward, from block to block.
+	 */
+	private final class Reader {
+
+		private final long[] blocks;
+
+		/**
+		 * Number of entries to be read.
+		 */
+		private final int count;
+
+		private int read;
+		private int block;
+		private long offset;
+
+		/**
+		 * URL length of the last entry read.
+		 */
+		private int length;
+
+		private Reader(long[] blocks, int count) {
+			this(blocks, count, 0, 0);
+		}
+
+		/**
+		 * Reads from a block on, its first entry having the given ordinal.
+		 */
+		private Reader(long[] blocks, int count, int block, int ordinal) {
+			this.blocks = blocks;
+			this.count = count;
+			this.read = ordinal;
+			this.block = block;
+			this.offset = count > ordinal ? blocks[block] : 0;
+		}
+
+		private boolean hasNext() {
+			return read < count;
+		}
+
+		/**
+		 * @return the offset of the next entry, or -1 when none is found, the blocks being reused.
+		 */
+		private long next() {
+			while (true) {
+				long limit = blocks[block] + blockSize;
+				if (offset + ENTRY_HEADER <= limit) {
+					length = chunk(offset).getInt(position(offset) + LENGTH);
+					if (length >= 0 && offset + ENTRY_HEADER + length <= limit) {
+						long entry = offset;
+						offset += ENTRY_HEADER + length;
+						read++;
+						return entry;
+					}
+					if (length != END) {
+						return -1;
+					}
+				}
+				if (++block >= blocks.length || blocks[block] == 0) {
+					return -1;
+				}
+				offset = blocks[block];
+			}
+		}
+
+	}
+
+	/**
+	 * The first URLs of a crawl, up to a size, iterated in the order they were added. The iteration stops early when the
+	 * set is released meanwhile.
+	 */
+	private final class Snapshot extends AbstractSet<String> {
+
+		private final UrlSet set;
+		private final long[] blocks;
+		private final int count;
+
+		private Snapshot(UrlSet set, long[] blocks, int count) {
+			this.set = set;
+			this.blocks = blocks;
+			this.count = count;
+		}
+
+		@Override
+		public int size() {
+			return count;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+
+				private final Reader reader = new Reader(blocks, count);
+
+				private String next = advance();
+
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+
+				@Override
+				public String next() {
+					if (next == null) {
+						throw new NoSuchElementException();
+					}
+					String url = next;
+					next = advance();
+					return url;
+				}
+
+				private String advance() {
+					if (!reader.hasNext()) {
+						return null;
+					}
+					long offset = reader.next();
+					String url = offset < 0 ? null : url(offset, reader.length);
+					return set.isIntact() ? url : null;
+				}
+
+			};
+		}
+
+	}
+
+	/**
+	 * The mapped hash table, each slot holding an entry offset along with the high bits of its hash.
+	 */
+	private final class Table {
+
+		private final long capacity;
+		private final FileChannel channel;
+		private final ByteBuffer[] buffers;
+		private final int slotsPerBuffer = chunkSize / Long.BYTES;
+
+		private Table(long capacity) throws IOException {
+			this.capacity = capacity;
+			this.channel = open("results-table-" + tables++ + ".bin");
+			this.buffers = new ByteBuffer[(int) ((capacity + slotsPerBuffer - 1) / slotsPerBuffer)];
+			for (int i = 0; i < buffers.length; i++) {
+				long slots = Math.min(slotsPerBuffer, capacity - (long) i * slotsPerBuffer);
+				buffers[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * slotsPerBuffer * Long.BYTES, slots * Long.BYTES);
+			}
+		}
+
+		private long get(long slot) {
+			return buffers[(int) (slot / slotsPerBuffer)].getLong((int) (slot % slotsPerBuffer) * Long.BYTES);
+		}
+
+		private void set(long slot, long value) {
+			buffers[(int) (slot / slotsPerBuffer)].putLong((int) (slot % slotsPerBuffer) * Long.BYTES, value);
+		}
+
+	}
+
+}
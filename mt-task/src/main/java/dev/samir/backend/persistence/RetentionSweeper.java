@@ -0,0 +1,133 @@
+package dev.samir.backend.persistence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.common.configuration.Environment;
+import dev.samir.backend.persistence.model.CrawlTableResultSet;
+
+/**
+ * Retention policy of the crawls: finished crawls are evicted once they are older than a time to live, and the oldest
+ * finished crawls are evicted as long as more crawls or more result URLs than allowed are kept. Running and halted
+ * crawls are never evicted, even beyond the limits.
+ * <p>
+ * A background thread sweeps the crawls at regular intervals. It only iterates the stored crawls and removes the
+ * evicted ones through {@link DataAccessObject#evict(String)}, so reading and updating crawls never wait for it.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class RetentionSweeper {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(RetentionSweeper.class);
+
+	/**
+	 * Interval between two sweeps.
+	 */
+	private static final Duration INTERVAL = Duration.ofSeconds(30);
+
+	/**
+	 * The crawls swept.
+	 */
+	private final DataAccessObject dao;
+
+	/**
+	 * How long a finished crawl is kept.
+	 */
+	private final Duration ttl;
+
+	/**
+	 * Maximum number of crawls kept.
+	 */
+	private final int maxCrawls;
+
+	/**
+	 * Maximum number of result URLs kept, summed over every crawl.
+	 */
+	private final long maxUrls;
+
+	/**
+	 * Default constructor.
+	 * @param dao {@link #dao}
+	 * @param ttl {@link #ttl}
+	 * @param maxCrawls {@link #maxCrawls}
+	 * @param maxUrls {@link #maxUrls}
+	 */
+	public RetentionSweeper(DataAccessObject dao, Duration ttl, int maxCrawls, long maxUrls) {
+		this.dao = dao;
+		this.ttl = ttl;
+		this.maxCrawls = maxCrawls;
+		this.maxUrls = maxUrls;
+	}
+
+	/**
+	 * @param dao {@link #dao}
+	 * @param environment the retention settings, see {@link Environment#getRetentionTtl()},
+	 * {@link Environment#getRetentionMaxCrawls()} and {@link Environment#getRetentionMaxUrls()}.
+	 * @return the sweeper configured by the environment.
+	 */
+	public static RetentionSweeper of(DataAccessObject dao, Environment environment) {
+		return new RetentionSweeper(dao, Duration.ofMinutes(environment.getRetentionTtl()), environment.getRetentionMaxCrawls(),
+				environment.getRetentionMaxUrls());
+	}
+
+	/**
+	 * Starts sweeping in the background, on a daemon thread.
+	 */
+	public void start() {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "crawl-retention");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				sweep();
+			} catch (RuntimeException ex) {
+				LOGGER.error("Could not sweep the crawls", ex);
+			}
+		}, INTERVAL.toMillis(), INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Evicts the finished crawls past their time to live, then the oldest finished ones while the limits are exceeded.
+	 * @return the number of crawls evicted.
+	 */
+	public int sweep() {
+		List<CrawlTableResultSet> crawls = new ArrayList<>();
+		dao.forEach(crawls::add);
+		long urls = crawls.stream().mapToLong(crawl -> crawl.getUrls().size()).sum();
+		int kept = crawls.size();
+		long expiry = System.currentTimeMillis() - ttl.toMillis();
+		crawls.removeIf(crawl -> crawl.getFinishedAt() == 0);
+		crawls.sort(Comparator.comparingLong(CrawlTableResultSet::getFinishedAt));
+		int evicted = 0;
+		for (CrawlTableResultSet crawl : crawls) {
+			// The newer crawls are neither expired, the limits being already met
+			if (crawl.getFinishedAt() > expiry && kept <= maxCrawls && urls <= maxUrls) {
+				break;
+			}
+			int size = crawl.getUrls().size();
+			if (dao.evict(crawl.getId())) {
+				kept--;
+				urls -= size;
+				evicted++;
+			}
+		}
+		if (evicted > 0) {
+			LOGGER.info("Evicted {} finished crawl(s), keeping {} crawl(s) and {} url(s)", evicted, kept, urls);
+		}
+		return evicted;
+	}
+
+}
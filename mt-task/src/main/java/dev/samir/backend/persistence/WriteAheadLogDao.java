@@ -0,0 +1,725 @@
+package dev.samir.backend.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.common.FramedRecords;
+import dev.samir.backend.common.UrlCanonicalizer;
+import dev.samir.backend.persistence.model.CrawlSnapshot;
+import dev.samir.backend.persistence.model.CrawlTableResultSet;
+import dev.samir.backend.route.model.CrawlStatus;
+
+/**
+ * Durable {@link DataAccessObject}: every change of the crawls kept by another data access object, usually the
+ * {@link InMemmoryDao}, is appended to a write-ahead log, from which the crawls are rebuilt when the service starts.
+ * <p>
+ * Only effects are logged, a crawl created, a URL added, a status set or a crawl evicted, so replaying the log depends
+ * neither on the results limit nor on the status state machine, and replaying a record twice changes nothing. Appending
+ * a record only copies it to a buffer, while a single thread writes and syncs the buffer along with everything appended
+ * meanwhile, so concurrent writers share each sync (group commit). Creating a crawl and moving its status wait until their record
+ * is synced; results do not, a crash losing at most the results appended during the last sync. Records are
+ * {@link FramedRecords framed}: a batch which could not be written is truncated from its segment and written again in a
+ * new one, its writers waiting until it is.
+ * </p>
+ * Once a log segment exceeds its size, a new segment is started and every crawl is written to a snapshot, after which
+ * the older segments are deleted, along with the fingerprints of the evicted crawls, which are not in any crawl
+ * anymore. The snapshot is taken while crawls keep changing, which is fine since every change it may miss is in a
+ * segment it does not cover. Statuses are logged and snapshot along with when the crawl finished, so a restart does not
+ * extend the time to live of the finished crawls. On startup, the latest complete snapshot is loaded and the segments after
+ * it are replayed, each up to its first incomplete record.
+ * <p>
+ * The snapshot a halted crawl resumes from is not logged, see {@link #updateSnapshot(String, CrawlSnapshot)}.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class WriteAheadLogDao implements DataAccessObject {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLogDao.class);
+
+	/**
+	 * Types of the records: a crawl created, with its first URL if any, a URL added, a status set and a crawl evicted.
+	 */
+	private static final byte PERSIST = 1;
+	private static final byte URL = 2;
+	private static final byte STATUS = 3;
+	private static final byte EVICT = 4;
+
+	/**
+	 * Starts every snapshot.
+	 */
+	private static final int MAGIC = 0x57414C53;
+
+	/**
+	 * Largest record accepted when replaying, anything larger being the garbage of an incomplete write.
+	 */
+	private static final int MAX_RECORD_SIZE = 1 << 20;
+
+	/**
+	 * Pause before a batch which could not be written is written again, in milliseconds.
+	 */
+	private static final long RETRY_DELAY = 1000;
+
+	/**
+	 * Messages longer than this are truncated in the log.
+	 */
+	private static final int MAX_MESSAGE_LENGTH = 8192;
+
+	private static final String FILE_PREFIX = "wal-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String SNAPSHOT_SUFFIX = ".snapshot";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	/**
+	 * Keeps the crawls, every change being applied to it before it is logged.
+	 */
+	private final DataAccessObject delegate;
+
+	/**
+	 * Directory of the log segments and snapshots.
+	 */
+	private final Path directory;
+
+	/**
+	 * Size a segment grows to before a new one is started and a snapshot taken, in bytes.
+	 */
+	private final long segmentSize;
+
+	/**
+	 * Guards {@link #buffer}, {@link #appended}, {@link #durable}, {@link #closed} and {@link #stopped}, and is notified
+	 * when they change.
+	 */
+	private final Object lock = new Object();
+
+	/**
+	 * Records appended and not yet written.
+	 */
+	private final FramedRecords buffer = new FramedRecords();
+
+	/**
+	 * Sequence of the last record appended.
+	 */
+	private long appended;
+
+	/**
+	 * Sequence of the last record synced.
+	 */
+	private long durable;
+
+	private boolean closed;
+
+	/**
+	 * Whether the {@link #committer} stopped, nothing being synced anymore.
+	 */
+	private boolean stopped;
+
+	/**
+	 * The segment records are written to, with its identifier and size. Only used by the {@link #committer}.
+	 */
+	private FileChannel segment;
+	private int segmentId;
+	private long segmentBytes;
+
+	/**
+	 * Writes and syncs the appended records.
+	 */
+	private final Thread committer;
+
+	/**
+	 * Takes the snapshots, away from the {@link #committer}.
+	 */
+	private final ExecutorService snapshots = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "wal-snapshots");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Opens the log, loading the latest snapshot and replaying the segments after it into the delegate.
+	 * @param delegate {@link #delegate}, expected to be empty.
+	 * @param directory {@link #directory}, created if needed.
+	 * @param segmentSize {@link #segmentSize}
+	 * @throws UncheckedIOException if the directory or its files cannot be opened.
+	 */
+	public WriteAheadLogDao(DataAccessObject delegate, Path directory, long segmentSize) {
+		this.delegate = delegate;
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		try {
+			Files.createDirectories(directory);
+			this.segmentId = recover();
+			this.segment = FileChannel.open(path(segmentId, SEGMENT_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not open the write-ahead log in " + directory, ex);
+		}
+		this.committer = new Thread(() -> {
+			try {
+				commit();
+			} finally {
+				synchronized (lock) {
+					stopped = true;
+					lock.notifyAll();
+				}
+			}
+		}, "wal-committer");
+		this.committer.setDaemon(true);
+		this.committer.start();
+	}
+
+	@Override
+	public CrawlTableResultSet get(String id) {
+		return delegate.get(id);
+	}
+
+	@Override
+	public CrawlTableResultSet persist(String url) {
+		CrawlTableResultSet crawl = delegate.persist(url);
+		String first = crawl.getUrls().stream().findFirst().orElse(null);
+		await(append(PERSIST, out -> {
+			out.writeUTF(crawl.getId());
+			writeNullable(out, first);
+		}));
+		return crawl;
+	}
+
+	@Override
+	public CrawlTableResultSet updateUrl(String id, String url) {
+		updateUrl(id, url, Integer.MAX_VALUE);
+		return delegate.get(id);
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The URL is logged without waiting for it to be synced.
+	 */
+	@Override
+	public boolean updateUrl(String id, String url, int limit) {
+		if (!delegate.updateUrl(id, url, limit)) {
+			return false;
+		}
+		append(URL, out -> {
+			out.writeUTF(id);
+			out.writeUTF(url);
+		});
+		return true;
+	}
+
+	@Override
+	public CrawlTableResultSet updateStatus(String id, String status, String message) {
+		CrawlTableResultSet crawl = delegate.get(id);
+		long sequence;
+		// The status is logged in the order it was set
+		synchronized (crawl) {
+			crawl = delegate.updateStatus(id, status, message);
+			sequence = appendStatus(crawl);
+		}
+		await(sequence);
+		return crawl;
+	}
+
+	@Override
+	public boolean compareAndSetStatus(String id, CrawlStatus expected, CrawlStatus status, String message) {
+		CrawlTableResultSet crawl = delegate.get(id);
+		long sequence;
+		synchronized (crawl) {
+			if (!delegate.compareAndSetStatus(id, expected, status, message)) {
+				return false;
+			}
+			sequence = appendStatus(crawl);
+		}
+		await(sequence);
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The snapshot is not logged: halted crawls are resumed from their checkpoint after a restart.
+	 */
+	@Override
+	public CrawlTableResultSet updateSnapshot(String id, CrawlSnapshot snapshot) {
+		return delegate.updateSnapshot(id, snapshot);
+	}
+
+	@Override
+	public CrawlTableResultSet restore(String id, CrawlStatus status, Collection<String> urls) {
+		CrawlTableResultSet crawl = delegate.restore(id, status, urls);
+		long sequence;
+		synchronized (crawl) {
+			append(PERSIST, out -> {
+				out.writeUTF(id);
+				writeNullable(out, null);
+			});
+			for (String url : urls) {
+				append(URL, out -> {
+					out.writeUTF(id);
+					out.writeUTF(url);
+				});
+			}
+			sequence = appendStatus(crawl);
+		}
+		await(sequence);
+		return crawl;
+	}
+
+	@Override
+	public void forEach(Consumer<CrawlTableResultSet> action) {
+		delegate.forEach(action);
+	}
+
+	@Override
+	public long[] evicted() {
+		return delegate.evicted();
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * Not logged, evictions being logged when they happen and snapshot along with the crawls.
+	 */
+	@Override
+	public void restoreEvicted(long fingerprint) {
+		delegate.restoreEvicted(fingerprint);
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * The eviction is logged without waiting for it to be synced, a crawl whose eviction was lost being evicted again.
+	 */
+	@Override
+	public boolean evict(String id) {
+		if (!delegate.evict(id)) {
+			return false;
+		}
+		append(EVICT, out -> out.writeUTF(id));
+		return true;
+	}
+
+	/**
+	 * Syncs the records appended so far, waits for the snapshot being taken if any and closes the log. Records can no
+	 * longer be appended.
+	 */
+	public void close() {
+		synchronized (lock) {
+			closed = true;
+			lock.notifyAll();
+		}
+		try {
+			committer.join();
+			segment.close();
+			snapshots.shutdown();
+			snapshots.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} catch (IOException ex) {
+			LOGGER.warn("Could not close the write-ahead log in {}", directory, ex);
+		}
+	}
+
+	/**
+	 * Appends the current status of the crawl and its message.
+	 */
+	private long appendStatus(CrawlTableResultSet crawl) {
+		String message = crawl.getMessage();
+		return append(STATUS, out -> {
+			out.writeUTF(crawl.getId());
+			out.writeUTF(crawl.getStatus());
+			writeNullable(out, message == null || message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH));
+			out.writeLong(crawl.getFinishedAt());
+		});
+	}
+
+	/**
+	 * Appends a framed record to the buffer of the next commit.
+	 * @return the sequence of the record.
+	 * @throws IllegalStateException if the log is closed, the record being lost otherwise.
+	 */
+	private long append(byte type, FramedRecords.Payload writer) {
+		synchronized (lock) {
+			if (closed) {
+				throw new IllegalStateException("The write-ahead log in " + directory + " is closed");
+			}
+			try {
+				buffer.append(type, writer);
+			} catch (IOException ex) {
+				// Written to memory, which never fails, except for strings too long to be written as modified UTF-8
+				LOGGER.warn("Could not log a record of type {}", type, ex);
+				return appended;
+			}
+			lock.notifyAll();
+			return ++appended;
+		}
+	}
+
+	/**
+	 * Waits until the record is synced.
+	 * @throws IllegalStateException if the log was closed before the record could be synced.
+	 */
+	private void await(long sequence) {
+		synchronized (lock) {
+			while (durable < sequence && !stopped) {
+				try {
+					lock.wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			if (durable < sequence) {
+				throw new IllegalStateException("The write-ahead log in " + directory + " was closed before the record was synced");
+			}
+		}
+	}
+
+	/**
+	 * Loop of the {@link #committer}: writes and syncs whatever was appended, then releases the writers waiting for it.
+	 * A batch which could not be written is written again in a new segment, until it is or the log is closed.
+	 */
+	private void commit() {
+		ByteBuffer batch = null;
+		long sequence = 0;
+		while (true) {
+			synchronized (lock) {
+				while (batch == null && buffer.size() == 0 && !closed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException ex) {
+						return;
+					}
+				}
+				if (batch == null && buffer.size() == 0) {
+					return;
+				}
+				if (batch == null) {
+					batch = buffer.take();
+					sequence = appended;
+				}
+			}
+			try {
+				FramedRecords.write(segment, batch);
+			} catch (IOException ex) {
+				if (!retry(ex)) {
+					return;
+				}
+				continue;
+			}
+			segmentBytes += batch.limit();
+			batch = null;
+			synchronized (lock) {
+				durable = sequence;
+				lock.notifyAll();
+			}
+			if (segmentBytes >= segmentSize && startSegment()) {
+				int covered = segmentId;
+				snapshots.execute(() -> snapshot(covered));
+			}
+		}
+	}
+
+	/**
+	 * Starts a new segment for a batch which could not be written, after a pause.
+	 * @return false when the log was closed meanwhile, the batch being lost.
+	 */
+	private boolean retry(IOException failure) {
+		synchronized (lock) {
+			if (closed) {
+				LOGGER.error("Could not write the write-ahead log in {}, its last batch of records is lost", directory, failure);
+				return false;
+			}
+			LOGGER.error("Could not write the write-ahead log in {}, retrying in a new segment", directory, failure);
+			try {
+				lock.wait(RETRY_DELAY);
+			} catch (InterruptedException ex) {
+				return false;
+			}
+		}
+		startSegment();
+		return true;
+	}
+
+	/**
+	 * Starts a new segment, the previous one ending with its last complete batch.
+	 * @return whether it was started.
+	 */
+	private boolean startSegment() {
+		try {
+			FileChannel next = FileChannel.open(path(segmentId + 1, SEGMENT_SUFFIX), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			segment.close();
+			segment = next;
+			segmentId++;
+			segmentBytes = 0;
+			return true;
+		} catch (IOException ex) {
+			LOGGER.error("Could not start a new segment of the write-ahead log in {}", directory, ex);
+			return false;
+		}
+	}
+
+	/**
+	 * Writes every crawl to a snapshot covering the segments before the given one, then deletes these segments and the
+	 * older snapshots. Every record of these segments was applied before it was logged, so the snapshot holds it.
+	 * <p>
+	 * The URLs of a crawl are read before they are written, since the URLs of a crawl evicted meanwhile may stop before
+	 * their count: such a crawl is left out, its eviction being logged in a segment the snapshot does not cover.
+	 * </p>
+	 * @param covered the first segment the snapshot does not cover.
+	 */
+	private void snapshot(int covered) {
+		Path temporary = path(covered, SNAPSHOT_SUFFIX + TEMPORARY_SUFFIX);
+		List<CrawlTableResultSet> crawls = new ArrayList<>();
+		delegate.forEach(crawls::add);
+		long[] evicted = delegate.evicted();
+		CRC32 crc = new CRC32();
+		int skipped = 0;
+		try {
+			try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)), crc))) {
+				out.writeInt(MAGIC);
+				for (CrawlTableResultSet crawl : crawls) {
+					Set<String> snapshot = crawl.snapshotUrls();
+					List<String> urls = new ArrayList<>(snapshot.size());
+					for (String url : snapshot) {
+						urls.add(url);
+					}
+					if (urls.size() < snapshot.size()) {
+						LOGGER.debug("Leaving crawl {} out of the snapshot, it was evicted while it was taken", crawl.getId());
+						skipped++;
+						continue;
+					}
+					String message = crawl.getMessage();
+					out.writeBoolean(true);
+					out.writeUTF(crawl.getId());
+					out.writeUTF(crawl.getStatus());
+					writeNullable(out, message == null || message.length() <= MAX_MESSAGE_LENGTH ? message : message.substring(0, MAX_MESSAGE_LENGTH));
+					out.writeLong(crawl.getFinishedAt());
+					out.writeInt(urls.size());
+					for (String url : urls) {
+						out.writeUTF(url);
+					}
+				}
+				out.writeBoolean(false);
+				out.writeInt(evicted.length);
+				for (long fingerprint : evicted) {
+					out.writeLong(fingerprint);
+				}
+				out.writeLong(crc.getValue());
+			}
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				channel.force(true);
+			}
+			Files.move(temporary, path(covered, SNAPSHOT_SUFFIX), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			for (Path file : files()) {
+				if (identifier(file) < covered) {
+					Files.deleteIfExists(file);
+				}
+			}
+			LOGGER.info("Took a snapshot of {} crawl(s) and {} eviction(s) in {}", crawls.size() - skipped, evicted.length, directory);
+		} catch (IOException ex) {
+			LOGGER.error("Could not take a snapshot of the write-ahead log in {}", directory, ex);
+		}
+	}
+
+	/**
+	 * Loads the latest complete snapshot and replays the segments after it.
+	 * @return the identifier of the segment to be written next.
+	 */
+	private int recover() throws IOException {
+		List<Path> files = files();
+		int from = 0;
+		int last = 0;
+		for (Path file : files) {
+			String name = file.getFileName().toString();
+			if (name.endsWith(TEMPORARY_SUFFIX)) {
+				Files.deleteIfExists(file);
+			} else if (name.endsWith(SNAPSHOT_SUFFIX) && identifier(file) > from && isComplete(file)) {
+				from = identifier(file);
+			}
+			last = Math.max(last, identifier(file));
+		}
+		long crawls = from > 0 ? load(path(from, SNAPSHOT_SUFFIX)) : 0;
+		long records = 0;
+		for (Path file : files) {
+			if (file.getFileName().toString().endsWith(SEGMENT_SUFFIX) && identifier(file) >= from) {
+				records += replay(file);
+			}
+		}
+		LOGGER.info("Opened the write-ahead log in {}: {} crawl(s) from snapshot {} and {} record(s) replayed", directory, crawls, from, records);
+		// Appending after the last record of a previous run could follow a record it did not finish
+		return last + 1;
+	}
+
+	/**
+	 * @return whether the snapshot was written to the end, its checksum matching.
+	 */
+	private static boolean isComplete(Path snapshot) {
+		CRC32 crc = new CRC32();
+		try (DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(snapshot)), crc))) {
+			if (in.readInt() != MAGIC) {
+				return false;
+			}
+			while (in.readBoolean()) {
+				in.readUTF();
+				in.readUTF();
+				readNullable(in);
+				in.readLong();
+				for (int i = in.readInt(); i > 0; i--) {
+					in.readUTF();
+				}
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				in.readLong();
+			}
+			long expected = crc.getValue();
+			return in.readLong() == expected;
+		} catch (IOException ex) {
+			LOGGER.warn("Ignoring the incomplete snapshot {}", snapshot);
+			return false;
+		}
+	}
+
+	/**
+	 * Loads a complete snapshot into the delegate.
+	 * @return the number of crawls loaded.
+	 */
+	private long load(Path snapshot) throws IOException {
+		long crawls = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+			in.readInt();
+			while (in.readBoolean()) {
+				String id = in.readUTF();
+				CrawlStatus status = CrawlStatus.valueOf(in.readUTF());
+				String message = readNullable(in);
+				long finishedAt = in.readLong();
+				List<String> urls = new ArrayList<>();
+				for (int i = in.readInt(); i > 0; i--) {
+					urls.add(in.readUTF());
+				}
+				CrawlTableResultSet crawl = delegate.restore(id, status, urls);
+				crawl.setMessage(message);
+				crawl.setFinishedAt(finishedAt);
+				crawls++;
+			}
+			for (int i = in.readInt(); i > 0; i--) {
+				delegate.restoreEvicted(in.readLong());
+			}
+		}
+		return crawls;
+	}
+
+	/**
+	 * Applies the records of a segment to the delegate, up to its first incomplete record.
+	 * @return the number of records applied.
+	 */
+	private long replay(Path file) throws IOException {
+		long records = 0;
+		try (DataInputStream log = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			byte[] record;
+			while ((record = FramedRecords.next(log, MAX_RECORD_SIZE, file)) != null) {
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+				byte type = in.readByte();
+				String id = in.readUTF();
+				// Every status set after a crawl was created is logged after it, so replaying its creation again is harmless
+				CrawlTableResultSet crawl = type == PERSIST ? null : find(id);
+				switch (type) {
+					case PERSIST:
+						String url = readNullable(in);
+						delegate.restore(id, CrawlStatus.ACTIVE, url == null ? List.of() : List.of(url));
+						break;
+					case URL:
+						if (crawl != null) {
+							crawl.addUrl(in.readUTF(), Integer.MAX_VALUE);
+						}
+						break;
+					case STATUS:
+						if (crawl != null) {
+							crawl.setStatus(in.readUTF());
+							crawl.setMessage(readNullable(in));
+							crawl.setFinishedAt(in.readLong());
+						}
+						break;
+					case EVICT:
+						if (crawl != null) {
+							delegate.evict(id);
+						} else {
+							// Evicted before the snapshot, or its records lost: fetching it must fail as expired still
+							delegate.restoreEvicted(UrlCanonicalizer.fingerprint(id));
+						}
+						break;
+					default:
+						LOGGER.warn("Ignoring an unknown record of the write-ahead log {}", file);
+				}
+				records++;
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * @return the crawl kept by the delegate, or null if it is not found or already evicted.
+	 */
+	private CrawlTableResultSet find(String id) {
+		try {
+			return delegate.get(id);
+		} catch (DataAccessObjectException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the segments and snapshots of the directory, ordered by identifier.
+	 */
+	private List<Path> files() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().matches(FILE_PREFIX + "\\d{8}\\..+"))
+				.sorted().collect(Collectors.toList());
+		}
+	}
+
+	private Path path(int identifier, String suffix) {
+		return directory.resolve(String.format("%s%08d%s", FILE_PREFIX, identifier, suffix));
+	}
+
+	private static int identifier(Path file) {
+		return Integer.parseInt(file.getFileName().toString().substring(FILE_PREFIX.length(), FILE_PREFIX.length() + 8));
+	}
+
+	private static void writeNullable(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	private static String readNullable(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+}
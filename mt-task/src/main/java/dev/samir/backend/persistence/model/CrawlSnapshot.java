@@ -0,0 +1,88 @@
+package dev.samir.backend.persistence.model;
+
+import java.util.List;
+import java.util.Map;
+
+import dev.samir.backend.client.HttpClientSettings;
+
+/**
+ * The state of a halted crawl, from which it is resumed: the URLs it did not fetch yet, the fingerprint of every URL
+ * it has seen and its counters.
+ * <p>
+ * The URLs in flight when the crawl was halted are part of the pending ones, their fetches being aborted. A snapshot is
+ * never modified once taken.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class CrawlSnapshot {
+
+	/**
+	 * The keyword searched by the crawl.
+	 */
+	private final String keyword;
+
+	/**
+	 * HTTP client settings of the crawl.
+	 */
+	private final HttpClientSettings httpSettings;
+
+	/**
+	 * URLs left to be fetched, in the order they were discovered.
+	 */
+	private final List<String> pending;
+
+	/**
+	 * Fingerprint of every URL the crawl has seen, pending ones included.
+	 */
+	private final long[] visited;
+
+	/**
+	 * Counters of the crawl by name, such as its executions or the time it ran.
+	 */
+	private final Map<String, Long> counters;
+
+	/**
+	 * Default constructor.
+	 * @param keyword {@link #keyword}
+	 * @param httpSettings {@link #httpSettings}
+	 * @param pending {@link #pending}
+	 * @param visited {@link #visited}
+	 * @param counters {@link #counters}
+	 */
+	public CrawlSnapshot(String keyword, HttpClientSettings httpSettings, List<String> pending, long[] visited, Map<String, Long> counters) {
+		this.keyword = keyword;
+		this.httpSettings = httpSettings;
+		this.pending = List.copyOf(pending);
+		this.visited = visited;
+		this.counters = Map.copyOf(counters);
+	}
+
+	public String getKeyword() {
+		return keyword;
+	}
+
+	public HttpClientSettings getHttpSettings() {
+		return httpSettings;
+	}
+
+	public List<String> getPending() {
+		return pending;
+	}
+
+	public long[] getVisited() {
+		return visited;
+	}
+
+	/**
+	 * @param name the counter name.
+	 * @return the counter value, zero when it was not recorded.
+	 */
+	public long getCounter(String name) {
+		return counters.getOrDefault(name, 0L);
+	}
+
+	public Map<String, Long> getCounters() {
+		return counters;
+	}
+
+}
@@ -1,7 +1,11 @@
 package dev.samir.backend.persistence.model;
 
-import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import dev.samir.backend.route.model.CrawlStatus;
 
@@ -21,28 +25,121 @@ public final class CrawlTableResultSet {
 	 * Crawl status. It may be one of the following:
 	 * <pre>
 	 * - ACTIVE while the crawl is running, 
+	 * - HALT while the crawl is paused, 
 	 * - DONE when the crawl is finished and
 	 * - FAILED when the crawl failed with an exception.
 	 * </pre>
 	 */
-	private String status = CrawlStatus.ACTIVE.name();
+	private final AtomicReference<CrawlStatus> status = new AtomicReference<>(CrawlStatus.ACTIVE);
 	
 	/**
-	 * Set of URLs the keyword was found.
+	 * Set of URLs the keyword was found. It is written by many crawl threads at the same time while it is read, and
+	 * is kept by a {@link dev.samir.backend.common.UrlDictionary} of its own, dropped with the crawl. Volatile,
+	 * since a data access object may replace it by {@link #setUrls(VersionedUrlSet)} once the crawl is published.
 	 */
-	private Set<String> urls = new HashSet<>(1);
+	private volatile VersionedUrlSet urls = new InternedUrlSet();
+	
+	/**
+	 * Number of URLs added through {@link #addUrl(String, int)}, reserved before the URL is added so the limit
+	 * is never exceeded.
+	 */
+	private final AtomicInteger urlsCount = new AtomicInteger();
 	
 	/**
 	 * Error or exception messages. 
 	 * Usually appears when the crawl has a {@link CrawlStatus#FAILED} status.
 	 */
-	private String message;
+	private volatile String message;
+	
+	/**
+	 * When the crawl was {@link CrawlStatus#DONE done} or {@link CrawlStatus#FAILED failed}, in milliseconds since the
+	 * epoch, zero while it is not finished.
+	 */
+	private volatile long finishedAt;
+	
+	/**
+	 * Where the crawl stopped, kept while it is {@link CrawlStatus#HALT halted} so it can be resumed.
+	 */
+	private volatile CrawlSnapshot snapshot;
+	
+	/**
+	 * Monitor the subscribers of the crawl wait on for new URLs or a new status, see
+	 * {@link #awaitChange(int, CrawlStatus, long)}.
+	 */
+	private final Object changes = new Object();
+	
+	/**
+	 * Number of subscribers waiting on {@link #changes}, so adding URLs takes no lock while nobody listens. Written
+	 * under the monitor.
+	 */
+	private volatile int waiting;
 	
 	/**
 	 */
 	public CrawlTableResultSet(String id, String url) {
 		this.id = id;
-		if (url != null) this.urls.add(url);
+		if (url != null && this.urls.add(url)) this.urlsCount.incrementAndGet();
+	}
+	
+	/**
+	 * Adds the URL unless the set already holds the limit of URLs, without locking.
+	 * @param url the URL the keyword was found.
+	 * @param limit maximum number of URLs of this crawl.
+	 * @return true if the URL was added, false if it was already there or the limit was reached.
+	 */
+	public boolean addUrl(String url, int limit) {
+		int count;
+		do {
+			count = urlsCount.get();
+			if (count >= limit) return false;
+		} while (!urlsCount.compareAndSet(count, count + 1));
+		if (urls.add(url)) {
+			changed();
+			return true;
+		}
+		urlsCount.decrementAndGet();
+		return false;
+	}
+	
+	/**
+	 * Waits until URLs are added past the ones already read, or the status moves from the one already read, at most
+	 * for the timeout. Every subscriber of the crawl waits on the same monitor and reads the new URLs from the URL set
+	 * itself, so adding a URL wakes them all at once rather than calling each of them.
+	 * @param size number of URLs already read.
+	 * @param seen status already read.
+	 * @param timeoutMillis how long to wait at most.
+	 * @return true if the crawl changed, false if the timeout elapsed first.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	public boolean awaitChange(int size, CrawlStatus seen, long timeoutMillis) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		synchronized (changes) {
+			// Counted before the crawl is checked, so a change made meanwhile sees the subscriber and wakes it
+			waiting++;
+			try {
+				while (urls.size() <= size && status.get() == seen) {
+					long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+					if (remaining <= 0) return false;
+					changes.wait(remaining);
+				}
+				return true;
+			} finally {
+				waiting--;
+			}
+		}
+	}
+	
+	/**
+	 * Moves the status only if it still is the expected one.
+	 * @param expected the status the crawl should be in.
+	 * @param next the new status.
+	 * @return true if the status was changed.
+	 */
+	public boolean compareAndSetStatus(CrawlStatus expected, CrawlStatus next) {
+		if (!status.compareAndSet(expected, next)) return false;
+		finished(next);
+		changed();
+		return true;
 	}
 	
 	public String getId() {
@@ -54,19 +151,51 @@ public final class CrawlTableResultSet {
 	}
 	
 	public String getStatus() {
-		return status;
+		return status.get().name();
 	}
 
 	public void setStatus(String status) {
-		this.status = status;
+		CrawlStatus next = CrawlStatus.valueOf(status.toUpperCase(Locale.ROOT));
+		this.status.set(next);
+		finished(next);
+		changed();
+	}
+	
+	public long getFinishedAt() {
+		return finishedAt;
+	}
+
+	/**
+	 * Puts back when the crawl finished, such as after a restart, rather than when its status was restored.
+	 * @param finishedAt in milliseconds, or zero if the crawl did not finish.
+	 */
+	public void setFinishedAt(long finishedAt) {
+		this.finishedAt = finishedAt;
 	}
 
 	public Set<String> getUrls() {
 		return urls;
 	}
+	
+	/**
+	 * @return the URLs added so far, which crawl threads adding more never change, taken without copying them.
+	 * @see VersionedUrlSet#snapshot()
+	 */
+	public Set<String> snapshotUrls() {
+		return urls.snapshot();
+	}
+
+	/**
+	 * @return a page of the URLs, in the order they were found.
+	 * @see VersionedUrlSet#range(int, int)
+	 */
+	public List<String> rangeUrls(int from, int limit) {
+		return urls.range(from, limit);
+	}
 
-	public void setUrls(Set<String> urls) {
+	public void setUrls(VersionedUrlSet urls) {
 		this.urls = urls;
+		this.urlsCount.set(urls.size());
 	}
 	
 	public String getMessage() {
@@ -77,4 +206,30 @@ public final class CrawlTableResultSet {
 		this.message = message;
 	}
 	
+	public CrawlSnapshot getSnapshot() {
+		return snapshot;
+	}
+	
+	public void setSnapshot(CrawlSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+	
+	/**
+	 * Records when the crawl finished, the first time it moves to a final status.
+	 */
+	private void finished(CrawlStatus next) {
+		if ((next == CrawlStatus.DONE || next == CrawlStatus.FAILED) && finishedAt == 0) finishedAt = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Wakes the waiting subscribers, if any.
+	 */
+	private void changed() {
+		if (waiting > 0) {
+			synchronized (changes) {
+				changes.notifyAll();
+			}
+		}
+	}
+	
 }
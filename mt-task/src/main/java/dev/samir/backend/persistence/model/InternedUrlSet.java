@@ -0,0 +1,112 @@
+package dev.samir.backend.persistence.model;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import dev.samir.backend.common.UrlDictionary;
+
+/**
+ * Set of URLs kept by a {@link UrlDictionary} of its own, rather than as strings. It is safe for concurrent use.
+ * <p>
+ * The dictionary identifies the URLs in the order they were added, so it is the set itself: adding a URL interns it,
+ * and the URLs are the identifiers below the size of the dictionary. A {@link #snapshot()} is that size, later URLs
+ * being interned past it. Each URL takes its front-coded bytes and the dozen bytes the dictionary indexes it with, and
+ * snapshots decode each URL as it is reached.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class InternedUrlSet extends AbstractSet<String> implements VersionedUrlSet {
+
+	/**
+	 * Interns the URLs of the set, and nothing else.
+	 */
+	private final UrlDictionary dictionary = new UrlDictionary();
+
+	@Override
+	public boolean add(String url) {
+		return dictionary.add(url);
+	}
+
+	@Override
+	public boolean contains(Object url) {
+		return url instanceof String && dictionary.find((String) url) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return dictionary.size();
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return snapshot().iterator();
+	}
+
+	@Override
+	public Set<String> snapshot() {
+		return new Snapshot(dictionary, dictionary.size());
+	}
+
+	@Override
+	public List<String> range(int from, int limit) {
+		int to = (int) Math.min(dictionary.size(), (long) from + limit);
+		List<String> urls = new ArrayList<>(Math.max(0, to - from));
+		for (int id = from; id < to; id++) {
+			urls.add(dictionary.url(id));
+		}
+		return urls;
+	}
+
+	/**
+	 * The URLs interned when the snapshot was taken, the dictionary only interning later ones past them.
+	 */
+	private static final class Snapshot extends AbstractSet<String> {
+
+		private final UrlDictionary dictionary;
+		private final int length;
+
+		private Snapshot(UrlDictionary dictionary, int length) {
+			this.dictionary = dictionary;
+			this.length = length;
+		}
+
+		@Override
+		public int size() {
+			return length;
+		}
+
+		@Override
+		public boolean contains(Object url) {
+			int id = url instanceof String ? dictionary.find((String) url) : -1;
+			return id >= 0 && id < length;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+
+				private int id;
+
+				@Override
+				public boolean hasNext() {
+					return id < length;
+				}
+
+				@Override
+				public String next() {
+					if (id == length) {
+						throw new NoSuchElementException();
+					}
+					return dictionary.url(id++);
+				}
+
+			};
+		}
+
+	}
+
+}
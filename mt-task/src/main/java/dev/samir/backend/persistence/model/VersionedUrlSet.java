@@ -0,0 +1,30 @@
+package dev.samir.backend.persistence.model;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only set of the URLs of a crawl, written by many crawl threads while it is read.
+ * <p>
+ * Every URL added publishes a new version of the set. A {@link #snapshot()} is the version published when it was
+ * taken: it never changes afterwards, and is taken without copying the URLs nor locking the writers. URLs cannot be
+ * removed.
+ * </p>
+ * @author Scheide, Samir
+ */
+public interface VersionedUrlSet extends Set<String> {
+
+	/**
+	 * @return an immutable view of the URLs added so far, its size matching what it iterates.
+	 */
+	Set<String> snapshot();
+
+	/**
+	 * @param from number of URLs to skip, counted in the order they were added.
+	 * @param limit maximum number of URLs returned.
+	 * @return the URLs added after the first <code>from</code> ones, in the order they were added, read from a single
+	 * version of the set.
+	 */
+	List<String> range(int from, int limit);
+
+}
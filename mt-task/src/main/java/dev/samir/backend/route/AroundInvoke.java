@@ -23,7 +23,7 @@ public abstract class AroundInvoke<T> implements Route {
 	
 	/**
 	 * {@inheritDoc} <br>
-	 * Calls for the {@link #handle(Request)} method and handles the exception
+	 * Calls for the {@link #respond(Request, Response)} method, {@link #handle(Request)} unless overridden, and handles the exception
 	 * throws using {@link #exceptionHandling(Response, ErrorResponse, Throwable)} method.
 	 */
 	@Override
@@ -36,7 +36,7 @@ public abstract class AroundInvoke<T> implements Route {
 	    	response.type("application/json");
     	
     		LOGGER.debug("Before request handling.");
-    		return handle(request);
+    		return respond(request, response);
     		
     	} catch (Exception exception) {
     		exceptionHandling(response, errorResponse, exception);
@@ -53,12 +53,23 @@ public abstract class AroundInvoke<T> implements Route {
 	 */
 	protected abstract T handle(Request request) throws Exception;
 	
+	/**
+	 * Same as {@link #handle(Request)}, overridden by the routes writing the response themselves.
+	 * @param request the request object that contains the request data
+	 * @param response the response object, already typed as JSON
+	 * @return the object that is returned by the method
+	 * @throws Exception if an error occurs while handling the request
+	 */
+	protected Object respond(Request request, Response response) throws Exception {
+		return handle(request);
+	}
+	
 	/**
 	 * This method is called when an exception is thrown in the {@link #handle(Request)} method. 
 	 * Basically any exception handled by the method creates a error response object and sets 
 	 * the status from errorReponse param and the message from throwable param. But, when the 
-	 * exception is a {@link DataAccessObjectException} it sets the status code to NOT_FOUND or BAD_REQUEST based on the
-	 * error code of the exception. The statis code will reflect the client response status code.
+	 * exception is a {@link DataAccessObjectException} it sets the status code to NOT_FOUND, GONE or BAD_REQUEST based on
+	 * the error code of the exception. The statis code will reflect the client response status code.
 	 * @param response the response object that contains the response data
 	 * @param errorResponse the error response object that contains the error data
 	 * @param throwable the exception that was thrown
@@ -70,7 +81,7 @@ public abstract class AroundInvoke<T> implements Route {
 			DataAccessObjectException daoe = ((DataAccessObjectException) throwable);
 			// TODO: create a proper error x status translation
 			StatusCode statusCode = daoe.getErrorCode() == 1001 
-					? StatusCode.NOT_FOUND : StatusCode.BAD_REQUEST;
+					? StatusCode.NOT_FOUND : daoe.getErrorCode() == 1004 ? StatusCode.GONE : StatusCode.BAD_REQUEST;
 			response.status(statusCode.getCode());
 			errorResponse.setStatus(statusCode);
 			errorResponse.setMessage(daoe.getMessage());
@@ -0,0 +1,56 @@
+package dev.samir.backend.route;
+
+import java.util.List;
+
+import dev.samir.backend.common.GsonTransformer;
+import dev.samir.backend.common.validation.Validation;
+import dev.samir.backend.route.model.CrawlRequest;
+import dev.samir.backend.route.model.CrawlResponse;
+import dev.samir.backend.service.CrawlService;
+import spark.Request;
+
+/**
+ * Facade for the crawl service, starting a batch of crawls which share a single traversal.
+ * 
+ * @author Scheide, Samir
+ */
+public final class CrawlBatchRoute extends AroundInvoke<List<CrawlResponse>> {
+	
+	/**
+	 * Crawl service instance.
+	 */
+	private CrawlService service;
+	
+	/**
+	 * 
+	 */
+	private Validation validation;
+	
+	/**
+	 * Default constructor.
+	 * @param service #service
+	 */
+	public CrawlBatchRoute(CrawlService service, Validation validation) {
+		this.service = service;
+		this.validation = validation;
+	}
+	
+	/**
+	 * {@inheritDoc} <br>
+	 * It will parse the request body into a {@link CrawlRequest} object, validate its keywords, and then call the
+	 * {@link CrawlService#crawlBatch(List, java.util.function.UnaryOperator)} method, overriding the HTTP client
+	 * settings given in the request for every crawl of the batch.
+	 * @return a {@link CrawlResponse} object for each keyword, in the same order.
+	 * @throws Exception if the request body cannot be parsed or if any keyword is invalid.
+	 */
+	@Override
+	public List<CrawlResponse> handle(Request request) throws Exception {
+		CrawlRequest crawl = new GsonTransformer().fromJson(request.body(), CrawlRequest.class);
+		if (crawl == null) {
+			throw new IllegalArgumentException("The request body must hold the keywords.");
+		}
+		return service.crawlBatch(validation.applyKeywordsValidation(crawl.getKeywords()), settings -> settings
+				.override(crawl.getConnectTimeout(), crawl.getRequestTimeout(), crawl.getHttpVersion(), crawl.getRedirects()));
+	}
+
+}
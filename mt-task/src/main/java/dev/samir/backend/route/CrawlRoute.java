@@ -36,14 +36,16 @@ public final class CrawlRoute extends AroundInvoke<CrawlResponse> {
 	/**
 	 * {@inheritDoc} <br>
 	 * It will parse the request body into a {@link CrawlRequest} object, 
-	 * validate the keyword, and then call the {@link CrawlService#crawl(String)} method.
+	 * validate the keyword, and then call the {@link CrawlService#crawl(String, java.util.function.UnaryOperator)} method,
+	 * overriding the HTTP client settings given in the request.
 	 * @return a {@link CrawlResponse} object containing the crawl results.
 	 * @throws Exception if the request body cannot be parsed or if the keyword is invalid.
 	 */
 	@Override
 	public CrawlResponse handle(Request request) throws Exception {
 		CrawlRequest crawl = new GsonTransformer().fromJson(request.body(), CrawlRequest.class);
-		return service.crawl(validation.applyKeywordValidation(crawl.getKeyword()));
+		return service.crawl(validation.applyKeywordValidation(crawl.getKeyword()), settings -> settings
+				.override(crawl.getConnectTimeout(), crawl.getRequestTimeout(), crawl.getHttpVersion(), crawl.getRedirects()));
 	}
 
 }
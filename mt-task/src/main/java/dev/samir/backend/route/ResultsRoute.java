@@ -33,12 +33,20 @@ public final class ResultsRoute extends AroundInvoke<ResultsResponse> {
 	
 	/**
 	 * Receive the request, extracts anbd validate the given ID and return all crawl results - parcials too - for it.
+	 * When <code>since</code> or <code>limit</code> is given, only a page of the results found after that cursor is
+	 * returned, along with the cursor of the next page.
 	 * @param request {@link Request} containing the id of the crawl results to be retrieved.
 	 * @return {@link ResultsResponse} containing the crawl results for the given id.
 	 */
 	@Override
 	protected ResultsResponse handle(Request request) {
-		return service.list(validation.applyIdValidation(request.params("id")));
+		String id = validation.applyIdValidation(request.params("id"));
+		String since = request.queryParams("since");
+		String limit = request.queryParams("limit");
+		if (since == null && limit == null) {
+			return service.list(id);
+		}
+		return service.list(id, validation.applyCursorValidation(since), validation.applyLimitValidation(limit));
 	}
 
 }
@@ -0,0 +1,170 @@
+package dev.samir.backend.route;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.client.StatusCode;
+import dev.samir.backend.common.GsonTransformer;
+import dev.samir.backend.common.TransformToJson;
+import dev.samir.backend.common.configuration.Environment;
+import dev.samir.backend.common.validation.Validation;
+import dev.samir.backend.route.model.CrawlStatus;
+import dev.samir.backend.route.model.ErrorResponse;
+import dev.samir.backend.route.model.ResultsResponse;
+import dev.samir.backend.service.ResultsService;
+import dev.samir.backend.service.ResultsSubscription;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Facade streaming the results of a crawl as Server-Sent Events, instead of having the client poll them.
+ * <p>
+ * Each URL found is sent as an <code>url</code> event, whose id is the cursor after it, so a client reconnecting with
+ * the <code>Last-Event-ID</code> header, or the <code>since</code> query parameter, goes on where it stopped. Each
+ * status change is sent as a <code>status</code> event, the first one being the status when the stream opens. The
+ * stream ends once the crawl is {@link CrawlStatus#DONE done} or {@link CrawlStatus#FAILED failed} and its last URLs
+ * were sent, and a comment is sent while nothing happens so closed connections are noticed.
+ * </p>
+ * Errors found before the stream opens, like an unknown crawl, are answered as JSON like every other route.
+ * <p>
+ * A stream holds a server thread while it waits for the crawl, so at most {@link Environment#getStreamMax()} streams
+ * are open at once, the next ones being answered as unavailable for the client to retry later, leaving the other
+ * threads to the rest of the routes.
+ * </p>
+ * @author Scheide, Samir
+ */
+public final class StreamRoute extends AroundInvoke<ResultsSubscription> {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(StreamRoute.class);
+
+	/**
+	 * How long the stream stays silent before a keep-alive comment is sent.
+	 */
+	private static final Duration HEARTBEAT = Duration.ofSeconds(15);
+
+	/**
+	 * Writes the status events.
+	 */
+	private static final TransformToJson TRANSFORMER = new GsonTransformer();
+
+	/**
+	 * Number of streams open.
+	 */
+	private final AtomicInteger streams = new AtomicInteger();
+
+	/**
+	 * The results service.
+	 */
+	private ResultsService service;
+
+	/**
+	 *
+	 */
+	private Validation validation;
+
+	/**
+	 * Default constructor.
+	 * @param service #service
+	 */
+	public StreamRoute(ResultsService service, Validation validation) {
+		this.service = service;
+		this.validation = validation;
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * Validates the given ID and cursor, and subscribes to the crawl results.
+	 * @return the {@link ResultsSubscription} streamed.
+	 */
+	@Override
+	protected ResultsSubscription handle(Request request) {
+		String id = validation.applyIdValidation(request.params("id"));
+		String since = Optional.ofNullable(request.headers("Last-Event-ID")).orElse(request.queryParams("since"));
+		return service.subscribe(id, validation.applyCursorValidation(since));
+	}
+
+	/**
+	 * {@inheritDoc} <br>
+	 * Writes the events of the subscription until the crawl finishes or the client goes away, unless too many streams
+	 * are open already.
+	 * @return an empty body, the events being written already, or the error when too many streams are open.
+	 */
+	@Override
+	protected Object respond(Request request, Response response) throws Exception {
+		int max = validation.getEnvironment().getStreamMax();
+		if (streams.incrementAndGet() > max) {
+			streams.decrementAndGet();
+			LOGGER.warn("Refusing the stream of crawl {}: {} stream(s) open already", request.params("id"), max);
+			response.status(StatusCode.SERVICE_UNAVAILABLE.getCode());
+			response.header("Retry-After", String.valueOf(HEARTBEAT.toSeconds()));
+			return new ErrorResponse(StatusCode.SERVICE_UNAVAILABLE, "Too many result streams are open, try again later.");
+		}
+		try {
+			return stream(request, response);
+		} finally {
+			streams.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Writes the events of the subscription until the crawl finishes or the client goes away.
+	 */
+	private Object stream(Request request, Response response) throws Exception {
+		ResultsSubscription subscription = handle(request);
+		int pageSize = validation.getEnvironment().getResultsPageSize();
+		response.status(StatusCode.OK.getCode());
+		response.type("text/event-stream");
+		response.header("Cache-Control", "no-cache");
+		response.header("X-Accel-Buffering", "no");
+		Writer writer = new OutputStreamWriter(response.raw().getOutputStream(), StandardCharsets.UTF_8);
+		CrawlStatus status = null;
+		try {
+			while (!subscription.isClosed()) {
+				int cursor = subscription.getCursor();
+				ResultsResponse page = subscription.next(pageSize, HEARTBEAT.toMillis());
+				if (page == null) {
+					writer.write(": keep-alive\n\n");
+				} else {
+					for (String url : page.getUrls()) {
+						event(writer, "url", String.valueOf(++cursor), url);
+					}
+					// URLs go first, so the final status is the last event
+					if (page.getStatus() != status) {
+						status = page.getStatus();
+						page.setUrls(null);
+						event(writer, "status", String.valueOf(cursor), TRANSFORMER.toJson(page));
+					}
+				}
+				writer.flush();
+			}
+		} catch (IOException ex) {
+			LOGGER.debug("Stream of crawl {} closed by the client: {}", request.params("id"), ex.getMessage());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		return "";
+	}
+
+	/**
+	 * Writes an event, each line of the data as a data field.
+	 */
+	private static void event(Writer writer, String name, String id, String data) throws IOException {
+		writer.write("event: " + name + "\nid: " + id + "\n");
+		for (String line : data.split("\n")) {
+			writer.write("data: " + line + "\n");
+		}
+		writer.write("\n");
+	}
+
+}
@@ -1,5 +1,7 @@
 package dev.samir.backend.route.model;
 
+import java.util.List;
+
 /**
  * Crawl request model.
  * 
@@ -12,6 +14,31 @@ public final class CrawlRequest {
 	 */
 	private String keyword;
 	
+	/**
+	 * The keywords of a batch of crawls, each one being a crawl of its own sharing a single traversal.
+	 */
+	private List<String> keywords;
+	
+	/**
+	 * Overrides the connect timeout of the HTTP client for this crawl, in seconds.
+	 */
+	private Integer connectTimeout;
+	
+	/**
+	 * Overrides the request timeout of the HTTP client for this crawl, in seconds.
+	 */
+	private Integer requestTimeout;
+	
+	/**
+	 * Overrides the preferred HTTP version for this crawl, <b>HTTP_2</b> or <b>HTTP_1_1</b>.
+	 */
+	private String httpVersion;
+	
+	/**
+	 * Overrides the redirect policy for this crawl, <b>NEVER</b>, <b>NORMAL</b> or <b>ALWAYS</b>.
+	 */
+	private String redirects;
+	
 	public String getKeyword() {
 		return keyword;
 	}
@@ -20,4 +47,44 @@ public final class CrawlRequest {
 		this.keyword = keyword;
 	}
 	
+	public List<String> getKeywords() {
+		return keywords;
+	}
+	
+	public void setKeywords(List<String> keywords) {
+		this.keywords = keywords;
+	}
+	
+	public Integer getConnectTimeout() {
+		return connectTimeout;
+	}
+	
+	public void setConnectTimeout(Integer connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+	
+	public Integer getRequestTimeout() {
+		return requestTimeout;
+	}
+	
+	public void setRequestTimeout(Integer requestTimeout) {
+		this.requestTimeout = requestTimeout;
+	}
+	
+	public String getHttpVersion() {
+		return httpVersion;
+	}
+	
+	public void setHttpVersion(String httpVersion) {
+		this.httpVersion = httpVersion;
+	}
+	
+	public String getRedirects() {
+		return redirects;
+	}
+	
+	public void setRedirects(String redirects) {
+		this.redirects = redirects;
+	}
+	
 }
@@ -12,10 +12,25 @@ public final class CrawlResponse {
 	 */
 	private String id;
 	
+	/**
+	 * The keyword of the crawl, only set for the crawls of a batch.
+	 */
+	private String keyword;
+	
 	public CrawlResponse(String id) {
 		this.id = id;
 	}
 	
+	/**
+	 * Batch crawl constructor.
+	 * @param id {@link #id}
+	 * @param keyword {@link #keyword}
+	 */
+	public CrawlResponse(String id, String keyword) {
+		this.id = id;
+		this.keyword = keyword;
+	}
+	
 	public String getId() {
 		return id;
 	}
@@ -24,4 +39,12 @@ public final class CrawlResponse {
 		this.id = id;
 	}
 	
+	public String getKeyword() {
+		return keyword;
+	}
+	
+	public void setKeyword(String keyword) {
+		this.keyword = keyword;
+	}
+	
 }
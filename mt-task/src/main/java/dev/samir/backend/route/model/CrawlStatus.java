@@ -16,7 +16,7 @@ public enum CrawlStatus {
 	DONE,
 	
 	/**
-	 * The crawl has marked to stop. 
+	 * The crawl has marked to stop. Its frontier is kept, so it may be resumed by moving it back to {@link #ACTIVE}.
 	 */
 	HALT,
 	
@@ -25,4 +25,21 @@ public enum CrawlStatus {
 	 */
 	FAILED;
 	
+	/**
+	 * The crawl state machine: an active crawl may be halted, finished or failed, a halted crawl may be resumed, finished
+	 * or failed, while finished and failed crawls never change again.
+	 * @param next the status to move to.
+	 * @return true if a crawl in this status may move to the next one.
+	 */
+	public boolean canTransitionTo(CrawlStatus next) {
+		switch (this) {
+			case ACTIVE:
+				return next == HALT || next == DONE || next == FAILED;
+			case HALT:
+				return next == ACTIVE || next == DONE || next == FAILED;
+			default:
+				return false;
+		}
+	}
+	
 }
@@ -1,6 +1,6 @@
 package dev.samir.backend.route.model;
 
-import java.util.Set;
+import java.util.Collection;
 
 /**
  * Results response model.
@@ -18,6 +18,7 @@ public final class ResultsResponse {
 	 * Crawl status. It may be one of the following:
 	 * <pre>
 	 * - ACTIVE while the crawl is running, 
+	 * - HALT while the crawl is halted, 
 	 * - DONE when the crawl is finished and
 	 * - FAILED when the crawl failed with an exception.
 	 * </pre>
@@ -27,7 +28,12 @@ public final class ResultsResponse {
 	/**
 	 * URLs that was found the keyword
 	 */
-	private Set<String> urls;
+	private Collection<String> urls;
+	
+	/**
+	 * Number of URLs read so far, to be sent as <code>since</code> for the next page. Only set for paged results.
+	 */
+	private Integer cursor;
 	
 	/**
 	 * Error or exception messages. 
@@ -41,11 +47,23 @@ public final class ResultsResponse {
 	 * @param status {@link #status}
 	 * @param urls {@link #urls}
 	 */
-	public ResultsResponse(String id, CrawlStatus status, Set<String> urls) {
+	public ResultsResponse(String id, CrawlStatus status, Collection<String> urls) {
 		this.id = id;
 		this.status = status;
 		this.urls = urls;
 	}
+	
+	/**
+	 * Paged results constructor.
+	 * @param id {@link #id}
+	 * @param status {@link #status}
+	 * @param urls {@link #urls}
+	 * @param cursor {@link #cursor}
+	 */
+	public ResultsResponse(String id, CrawlStatus status, Collection<String> urls, Integer cursor) {
+		this(id, status, urls);
+		this.cursor = cursor;
+	}
 
 	public String getId() {
 		return id;
@@ -63,14 +81,22 @@ public final class ResultsResponse {
 		this.status = status;
 	}
 
-	public Set<String> getUrls() {
+	public Collection<String> getUrls() {
 		return urls;
 	}
 
-	public void setUrls(Set<String> urls) {
+	public void setUrls(Collection<String> urls) {
 		this.urls = urls;
 	}
 	
+	public Integer getCursor() {
+		return cursor;
+	}
+	
+	public void setCursor(Integer cursor) {
+		this.cursor = cursor;
+	}
+	
 	public String getMessage() {
 		return message;
 	}
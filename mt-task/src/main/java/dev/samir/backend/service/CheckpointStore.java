@@ -0,0 +1,336 @@
+package dev.samir.backend.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.client.HttpClientSettings;
+import dev.samir.backend.common.FramedRecords;
+import dev.samir.backend.common.LongHashSet;
+import dev.samir.backend.common.UrlCanonicalizer;
+import dev.samir.backend.persistence.model.CrawlSnapshot;
+import dev.samir.backend.route.model.CrawlStatus;
+
+/**
+ * Directory of the {@link CrawlCheckpoint checkpoint logs} of the crawls which are running or halted, one file per
+ * crawl, written at regular intervals by a single background thread.
+ * <p>
+ * When the service starts, every log is replayed: the URLs enqueued and not fetched become the pending URLs of the
+ * crawl, every URL enqueued or seen its visited set, along with its results, its last counters and its status. Each log
+ * is then compacted, rewritten with only what the replay kept, so a long crawl resumed many times does not replay its
+ * whole history again. The logs of crawls which are done or failed are deleted.
+ * </p>
+ * @author Scheide, Samir
+ */
+final class CheckpointStore {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(CheckpointStore.class);
+
+	private static final String LOG_PREFIX = "crawl-";
+	private static final String LOG_SUFFIX = ".log";
+	private static final String TEMPORARY_SUFFIX = ".tmp";
+
+	/**
+	 * Largest record accepted when replaying, anything larger being the garbage of an incomplete write.
+	 */
+	private static final int MAX_RECORD_SIZE = 1 << 24;
+
+	/**
+	 * Number of fingerprints of each visited record written by a compaction.
+	 */
+	private static final int VISITED_CHUNK = 4096;
+
+	/**
+	 * Directory of the logs.
+	 */
+	private final Path directory;
+
+	/**
+	 * Checkpoints of the crawls running or halted, by crawl ID.
+	 */
+	private final Map<String, CrawlCheckpoint> checkpoints = new ConcurrentHashMap<>();
+
+	/**
+	 * Writes the checkpoints at regular intervals.
+	 */
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "crawl-checkpoints");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Opens the store, creating its directory if needed.
+	 * @param directory {@link #directory}
+	 * @param interval how often the checkpoints are written.
+	 * @throws UncheckedIOException if the directory cannot be created.
+	 */
+	CheckpointStore(Path directory, Duration interval) {
+		this.directory = directory;
+		try {
+			Files.createDirectories(directory);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not open the checkpoints in " + directory, ex);
+		}
+		long millis = Math.max(1, interval.toMillis());
+		scheduler.scheduleWithFixedDelay(this::flush, millis, millis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Starts the log of a new crawl, written at once so the crawl is known even if the service stops right away.
+	 * @param id crawl ID
+	 * @param keyword the keyword searched by the crawl.
+	 * @param httpSettings HTTP client settings of the crawl.
+	 * @return the checkpoint of the crawl, or {@link CrawlCheckpoint#NONE} if its log could not be created.
+	 */
+	CrawlCheckpoint create(String id, String keyword, HttpClientSettings httpSettings) {
+		try {
+			CrawlCheckpoint checkpoint = open(id, StandardOpenOption.TRUNCATE_EXISTING);
+			checkpoint.start(keyword, httpSettings);
+			checkpoint.flush();
+			return checkpoint;
+		} catch (IOException ex) {
+			LOGGER.warn("Could not create the checkpoint of crawl {} in {}, it will not survive a restart", id, directory, ex);
+			return CrawlCheckpoint.NONE;
+		}
+	}
+
+	/**
+	 * @param id crawl ID
+	 * @return the checkpoint of the crawl, or {@link CrawlCheckpoint#NONE} if it has none.
+	 */
+	CrawlCheckpoint get(String id) {
+		return checkpoints.getOrDefault(id, CrawlCheckpoint.NONE);
+	}
+
+	/**
+	 * Deletes the log of a crawl which is done or failed.
+	 * @param id crawl ID
+	 */
+	void delete(String id) {
+		CrawlCheckpoint checkpoint = checkpoints.remove(id);
+		if (checkpoint != null) {
+			checkpoint.delete();
+		}
+	}
+
+	/**
+	 * Writes every checkpoint.
+	 */
+	void flush() {
+		for (CrawlCheckpoint checkpoint : checkpoints.values()) {
+			try {
+				checkpoint.flush();
+			} catch (RuntimeException ex) {
+				LOGGER.warn("Could not write the checkpoint of crawl {}", checkpoint.getId(), ex);
+			}
+		}
+	}
+
+	/**
+	 * Replays and compacts the logs left by a previous run. Logs which cannot be read are skipped and left as they are.
+	 * @return the crawls which were running or halted.
+	 */
+	List<Recovered> recover() {
+		List<Path> logs;
+		try (Stream<Path> files = Files.list(directory)) {
+			logs = files.filter(path -> path.getFileName().toString().startsWith(LOG_PREFIX)).sorted().collect(Collectors.toList());
+		} catch (IOException ex) {
+			LOGGER.warn("Could not list the checkpoints in {}", directory, ex);
+			return List.of();
+		}
+		List<Recovered> recovered = new ArrayList<>();
+		for (Path path : logs) {
+			String name = path.getFileName().toString();
+			try {
+				if (name.endsWith(TEMPORARY_SUFFIX)) {
+					// A compaction which did not complete, the log it was replacing is still there
+					Files.deleteIfExists(path);
+				} else if (name.endsWith(LOG_SUFFIX)) {
+					Recovered crawl = replay(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()), path);
+					if (crawl != null) {
+						recovered.add(crawl);
+					}
+				}
+			} catch (IOException | RuntimeException ex) {
+				LOGGER.warn("Could not recover the checkpoint {}", path, ex);
+			}
+		}
+		LOGGER.info("Recovered {} crawl(s) from the checkpoints in {}", recovered.size(), directory);
+		return recovered;
+	}
+
+	/**
+	 * Replays a log up to its first incomplete record, then compacts it.
+	 * @return the recovered crawl, or null when there is nothing to resume.
+	 */
+	private Recovered replay(String id, Path path) throws IOException {
+		String keyword = null;
+		HttpClientSettings httpSettings = null;
+		CrawlStatus status = CrawlStatus.ACTIVE;
+		Set<String> pending = new LinkedHashSet<>();
+		LongHashSet visited = new LongHashSet(1024);
+		Set<String> results = new LinkedHashSet<>();
+		Map<String, Long> counters = new LinkedHashMap<>();
+		long records = 0;
+		try (DataInputStream log = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			byte[] record;
+			while ((record = FramedRecords.next(log, MAX_RECORD_SIZE, path)) != null) {
+				records++;
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+				switch (in.readByte()) {
+					case CrawlCheckpoint.START:
+						keyword = in.readUTF();
+						httpSettings = new HttpClientSettings(HttpClient.Version.valueOf(in.readUTF()), Duration.ofMillis(in.readLong()),
+								Duration.ofMillis(in.readLong()), HttpClient.Redirect.valueOf(in.readUTF()));
+						break;
+					case CrawlCheckpoint.ENQUEUED:
+						String url = in.readUTF();
+						visited.add(UrlCanonicalizer.fingerprint(url));
+						pending.add(url);
+						break;
+					case CrawlCheckpoint.VISITED:
+						for (int i = in.readInt(); i > 0; i--) {
+							visited.add(in.readLong());
+						}
+						break;
+					case CrawlCheckpoint.FETCHED:
+						pending.remove(in.readUTF());
+						break;
+					case CrawlCheckpoint.RESULT:
+						results.add(in.readUTF());
+						break;
+					case CrawlCheckpoint.COUNTERS:
+						counters.clear();
+						for (int i = in.readInt(); i > 0; i--) {
+							counters.put(in.readUTF(), in.readLong());
+						}
+						break;
+					case CrawlCheckpoint.STATUS:
+						status = CrawlStatus.valueOf(in.readUTF());
+						break;
+					default:
+						LOGGER.warn("Ignoring an unknown record of the checkpoint {}", path);
+				}
+			}
+		}
+		if (keyword == null || status == CrawlStatus.DONE || status == CrawlStatus.FAILED) {
+			LOGGER.info("Deleting the checkpoint {}, the crawl is {}", path, keyword == null ? "unknown" : status);
+			Files.deleteIfExists(path);
+			return null;
+		}
+		CrawlCheckpoint checkpoint = compact(id, path, keyword, httpSettings, status, pending, visited, results, counters);
+		LOGGER.info("Replayed {} record(s) of crawl {}: {} with {} pending URL(s), {} visited and {} result(s)",
+				records, id, status, pending.size(), visited.size(), results.size());
+		return new Recovered(id, status, new CrawlSnapshot(keyword, httpSettings, new ArrayList<>(pending), visited.toArray(), counters),
+				results, checkpoint);
+	}
+
+	/**
+	 * Rewrites the log with the replayed state alone, replacing it atomically, and reopens it.
+	 */
+	private CrawlCheckpoint compact(String id, Path path, String keyword, HttpClientSettings httpSettings, CrawlStatus status,
+			Set<String> pending, LongHashSet visited, Set<String> results, Map<String, Long> counters) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + TEMPORARY_SUFFIX);
+		CrawlCheckpoint compacted = new CrawlCheckpoint(id, temporary, FileChannel.open(temporary,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+		try {
+			compacted.start(keyword, httpSettings);
+			if (status != CrawlStatus.ACTIVE) {
+				compacted.status(status);
+			}
+			long[] fingerprints = visited.toArray();
+			for (int from = 0; from < fingerprints.length; from += VISITED_CHUNK) {
+				compacted.visited(Arrays.copyOfRange(fingerprints, from, Math.min(fingerprints.length, from + VISITED_CHUNK)));
+			}
+			pending.forEach(compacted::enqueued);
+			results.forEach(compacted::result);
+			compacted.track(() -> counters);
+			compacted.flush();
+		} finally {
+			compacted.close();
+		}
+		Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		return open(id, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Opens the log of a crawl for writing and registers its checkpoint.
+	 */
+	private CrawlCheckpoint open(String id, StandardOpenOption option) throws IOException {
+		Path path = directory.resolve(LOG_PREFIX + id + LOG_SUFFIX);
+		CrawlCheckpoint checkpoint = new CrawlCheckpoint(id, path, FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, option));
+		checkpoints.put(id, checkpoint);
+		return checkpoint;
+	}
+
+	/**
+	 * A crawl rebuilt from its log: its status, its state to resume from, its results and its reopened checkpoint.
+	 */
+	static final class Recovered {
+
+		private final String id;
+		private final CrawlStatus status;
+		private final CrawlSnapshot snapshot;
+		private final Set<String> results;
+		private final CrawlCheckpoint checkpoint;
+
+		private Recovered(String id, CrawlStatus status, CrawlSnapshot snapshot, Set<String> results, CrawlCheckpoint checkpoint) {
+			this.id = id;
+			this.status = status;
+			this.snapshot = snapshot;
+			this.results = results;
+			this.checkpoint = checkpoint;
+		}
+
+		String getId() {
+			return id;
+		}
+
+		CrawlStatus getStatus() {
+			return status;
+		}
+
+		CrawlSnapshot getSnapshot() {
+			return snapshot;
+		}
+
+		Set<String> getResults() {
+			return results;
+		}
+
+		CrawlCheckpoint getCheckpoint() {
+			return checkpoint;
+		}
+
+	}
+
+}
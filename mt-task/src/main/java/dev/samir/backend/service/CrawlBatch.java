@@ -0,0 +1,217 @@
+package dev.samir.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.samir.backend.client.HttpClientSettings;
+import dev.samir.backend.common.CancellationToken;
+import dev.samir.backend.common.MultiKeywordMatcher;
+
+/**
+ * State of a batch of crawls sharing a single traversal: every page is fetched and read once, searching the keywords
+ * of all the crawls at once, and the page is added to the results of each crawl whose keyword it contains.
+ * <p>
+ * Each crawl of the batch is a {@link Member} keeping its own identifier, results and status, so it is read, paged and
+ * streamed like any other crawl. A member stops receiving results once it reaches its results limit or its status
+ * moves from active, and the traversal stops once no member receives results anymore.
+ * </p>
+ * Like a {@link CrawlContext}, the state is shared by every fetch of the batch and by nothing else, its counters
+ * being atomic.
+ *
+ * @author Scheide, Samir
+ */
+final class CrawlBatch {
+
+	/**
+	 * The crawls of the batch, in the order of their keywords.
+	 */
+	private final List<Member> members;
+
+	/**
+	 * Searches the keywords of every crawl in the pages, shared by every fetch of the batch.
+	 */
+	private final MultiKeywordMatcher matcher;
+
+	/**
+	 * URLs waiting to be fetched and URLs already seen, shared by the crawls.
+	 */
+	private final CrawlFrontier frontier;
+
+	/**
+	 * HTTP client settings of the batch.
+	 */
+	private final HttpClientSettings httpSettings;
+
+	/**
+	 * When the batch started, in milliseconds.
+	 */
+	private final long start = System.currentTimeMillis();
+
+	/**
+	 * Number of pages processed.
+	 */
+	private final AtomicInteger executions = new AtomicInteger();
+
+	/**
+	 * Bytes of the pages received from the network, compressed or not.
+	 */
+	private final AtomicLong wireBytes = new AtomicLong();
+
+	/**
+	 * Bytes of the pages once decompressed, pages read from the cache included.
+	 */
+	private final AtomicLong decodedBytes = new AtomicLong();
+
+	/**
+	 * Cancelled once no crawl of the batch receives results anymore, aborting its fetches in flight.
+	 */
+	private final CancellationToken cancellation = new CancellationToken();
+
+	/**
+	 * Number of pages skipped because they could not be fetched.
+	 */
+	private final AtomicInteger failedFetches = new AtomicInteger();
+
+	/**
+	 * Number of pages not read to the end because they were not HTML or too large.
+	 */
+	private final AtomicInteger rejectedPages = new AtomicInteger();
+
+	/**
+	 * Default constructor.
+	 * @param ids identifier of each crawl, in the order of the keywords.
+	 * @param keywords the keyword searched by each crawl.
+	 * @param frontier {@link #frontier}
+	 * @param httpSettings {@link #httpSettings}
+	 */
+	CrawlBatch(List<String> ids, List<String> keywords, CrawlFrontier frontier, HttpClientSettings httpSettings) {
+		List<Member> crawls = new ArrayList<>(ids.size());
+		for (int index = 0; index < ids.size(); index++) {
+			crawls.add(new Member(index, ids.get(index), keywords.get(index)));
+		}
+		this.members = Collections.unmodifiableList(crawls);
+		this.matcher = new MultiKeywordMatcher(keywords);
+		this.frontier = frontier;
+		this.httpSettings = httpSettings;
+	}
+
+	/**
+	 * @return true once no crawl of the batch receives results anymore.
+	 */
+	boolean isStopped() {
+		return members.stream().allMatch(Member::isStopped);
+	}
+
+	List<Member> getMembers() {
+		return members;
+	}
+
+	MultiKeywordMatcher getMatcher() {
+		return matcher;
+	}
+
+	CrawlFrontier getFrontier() {
+		return frontier;
+	}
+
+	HttpClientSettings getHttpSettings() {
+		return httpSettings;
+	}
+
+	long getStart() {
+		return start;
+	}
+
+	AtomicInteger getExecutions() {
+		return executions;
+	}
+
+	AtomicLong getWireBytes() {
+		return wireBytes;
+	}
+
+	AtomicLong getDecodedBytes() {
+		return decodedBytes;
+	}
+
+	CancellationToken getCancellation() {
+		return cancellation;
+	}
+
+	AtomicInteger getFailedFetches() {
+		return failedFetches;
+	}
+
+	AtomicInteger getRejectedPages() {
+		return rejectedPages;
+	}
+
+	/**
+	 * A crawl of the batch.
+	 */
+	static final class Member {
+
+		/**
+		 * Index of the keyword in the {@link CrawlBatch#matcher}.
+		 */
+		private final int index;
+
+		/**
+		 * Crawl unique identifier.
+		 */
+		private final String id;
+
+		/**
+		 * The keyword searched by this crawl.
+		 */
+		private final String keyword;
+
+		/**
+		 * Number of URLs persisted as results of this crawl.
+		 */
+		private final AtomicInteger results = new AtomicInteger();
+
+		/**
+		 * Whether this crawl stopped receiving results.
+		 */
+		private volatile boolean stopped;
+
+		private Member(int index, String id, String keyword) {
+			this.index = index;
+			this.id = id;
+			this.keyword = keyword;
+		}
+
+		/**
+		 * Stops adding results to this crawl.
+		 */
+		void stop() {
+			stopped = true;
+		}
+
+		boolean isStopped() {
+			return stopped;
+		}
+
+		int getIndex() {
+			return index;
+		}
+
+		String getId() {
+			return id;
+		}
+
+		String getKeyword() {
+			return keyword;
+		}
+
+		AtomicInteger getResults() {
+			return results;
+		}
+
+	}
+
+}
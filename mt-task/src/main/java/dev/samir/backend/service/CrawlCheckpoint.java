@@ -0,0 +1,260 @@
+package dev.samir.backend.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.client.HttpClientSettings;
+import dev.samir.backend.common.FramedRecords;
+import dev.samir.backend.route.model.CrawlStatus;
+
+/**
+ * The checkpoint log of a single crawl: an append-only file of the changes of its frontier and of its results, from
+ * which the crawl is rebuilt when the service restarts, see {@link CheckpointStore}.
+ * <p>
+ * Recording a change does not touch the disk: it is appended to a buffer, which the {@link CheckpointStore} writes
+ * and syncs at regular intervals, along with the counters of the crawl. Each record is {@link FramedRecords framed},
+ * so a crash while writing only loses the records of the last interval. The links of a page are always
+ * recorded before the page itself is recorded as fetched, so a page whose links were lost is fetched again.
+ * </p>
+ * @author Scheide, Samir
+ */
+final class CrawlCheckpoint {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(CrawlCheckpoint.class);
+
+	/**
+	 * A checkpoint recording nothing, for crawls which are not checkpointed.
+	 */
+	static final CrawlCheckpoint NONE = new CrawlCheckpoint(null, null, null);
+
+	/**
+	 * Types of the records: the crawl keyword and settings, a URL enqueued by the frontier, fingerprints of URLs seen
+	 * without being enqueued, a URL fetched, a URL persisted as result, the crawl counters and the crawl status.
+	 */
+	static final byte START = 1;
+	static final byte ENQUEUED = 2;
+	static final byte VISITED = 3;
+	static final byte FETCHED = 4;
+	static final byte RESULT = 5;
+	static final byte COUNTERS = 6;
+	static final byte STATUS = 7;
+
+	/**
+	 * Crawl unique identifier.
+	 */
+	private final String id;
+
+	/**
+	 * The log file.
+	 */
+	private final Path path;
+
+	/**
+	 * The log file, opened for appending.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Records waiting for the next flush. Guarded by this checkpoint.
+	 */
+	private final FramedRecords pending = new FramedRecords();
+
+	/**
+	 * Serializes the flushes, so the buffers are written in the order they were filled.
+	 */
+	private final Object flushLock = new Object();
+
+	/**
+	 * Counters of the crawl, recorded on every flush where they changed.
+	 */
+	private volatile Supplier<Map<String, Long>> counters;
+
+	/**
+	 * Counters recorded by the last flush. Guarded by {@link #flushLock}.
+	 */
+	private Map<String, Long> flushedCounters;
+
+	/**
+	 * Records a failed flush could not write, written again before the next ones. Guarded by {@link #flushLock}.
+	 */
+	private ByteBuffer unwritten;
+
+	/**
+	 * Default constructor.
+	 * @param id {@link #id}
+	 * @param path {@link #path}
+	 * @param channel {@link #channel}
+	 */
+	CrawlCheckpoint(String id, Path path, FileChannel channel) {
+		this.id = id;
+		this.path = path;
+		this.channel = channel;
+	}
+
+	/**
+	 * Records the start of the crawl.
+	 * @param keyword the keyword searched by the crawl.
+	 * @param httpSettings HTTP client settings of the crawl.
+	 */
+	void start(String keyword, HttpClientSettings httpSettings) {
+		append(START, out -> {
+			out.writeUTF(keyword);
+			out.writeUTF(httpSettings.getVersion().name());
+			out.writeLong(httpSettings.getConnectTimeout().toMillis());
+			out.writeLong(httpSettings.getRequestTimeout().toMillis());
+			out.writeUTF(httpSettings.getRedirect().name());
+		});
+	}
+
+	/**
+	 * @param url a URL enqueued by the frontier.
+	 */
+	void enqueued(String url) {
+		append(ENQUEUED, out -> out.writeUTF(url));
+	}
+
+	/**
+	 * @param fingerprints fingerprints of URLs seen without being enqueued.
+	 */
+	void visited(long... fingerprints) {
+		append(VISITED, out -> {
+			out.writeInt(fingerprints.length);
+			for (long fingerprint : fingerprints) {
+				out.writeLong(fingerprint);
+			}
+		});
+	}
+
+	/**
+	 * @param url a URL fetched, whose links were already enqueued.
+	 */
+	void fetched(String url) {
+		append(FETCHED, out -> out.writeUTF(url));
+	}
+
+	/**
+	 * @param url a URL persisted as result.
+	 */
+	void result(String url) {
+		append(RESULT, out -> out.writeUTF(url));
+	}
+
+	/**
+	 * @param status the new status of the crawl.
+	 */
+	void status(CrawlStatus status) {
+		append(STATUS, out -> out.writeUTF(status.name()));
+	}
+
+	/**
+	 * @param counters {@link #counters}
+	 */
+	void track(Supplier<Map<String, Long>> counters) {
+		this.counters = counters;
+	}
+
+	/**
+	 * Writes the records appended since the last flush and the counters when they changed, then syncs the file.
+	 * Failures are only logged: the crawl goes on and the next flush writes the records again, along with the ones
+	 * appended meanwhile.
+	 */
+	void flush() {
+		if (channel == null) {
+			return;
+		}
+		synchronized (flushLock) {
+			if (!channel.isOpen()) {
+				return;
+			}
+			Supplier<Map<String, Long>> source = counters;
+			Map<String, Long> current = source == null ? null : source.get();
+			if (current != null && !current.equals(flushedCounters)) {
+				append(COUNTERS, out -> {
+					out.writeInt(current.size());
+					for (Map.Entry<String, Long> counter : current.entrySet()) {
+						out.writeUTF(counter.getKey());
+						out.writeLong(counter.getValue());
+					}
+				});
+				flushedCounters = current;
+			}
+			ByteBuffer records;
+			synchronized (this) {
+				if (pending.size() == 0 && unwritten == null) {
+					return;
+				}
+				records = pending.size() == 0 ? unwritten : unwritten == null ? pending.take()
+					: ByteBuffer.allocate(unwritten.remaining() + pending.size()).put(unwritten).put(pending.take()).flip();
+			}
+			try {
+				FramedRecords.write(channel, records);
+				unwritten = null;
+			} catch (IOException ex) {
+				unwritten = records;
+				LOGGER.warn("Could not write the checkpoint of crawl {} to {}", id, path, ex);
+			}
+		}
+	}
+
+	/**
+	 * Closes the log, the records appended since the last flush being lost.
+	 */
+	void close() {
+		if (channel == null) {
+			return;
+		}
+		synchronized (flushLock) {
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				LOGGER.warn("Could not close the checkpoint of crawl {} in {}", id, path, ex);
+			}
+		}
+	}
+
+	/**
+	 * Closes and deletes the log, once the crawl does not need to be resumed anymore.
+	 */
+	void delete() {
+		if (channel == null) {
+			return;
+		}
+		close();
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException ex) {
+			LOGGER.warn("Could not delete the checkpoint of crawl {} in {}", id, path, ex);
+		}
+	}
+
+	String getId() {
+		return id;
+	}
+
+	/**
+	 * Appends a framed record to the buffer of the next flush.
+	 */
+	private synchronized void append(byte type, FramedRecords.Payload writer) {
+		if (channel == null || !channel.isOpen()) {
+			return;
+		}
+		try {
+			pending.append(type, writer);
+		} catch (IOException ex) {
+			// Written to memory, which never fails, except for strings too long to be written as modified UTF-8
+			LOGGER.warn("Could not checkpoint a record of crawl {}", id, ex);
+		}
+	}
+
+}
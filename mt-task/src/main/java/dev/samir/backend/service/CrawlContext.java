@@ -0,0 +1,215 @@
+package dev.samir.backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import dev.samir.backend.client.HttpClientSettings;
+import dev.samir.backend.common.CancellationToken;
+import dev.samir.backend.common.KeywordMatcher;
+import dev.samir.backend.persistence.model.CrawlSnapshot;
+
+/**
+ * State of a single running crawl, shared by every fetch of that crawl and by nothing else, so crawls never
+ * contend with each other. Counters are atomic, which lets fetches of the same crawl update them without locking.
+ *
+ * @author Scheide, Samir
+ */
+final class CrawlContext {
+
+	/**
+	 * Names of the counters kept by a {@link CrawlSnapshot}.
+	 */
+	private static final String RESULTS = "results";
+	private static final String EXECUTIONS = "executions";
+	private static final String WIRE_BYTES = "wireBytes";
+	private static final String DECODED_BYTES = "decodedBytes";
+	private static final String FAILED_FETCHES = "failedFetches";
+	private static final String REJECTED_PAGES = "rejectedPages";
+	private static final String ELAPSED_MILLIS = "elapsedMillis";
+
+	/**
+	 * Crawl unique identifier.
+	 */
+	private final String id;
+
+	/**
+	 * The keyword searched by this crawl.
+	 */
+	private final String keyword;
+
+	/**
+	 * Searches the keyword in the pages, shared by every fetch of this crawl.
+	 */
+	private final KeywordMatcher matcher;
+
+	/**
+	 * URLs waiting to be fetched and URLs already seen.
+	 */
+	private final CrawlFrontier frontier;
+
+	/**
+	 * HTTP client settings of this crawl.
+	 */
+	private final HttpClientSettings httpSettings;
+
+	/**
+	 * When the crawl started, in milliseconds. A resumed crawl started as long ago as it ran before being halted.
+	 */
+	private final long start;
+
+	/**
+	 * Number of URLs persisted as results. It only moves when the database accepted the URL, so it always matches
+	 * the persisted results.
+	 */
+	private final AtomicInteger results = new AtomicInteger();
+
+	/**
+	 * Number of pages processed.
+	 */
+	private final AtomicInteger executions = new AtomicInteger();
+
+	/**
+	 * Bytes of the pages received from the network, compressed or not.
+	 */
+	private final AtomicLong wireBytes = new AtomicLong();
+
+	/**
+	 * Bytes of the pages once decompressed, pages read from the cache included.
+	 */
+	private final AtomicLong decodedBytes = new AtomicLong();
+
+	/**
+	 * Cancelled once the crawl is halted or done, aborting its fetches in flight.
+	 */
+	private final CancellationToken cancellation = new CancellationToken();
+
+	/**
+	 * Number of pages skipped because they could not be fetched, their host failing or not answering in time.
+	 */
+	private final AtomicInteger failedFetches = new AtomicInteger();
+
+	/**
+	 * Number of pages not read to the end because they were not HTML or too large.
+	 */
+	private final AtomicInteger rejectedPages = new AtomicInteger();
+
+	/**
+	 * Default constructor.
+	 * @param id {@link #id}
+	 * @param keyword {@link #keyword}
+	 * @param frontier {@link #frontier}
+	 * @param httpSettings {@link #httpSettings}
+	 */
+	CrawlContext(String id, String keyword, CrawlFrontier frontier, HttpClientSettings httpSettings) {
+		this.id = id;
+		this.keyword = keyword;
+		this.matcher = new KeywordMatcher(keyword);
+		this.frontier = frontier;
+		this.httpSettings = httpSettings;
+		this.start = System.currentTimeMillis();
+	}
+
+	/**
+	 * Restores a halted crawl.
+	 * @param id {@link #id}
+	 * @param snapshot where the crawl was halted.
+	 * @param frontier {@link #frontier}, holding the URLs the crawl has already seen.
+	 */
+	CrawlContext(String id, CrawlSnapshot snapshot, CrawlFrontier frontier) {
+		this.id = id;
+		this.keyword = snapshot.getKeyword();
+		this.matcher = new KeywordMatcher(keyword);
+		this.frontier = frontier;
+		this.httpSettings = snapshot.getHttpSettings();
+		this.start = System.currentTimeMillis() - snapshot.getCounter(ELAPSED_MILLIS);
+		this.results.set((int) snapshot.getCounter(RESULTS));
+		this.executions.set((int) snapshot.getCounter(EXECUTIONS));
+		this.wireBytes.set(snapshot.getCounter(WIRE_BYTES));
+		this.decodedBytes.set(snapshot.getCounter(DECODED_BYTES));
+		this.failedFetches.set((int) snapshot.getCounter(FAILED_FETCHES));
+		this.rejectedPages.set((int) snapshot.getCounter(REJECTED_PAGES));
+	}
+
+	/**
+	 * @param pending the URLs the crawl did not complete.
+	 * @return the state of this crawl, from which it may be resumed.
+	 */
+	CrawlSnapshot snapshot(List<String> pending) {
+		return new CrawlSnapshot(keyword, httpSettings, pending, frontier.getVisited(), counters());
+	}
+
+	/**
+	 * @return the counters of this crawl by name, as kept by a {@link CrawlSnapshot}.
+	 */
+	Map<String, Long> counters() {
+		Map<String, Long> counters = new LinkedHashMap<>();
+		counters.put(RESULTS, (long) results.get());
+		counters.put(EXECUTIONS, (long) executions.get());
+		counters.put(WIRE_BYTES, wireBytes.get());
+		counters.put(DECODED_BYTES, decodedBytes.get());
+		counters.put(FAILED_FETCHES, (long) failedFetches.get());
+		counters.put(REJECTED_PAGES, (long) rejectedPages.get());
+		counters.put(ELAPSED_MILLIS, System.currentTimeMillis() - start);
+		return counters;
+	}
+
+	String getId() {
+		return id;
+	}
+
+	String getKeyword() {
+		return keyword;
+	}
+
+	KeywordMatcher getMatcher() {
+		return matcher;
+	}
+
+	CrawlFrontier getFrontier() {
+		return frontier;
+	}
+
+	CrawlCheckpoint getCheckpoint() {
+		return frontier.getCheckpoint();
+	}
+
+	HttpClientSettings getHttpSettings() {
+		return httpSettings;
+	}
+
+	long getStart() {
+		return start;
+	}
+
+	AtomicInteger getResults() {
+		return results;
+	}
+
+	AtomicInteger getExecutions() {
+		return executions;
+	}
+
+	CancellationToken getCancellation() {
+		return cancellation;
+	}
+
+	AtomicInteger getFailedFetches() {
+		return failedFetches;
+	}
+
+	AtomicInteger getRejectedPages() {
+		return rejectedPages;
+	}
+
+	AtomicLong getWireBytes() {
+		return wireBytes;
+	}
+
+	AtomicLong getDecodedBytes() {
+		return decodedBytes;
+	}
+
+}
@@ -0,0 +1,335 @@
+package dev.samir.backend.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.samir.backend.common.LongHashSet;
+import dev.samir.backend.common.UrlCanonicalizer;
+
+/**
+ * The frontier of a single crawl: the queue of URLs waiting to be fetched plus the URLs already seen.
+ * <p>
+ * URLs are de-duplicated when they are offered, so the queue never holds the same URL twice nor a URL that was
+ * already fetched. Only the {@link UrlCanonicalizer#fingerprint(String) fingerprint} of each URL is remembered, which
+ * expects the offered URLs to be canonical. At most {@link #maxInFlight} fetches run at the same time and, whenever one of them completes,
+ * the links it returned are enqueued and the next URLs are dispatched from the completing thread. No thread ever
+ * blocks waiting for a page.
+ * </p>
+ * The frontier is done when the queue is drained and nothing is in flight, when it is {@link #stop() stopped} and its
+ * fetches in flight completed, when it is {@link #cancel() cancelled} or {@link #suspend() suspended} or when any fetch
+ * fails. The future returned by {@link #start(Collection, Function)} reflects that.
+ *
+ * @author Scheide, Samir
+ */
+final class CrawlFrontier {
+
+	/**
+	 * Logger
+	 */
+	private static final Logger LOGGER = LoggerFactory.getLogger(CrawlFrontier.class);
+
+	/**
+	 * Fingerprint of every URL ever accepted by this frontier, used to de-duplicate at enqueue time.
+	 */
+	private final LongHashSet visited;
+
+	/**
+	 * URLs waiting to be fetched.
+	 */
+	private final Queue<String> pending = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Size of {@link #pending}, kept apart because {@link ConcurrentLinkedQueue#size()} is not a constant time operation.
+	 */
+	private final AtomicInteger pendingSize = new AtomicInteger();
+
+	/**
+	 * Number of fetches started and not yet completed.
+	 */
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * URLs of the fetches in flight, which are handed back by {@link #suspend()} as well. A URL is recorded before it
+	 * leaves {@link #pending}, and is only forgotten once its links were enqueued, so it is always found in one of them.
+	 */
+	private final Set<String> fetching = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Completing fetches share the read lock while {@link #suspend()} takes the write lock, so the links of a page are
+	 * either enqueued before the frontier is suspended or the page is handed back to be fetched again.
+	 */
+	private final ReadWriteLock suspension = new ReentrantReadWriteLock();
+
+	/**
+	 * Work-in-progress counter which guarantees a single thread dispatches at a time, without locking and without
+	 * recursion when fetches complete synchronously.
+	 */
+	private final AtomicInteger dispatching = new AtomicInteger();
+
+	/**
+	 * Completed when the crawl has nothing else to do.
+	 */
+	private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+	/**
+	 * Maximum number of concurrent fetches.
+	 */
+	private final int maxInFlight;
+
+	/**
+	 * Maximum number of URLs waiting in the queue. Links offered while the queue is full are dropped and may be
+	 * accepted later on, if another page links to them again.
+	 */
+	private final int maxPending;
+
+	/**
+	 * Records the URLs enqueued, seen and fetched, so the frontier can be rebuilt after a restart.
+	 */
+	private final CrawlCheckpoint checkpoint;
+
+	/**
+	 * Fetches a URL and returns the links found on it.
+	 */
+	private volatile Function<String, CompletableFuture<? extends Collection<String>>> fetcher;
+
+	/**
+	 * Once set, nothing else is dispatched.
+	 */
+	private volatile boolean stopped;
+
+	/**
+	 * Set once by {@link #suspend()}.
+	 */
+	private volatile boolean suspended;
+
+	/**
+	 * Default constructor.
+	 * @param maxInFlight {@link #maxInFlight}
+	 * @param maxPending {@link #maxPending}
+	 */
+	CrawlFrontier(int maxInFlight, int maxPending) {
+		this(maxInFlight, maxPending, new long[0], CrawlCheckpoint.NONE);
+	}
+
+	/**
+	 * Creates the frontier of a crawl, resumed or checkpointed.
+	 * @param maxInFlight {@link #maxInFlight}
+	 * @param maxPending {@link #maxPending}
+	 * @param visited fingerprint of the URLs the crawl has already seen.
+	 * @param checkpoint {@link #checkpoint}
+	 */
+	CrawlFrontier(int maxInFlight, int maxPending, long[] visited, CrawlCheckpoint checkpoint) {
+		if (maxInFlight < 1 || maxPending < 1) {
+			throw new IllegalArgumentException("The crawl concurrency and the frontier size must be positive.");
+		}
+		this.maxInFlight = maxInFlight;
+		this.maxPending = maxPending;
+		this.checkpoint = checkpoint;
+		this.visited = new LongHashSet(Math.max(maxPending, visited.length));
+		for (long fingerprint : visited) {
+			this.visited.add(fingerprint);
+		}
+	}
+
+	/**
+	 * Starts crawling from the seed URL.
+	 * @param seed the first URL to be fetched.
+	 * @param fetcher fetches a URL and returns the links found on it, which are offered back to this frontier.
+	 * @return a future completed when the frontier is drained or stopped, or completed exceptionally with the first fetch failure.
+	 */
+	CompletableFuture<Void> start(String seed, Function<String, CompletableFuture<? extends Collection<String>>> fetcher) {
+		return start(List.of(seed), fetcher);
+	}
+
+	/**
+	 * Starts crawling from the given URLs, which are enqueued even when they were already seen, so a resumed crawl
+	 * fetches the URLs it had left.
+	 * @param urls the first URLs to be fetched.
+	 * @param fetcher fetches a URL and returns the links found on it, which are offered back to this frontier.
+	 * @return a future completed when the frontier is drained or stopped, or completed exceptionally with the first fetch failure.
+	 */
+	CompletableFuture<Void> start(Collection<String> urls, Function<String, CompletableFuture<? extends Collection<String>>> fetcher) {
+		this.fetcher = fetcher;
+		for (String url : urls) {
+			visited.add(UrlCanonicalizer.fingerprint(url));
+			checkpoint.enqueued(url);
+			pendingSize.incrementAndGet();
+			pending.add(url);
+		}
+		dispatch();
+		return completion;
+	}
+
+	/**
+	 * Enqueues the URL unless it was already seen, the frontier is full or it was stopped.
+	 * @param url the URL to be fetched.
+	 * @return true if the URL was enqueued.
+	 */
+	boolean offer(String url) {
+		if (url == null || stopped || pendingSize.get() >= maxPending || !visited.add(UrlCanonicalizer.fingerprint(url))) {
+			return false;
+		}
+		checkpoint.enqueued(url);
+		pendingSize.incrementAndGet();
+		pending.add(url);
+		return true;
+	}
+
+	/**
+	 * Records the URL as seen without fetching it, such as the canonical URL of a page reached by another link.
+	 * @param url the URL already known to this crawl.
+	 * @return true if the URL was not seen before.
+	 */
+	boolean markVisited(String url) {
+		long fingerprint = UrlCanonicalizer.fingerprint(url);
+		if (!visited.add(fingerprint)) {
+			return false;
+		}
+		checkpoint.visited(fingerprint);
+		return true;
+	}
+
+	/**
+	 * Stops dispatching and drops every pending URL. Fetches already in flight are left to complete.
+	 */
+	void stop() {
+		stopped = true;
+		pending.clear();
+		pendingSize.set(0);
+		dispatch();
+	}
+
+	/**
+	 * Stops the frontier and completes it at once, without waiting for the fetches in flight, whose links are dropped.
+	 */
+	void cancel() {
+		stop();
+		completion.complete(null);
+	}
+
+	/**
+	 * Stops the frontier and completes it at once, like {@link #cancel()}, but hands back the URLs it did not complete,
+	 * so another frontier may go on from there. The fetches in flight should be aborted by the caller.
+	 * @return the URLs in flight and the pending ones, in this order, or null if the frontier was already suspended.
+	 */
+	List<String> suspend() {
+		suspension.writeLock().lock();
+		try {
+			if (suspended) {
+				return null;
+			}
+			suspended = true;
+			stopped = true;
+			Set<String> remaining = new LinkedHashSet<>(fetching);
+			remaining.addAll(pending);
+			pending.clear();
+			pendingSize.set(0);
+			return new ArrayList<>(remaining);
+		} finally {
+			suspension.writeLock().unlock();
+			completion.complete(null);
+		}
+	}
+
+	boolean isStopped() {
+		return stopped;
+	}
+
+	boolean isSuspended() {
+		return suspended;
+	}
+
+	CrawlCheckpoint getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * @return a copy of the fingerprint of every URL seen so far.
+	 */
+	long[] getVisited() {
+		return visited.toArray();
+	}
+
+	int getVisitedSize() {
+		return visited.size();
+	}
+
+	/**
+	 * Starts as many pending URLs as the in-flight window allows. Only one thread runs the loop at a time;
+	 * any other caller just flags that there is more work, and the running thread loops again.
+	 */
+	private void dispatch() {
+		if (dispatching.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			while (!stopped && inFlight.get() < maxInFlight) {
+				String url = pending.peek();
+				if (url == null) break;
+				fetching.add(url);
+				// This loop being the only consumer, the polled URL is the peeked one unless the queue was cleared meanwhile
+				if (pending.poll() == null) {
+					fetching.remove(url);
+					break;
+				}
+				pendingSize.decrementAndGet();
+				inFlight.incrementAndGet();
+				fetch(url);
+			}
+			if (inFlight.get() == 0 && (stopped || pending.isEmpty())) {
+				completion.complete(null);
+			}
+			missed = dispatching.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	/**
+	 * Runs the fetcher and, once it completes, enqueues the returned links and frees the in-flight slot.
+	 * @param url the URL to be fetched.
+	 */
+	private void fetch(String url) {
+		CompletableFuture<? extends Collection<String>> links;
+		try {
+			links = fetcher.apply(url);
+		} catch (RuntimeException ex) {
+			links = CompletableFuture.failedFuture(ex);
+		}
+		links.whenComplete((hrefs, exception) -> {
+			suspension.readLock().lock();
+			try {
+				if (exception != null) {
+					LOGGER.debug("Fetching {} failed, stopping the frontier", url);
+					stopped = true;
+					completion.completeExceptionally(exception);
+				} else if (hrefs != null) {
+					hrefs.forEach(this::offer);
+				}
+				// Once suspended, the links of the page were dropped and it has to be fetched again
+				if (!suspended) {
+					fetching.remove(url);
+					checkpoint.fetched(url);
+				}
+			} finally {
+				suspension.readLock().unlock();
+			}
+			inFlight.decrementAndGet();
+			dispatch();
+		});
+	}
+
+}
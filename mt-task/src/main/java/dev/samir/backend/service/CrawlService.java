@@ -1,5 +1,9 @@
 package dev.samir.backend.service;
 
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import dev.samir.backend.client.HttpClientSettings;
 import dev.samir.backend.route.model.CrawlResponse;
 import dev.samir.backend.service.exception.ProcessingFailedException;
 
@@ -16,6 +20,27 @@ public interface CrawlService {
 	 * @return A CrawlResponse object containing the crawled data.
 	 * @throws ProcessingFailedException if the crawling process fails.
 	 */
-	CrawlResponse crawl(String keyword) throws ProcessingFailedException;
+	default CrawlResponse crawl(String keyword) throws ProcessingFailedException {
+		return crawl(keyword, UnaryOperator.identity());
+	}
+	
+	/**
+	 * Crawls data based on the provided keyword, with its own HTTP client settings.
+	 * @param keyword The keyword to be used for crawling data.
+	 * @param settings Overrides the default HTTP client settings for this crawl only.
+	 * @return A CrawlResponse object containing the crawled data.
+	 * @throws ProcessingFailedException if the crawling process fails, or if the settings are not valid.
+	 */
+	CrawlResponse crawl(String keyword, UnaryOperator<HttpClientSettings> settings) throws ProcessingFailedException;
+	
+	/**
+	 * Crawls data based on many keywords at once, each keyword being a crawl of its own with its own results limit and
+	 * status, while every page is fetched and read a single time for all of them.
+	 * @param keywords The keywords to be used for crawling data.
+	 * @param settings Overrides the default HTTP client settings for these crawls only.
+	 * @return A CrawlResponse object for each keyword, in the same order.
+	 * @throws ProcessingFailedException if the crawling process fails, or if the settings are not valid.
+	 */
+	List<CrawlResponse> crawlBatch(List<String> keywords, UnaryOperator<HttpClientSettings> settings) throws ProcessingFailedException;
 	
 }
@@ -18,6 +18,23 @@ public interface ResultsService {
 	 */
 	ResultsResponse list(String id);
 	
+	/**
+	 * Retrieves a page of the crawl results for a given identifier, in the order they were found.
+	 * @param id The identifier of the crawl.
+	 * @param since Number of results already read, the cursor returned with the previous page.
+	 * @param limit Maximum number of results of the page.
+	 * @return The results found after the cursor, along with the cursor of the next page.
+	 */
+	ResultsResponse list(String id, int since, int limit);
+	
+	/**
+	 * Subscribes to the crawl results for a given identifier, as they are found.
+	 * @param id The identifier of the crawl.
+	 * @param since Number of results already read, the results after it being the first ones returned.
+	 * @return A subscription reading the new results and status changes of the crawl.
+	 */
+	ResultsSubscription subscribe(String id, int since);
+	
 	/**
 	 * 
 	 * @param id
@@ -0,0 +1,103 @@
+package dev.samir.backend.service;
+
+import java.util.List;
+
+import dev.samir.backend.persistence.model.CrawlTableResultSet;
+import dev.samir.backend.route.model.CrawlStatus;
+import dev.samir.backend.route.model.ResultsResponse;
+
+/**
+ * A subscriber to the results of a crawl, reading the URLs found after a cursor and the status changes as they happen.
+ * <p>
+ * The URL set of the crawl is the event buffer every subscriber reads from: a subscriber keeps its own cursor and
+ * waits on the crawl until URLs are added past it or the status moves, so crawl threads do no more per subscriber
+ * than waking them. The subscription is over once the crawl is {@link CrawlStatus#DONE done} or
+ * {@link CrawlStatus#FAILED failed} and every URL was read.
+ * </p>
+ * It is meant to be read by a single thread.
+ *
+ * @author Scheide, Samir
+ */
+public final class ResultsSubscription {
+
+	/**
+	 * The crawl subscribed to.
+	 */
+	private final CrawlTableResultSet crawl;
+
+	/**
+	 * Number of URLs read so far.
+	 */
+	private int cursor;
+
+	/**
+	 * Last status read, null before the first page.
+	 */
+	private CrawlStatus status;
+
+	/**
+	 * Whether the crawl finished and its last URLs were read.
+	 */
+	private boolean closed;
+
+	/**
+	 * Default constructor.
+	 * @param crawl {@link #crawl}
+	 * @param since {@link #cursor}
+	 */
+	ResultsSubscription(CrawlTableResultSet crawl, int since) {
+		this.crawl = crawl;
+		this.cursor = since;
+	}
+
+	/**
+	 * Waits for the URLs found after the cursor or a new status, and moves the cursor past the URLs returned.
+	 * @param limit maximum number of URLs returned.
+	 * @param timeoutMillis how long to wait at most for the crawl to change.
+	 * @return the new URLs, along with the status and the cursor, or null if the crawl did not change within the timeout.
+	 * @throws InterruptedException if the thread is interrupted while waiting.
+	 */
+	public ResultsResponse next(int limit, long timeoutMillis) throws InterruptedException {
+		if (closed) {
+			return null;
+		}
+		ResultsResponse page = poll(limit);
+		if (page == null && crawl.awaitChange(cursor, status, timeoutMillis)) {
+			page = poll(limit);
+		}
+		return page;
+	}
+
+	/**
+	 * @return the number of URLs read so far.
+	 */
+	public int getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * @return true once the crawl finished and every URL was returned.
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Reads what changed since the last page, without waiting.
+	 */
+	private ResultsResponse poll(int limit) {
+		// The status is read first, so once it is final the page holds every URL up to the end
+		CrawlStatus current = CrawlStatus.valueOf(crawl.getStatus());
+		List<String> urls = crawl.rangeUrls(cursor, limit);
+		if (urls.isEmpty() && current == status) {
+			return null;
+		}
+		cursor += urls.size();
+		status = current;
+		closed = (current == CrawlStatus.DONE || current == CrawlStatus.FAILED) && urls.size() < limit;
+		ResultsResponse page = new ResultsResponse(crawl.getId(), current, urls, cursor);
+		page.setMessage(crawl.getMessage());
+		return page;
+	}
+
+}
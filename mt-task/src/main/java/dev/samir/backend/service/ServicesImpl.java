@@ -1,31 +1,36 @@
 package dev.samir.backend.service;
 
+import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpResponse;
 import java.time.Duration;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Function;
-import java.util.regex.MatchResult;
-import java.util.regex.Pattern;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import dev.samir.backend.Main;
+import dev.samir.backend.client.HtmlPageScanner;
 import dev.samir.backend.client.HttpClientFacade;
+import dev.samir.backend.client.HttpClientSettings;
+import dev.samir.backend.common.LinkFilter;
+import dev.samir.backend.common.UrlCanonicalizer;
 import dev.samir.backend.common.configuration.Environment;
-import dev.samir.backend.common.validation.RegularExpressions;
 import dev.samir.backend.persistence.DataAccessObject;
+import dev.samir.backend.persistence.DataAccessObjectException;
+import dev.samir.backend.persistence.model.CrawlSnapshot;
 import dev.samir.backend.persistence.model.CrawlTableResultSet;
 import dev.samir.backend.route.model.CrawlResponse;
 import dev.samir.backend.route.model.CrawlStatus;
@@ -42,10 +47,34 @@ public final class ServicesImpl implements ResultsService, CrawlService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ServicesImpl.class);
 
-    private final URI baseUri;
+    /**
+     * Message of the crawls a restart interrupted, which no checkpoint could resume.
+     */
+    private static final String INTERRUPTED = "The crawl was interrupted by a restart of the service.";
+
+    private final String baseUrl;
     private final DataAccessObject dao;
     private final Environment environment;
     private final HttpClientFacade httpClientFacade;
+    private final HttpClientSettings httpSettings;
+    private final LinkFilter linkFilter;
+    
+    /**
+     * Crawls running in this instance, so a status update cancels them at once.
+     */
+    private final Map<String, CrawlContext> running = new ConcurrentHashMap<>();
+    
+    /**
+     * Crawls of the batches running in this instance, so a status update stops them at once rather than every page of
+     * the batch reading the status of every crawl.
+     */
+    private final Map<String, CrawlBatch.Member> members = new ConcurrentHashMap<>();
+    
+    /**
+     * Checkpoints of the crawls running or halted, so they survive a restart. Null when 
+     * {@link Environment#getCheckpointDirectory()} is not set.
+     */
+    private final CheckpointStore checkpoints;
     
 	/**
 	 * 
@@ -57,7 +86,13 @@ public final class ServicesImpl implements ResultsService, CrawlService {
         this.dao = dao;
         this.environment = environment;
         this.httpClientFacade = httpClientFacade;
-        this.baseUri = URI.create(environment.getBaseUrl());
+        this.httpSettings = HttpClientSettings.of(environment);
+        this.linkFilter = new LinkFilter(environment.getSkipExtensions(), environment.getSkipLinks().orElse(null));
+        this.checkpoints = environment.getCheckpointDirectory()
+        	.map(directory -> new CheckpointStore(directory, Duration.ofSeconds(environment.getCheckpointInterval())))
+        	.orElse(null);
+        this.baseUrl = Optional.ofNullable(UrlCanonicalizer.canonicalize(environment.getBaseUrl()))
+        	.orElseThrow(() -> new IllegalArgumentException("The base URL must be an absolute http or https URL."));
     }
     
     /**
@@ -66,136 +101,146 @@ public final class ServicesImpl implements ResultsService, CrawlService {
 	@Override
 	public ResultsResponse update(String id, CrawlStatus status) throws StatusNotUpdatedException {
 		LOGGER.info("Updating crawl {} status to {}", id, status);
-		return Optional.ofNullable(dao.updateStatus(id, status.name(), null))
-			.map(result -> new ResultsResponse(result.getId(), status, result.getUrls()))
+		// Activating a crawl again resumes it where it was halted
+		if (CrawlStatus.ACTIVE.equals(status)) {
+			return resume(id);
+		}
+		ResultsResponse response = Optional.ofNullable(dao.updateStatus(id, status.name(), null))
+			.map(result -> new ResultsResponse(result.getId(), status, result.snapshotUrls()))
 			.orElseThrow(StatusNotUpdatedException::new);
+		// A halted or done crawl stops fetching right away, instead of when its next page completes
+		if (CrawlStatus.HALT.equals(status) || CrawlStatus.DONE.equals(status)) {
+			Optional.ofNullable(running.get(id)).ifPresent(crawl -> cancel(crawl, status));
+		}
+		// A crawl of a batch stops receiving results, the traversal going on for the others
+		Optional.ofNullable(members.get(id)).ifPresent(CrawlBatch.Member::stop);
+		// A crawl halted earlier is not running anymore, its checkpoint is dropped here
+		if (CrawlStatus.DONE.equals(status) || CrawlStatus.FAILED.equals(status)) {
+			deleteCheckpoint(id);
+		}
+		return response;
+	}
+	
+	/**
+	 * Resumes a halted crawl from its snapshot: its frontier, the URLs it has seen and its counters are restored, and
+	 * the URLs it had left are fetched first.
+	 * @param id crawl ID
+	 * @return the crawl results so far.
+	 * @throws StatusNotUpdatedException if the crawl is not halted or was halted without a snapshot.
+	 */
+	private ResultsResponse resume(String id) throws StatusNotUpdatedException {
+		CrawlTableResultSet result = Optional.ofNullable(dao.get(id)).orElseThrow(StatusNotUpdatedException::new);
+		CrawlSnapshot snapshot = result.getSnapshot();
+		// The status is moved first, so the same snapshot is never resumed twice
+		if (snapshot == null || !dao.compareAndSetStatus(id, CrawlStatus.HALT, CrawlStatus.ACTIVE, null)) {
+			LOGGER.warn("Crawl {} cannot be resumed from its {} status", id, result.getStatus());
+			throw new StatusNotUpdatedException();
+		}
+		dao.updateSnapshot(id, null);
+		LOGGER.info("Resuming crawl {} with {} pending URL(s) and {} result(s)", id, snapshot.getPending().size(), result.getUrls().size());
+		CrawlCheckpoint checkpoint = checkpoints == null ? CrawlCheckpoint.NONE : checkpoints.get(id);
+		checkpoint.status(CrawlStatus.ACTIVE);
+		CrawlContext crawl = new CrawlContext(id, snapshot, 
+				new CrawlFrontier(environment.getCrawlConcurrency(), environment.getFrontierSize(), snapshot.getVisited(), checkpoint));
+		crawl.getResults().set(result.getUrls().size());
+		run(crawl, snapshot.getPending());
+		return new ResultsResponse(id, CrawlStatus.ACTIVE, result.snapshotUrls());
+	}
+	
+	/**
+	 * Restores the crawls checkpointed by a previous run: running crawls are resumed where their last checkpoint
+	 * left them, halted ones wait to be resumed. No checkpoint is read when {@link Environment#getCheckpointDirectory()}
+	 * is not set.
+	 * <p>
+	 * Any other crawl still active, such as one rebuilt by the write-ahead log, is not running anymore: it is marked as
+	 * {@link CrawlStatus#FAILED failed}, so it is seen to end. Meant to be called before any crawl starts.
+	 * </p>
+	 */
+	public void recover() {
+		Set<String> checkpointed = new HashSet<>();
+		for (CheckpointStore.Recovered recovered : checkpoints == null ? List.<CheckpointStore.Recovered>of() : checkpoints.recover()) {
+			String id = recovered.getId();
+			checkpointed.add(id);
+			try {
+				// A crawl finished before its checkpoint was deleted is left as it is
+				CrawlStatus stored = stored(id);
+				if (CrawlStatus.DONE.equals(stored) || CrawlStatus.FAILED.equals(stored)) {
+					deleteCheckpoint(id);
+					continue;
+				}
+				dao.restore(id, CrawlStatus.HALT, recovered.getResults());
+				dao.updateSnapshot(id, recovered.getSnapshot());
+				if (CrawlStatus.ACTIVE.equals(recovered.getStatus())) {
+					resume(id);
+				}
+			} catch (Exception ex) {
+				LOGGER.error("Could not recover crawl {}: {}", id, ex.getMessage(), ex);
+			}
+		}
+		dao.forEach(crawl -> {
+			if (!checkpointed.contains(crawl.getId()) && CrawlStatus.ACTIVE.name().equals(crawl.getStatus())
+					&& dao.compareAndSetStatus(crawl.getId(), CrawlStatus.ACTIVE, CrawlStatus.FAILED, INTERRUPTED)) {
+				LOGGER.warn("Crawl {} was interrupted by a restart and has no checkpoint to resume from", crawl.getId());
+			}
+		});
+	}
+	
+	/**
+	 * Writes the checkpoints of the crawls at once, such as before the service stops.
+	 */
+	public void checkpoint() {
+		if (checkpoints != null) {
+			checkpoints.flush();
+		}
 	}
     
     @Override
     public ResultsResponse list(String id) {
         LOGGER.info("Retrieving results for ID: {}", id);
         return Optional.ofNullable(dao.get(id))
-            .map(result -> new ResultsResponse(id, CrawlStatus.valueOf(result.getStatus()), result.getUrls()))
+            // Crawl threads keep adding URLs while the response is written, which only reads the ones added so far
+            .map(result -> new ResultsResponse(id, CrawlStatus.valueOf(result.getStatus()), result.snapshotUrls()))
+            .orElseThrow(NoResultsException::new);
+    }
+
+    @Override
+    public ResultsResponse list(String id, int since, int limit) {
+        LOGGER.info("Retrieving results for ID: {} since {}", id, since);
+        return Optional.ofNullable(dao.get(id))
+            .map(result -> {
+            	// The status is read first, so a finished crawl's page holds every URL up to its end
+            	CrawlStatus status = CrawlStatus.valueOf(result.getStatus());
+            	List<String> urls = result.rangeUrls(since, limit);
+            	return new ResultsResponse(id, status, urls, since + urls.size());
+            })
+            .orElseThrow(NoResultsException::new);
+    }
+
+    @Override
+    public ResultsSubscription subscribe(String id, int since) {
+        LOGGER.info("Subscribing to results for ID: {} since {}", id, since);
+        return Optional.ofNullable(dao.get(id))
+            .map(result -> new ResultsSubscription(result, since))
             .orElseThrow(NoResultsException::new);
     }
 
     @Override
-    public CrawlResponse crawl(String keyword) throws ProcessingFailedException {
+    public CrawlResponse crawl(String keyword, UnaryOperator<HttpClientSettings> settings) throws ProcessingFailedException {
         LOGGER.info("Starting crawl for given KEYWORD: {}", keyword);
         try {
-        	long start = System.currentTimeMillis();
+        	// Invalid settings are rejected before anything is persisted
+        	HttpClientSettings crawlSettings = settings.apply(httpSettings);
         	// The crawl should be persisted as soon it starts so we have access to the generated ID beforehand
         	final String identifier = dao.persist(null).getId();
         	LOGGER.info("The following identifier was created: {}", identifier);
-        	// Retrieve the first html data from base URL provided by our environment variable BASE_URL
-        	pickHtmlFromUri(baseUri)
-    			// If the html data has the keyword, persist into the database.
-        		.thenAcceptAsync(htmlData -> {
-        			if (isKeywordFound(keyword, htmlData)) {
-        				dao.updateUrl(identifier, baseUri.toString());
-        			}
-        			// Then the same verification should be made with each anchor inside the HTML document
-        			pickAnchorsHrefFromHTML(htmlData).thenAcceptAsync(links -> {
-        	        	// Since we shall be using a queue and to avoid repeated request, a set instance holds the visited URLs
-        	        	Set<String> visited = ConcurrentHashMap.newKeySet();
-        	        	// In order to kep all synchronized, a concurrent queue is created from the set list of anchors URLs
-        	        	Queue<Set<String>> queue = new ConcurrentLinkedQueue<>();
-        	        	queue.add(links);
-        	            // The counter is used to validate the total of results we may return in this method, like a circuit-breaker,
-        	            // preventing unnecessary processing and persitence
-        	            AtomicInteger resultsCounter = new AtomicInteger(0);
-        	            // The "while" executionn can be tricky because if no results if found, then our counter remains the same,
-        	            // and if remains the same, the processing will stop only when reaches the queue's end and that can
-        	            // take a while, wasting time and processing. A rule to exit the loop is coinfigured ahead.
-        	            AtomicInteger executionsCounter = new AtomicInteger(0);
-        	            int chunkSize = environment.getMaxResultsSize() < 100 ? environment.getMaxResultsSize() : 100;
-        	            while (!queue.isEmpty() && resultsCounter.get() < environment.getMaxResultsSize()) {
-        	            	// Get - or remove the head - from the queue and, if the URL is already visited, loop next
-        	            	Set<String> hrefsElementsFromQueue = queue.poll();
-        	            	LOGGER.debug("Crawling {}", hrefsElementsFromQueue);
-        	            	
-        	            	Iterator<String> iterator = hrefsElementsFromQueue.iterator();
-        	            	while (iterator.hasNext() && resultsCounter.get() < environment.getMaxResultsSize()) {
-        	            		
-        	            		String link = iterator.next();
-        	            		
-        	            		if (!visited.add(link)) continue;
-        	            		else {
-        	            			
-        	            			// The completable future should do the request to GET the HTML data,
-        	            			// verify if contains the keyword and, if contains it, persit the crawl data.
-        	            			CompletableFuture<String> linkHtmlData = pickHtmlFromUri(URI.create(link));
-        	            			queue.add(linkHtmlData.thenApplyAsync(hrefHtmlData -> {
-        	            				synchronized (dao) {
-        	            					CrawlStatus currentStatus = CrawlStatus.valueOf(dao.get(identifier).getStatus());
-        	            					LOGGER.debug("Executions {} and queue size {}. Actual crawl status {}", 
-        	            							executionsCounter.get(), queue.size(), currentStatus);
-        	                	            // Instead, if the status is HALT, we skip the crawling every Environment.ENV_RESULTS_SIZE or 100 searches. 
-        	            					// If the current status is DONE, then we skip the whole thing immediately.
-        	            					if ((executionsCounter.getAndIncrement() % chunkSize == 0
-        	            							&& CrawlStatus.HALT.equals(currentStatus)) || CrawlStatus.DONE.equals(currentStatus)) {
-        	            						LOGGER.warn(
-        	            								"Crawl {} was cancelled, skipping further processing by setting the results counter {} to its max {}",
-        	            								identifier,
-        	            								resultsCounter.get(), 
-        	            								environment.getMaxResultsSize());
-        	            						resultsCounter.set(environment.getMaxResultsSize());
-        	            						queue.clear();
-        	            					}
-	            	            			// Evaluates again because, in a parallel scenario, the counter may have already reached the limit
-	        	            				if (isKeywordFound(keyword, hrefHtmlData) && resultsCounter.get() < environment.getMaxResultsSize()) {
-        	            						dao.updateUrl(identifier, link);
-        	            						resultsCounter.incrementAndGet();
-        	            						LOGGER.debug("Persisted {} and incremented result counter to {} while execution counter is at {}", link, resultsCounter.get(), executionsCounter.get());
-	        	            				}
-        	            				}
-        	            				// At the end, we add the anchors links from the current HTML data into tue queue for processing
-        	            				return pickAnchorsHrefFromHTML(hrefHtmlData).join();
-        	            			}, Main.EXECUTOR_SERVICE)
-	            					// After processing, in case of exception, marks the crawl as failed 
-	            	        		// and update the message with the details
-	            					.exceptionally(exception -> {
-	            	        			synchronized (dao) {
-	            	        				try {
-	            	        					if (exception != null) {
-	            	        						// Failed attempts may have a description
-	            	        						LOGGER.error(exception.getMessage(), exception);
-	            	        						dao.updateStatus(identifier, CrawlStatus.FAILED.name(), exception.getMessage());
-	            	        					}
-	            	        				} catch (Exception ex) {
-	            	        					LOGGER.error(ex.getMessage(), ex);
-	            	        				}
-	            	        			}
-	            	        			return null;
-	            					})
-	            					.join());
-        	            			LOGGER.debug("Main queue contains {} elements", queue.size());
-        	            		}
-        	            	}
-        	            }
-        	            CrawlTableResultSet updated = dao.updateStatus(identifier, CrawlStatus.DONE.name(), null);
-    	            	Duration duration = Duration.ofMillis(System.currentTimeMillis() - start);
-    	            	LOGGER.info("Time elapsed fetching {} result(s) during {} execution(s) for '{}': {}",
-    	            			updated.getUrls().size(), executionsCounter.get(), identifier,
-    	            			String.format("%d:%02d:%02d", duration.toHours() % 60, duration.toMinutes() % 60, duration.toSeconds() % 60));
-        	        }, Main.EXECUTOR_SERVICE);
-        		}, Main.EXECUTOR_SERVICE)
-        		// After processing, in case of exception, marks the crawl as failed 
-        		// and update the message with the details
-        		.exceptionally(exception -> {
-        			synchronized (dao) {
-        				try {
-        					if (exception != null) {
-        						// Failed attempts may have a description
-        						LOGGER.error(exception.getMessage(), exception);
-        						dao.updateStatus(identifier, CrawlStatus.FAILED.name(), exception.getMessage());
-        					}
-        				} catch (Exception ex) {
-        					LOGGER.error(ex.getMessage(), ex);
-        				}
-        			}
-        			return null;
-				});
+        	// The frontier holds the URLs waiting to be fetched, de-duplicated as they are enqueued, and keeps up to
+        	// Environment.ENV_CRAWL_CONCURRENCY fetches running at the same time
+        	// Every change of the frontier is checkpointed when Environment.ENV_CHECKPOINT_DIR is set
+        	CrawlCheckpoint checkpoint = checkpoints == null ? CrawlCheckpoint.NONE : checkpoints.create(identifier, keyword, crawlSettings);
+        	CrawlContext crawl = new CrawlContext(identifier, keyword,
+        			new CrawlFrontier(environment.getCrawlConcurrency(), environment.getFrontierSize(), new long[0], checkpoint), crawlSettings);
+            // Starting from the base URL provided by our environment variable BASE_URL
+        	run(crawl, List.of(baseUrl));
         	return new CrawlResponse(identifier);
         } catch (Exception ex) {
             LOGGER.error(ex.getMessage(), ex);
@@ -203,57 +248,373 @@ public final class ServicesImpl implements ResultsService, CrawlService {
         }
     }
     
+    @Override
+    public List<CrawlResponse> crawlBatch(List<String> keywords, UnaryOperator<HttpClientSettings> settings) throws ProcessingFailedException {
+        LOGGER.info("Starting a batch of {} crawls for given KEYWORDS: {}", keywords.size(), keywords);
+        List<String> identifiers = new ArrayList<>(keywords.size());
+        try {
+        	HttpClientSettings crawlSettings = settings.apply(httpSettings);
+        	// Each keyword is a crawl of its own, with its own identifier, results and status
+        	for (int index = 0; index < keywords.size(); index++) {
+        		identifiers.add(dao.persist(null).getId());
+        	}
+        	LOGGER.info("The following identifiers were created: {}", identifiers);
+        	// The crawls share a single frontier, so every page is fetched once for all of them
+        	CrawlBatch batch = new CrawlBatch(identifiers, keywords,
+        			new CrawlFrontier(environment.getCrawlConcurrency(), environment.getFrontierSize(), new long[0], CrawlCheckpoint.NONE), crawlSettings);
+        	run(batch, List.of(baseUrl));
+        	return batch.getMembers().stream()
+        		.map(member -> new CrawlResponse(member.getId(), member.getKeyword()))
+        		.collect(Collectors.toList());
+        } catch (Exception ex) {
+            LOGGER.error(ex.getMessage(), ex);
+            // The crawls created before the failure would stay active, nothing running them
+            for (String identifier : identifiers) {
+            	try {
+            		dao.compareAndSetStatus(identifier, CrawlStatus.ACTIVE, CrawlStatus.FAILED, ex.getMessage());
+            	} catch (Exception failure) {
+            		LOGGER.error(failure.getMessage(), failure);
+            	}
+            }
+            throw new ProcessingFailedException(ex);
+        }
+    }
+    
     /**
-     * 
-     * @param uri
-     * @return
+     * Runs the crawl in the background until its frontier is drained, each fetched page being verified for the keyword
+     * and its anchors fed back into the frontier.
+     * @param crawl the crawl state.
+     * @param urls the first URLs to be fetched.
      */
-    private CompletableFuture<String> pickHtmlFromUri(URI uri) {
-    	LOGGER.debug("Fecthing HTML data from {}", uri);
-    	return httpClientFacade.requestAsync(uri).thenApplyAsync(HttpResponse::body, Main.EXECUTOR_SERVICE);
+    private void run(CrawlContext crawl, Collection<String> urls) {
+    	final String identifier = crawl.getId();
+    	// Cancelling the crawl drains its frontier at once, its fetches in flight being aborted on their own
+    	running.put(identifier, crawl);
+    	crawl.getCancellation().onCancel(crawl.getFrontier()::cancel);
+    	crawl.getCheckpoint().track(crawl::counters);
+    	crawl.getFrontier().start(urls, link -> visit(crawl, link))
+        		.thenRun(() -> finish(crawl))
+        		// After processing, in case of exception, marks the crawl as failed 
+        		// and update the message with the details
+        		.exceptionally(exception -> {
+    				try {
+    					if (exception != null) {
+    						// Failed attempts may have a description
+    						LOGGER.error(exception.getMessage(), exception);
+    						dao.updateStatus(identifier, CrawlStatus.FAILED.name(), exception.getMessage());
+    						deleteCheckpoint(identifier);
+    					}
+    				} catch (Exception ex) {
+    					LOGGER.error(ex.getMessage(), ex);
+    				}
+        			return null;
+				})
+        		.whenComplete((result, exception) -> running.remove(identifier, crawl));
+    	// The first URLs are written at once, a crawl recovered without them would have nothing to fetch
+    	crawl.getCheckpoint().flush();
     }
     
     /**
-     * 
-     * @param html
-     * @return
+     * Runs the batch in the background until its frontier is drained, each fetched page being verified for the keywords
+     * of every crawl and its anchors fed back into the frontier.
+     * @param batch the batch state.
+     * @param urls the first URLs to be fetched.
      */
-    private CompletableFuture<Set<String>> pickAnchorsHrefFromHTML(String html) {
-    	LOGGER.debug("HTML sent over to fecth anchors: {} ", html);
-    	return CompletableFuture.supplyAsync(() -> 
-    		RegularExpressions.A_HREF_COMPILED_REGEX.matcher(html)
-				.results()
-	            .map(uriResolver())
-	            .filter(Objects::nonNull)
-	            .filter(uri -> uri.startsWith(environment.getBaseUrl()))
-	            .collect(Collectors.toCollection(LinkedHashSet::new))
-        , Main.EXECUTOR_SERVICE);
+    private void run(CrawlBatch batch, Collection<String> urls) {
+    	batch.getMembers().forEach(member -> members.put(member.getId(), member));
+    	// A status updated before the crawl was registered is only found in the database
+    	batch.getMembers().stream()
+    		.filter(member -> !CrawlStatus.ACTIVE.equals(stored(member.getId())))
+    		.forEach(CrawlBatch.Member::stop);
+    	batch.getCancellation().onCancel(batch.getFrontier()::cancel);
+    	batch.getFrontier().start(urls, link -> visit(batch, link))
+    		.thenRun(() -> finish(batch))
+    		.exceptionally(exception -> {
+    			LOGGER.error(exception.getMessage(), exception);
+    			for (CrawlBatch.Member member : batch.getMembers()) {
+    				try {
+    					dao.updateStatus(member.getId(), CrawlStatus.FAILED.name(), exception.getMessage());
+    				} catch (Exception ex) {
+    					LOGGER.error(ex.getMessage(), ex);
+    				}
+    			}
+    			return null;
+    		})
+    		.whenComplete((result, exception) -> batch.getMembers().forEach(member -> members.remove(member.getId(), member)));
     }
     
     /**
-     * 
-     * @return
+     * Fetches a single page of the crawl, persists it when the keyword is found and returns its links.
+     * Nothing here is shared with other crawls, so no lock is taken: the status is read as is and the result
+     * is persisted through an atomic add-if-below-limit.
+     * @param crawl the crawl state.
+     * @param link the URL to be fetched.
+     * @return the links to be offered to the frontier.
      */
-    private Function<MatchResult, String> uriResolver() {
-    	return matcher -> {
-        	String href = matcher.group(1).trim();
-            try {
-                return baseUri.resolve(href).toString();
-            } catch (IllegalArgumentException e) {
-                return null; // malformed URL, skip
-            }
-    	};
+    private CompletableFuture<Set<String>> visit(CrawlContext crawl, String link) {
+    	CrawlFrontier frontier = crawl.getFrontier();
+    	if (crawl.getCancellation().isCancelled()) {
+    		return CompletableFuture.completedFuture(Set.of());
+    	}
+    	// Cancelling the crawl cancels the fetch as well: a request still waiting for its host is never sent
+    	CompletableFuture<HtmlPageScanner> fetch = scanHtmlFromUri(URI.create(link), crawl);
+    	Runnable deregistration = crawl.getCancellation().onCancel(() -> fetch.cancel(true));
+    	fetch.whenComplete((page, exception) -> deregistration.run());
+    	return fetch.thenApplyAsync(page -> {
+    		int executions = crawl.getExecutions().incrementAndGet();
+    		crawl.getWireBytes().addAndGet(page.getWireBytes());
+    		crawl.getDecodedBytes().addAndGet(page.getDecodedBytes());
+    		page.getRejection().ifPresent(reason -> LOGGER.debug("{} was not read to the end, {} ({} page(s) rejected in crawl {})",
+    				link, reason, crawl.getRejectedPages().incrementAndGet(), crawl.getId()));
+			CrawlStatus currentStatus = CrawlStatus.valueOf(dao.get(crawl.getId()).getStatus());
+			LOGGER.debug("Executions {} and {} visited URLs. Actual crawl status {}", 
+					executions, frontier.getVisitedSize(), currentStatus);
+			// If the status is HALT or DONE, then we skip the whole thing immediately.
+			if (crawl.getCancellation().isCancelled() || CrawlStatus.HALT.equals(currentStatus) || CrawlStatus.DONE.equals(currentStatus)) {
+				cancel(crawl, currentStatus);
+				return Set.<String>of();
+			}
+			String canonical = canonical(frontier, link, page);
+			if (canonical == null) {
+				return Set.<String>of();
+			}
+			// The database only accepts the URL while the crawl is below the results limit, so the counter
+			// always matches what was persisted and the frontier stops as soon as the limit is reached
+			if (page.isKeywordFound()) {
+				if (dao.updateUrl(crawl.getId(), canonical, environment.getMaxResultsSize())) {
+					crawl.getCheckpoint().result(canonical);
+					LOGGER.debug("Persisted {} and incremented result counter to {} while execution counter is at {}", 
+							canonical, crawl.getResults().incrementAndGet(), executions);
+				}
+				if (crawl.getResults().get() >= environment.getMaxResultsSize()) {
+					frontier.stop();
+				}
+			}
+			// At the end, the anchors links collected while reading the page are handed back to the frontier
+			return frontier.isStopped() ? Set.<String>of() : page.getHrefs().map(hrefs -> resolveAnchors(link, page, hrefs)).orElse(Set.of());
+		}, Main.EXECUTOR_SERVICE).exceptionally(exception -> {
+			if (crawl.getCancellation().isCancelled()) {
+				return Set.<String>of();
+			}
+			// A page which could not be fetched, even after retries, only costs itself: the crawl goes on with the others
+			if (isFetchFailure(exception)) {
+				LOGGER.warn("{} could not be fetched, skipping it ({} page(s) skipped in crawl {}): {}", link,
+						crawl.getFailedFetches().incrementAndGet(), crawl.getId(), exception.getMessage());
+				return Set.<String>of();
+			}
+			throw exception instanceof CompletionException ? (CompletionException) exception : new CompletionException(exception);
+		});
     }
     
     /**
-     * 
-     * @param htmlData
-     * @param keyword
-     * @return
+     * Fetches a single page of the batch, persists it to every crawl whose keyword it contains and returns its links.
+     * A crawl stops receiving results once its status is updated or it reached the results limit, and the batch is
+     * cancelled once no crawl receives results anymore.
+     * @param batch the batch state.
+     * @param link the URL to be fetched.
+     * @return the links to be offered to the frontier.
+     */
+    private CompletableFuture<Set<String>> visit(CrawlBatch batch, String link) {
+    	CrawlFrontier frontier = batch.getFrontier();
+    	if (batch.getCancellation().isCancelled()) {
+    		return CompletableFuture.completedFuture(Set.of());
+    	}
+    	LOGGER.debug("Fecthing HTML data from {}", link);
+    	CompletableFuture<HtmlPageScanner> fetch = httpClientFacade.scanAsync(URI.create(link),
+    			() -> new HtmlPageScanner(batch.getMatcher(), () -> !frontier.isStopped(), batch.getCancellation()),
+    			batch.getHttpSettings());
+    	Runnable deregistration = batch.getCancellation().onCancel(() -> fetch.cancel(true));
+    	fetch.whenComplete((page, exception) -> deregistration.run());
+    	return fetch.thenApplyAsync(page -> {
+    		int executions = batch.getExecutions().incrementAndGet();
+    		batch.getWireBytes().addAndGet(page.getWireBytes());
+    		batch.getDecodedBytes().addAndGet(page.getDecodedBytes());
+    		page.getRejection().ifPresent(reason -> LOGGER.debug("{} was not read to the end, {} ({} page(s) rejected in batch)",
+    				link, reason, batch.getRejectedPages().incrementAndGet()));
+    		// Crawls whose status was updated meanwhile were stopped by the update, the others go on
+    		if (batch.isStopped()) {
+    			batch.getCancellation().cancel();
+    			return Set.<String>of();
+    		}
+    		String canonical = canonical(frontier, link, page);
+    		if (canonical == null) {
+    			return Set.<String>of();
+    		}
+    		// Each crawl has its own results limit, the database only accepting the URL while the crawl is below it
+    		for (CrawlBatch.Member member : batch.getMembers()) {
+    			if (member.isStopped() || !page.isKeywordFound(member.getIndex())) {
+    				continue;
+    			}
+    			if (dao.updateUrl(member.getId(), canonical, environment.getMaxResultsSize())) {
+    				LOGGER.debug("Persisted {} for crawl {} and incremented result counter to {} while execution counter is at {}", 
+    						canonical, member.getId(), member.getResults().incrementAndGet(), executions);
+    			}
+    			if (member.getResults().get() >= environment.getMaxResultsSize()) {
+    				member.stop();
+    			}
+    		}
+    		// Once every crawl reached its limit, the traversal stops like a single crawl does
+    		if (batch.isStopped()) {
+    			frontier.stop();
+    		}
+    		return frontier.isStopped() ? Set.<String>of() : page.getHrefs().map(hrefs -> resolveAnchors(link, page, hrefs)).orElse(Set.of());
+    	}, Main.EXECUTOR_SERVICE).exceptionally(exception -> {
+    		if (batch.getCancellation().isCancelled()) {
+    			return Set.<String>of();
+    		}
+    		if (isFetchFailure(exception)) {
+    			LOGGER.warn("{} could not be fetched, skipping it ({} page(s) skipped in batch): {}", link,
+    					batch.getFailedFetches().incrementAndGet(), exception.getMessage());
+    			return Set.<String>of();
+    		}
+    		throw exception instanceof CompletionException ? (CompletionException) exception : new CompletionException(exception);
+    	});
+    }
+    
+    /**
+     * A page declaring another canonical URL is a duplicate when that URL was already seen, otherwise the canonical
+     * URL is recorded so it is never fetched on its own.
+     * @param frontier the frontier of the crawl.
+     * @param link the page URL.
+     * @param page the scanner which read the page.
+     * @return the canonical URL of the page, or null when the page is a duplicate.
+     */
+    private String canonical(CrawlFrontier frontier, String link, HtmlPageScanner page) {
+    	String canonical = page.getCanonicalHref()
+    		.map(href -> UrlCanonicalizer.resolve(link, href))
+    		.filter(url -> url.startsWith(baseUrl))
+    		.orElse(link);
+    	if (UrlCanonicalizer.fingerprint(canonical) != UrlCanonicalizer.fingerprint(link) && !frontier.markVisited(canonical)) {
+    		LOGGER.debug("{} is a duplicate of {}, skipping it", link, canonical);
+    		return null;
+    	}
+    	return canonical;
+    }
+    
+    /**
+     * Cancels the crawl: its frontier is drained and its fetches in flight are aborted, releasing their connections.
+     * A halted crawl keeps its frontier instead, which is snapshot so the crawl can be resumed.
+     * @param crawl the crawl state.
+     * @param status the status which stopped the crawl.
+     */
+    private void cancel(CrawlContext crawl, CrawlStatus status) {
+    	// The frontier is suspended before the fetches in flight are aborted, so they are kept as pending
+    	List<String> remaining = CrawlStatus.HALT.equals(status) && !crawl.getCancellation().isCancelled() 
+    			? crawl.getFrontier().suspend() : null;
+    	if (crawl.getCancellation().cancel()) {
+    		LOGGER.warn("Crawl {} was cancelled by its {} status with {} result(s), skipping further processing",
+    				crawl.getId(), status, crawl.getResults().get());
+    	}
+    	if (remaining != null) {
+    		CrawlSnapshot snapshot = crawl.snapshot(remaining);
+    		dao.updateSnapshot(crawl.getId(), snapshot);
+    		// The checkpoint keeps the counters of the halted crawl, which do not move anymore
+    		crawl.getCheckpoint().status(CrawlStatus.HALT);
+    		crawl.getCheckpoint().track(snapshot::getCounters);
+    		crawl.getCheckpoint().flush();
+    		LOGGER.info("Crawl {} was halted with {} URL(s) left, it may be resumed", crawl.getId(), remaining.size());
+    	}
+    }
+    
+    /**
+     * @param id crawl ID
+     * @return the status stored for the crawl, or null if it is not stored.
+     */
+    private CrawlStatus stored(String id) {
+    	try {
+    		return Optional.ofNullable(dao.get(id)).map(result -> CrawlStatus.valueOf(result.getStatus())).orElse(null);
+    	} catch (DataAccessObjectException ex) {
+    		return null;
+    	}
+    }
+    
+    /**
+     * Deletes the checkpoint of a crawl which does not need to be resumed anymore.
+     * @param id crawl ID
+     */
+    private void deleteCheckpoint(String id) {
+    	if (checkpoints != null) {
+    		checkpoints.delete(id);
+    	}
+    }
+    
+    /**
+     * @param exception the failure of a fetch.
+     * @return true when the host could not be reached, did not answer in time or its circuit is open.
+     */
+    private static boolean isFetchFailure(Throwable exception) {
+    	for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+    		if (cause instanceof IOException) {
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+    
+    /**
+     * Marks the crawl as done, unless it already reached another final status or was halted to be resumed later.
+     * @param crawl the crawl state.
+     */
+    private void finish(CrawlContext crawl) {
+    	if (crawl.getFrontier().isSuspended()) {
+    		return;
+    	}
+    	dao.updateStatus(crawl.getId(), CrawlStatus.DONE.name(), null);
+    	deleteCheckpoint(crawl.getId());
+    	Duration duration = Duration.ofMillis(System.currentTimeMillis() - crawl.getStart());
+    	LOGGER.info("Time elapsed fetching {} result(s) during {} execution(s) for '{}': {}",
+    			crawl.getResults().get(), crawl.getExecutions().get(), crawl.getId(),
+    			String.format("%d:%02d:%02d", duration.toHours() % 60, duration.toMinutes() % 60, duration.toSeconds() % 60));
+    	LOGGER.info("Crawl '{}' received {} byte(s) from the network for {} byte(s) of pages, {} page(s) could not be fetched and {} were rejected",
+    			crawl.getId(), crawl.getWireBytes().get(), crawl.getDecodedBytes().get(), crawl.getFailedFetches().get(), crawl.getRejectedPages().get());
+    }
+    
+    /**
+     * Marks the crawls of the batch as done, unless they already reached another final status. A crawl halted while
+     * the batch was running is done as well, its traversal being shared and over.
+     * @param batch the batch state.
+     */
+    private void finish(CrawlBatch batch) {
+    	batch.getMembers().forEach(member -> dao.updateStatus(member.getId(), CrawlStatus.DONE.name(), null));
+    	Duration duration = Duration.ofMillis(System.currentTimeMillis() - batch.getStart());
+    	LOGGER.info("Time elapsed during {} execution(s) for a batch of {} crawl(s): {}",
+    			batch.getExecutions().get(), batch.getMembers().size(),
+    			String.format("%d:%02d:%02d", duration.toHours() % 60, duration.toMinutes() % 60, duration.toSeconds() % 60));
+    	LOGGER.info("Batch received {} byte(s) from the network for {} byte(s) of pages, {} page(s) could not be fetched and {} were rejected",
+    			batch.getWireBytes().get(), batch.getDecodedBytes().get(), batch.getFailedFetches().get(), batch.getRejectedPages().get());
+    }
+    
+    /**
+     * Fetches the page, scanning it for the keyword while it is downloaded. Its links are only collected while the
+     * frontier still accepts them, otherwise the download stops as soon as the keyword is found.
+     * @param uri the page URI.
+     * @param crawl the crawl state.
+     * @return the scanner after reading the page.
+     */
+    private CompletableFuture<HtmlPageScanner> scanHtmlFromUri(URI uri, CrawlContext crawl) {
+    	LOGGER.debug("Fecthing HTML data from {}", uri);
+    	return httpClientFacade.scanAsync(uri, 
+    			() -> new HtmlPageScanner(crawl.getMatcher(), () -> !crawl.getFrontier().isStopped(), crawl.getCancellation()),
+    			crawl.getHttpSettings());
+    }
+    
+    /**
+     * Resolves the anchors of a page against its <code>&lt;base&gt;</code>, or the page URL itself when it has none,
+     * keeping only the canonical links under the base URL which the {@link LinkFilter} accepts.
+     * @param link the page URL.
+     * @param page the scanner which read the page.
+     * @param hrefs the anchors <code>href</code> of the page.
+     * @return the canonical links, in document order.
      */
-    private Boolean isKeywordFound(String keyword, String htmlData) {
-    	LOGGER.debug("Verifying if the html ({}) data contains the keyword", htmlData.hashCode());
-    	return Pattern.compile(Pattern.quote(keyword), Pattern.CASE_INSENSITIVE).matcher(htmlData).find();
+    private Set<String> resolveAnchors(String link, HtmlPageScanner page, List<String> hrefs) {
+    	LOGGER.debug("{} anchor(s) found in {}", hrefs.size(), link);
+    	String base = page.getBaseHref().map(href -> UrlCanonicalizer.resolve(link, href)).orElse(link);
+    	return hrefs.stream()
+            .map(href -> UrlCanonicalizer.resolve(base, href))
+            .filter(Objects::nonNull)
+            .filter(url -> url.startsWith(baseUrl))
+            .filter(linkFilter::accepts)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
     }
     
 }
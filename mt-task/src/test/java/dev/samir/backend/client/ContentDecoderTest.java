@@ -0,0 +1,114 @@
+package dev.samir.backend.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the {@link ContentDecoder} inflating compressed bodies:
+ * <ul>
+ * 	<li>Streaming: gzip and deflate bodies split in single bytes are inflated, with or without a zlib wrapper;</li>
+ * 	<li>Headers: the optional fields of a gzip header are skipped;</li>
+ * 	<li>Fallback: other encodings and corrupted bodies never fail;</li>
+ * 	<li>Metrics: the bytes received and decoded are counted.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class ContentDecoderTest {
+
+	private static final String PAGE = "<html>" + "un café <a href='/next'>next</a> ".repeat(200) + "</html>";
+
+	@Test
+	void testDecode_GzipByteByByte() throws IOException {
+		byte[] body = gzip(PAGE.getBytes(StandardCharsets.UTF_8));
+		ContentDecoder decoder = ContentDecoder.of(headers("gzip"));
+
+		Assertions.assertEquals(PAGE, decodeByteByByte(decoder, body));
+		Assertions.assertEquals(body.length, decoder.getWireBytes());
+		Assertions.assertEquals(PAGE.getBytes(StandardCharsets.UTF_8).length, decoder.getDecodedBytes());
+		Assertions.assertTrue(decoder.getWireBytes() * 5 < decoder.getDecodedBytes());
+	}
+
+	@Test
+	void testDecode_GzipOptionalFields() throws IOException {
+		byte[] compressed = gzip(PAGE.getBytes(StandardCharsets.UTF_8));
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		// Same header with FEXTRA, FNAME and FCOMMENT set
+		body.write(compressed, 0, 3);
+		body.write(4 | 8 | 16);
+		body.write(compressed, 4, 6);
+		body.write(new byte[] { 3, 0, 'a', 'b', 'c' });
+		body.write("page.html\0a comment\0".getBytes(StandardCharsets.ISO_8859_1));
+		body.write(compressed, 10, compressed.length - 10);
+
+		Assertions.assertEquals(PAGE, new String(ContentDecoder.decode(headers("gzip"), body.toByteArray()), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testDecode_DeflateWithAndWithoutWrapper() {
+		for (boolean raw : new boolean[] { false, true }) {
+			Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+			deflater.setInput(PAGE.getBytes(StandardCharsets.UTF_8));
+			deflater.finish();
+			byte[] buffer = new byte[64 * 1024];
+			byte[] body = Arrays.copyOf(buffer, deflater.deflate(buffer));
+			deflater.end();
+
+			Assertions.assertEquals(PAGE, decodeByteByByte(ContentDecoder.of(headers("deflate")), body));
+		}
+	}
+
+	@Test
+	void testDecode_FallsBack() throws IOException {
+		byte[] plain = PAGE.getBytes(StandardCharsets.UTF_8);
+		byte[] corrupted = gzip(plain);
+		for (int i = 20; i < corrupted.length; i++) {
+			corrupted[i] = (byte) 0xFF;
+		}
+
+		Assertions.assertEquals(PAGE, new String(ContentDecoder.decode(headers("br"), plain), StandardCharsets.UTF_8));
+		Assertions.assertEquals(PAGE, new String(ContentDecoder.decode(headers("gzip"), plain), StandardCharsets.UTF_8));
+		Assertions.assertTrue(ContentDecoder.decode(headers("gzip"), corrupted).length < plain.length);
+		ContentDecoder replay = ContentDecoder.replay();
+		Assertions.assertEquals(PAGE, decodeByteByByte(replay, plain));
+		Assertions.assertEquals(0, replay.getWireBytes());
+		Assertions.assertEquals(plain.length, replay.getDecodedBytes());
+	}
+
+	private static String decodeByteByByte(ContentDecoder decoder, byte[] body) {
+		ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+		for (byte b : body) {
+			decoder.decode(ByteBuffer.wrap(new byte[] { b }), chunk -> {
+				while (chunk.hasRemaining()) {
+					decoded.write(chunk.get());
+				}
+			});
+		}
+		decoder.end();
+		return new String(decoded.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static byte[] gzip(byte[] bytes) throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(bytes);
+		}
+		return compressed.toByteArray();
+	}
+
+	private static HttpHeaders headers(String encoding) {
+		return HttpHeaders.of(Map.of("Content-Encoding", List.of(encoding)), (name, value) -> true);
+	}
+
+}
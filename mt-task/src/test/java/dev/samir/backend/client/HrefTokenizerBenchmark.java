@@ -0,0 +1,96 @@
+package dev.samir.backend.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the link extraction throughput of {@link HrefTokenizer} with the regular expression it replaced.
+ * <p>
+ * Pages are generated to look like real ones: a large head with scripts and styles, then a body mixing text,
+ * attributes and anchors. A malformed page full of unclosed anchors shows how the lazy quantifiers of the expression
+ * rescan the rest of the page for every anchor. It is not part of the regular test run, execute it with:
+ * <pre>mvn test -Dtest=HrefTokenizerBenchmark</pre>
+ * </p>
+ * @author Scheide, Samir
+ */
+class HrefTokenizerBenchmark {
+
+	/**
+	 * The expression used to extract the links before {@link HrefTokenizer}.
+	 */
+	private static final Pattern A_HREF = Pattern.compile("<a\\s+[^>]*?href=[\"']([^\"']+)[\"'][^>]*?>.*?</a>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	private static final int WARMUP_ITERATIONS = 20;
+	private static final int ITERATIONS = 50;
+
+	@Test
+	void benchmarkRegularPage() {
+		String page = page(2_000, true);
+		run("regular", page);
+	}
+
+	@Test
+	void benchmarkMalformedPage() {
+		// Every unclosed anchor makes the expression scan up to the end of the page, so this one is kept small
+		String page = page(300, false);
+		run("malformed", page);
+	}
+
+	private void run(String name, String page) {
+		int regex = 0;
+		int tokenizer = 0;
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			regex += regex(page).size();
+			tokenizer += new HrefTokenizer().feed(page).getHrefs().size();
+		}
+		long regexNanos = 0;
+		long tokenizerNanos = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			regex += regex(page).size();
+			regexNanos += System.nanoTime() - start;
+			start = System.nanoTime();
+			tokenizer += new HrefTokenizer().feed(page).getHrefs().size();
+			tokenizerNanos += System.nanoTime() - start;
+		}
+		int iterations = WARMUP_ITERATIONS + ITERATIONS;
+		System.out.printf("%-10s %7d KB, regex: %5d links in %7.2f ms/page, tokenizer: %5d links in %7.2f ms/page%n", name,
+				page.length() / 1024, regex / iterations, regexNanos / 1e6 / ITERATIONS,
+				tokenizer / iterations, tokenizerNanos / 1e6 / ITERATIONS);
+		System.out.printf("%-10s speed-up %.1fx%n", name, (double) regexNanos / tokenizerNanos);
+	}
+
+	private static List<String> regex(String page) {
+		List<String> links = new ArrayList<>();
+		Matcher matcher = A_HREF.matcher(page);
+		while (matcher.find()) links.add(matcher.group(1));
+		return links;
+	}
+
+	/**
+	 * Generates a page with the given number of anchors, closed or not.
+	 */
+	private static String page(int anchors, boolean closed) {
+		Random random = new Random(42);
+		StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>Benchmark</title>");
+		for (int i = 0; i < 20; i++) {
+			html.append("<script>var data").append(i).append(" = '").append("x".repeat(2_000)).append("';</script>");
+			html.append("<style>.c").append(i).append(" { color: #").append(random.nextInt(0xFFFFFF)).append("; }</style>");
+		}
+		html.append("</head><body>");
+		for (int i = 0; i < anchors; i++) {
+			html.append("<div class=\"item item-").append(i).append("\" data-index=\"").append(i).append("\"><p>")
+				.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit ".repeat(1 + random.nextInt(4)))
+				.append("</p><a class=\"link\" href=\"/docs/page-").append(i).append(".html?ref=").append(random.nextInt(1000))
+				.append("\" title=\"Page ").append(i).append("\">Page ").append(i).append(closed ? "</a>" : "")
+				.append("</div>\n");
+		}
+		return html.append("</body></html>").toString();
+	}
+
+}
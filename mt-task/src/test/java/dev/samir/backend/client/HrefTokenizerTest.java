@@ -0,0 +1,93 @@
+package dev.samir.backend.client;
+
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the links collected by {@link HrefTokenizer}:
+ * <ul>
+ * 	<li>Attributes: quoted, unquoted, upper case and entity encoded values, other attributes and tags are ignored;</li>
+ * 	<li>Markup: anchors inside comments, scripts and styles are skipped, unclosed anchors are read;</li>
+ * 	<li>Base and canonical: only the first base element and the first canonical link are kept;</li>
+ * 	<li>Chunks: the same links are read whatever the chunk boundaries.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class HrefTokenizerTest {
+
+	@Test
+	void testFeed_WithAttributeVariants() {
+		HrefTokenizer tokenizer = new HrefTokenizer().feed("<html><body>"
+				+ "<a href=\"/double\">1</a>"
+				+ "<a class='x' href='/single' title=\"a > b\">2</a>"
+				+ "<A HREF=/unquoted>3</A>"
+				+ "<a\n\thref = ' /spaces '>4</a>"
+				+ "<a href='/query?a=1&amp;b=2'>5</a>"
+				+ "<a data-href='/data' name=x>6</a>"
+				+ "<link href='/style.css'><area href='/area'>"
+				+ "<a href=''>7</a><a href>8</a>"
+				+ "</body></html>");
+
+		Assertions.assertEquals(List.of("/double", "/single", "/unquoted", "/spaces", "/query?a=1&b=2"), tokenizer.getHrefs());
+		Assertions.assertTrue(tokenizer.getBaseHref().isEmpty());
+	}
+
+	@Test
+	void testFeed_WithMarkupToSkip() {
+		HrefTokenizer tokenizer = new HrefTokenizer().feed("<!DOCTYPE html><html><head>"
+				+ "<style>a[href='<a href=/css>']{}</style>"
+				+ "<script>document.write('<a href=\"/script\">');</script>"
+				+ "</head><body>"
+				+ "<!-- <a href='/comment'> -- still a comment -->"
+				+ "<a href='/unclosed'>first<a href='/second'>"
+				+ "<SCRIPT type=module>'</Script > <a href='/after-script'>"
+				+ "</body></html>");
+
+		Assertions.assertEquals(List.of("/unclosed", "/second", "/after-script"), tokenizer.getHrefs());
+	}
+
+	@Test
+	void testFeed_KeepsFirstBase() {
+		HrefTokenizer tokenizer = new HrefTokenizer()
+				.feed("<head><base target=_blank href='http://other.url/dir/'><base href='/ignored/'></head><a href=page>");
+
+		Assertions.assertEquals(Optional.of("http://other.url/dir/"), tokenizer.getBaseHref());
+		Assertions.assertEquals(List.of("page"), tokenizer.getHrefs());
+	}
+
+	@Test
+	void testFeed_KeepsFirstCanonicalLink() {
+		HrefTokenizer tokenizer = new HrefTokenizer()
+				.feed("<head><link href='/style.css' rel=stylesheet><link href='/canonical' rel='Canonical alternate'>"
+						+ "<link rel=canonical href=/second></head>");
+
+		Assertions.assertEquals(Optional.of("/canonical"), tokenizer.getCanonicalHref());
+		Assertions.assertTrue(tokenizer.getHrefs().isEmpty());
+		Assertions.assertTrue(new HrefTokenizer().feed("<link rel=stylesheet href=/style.css>").getCanonicalHref().isEmpty());
+	}
+
+	@Test
+	void testFeed_WithEveryChunkSize() {
+		String page = "<html><!-- <a href='/no'> --><base href='/b/'><a id=1 href='/one'>1</a>"
+				+ "<script>x='<a href=/no>'</script><a href=two>2</a></html>";
+		HrefTokenizer expected = new HrefTokenizer().feed(page);
+
+		for (int size = 1; size < page.length(); size++) {
+			HrefTokenizer tokenizer = new HrefTokenizer();
+			for (int i = 0; i < page.length(); i += size) {
+				CharBuffer chunk = CharBuffer.wrap(page, i, Math.min(page.length(), i + size));
+				tokenizer.feed(chunk);
+				Assertions.assertEquals(i, chunk.position(), "The buffer position must not move");
+			}
+			Assertions.assertEquals(expected.getHrefs(), tokenizer.getHrefs(), "Chunks of " + size);
+			Assertions.assertEquals(expected.getBaseHref(), tokenizer.getBaseHref(), "Chunks of " + size);
+		}
+		Assertions.assertEquals(List.of("/one", "two"), expected.getHrefs());
+	}
+
+}
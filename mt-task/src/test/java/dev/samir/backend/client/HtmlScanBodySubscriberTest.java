@@ -0,0 +1,141 @@
+package dev.samir.backend.client;
+
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import dev.samir.backend.common.CancellationToken;
+import dev.samir.backend.common.KeywordMatcher;
+
+/**
+ * Testing the streaming scan made by {@link HtmlScanBodySubscriber}:
+ * <ul>
+ * 	<li>Chunks: the keyword and multi-byte characters split between chunks are still read correctly;</li>
+ * 	<li>Cancellation: the download stops once the keyword is found and links are not wanted;</li>
+ * 	<li>Gating: bodies which are not HTML or too large are rejected from their headers, or once they grow too large;</li>
+ * 	<li>Cancellation: the download is aborted as soon as the crawl is cancelled.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class HtmlScanBodySubscriberTest {
+
+	private AtomicBoolean cancelled = new AtomicBoolean();
+	private Flow.Subscription subscription = new Flow.Subscription() {
+		@Override
+		public void request(long n) {}
+		@Override
+		public void cancel() {
+			cancelled.set(true);
+		}
+	};
+
+	@Test
+	void testScan_WithKeywordSplitBetweenChunks() {
+		HtmlPageScanner scanner = new HtmlPageScanner(new KeywordMatcher("CAFÉ crème"), () -> true);
+		HtmlScanBodySubscriber subscriber = new HtmlScanBodySubscriber(scanner, StandardCharsets.UTF_8);
+		subscriber.onSubscribe(subscription);
+
+		byte[] page = "<html>un café crème <a href='/crème'>lien</a></html>".getBytes(StandardCharsets.UTF_8);
+		// Every chunk boundary falls inside the keyword, some inside the two bytes of the accented characters
+		for (int i = 0; i < page.length; i += 3) {
+			subscriber.onNext(List.of(ByteBuffer.wrap(Arrays.copyOfRange(page, i, Math.min(page.length, i + 3)))));
+		}
+		subscriber.onComplete();
+
+		HtmlPageScanner result = subscriber.getBody().toCompletableFuture().join();
+		Assertions.assertTrue(result.isKeywordFound());
+		Assertions.assertEquals(List.of("/crème"), result.getHrefs().orElseThrow());
+		Assertions.assertFalse(cancelled.get());
+	}
+
+	@Test
+	void testScan_CancelsWhenLinksAreNotWanted() {
+		HtmlPageScanner scanner = new HtmlPageScanner(new KeywordMatcher("test"), () -> false);
+		HtmlScanBodySubscriber subscriber = new HtmlScanBodySubscriber(scanner, StandardCharsets.UTF_8);
+		subscriber.onSubscribe(subscription);
+
+		subscriber.onNext(List.of(ByteBuffer.wrap("<html>a te".getBytes(StandardCharsets.UTF_8))));
+		Assertions.assertFalse(cancelled.get());
+		subscriber.onNext(List.of(ByteBuffer.wrap("st and more".getBytes(StandardCharsets.UTF_8))));
+
+		Assertions.assertTrue(cancelled.get());
+		HtmlPageScanner result = subscriber.getBody().toCompletableFuture().join();
+		Assertions.assertTrue(result.isKeywordFound());
+		Assertions.assertTrue(result.getHrefs().isEmpty());
+	}
+
+	@Test
+	void testScan_WhenKeywordIsMissing() {
+		HtmlPageScanner scanner = new HtmlPageScanner(new KeywordMatcher("aab"), () -> true);
+		HtmlScanBodySubscriber subscriber = new HtmlScanBodySubscriber(scanner, StandardCharsets.ISO_8859_1);
+		subscriber.onSubscribe(subscription);
+
+		subscriber.onNext(List.of(ByteBuffer.wrap("aaAa".getBytes(StandardCharsets.ISO_8859_1))));
+		subscriber.onComplete();
+
+		Assertions.assertFalse(subscriber.getBody().toCompletableFuture().join().isKeywordFound());
+	}
+
+	@Test
+	void testScan_RejectsFromHeaders() {
+		for (Map<String, List<String>> headers : List.of(Map.of("Content-Type", List.of("application/pdf")),
+				Map.of("Content-Type", List.of("text/html; charset=UTF-8"), "Content-Length", List.of("2048")))) {
+			cancelled.set(false);
+			HtmlPageScanner scanner = new HtmlPageScanner(new KeywordMatcher("test"), () -> true);
+			HtmlScanBodySubscriber subscriber = new HtmlScanBodySubscriber(scanner, StandardCharsets.UTF_8, ContentDecoder.replay(), 0, 1024)
+					.gate(HttpHeaders.of(headers, (name, value) -> true));
+			subscriber.onSubscribe(subscription);
+
+			Assertions.assertTrue(cancelled.get());
+			HtmlPageScanner result = subscriber.getBody().toCompletableFuture().join();
+			Assertions.assertTrue(result.getRejection().isPresent());
+			Assertions.assertTrue(result.getHrefs().isEmpty());
+		}
+	}
+
+	@Test
+	void testScan_CancelsPagesGrowingTooLarge() {
+		HtmlPageScanner scanner = new HtmlPageScanner(new KeywordMatcher("test"), () -> true);
+		HtmlScanBodySubscriber subscriber = new HtmlScanBodySubscriber(scanner, StandardCharsets.UTF_8, ContentDecoder.replay(), 0, 16)
+				.gate(HttpHeaders.of(Map.of("Content-Type", List.of("text/html")), (name, value) -> true));
+		subscriber.onSubscribe(subscription);
+
+		subscriber.onNext(List.of(ByteBuffer.wrap("<html>a test".getBytes(StandardCharsets.UTF_8))));
+		Assertions.assertFalse(cancelled.get());
+		subscriber.onNext(List.of(ByteBuffer.wrap(" <a href='/next'>".getBytes(StandardCharsets.UTF_8))));
+
+		Assertions.assertTrue(cancelled.get());
+		HtmlPageScanner result = subscriber.getBody().toCompletableFuture().join();
+		Assertions.assertTrue(result.isKeywordFound());
+		Assertions.assertTrue(result.getRejection().isPresent());
+		Assertions.assertTrue(result.getHrefs().isEmpty());
+	}
+
+	@Test
+	void testScan_AbortsWhenCrawlIsCancelled() {
+		CancellationToken cancellation = new CancellationToken();
+		HtmlPageScanner scanner = new HtmlPageScanner(new KeywordMatcher("test"), () -> true, cancellation);
+		HtmlScanBodySubscriber subscriber = new HtmlScanBodySubscriber(scanner, StandardCharsets.UTF_8);
+		subscriber.onSubscribe(subscription);
+		subscriber.onNext(List.of(ByteBuffer.wrap("<html>a test".getBytes(StandardCharsets.UTF_8))));
+
+		Assertions.assertTrue(cancellation.cancel());
+
+		Assertions.assertTrue(cancelled.get());
+		HtmlPageScanner result = subscriber.getBody().toCompletableFuture().join();
+		Assertions.assertEquals("the crawl was cancelled", result.getRejection().orElseThrow());
+		Assertions.assertTrue(result.getHrefs().isEmpty());
+		subscriber.onComplete();
+		Assertions.assertNull(subscriber.getCopy());
+	}
+
+}
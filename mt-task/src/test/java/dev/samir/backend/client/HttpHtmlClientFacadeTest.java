@@ -0,0 +1,305 @@
+package dev.samir.backend.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import dev.samir.backend.common.KeywordMatcher;
+import dev.samir.backend.common.configuration.Environment;
+import dev.samir.backend.common.configuration.EnvironmentConfiguration;
+
+/**
+ * Testing the {@link HttpHtmlClientFacade} against a local HTTP server:
+ * <ul>
+ * 	<li>Cache: a page scanned or requested again is served from memory;</li>
+ * 	<li>Errors: pages other than 200 are scanned but fetched again;</li>
+ * 	<li>Revalidation: expired pages are requested with their validators and kept when the server answers 304;</li>
+ * 	<li>Compression: gzip bodies are scanned and cached decompressed, counting the bytes received and decoded;</li>
+ * 	<li>Timeouts: a host stalling before or during the response fails the request within the timeout of the crawl, the
+ * 	body being aborted;</li>
+ * 	<li>Aborting: an aborted body cancels its subscription, at once or as soon as it starts, unless it was read already;</li>
+ * 	<li>Gating: responses which are not HTML are rejected without reading their body;</li>
+ * 	<li>Hedging: a request much slower than the previous ones of its host is sent again through the {@link Pacer}, the
+ * 	first response winning.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class HttpHtmlClientFacadeTest {
+
+	private static final String GZIP_PAGE = "<html>" + "un café ".repeat(500) + "<a href='/next'>next</a></html>";
+
+	private HttpServer server;
+	private String baseUrl;
+	private AtomicInteger requests = new AtomicInteger();
+	private AtomicInteger notModified = new AtomicInteger();
+	private AtomicInteger hedged = new AtomicInteger();
+	private CountDownLatch release = new CountDownLatch(1);
+	private HttpHtmlClientFacade facade = new HttpHtmlClientFacade(new Environment(new EnvironmentConfiguration() {}));
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", exchange -> {
+			requests.incrementAndGet();
+			String path = exchange.getRequestURI().getPath();
+			if (path.startsWith("/stalled") || (path.equals("/hedged") && hedged.getAndIncrement() == 0)) {
+				// Stalls before the headers, or after the start of the body
+				try {
+					if (path.equals("/stalled/body")) {
+						exchange.sendResponseHeaders(200, 0);
+						exchange.getResponseBody().write("<html>un".getBytes(StandardCharsets.ISO_8859_1));
+						exchange.getResponseBody().flush();
+					}
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				exchange.close();
+				return;
+			}
+			if (path.equals("/etag") || path.equals("/modified")) {
+				if (path.equals("/etag")) {
+					exchange.getResponseHeaders().add("ETag", "\"v1\"");
+				} else {
+					exchange.getResponseHeaders().add("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT");
+				}
+				if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))
+						|| (path.equals("/modified") && exchange.getRequestHeaders().containsKey("If-Modified-Since"))) {
+					notModified.incrementAndGet();
+					exchange.sendResponseHeaders(304, -1);
+					exchange.close();
+					return;
+				}
+			}
+			byte[] body = "<html>un café <a href='/next'>next</a></html>".getBytes(StandardCharsets.ISO_8859_1);
+			exchange.getResponseHeaders().add("Content-Type", path.equals("/image") ? "image/png" : "text/html; charset=ISO-8859-1");
+			if (path.equals("/gzip") && exchange.getRequestHeaders().getFirst("Accept-Encoding").contains("gzip")) {
+				ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+				try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+					out.write(GZIP_PAGE.getBytes(StandardCharsets.ISO_8859_1));
+				}
+				body = compressed.toByteArray();
+				exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+			}
+			exchange.sendResponseHeaders(exchange.getRequestURI().getPath().equals("/missing") ? 404 : 200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+		baseUrl = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	@AfterEach
+	void stopServer() {
+		release.countDown();
+		server.stop(0);
+	}
+
+	@Test
+	void testScanAsync_FromCache() {
+		URI uri = URI.create(baseUrl + "/page");
+
+		HtmlPageScanner first = facade.scanAsync(uri, this::scanner).join();
+		Assertions.assertTrue(facade.isCached(uri));
+		HtmlPageScanner second = facade.scanAsync(uri, this::scanner).join();
+
+		Assertions.assertNotSame(first, second);
+		Assertions.assertTrue(second.isKeywordFound());
+		Assertions.assertEquals(List.of("/next"), second.getHrefs().orElseThrow());
+		Assertions.assertEquals("<html>un café <a href='/next'>next</a></html>", facade.requestAsync(uri).join().body());
+		Assertions.assertEquals(1, requests.get());
+	}
+
+	@Test
+	void testScanAsync_DoesNotCacheErrors() {
+		URI uri = URI.create(baseUrl + "/missing");
+
+		Assertions.assertTrue(facade.scanAsync(uri, this::scanner).join().isKeywordFound());
+		Assertions.assertFalse(facade.isCached(uri));
+		facade.scanAsync(uri, this::scanner).join();
+
+		Assertions.assertEquals(2, requests.get());
+	}
+
+	@Test
+	void testScanAsync_RevalidatesExpiredPages() {
+		HttpHtmlClientFacade expiring = new HttpHtmlClientFacade(new Environment(new EnvironmentConfiguration() {
+			@Override
+			public String pageCacheTtl() {
+				return "0";
+			}
+		}));
+		URI etag = URI.create(baseUrl + "/etag");
+		URI modified = URI.create(baseUrl + "/modified");
+
+		for (int i = 0; i < 3; i++) {
+			HtmlPageScanner scanner = expiring.scanAsync(etag, this::scanner).join();
+			Assertions.assertTrue(scanner.isKeywordFound());
+			Assertions.assertEquals(List.of("/next"), scanner.getHrefs().orElseThrow());
+		}
+		expiring.requestAsync(modified).join();
+		Assertions.assertEquals("<html>un café <a href='/next'>next</a></html>", expiring.requestAsync(modified).join().body());
+
+		Assertions.assertEquals(5, requests.get());
+		Assertions.assertEquals(3, notModified.get());
+	}
+
+	@Test
+	void testScanAsync_Gzip() {
+		URI uri = URI.create(baseUrl + "/gzip");
+
+		HtmlPageScanner downloaded = facade.scanAsync(uri, this::scanner).join();
+		HtmlPageScanner cached = facade.scanAsync(uri, this::scanner).join();
+
+		Assertions.assertTrue(downloaded.isKeywordFound());
+		Assertions.assertEquals(List.of("/next"), downloaded.getHrefs().orElseThrow());
+		Assertions.assertEquals(GZIP_PAGE.length(), downloaded.getDecodedBytes());
+		Assertions.assertTrue(downloaded.getWireBytes() * 10 < downloaded.getDecodedBytes());
+		Assertions.assertEquals(List.of("/next"), cached.getHrefs().orElseThrow());
+		Assertions.assertEquals(0, cached.getWireBytes());
+		Assertions.assertEquals(GZIP_PAGE.length(), cached.getDecodedBytes());
+		Assertions.assertEquals(GZIP_PAGE, facade.requestAsync(uri).join().body());
+		Assertions.assertFalse(facade.requestAsync(uri).join().headers().firstValue("Content-Encoding").isPresent());
+		Assertions.assertEquals(1, requests.get());
+	}
+
+	@Test
+	void testScanAsync_TimesOutStalledHosts() throws InterruptedException {
+		HttpClientSettings settings = HttpClientSettings.of(new Environment(new EnvironmentConfiguration() {}))
+				.override(null, 1, "HTTP_1_1", null);
+
+		for (String path : List.of("/stalled/headers", "/stalled/body")) {
+			AtomicReference<HtmlPageScanner> scanner = new AtomicReference<>();
+			long start = System.nanoTime();
+			CompletableFuture<HtmlPageScanner> scan = facade.scanAsync(URI.create(baseUrl + path), () -> {
+				scanner.set(scanner());
+				return scanner.get();
+			}, settings);
+			CompletionException exception = Assertions.assertThrows(CompletionException.class, scan::join);
+
+			Assertions.assertTrue(exception.getCause() instanceof HttpTimeoutException, exception::toString);
+			Assertions.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+			Assertions.assertFalse(facade.isCached(URI.create(baseUrl + path)));
+			if (path.equals("/stalled/body")) {
+				// The subscriber only counts the bytes received once its body ended, aborted after the request failed
+				long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+				synchronized (scanner.get()) {
+					while (scanner.get().getWireBytes() == 0 && System.nanoTime() < deadline) {
+						scanner.get().wait(10);
+					}
+				}
+				Assertions.assertEquals("<html>un".length(), scanner.get().getWireBytes());
+			}
+		}
+	}
+
+	@Test
+	void testAbort_CancelsTheSubscription() {
+		AtomicInteger cancelled = new AtomicInteger();
+		Flow.Subscription subscription = new Flow.Subscription() {
+			@Override
+			public void request(long n) {}
+			@Override
+			public void cancel() {
+				cancelled.incrementAndGet();
+			}
+		};
+
+		AbortableBodySubscriber<HtmlPageScanner> started = new AbortableBodySubscriber<>(
+				new HtmlScanBodySubscriber(scanner(), StandardCharsets.UTF_8));
+		started.onSubscribe(subscription);
+		started.onNext(List.of(ByteBuffer.wrap("<html>un".getBytes(StandardCharsets.UTF_8))));
+		started.abort();
+		started.onNext(List.of(ByteBuffer.wrap(" café".getBytes(StandardCharsets.UTF_8))));
+		Assertions.assertEquals(1, cancelled.get());
+		Assertions.assertThrows(CancellationException.class, started.getBody().toCompletableFuture()::join);
+
+		AbortableBodySubscriber<HtmlPageScanner> pending = new AbortableBodySubscriber<>(
+				new HtmlScanBodySubscriber(scanner(), StandardCharsets.UTF_8));
+		pending.abort();
+		Assertions.assertEquals(1, cancelled.get());
+		pending.onSubscribe(subscription);
+		Assertions.assertEquals(2, cancelled.get());
+		Assertions.assertThrows(CancellationException.class, pending.getBody().toCompletableFuture()::join);
+
+		AtomicBoolean read = new AtomicBoolean();
+		AbortableBodySubscriber<HtmlPageScanner> complete = new AbortableBodySubscriber<>(
+				new HtmlScanBodySubscriber(scanner(), StandardCharsets.UTF_8));
+		complete.onSubscribe(subscription);
+		complete.onNext(List.of(ByteBuffer.wrap("<html>un café</html>".getBytes(StandardCharsets.UTF_8))));
+		complete.onComplete();
+		complete.abort();
+		read.set(complete.getBody().toCompletableFuture().join().isKeywordFound());
+		Assertions.assertTrue(read.get());
+		Assertions.assertEquals(2, cancelled.get());
+	}
+
+	@Test
+	void testScanAsync_RejectsOtherContentTypes() {
+		URI uri = URI.create(baseUrl + "/image");
+
+		HtmlPageScanner scanner = facade.scanAsync(uri, this::scanner).join();
+
+		Assertions.assertEquals("content type image/png", scanner.getRejection().orElseThrow());
+		Assertions.assertFalse(scanner.isKeywordFound());
+		Assertions.assertTrue(scanner.getHrefs().isEmpty());
+		Assertions.assertFalse(facade.isCached(uri));
+	}
+
+	@Test
+	void testScanAsync_HedgesSlowRequests() {
+		AtomicInteger paced = new AtomicInteger();
+		facade.pacedBy(new Pacer() {
+			@Override
+			public <T> CompletableFuture<T> schedule(URI uri, Supplier<CompletableFuture<T>> call) {
+				paced.incrementAndGet();
+				return call.get();
+			}
+		});
+		for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+			facade.scanAsync(URI.create(baseUrl + "/page" + i), this::scanner).join();
+		}
+
+		long start = System.nanoTime();
+		HtmlPageScanner scanner = facade.scanAsync(URI.create(baseUrl + "/hedged"), this::scanner).join();
+
+		Assertions.assertTrue(scanner.isKeywordFound());
+		Assertions.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000);
+		Assertions.assertEquals(2, hedged.get());
+		Assertions.assertEquals(1, paced.get());
+		Assertions.assertTrue(facade.isCached(URI.create(baseUrl + "/hedged")));
+	}
+
+	private HtmlPageScanner scanner() {
+		return new HtmlPageScanner(new KeywordMatcher("café"), () -> true);
+	}
+
+}
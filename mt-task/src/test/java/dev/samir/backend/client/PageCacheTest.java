@@ -0,0 +1,206 @@
+package dev.samir.backend.client;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing the {@link PageCache} shared by the crawls:
+ * <ul>
+ * 	<li>Single-flight: concurrent gets of the same URI share a single load;</li>
+ * 	<li>Failures: failed loads and pages which are not cacheable are not kept;</li>
+ * 	<li>Bounds: least recently used pages are evicted by weight and pages expire after their time to live;</li>
+ * 	<li>Revalidation: expired pages with validators are handed to the next load, max-age shortens the time to live
+ * 	and an oversized one is clamped;</li>
+ * 	<li>Store: pages are written to the {@link PageStore} once handed over, and found there by a new cache, fresh or
+ * 	to revalidate.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class PageCacheTest {
+
+	private static final URI FIRST = URI.create("http://www.valid.url/1");
+	private static final URI SECOND = URI.create("http://www.valid.url/2");
+	private static final URI THIRD = URI.create("http://www.valid.url/3");
+
+	private AtomicInteger loads = new AtomicInteger();
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testGet_SharesSingleLoad() {
+		PageCache cache = new PageCache(1024 * 1024, TimeUnit.MINUTES.toNanos(1));
+		CompletableFuture<CachedPage> load = new CompletableFuture<>();
+
+		CompletableFuture<CachedPage> first = cache.get(FIRST, (uri, stale) -> {
+			loads.incrementAndGet();
+			return load;
+		});
+		CompletableFuture<CachedPage> second = cache.get(FIRST, this::load);
+		Assertions.assertFalse(cache.contains(FIRST));
+		load.complete(page(200, 100));
+
+		Assertions.assertSame(first.join(), second.join());
+		Assertions.assertSame(first.join(), cache.get(FIRST, this::load).join());
+		Assertions.assertTrue(cache.contains(FIRST));
+		Assertions.assertEquals(1, loads.get());
+		Assertions.assertEquals(2, cache.getHits());
+		Assertions.assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	void testGet_DoesNotKeepFailures() {
+		PageCache cache = new PageCache(1024 * 1024, TimeUnit.MINUTES.toNanos(1));
+
+		CompletableFuture<CachedPage> failed = cache.get(FIRST, (uri, stale) -> CompletableFuture.failedFuture(new IllegalStateException()));
+		Assertions.assertThrows(CompletionException.class, failed::join);
+		cache.get(SECOND, (uri, stale) -> CompletableFuture.completedFuture(page(404, 100))).join();
+		cache.get(THIRD, (uri, stale) -> CompletableFuture.completedFuture(new CachedPage(response(200, Map.of()), null))).join();
+
+		Assertions.assertFalse(cache.contains(FIRST));
+		Assertions.assertFalse(cache.contains(SECOND));
+		Assertions.assertFalse(cache.contains(THIRD));
+		cache.get(FIRST, this::load).join();
+		Assertions.assertEquals(1, loads.get());
+		Assertions.assertEquals(0, cache.getEvictions());
+	}
+
+	@Test
+	void testGet_EvictsLeastRecentlyUsed() {
+		// Every page weighs 1024 bytes once its overhead is added, the cache holds sixteen of them
+		PageCache cache = new PageCache(16 * 1024, TimeUnit.MINUTES.toNanos(1));
+		for (int i = 1; i <= 16; i++) {
+			cache.get(URI.create("http://www.valid.url/" + i), this::load).join();
+		}
+		cache.get(FIRST, this::load).join();
+		cache.get(URI.create("http://www.valid.url/17"), this::load).join();
+
+		Assertions.assertTrue(cache.contains(FIRST));
+		Assertions.assertFalse(cache.contains(SECOND));
+		Assertions.assertTrue(cache.contains(THIRD));
+		Assertions.assertEquals(1, cache.getEvictions());
+		Assertions.assertEquals(16 * 1024, cache.getWeight());
+		Assertions.assertEquals(17, loads.get());
+	}
+
+	@Test
+	void testGet_ReloadsExpiredPages() throws InterruptedException {
+		PageCache cache = new PageCache(1024 * 1024, TimeUnit.MILLISECONDS.toNanos(20));
+		cache.get(FIRST, this::load).join();
+		Thread.sleep(50);
+
+		Assertions.assertFalse(cache.contains(FIRST));
+		cache.get(FIRST, this::load).join();
+		Assertions.assertEquals(2, loads.get());
+		Assertions.assertEquals(1024, cache.getWeight());
+	}
+
+	@Test
+	void testGet_HandsExpiredPageToRevalidate() {
+		PageCache cache = new PageCache(1024 * 1024, TimeUnit.MINUTES.toNanos(1));
+		CachedPage validated = new CachedPage(response(200, Map.of("ETag", List.of("\"v1\""), "Cache-Control", List.of("max-age=0"))), new byte[10]);
+		List<CachedPage> stales = new ArrayList<>();
+
+		for (int i = 0; i < 2; i++) {
+			cache.get(FIRST, (uri, stale) -> {
+				stales.add(stale);
+				return CompletableFuture.completedFuture(validated);
+			}).join();
+		}
+		// Without validators, an expired page is simply loaded again
+		cache.get(SECOND, (uri, stale) -> CompletableFuture.completedFuture(new CachedPage(response(200, Map.of("Cache-Control", List.of("no-cache"))), new byte[10]))).join();
+		cache.get(SECOND, (uri, stale) -> {
+			stales.add(stale);
+			return CompletableFuture.completedFuture(page(200, 10));
+		}).join();
+
+		Assertions.assertEquals(Arrays.asList(null, validated, null), stales);
+		Assertions.assertEquals(1, cache.getRevalidations());
+		Assertions.assertTrue(cache.contains(SECOND));
+	}
+
+	@Test
+	void testGet_ClampsOversizedMaxAge() {
+		PageCache cache = new PageCache(1024 * 1024, TimeUnit.MINUTES.toNanos(1));
+
+		for (String maxAge : List.of("99999999999", "99999999999999999999")) {
+			CachedPage page = new CachedPage(response(200, Map.of("Cache-Control", List.of("max-age=" + maxAge))), new byte[10]);
+			Assertions.assertEquals(1L << 31, page.getMaxAge().get().getSeconds());
+			CompletableFuture<CachedPage> loaded = cache.get(FIRST, (uri, stale) -> CompletableFuture.completedFuture(page));
+			Assertions.assertSame(page, loaded.orTimeout(1, TimeUnit.SECONDS).join());
+			Assertions.assertTrue(cache.contains(FIRST));
+			Assertions.assertSame(page, cache.get(FIRST, this::load).orTimeout(1, TimeUnit.SECONDS).join());
+			cache = new PageCache(1024 * 1024, TimeUnit.MINUTES.toNanos(1));
+		}
+		Assertions.assertEquals(0, loads.get());
+	}
+
+	@Test
+	void testGet_FallsThroughToStore() {
+		Queue<Runnable> writes = new ArrayDeque<>();
+		PageStore store = new PageStore(directory, 1024 * 1024, 64 * 1024);
+		PageCache cache = new PageCache(1024 * 1024, TimeUnit.MINUTES.toNanos(1), store, writes::add);
+		cache.get(FIRST, this::load).join();
+		cache.get(SECOND, (uri, stale) -> CompletableFuture.completedFuture(
+				new CachedPage(response(200, Map.of("ETag", List.of("\"v1\""), "Cache-Control", List.of("no-cache"))), new byte[10]))).join();
+
+		// The pages are handed over before they are written
+		Assertions.assertEquals(2, writes.size());
+		Assertions.assertEquals(Long.MIN_VALUE, store.getExpiresAt(FIRST));
+		writes.forEach(Runnable::run);
+
+		// A restarted service opens a new cache on the same directory
+		PageCache restarted = new PageCache(1024 * 1024, TimeUnit.MINUTES.toNanos(1), new PageStore(directory, 1024 * 1024, 64 * 1024), Runnable::run);
+		Assertions.assertTrue(restarted.contains(FIRST));
+		Assertions.assertFalse(restarted.contains(SECOND));
+		Assertions.assertEquals(512, restarted.get(FIRST, this::load).join().getBody().length);
+		List<CachedPage> stales = new ArrayList<>();
+		restarted.get(SECOND, (uri, stale) -> {
+			stales.add(stale);
+			return CompletableFuture.completedFuture(stale);
+		}).join();
+
+		Assertions.assertEquals(1, loads.get());
+		Assertions.assertEquals(1, restarted.getStoreHits());
+		Assertions.assertEquals(1, restarted.getRevalidations());
+		Assertions.assertEquals(List.of("\"v1\""), stales.get(0).getHeaders().allValues("ETag"));
+	}
+
+	private CompletableFuture<CachedPage> load(URI uri, CachedPage stale) {
+		loads.incrementAndGet();
+		return CompletableFuture.completedFuture(page(200, 512));
+	}
+
+	private static CachedPage page(int status, int size) {
+		return new CachedPage(response(status, Map.of()), new byte[size]);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static HttpResponse<byte[]> response(int status, Map<String, List<String>> headers) {
+		HttpResponse<byte[]> response = mock(HttpResponse.class);
+		when(response.statusCode()).thenReturn(status);
+		when(response.headers()).thenReturn(HttpHeaders.of(headers, (name, value) -> true));
+		return response;
+	}
+
+}
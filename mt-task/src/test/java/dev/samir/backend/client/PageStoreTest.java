@@ -0,0 +1,120 @@
+package dev.samir.backend.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing the {@link PageStore} keeping the pages on disk:
+ * <ul>
+ * 	<li>Round trip: a page is read back with its status, headers, body and expiration time;</li>
+ * 	<li>Restart: a new store on the same directory finds the pages, ignoring an incomplete record;</li>
+ * 	<li>Compaction: replaced and expired records are reclaimed and the store keeps to its size.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class PageStoreTest {
+
+	private static final URI FIRST = URI.create("http://www.valid.url/1");
+	private static final URI SECOND = URI.create("http://www.valid.url/2");
+	private static final int SEGMENT_SIZE = 4 * 1024;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testGet_RoundTrip() {
+		PageStore store = new PageStore(directory, 64 * 1024, SEGMENT_SIZE);
+		long expiresAt = System.currentTimeMillis() + 60_000;
+		store.put(FIRST, page(FIRST, "un café"), expiresAt);
+
+		PageStore.Stored stored = store.get(FIRST);
+		Assertions.assertEquals(expiresAt, stored.getExpiresAt());
+		Assertions.assertEquals(expiresAt, store.getExpiresAt(FIRST));
+		Assertions.assertEquals(200, stored.getPage().getStatus());
+		Assertions.assertEquals(HttpClient.Version.HTTP_2, stored.getPage().getVersion());
+		Assertions.assertEquals(List.of("text/html; charset=UTF-8"), stored.getPage().getHeaders().allValues("content-type"));
+		Assertions.assertEquals(List.of("\"v1\"", "\"v2\""), stored.getPage().getHeaders().allValues("ETag"));
+		Assertions.assertEquals("un café", new String(stored.getPage().getBody(), StandardCharsets.UTF_8));
+		Assertions.assertNull(store.get(SECOND));
+		Assertions.assertEquals(Long.MIN_VALUE, store.getExpiresAt(SECOND));
+	}
+
+	@Test
+	void testGet_AfterRestart() throws IOException {
+		PageStore store = new PageStore(directory, 64 * 1024, SEGMENT_SIZE);
+		store.put(FIRST, page(FIRST, "first"), Long.MAX_VALUE);
+		store.put(SECOND, page(SECOND, "second"), Long.MAX_VALUE);
+		store.put(FIRST, page(FIRST, "first again"), Long.MAX_VALUE);
+		// Simulates a crash while the last record was written
+		Path segment;
+		try (Stream<Path> files = Files.list(directory)) {
+			segment = files.sorted().reduce((first, second) -> second).orElseThrow();
+		}
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			int start = buffer.getInt(4);
+			start += buffer.getInt(start + 4);
+			int end = start + buffer.getInt(start + 4);
+			buffer.putLong(end - 8, 0L);
+		}
+
+		PageStore restarted = new PageStore(directory, 64 * 1024, SEGMENT_SIZE);
+		Assertions.assertEquals("first", new String(restarted.get(FIRST).getPage().getBody(), StandardCharsets.UTF_8));
+		Assertions.assertEquals("second", new String(restarted.get(SECOND).getPage().getBody(), StandardCharsets.UTF_8));
+		restarted.put(SECOND, page(SECOND, "second again"), Long.MAX_VALUE);
+		Assertions.assertEquals("second again", new String(new PageStore(directory, 64 * 1024, SEGMENT_SIZE)
+				.get(SECOND).getPage().getBody(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testCompact_ReclaimsReplacedAndExpiredPages() {
+		PageStore store = new PageStore(directory, 4 * SEGMENT_SIZE, SEGMENT_SIZE);
+		store.put(SECOND, page(SECOND, "expired"), System.currentTimeMillis() - 1);
+		// Every record takes about a tenth of a segment, so the same page written again fills many segments
+		for (int i = 0; i < 100; i++) {
+			store.put(FIRST, page(FIRST, "version " + i + " ".repeat(300)), Long.MAX_VALUE);
+		}
+
+		Assertions.assertTrue(store.getSegments() <= 4, store::toString);
+		Assertions.assertEquals(1, store.size());
+		Assertions.assertNull(store.get(SECOND));
+		Assertions.assertEquals("version 99", new String(store.get(FIRST).getPage().getBody(), StandardCharsets.UTF_8).trim());
+	}
+
+	@Test
+	void testCompact_DropsOldestPagesOverSize() {
+		PageStore store = new PageStore(directory, 2 * SEGMENT_SIZE, SEGMENT_SIZE);
+		for (int i = 0; i < 100; i++) {
+			URI uri = URI.create("http://www.valid.url/" + i);
+			store.put(uri, page(uri, " ".repeat(300)), Long.MAX_VALUE);
+		}
+
+		Assertions.assertTrue(store.getSegments() <= 2, store::toString);
+		Assertions.assertTrue(store.size() < 30, store::toString);
+		Assertions.assertNull(store.get(URI.create("http://www.valid.url/0")));
+		Assertions.assertNotNull(store.get(URI.create("http://www.valid.url/99")));
+	}
+
+	private static CachedPage page(URI uri, String body) {
+		HttpHeaders headers = HttpHeaders.of(Map.of("Content-Type", List.of("text/html; charset=UTF-8"),
+				"ETag", List.of("\"v1\"", "\"v2\"")), (name, value) -> true);
+		return new CachedPage(uri, 200, HttpClient.Version.HTTP_2, headers, body.getBytes(StandardCharsets.UTF_8));
+	}
+
+}
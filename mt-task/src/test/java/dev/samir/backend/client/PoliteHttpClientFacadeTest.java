@@ -0,0 +1,107 @@
+package dev.samir.backend.client;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import dev.samir.backend.common.configuration.Environment;
+import dev.samir.backend.common.configuration.EnvironmentConfiguration;
+
+/**
+ * Testing the {@link PoliteHttpClientFacade} scheduler:
+ * <ul>
+ * 	<li>Robots: the <b>Crawl-delay</b> of the group applying to every user agent is honoured;</li>
+ * 	<li>In-flight: requests beyond the host limit wait until a previous request completes;</li>
+ * 	<li>Cancellation: a request cancelled while waiting is never sent.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class PoliteHttpClientFacadeTest {
+
+	private HttpClientFacade delegate = mock(HttpClientFacade.class);
+	private Environment environment = new Environment(new EnvironmentConfiguration() {
+		@Override
+		public String hostMaxInFlight() {
+			return "2";
+		}
+	});
+	private PoliteHttpClientFacade facade = new PoliteHttpClientFacade(delegate, environment, Runnable::run);
+
+	@Test
+	void testCrawlDelay_ForAnyUserAgent() {
+		String robots = "User-agent: googlebot\nCrawl-delay: 9\n\nUser-agent: other\nUser-agent: *\nDisallow: /private # comment\nCrawl-delay: 1.5\n";
+		Assertions.assertEquals(Duration.ofMillis(1500), PoliteHttpClientFacade.crawlDelay(robots));
+	}
+
+	@Test
+	void testCrawlDelay_WhenAbsent() {
+		Assertions.assertEquals(Duration.ZERO, PoliteHttpClientFacade.crawlDelay("User-agent: googlebot\nCrawl-delay: 9\n"));
+		Assertions.assertEquals(Duration.ZERO, PoliteHttpClientFacade.crawlDelay(null));
+	}
+
+	@Test
+	void testRequestAsync_KeepsHostInFlightLimit() {
+		List<CompletableFuture<HttpResponse<String>>> sent = new ArrayList<>();
+		AtomicInteger calls = new AtomicInteger();
+		when(delegate.requestAsync(any())).thenAnswer(invocation -> {
+			if (invocation.getArgument(0).toString().endsWith("robots.txt")) {
+				return CompletableFuture.failedFuture(new IllegalStateException());
+			}
+			calls.incrementAndGet();
+			CompletableFuture<HttpResponse<String>> response = new CompletableFuture<>();
+			sent.add(response);
+			return response;
+		});
+
+		List<CompletableFuture<HttpResponse<String>>> results = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			results.add(facade.requestAsync(URI.create("http://www.valid.url/page" + i)));
+		}
+		Assertions.assertEquals(2, calls.get());
+
+		sent.get(0).complete(null);
+		Assertions.assertEquals(3, calls.get());
+		Assertions.assertTrue(results.get(0).isDone());
+		Assertions.assertFalse(results.get(4).isDone());
+	}
+
+	@Test
+	void testRequestAsync_DropsCancelledRequests() {
+		List<CompletableFuture<HttpResponse<String>>> sent = new ArrayList<>();
+		when(delegate.requestAsync(any())).thenAnswer(invocation -> {
+			if (invocation.getArgument(0).toString().endsWith("robots.txt")) {
+				return CompletableFuture.failedFuture(new IllegalStateException());
+			}
+			CompletableFuture<HttpResponse<String>> response = new CompletableFuture<>();
+			sent.add(response);
+			return response;
+		});
+
+		List<CompletableFuture<HttpResponse<String>>> results = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			results.add(facade.requestAsync(URI.create("http://www.valid.url/page" + i)));
+		}
+		results.get(2).cancel(true);
+		results.get(1).cancel(true);
+		Assertions.assertTrue(sent.get(1).isCancelled());
+
+		// The freed slot goes to the last request, the cancelled one waiting in the queue being skipped
+		Assertions.assertEquals(3, sent.size());
+		sent.get(0).complete(null);
+		Assertions.assertEquals(3, sent.size());
+		Assertions.assertTrue(results.get(0).isDone());
+	}
+
+}
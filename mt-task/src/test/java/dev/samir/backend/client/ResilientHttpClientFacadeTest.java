@@ -0,0 +1,157 @@
+package dev.samir.backend.client;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import dev.samir.backend.common.KeywordMatcher;
+import dev.samir.backend.common.configuration.Environment;
+import dev.samir.backend.common.configuration.EnvironmentConfiguration;
+
+/**
+ * Testing the {@link ResilientHttpClientFacade} and its {@link CircuitBreaker}:
+ * <ul>
+ * 	<li>Retries: failed requests and responses or pages of overloaded hosts are sent again, up to the configured retries;</li>
+ * 	<li>Errors: failures which do not come from the host are not retried;</li>
+ * 	<li>Cancellation: cancelling a request cancels its attempt in flight;</li>
+ * 	<li>Circuit breaker: a host failing too many times in a row fails fast, then is probed once its cool down is over.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class ResilientHttpClientFacadeTest {
+
+	private static final URI URI_PAGE = URI.create("http://www.valid.url/page");
+
+	private HttpClientFacade delegate = mock(HttpClientFacade.class);
+	private Environment environment = new Environment(new EnvironmentConfiguration() {
+		@Override
+		public String fetchBackoff() {
+			return "1";
+		}
+
+		@Override
+		public String breakerFailures() {
+			return "3";
+		}
+	});
+	private ResilientHttpClientFacade facade = new ResilientHttpClientFacade(delegate, environment, Runnable::run);
+
+	@Test
+	void testRequestAsync_RetriesFailuresAndOverloadedHosts() {
+		HttpResponse<String> overloaded = response(503);
+		HttpResponse<String> ok = response(200);
+		when(delegate.requestAsync(any())).thenReturn(CompletableFuture.failedFuture(new HttpTimeoutException("timed out")))
+				.thenReturn(CompletableFuture.completedFuture(overloaded))
+				.thenReturn(CompletableFuture.completedFuture(ok));
+
+		Assertions.assertSame(ok, facade.requestAsync(URI_PAGE).join());
+	}
+
+	@Test
+	void testScanAsync_RetriesOverloadedHosts() {
+		HtmlPageScanner overloaded = scanner().status(503);
+		HtmlPageScanner ok = scanner().status(200);
+		when(delegate.scanAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(overloaded))
+				.thenReturn(CompletableFuture.completedFuture(ok));
+
+		Assertions.assertSame(ok, facade.scanAsync(URI_PAGE, this::scanner).join());
+		verify(delegate, times(2)).scanAsync(any(), any());
+	}
+
+	@Test
+	void testScanAsync_GivesUpAfterRetries() {
+		AtomicInteger calls = new AtomicInteger();
+		when(delegate.scanAsync(any(), any())).thenAnswer(invocation -> {
+			calls.incrementAndGet();
+			return CompletableFuture.failedFuture(new IOException("connection reset"));
+		});
+
+		CompletionException exception = Assertions.assertThrows(CompletionException.class, () -> facade.scanAsync(URI_PAGE, this::scanner).join());
+
+		Assertions.assertTrue(exception.getCause() instanceof IOException);
+		Assertions.assertEquals(3, calls.get());
+	}
+
+	@Test
+	void testScanAsync_DoesNotRetryOtherFailures() {
+		AtomicInteger calls = new AtomicInteger();
+		when(delegate.scanAsync(any(), any())).thenAnswer(invocation -> {
+			calls.incrementAndGet();
+			return CompletableFuture.failedFuture(new IllegalStateException());
+		});
+
+		Assertions.assertThrows(CompletionException.class, () -> facade.scanAsync(URI_PAGE, this::scanner).join());
+		Assertions.assertEquals(1, calls.get());
+	}
+
+	@Test
+	void testScanAsync_FailsFastWhileCircuitIsOpen() {
+		AtomicInteger calls = new AtomicInteger();
+		when(delegate.scanAsync(any(), any())).thenAnswer(invocation -> {
+			calls.incrementAndGet();
+			return CompletableFuture.failedFuture(new IOException("connection refused"));
+		});
+
+		Assertions.assertThrows(CompletionException.class, () -> facade.scanAsync(URI_PAGE, this::scanner).join());
+		CompletionException exception = Assertions.assertThrows(CompletionException.class,
+				() -> facade.scanAsync(URI.create("http://www.valid.url/other"), this::scanner).join());
+
+		Assertions.assertTrue(exception.getCause() instanceof CircuitOpenException, exception::toString);
+		Assertions.assertEquals(3, calls.get());
+	}
+
+	@Test
+	void testScanAsync_CancelsAttemptInFlight() {
+		CompletableFuture<HtmlPageScanner> attempt = new CompletableFuture<>();
+		when(delegate.scanAsync(any(), any())).thenReturn(attempt);
+
+		facade.scanAsync(URI_PAGE, this::scanner).cancel(true);
+
+		Assertions.assertTrue(attempt.isCancelled());
+	}
+
+	@Test
+	void testCircuitBreaker_ProbesAfterCoolDown() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 0);
+		breaker.onFailure();
+		Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		breaker.onFailure();
+		Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		Assertions.assertTrue(breaker.tryAcquire());
+		Assertions.assertFalse(breaker.tryAcquire());
+		breaker.onFailure();
+		Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+		Assertions.assertTrue(breaker.tryAcquire());
+		breaker.onSuccess();
+		Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		Assertions.assertTrue(breaker.tryAcquire());
+	}
+
+	@SuppressWarnings("unchecked")
+	private static HttpResponse<String> response(int status) {
+		HttpResponse<String> response = mock(HttpResponse.class);
+		when(response.statusCode()).thenReturn(status);
+		return response;
+	}
+
+	private HtmlPageScanner scanner() {
+		return new HtmlPageScanner(new KeywordMatcher("keyword"), () -> true);
+	}
+
+}
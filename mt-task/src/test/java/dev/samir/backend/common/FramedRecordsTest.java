@@ -0,0 +1,197 @@
+package dev.samir.backend.common;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing the {@link FramedRecords} of the append-only logs:
+ * <ul>
+ * 	<li>Framing: records written are read back in order, reading stopping at an incomplete last record;</li>
+ * 	<li>Torn writes: a batch which could not be written completely is truncated from the file and written again.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class FramedRecordsTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testNext_StopsAtIncompleteRecord() throws IOException {
+		Path log = directory.resolve("log");
+		FramedRecords records = new FramedRecords();
+		records.append((byte) 1, out -> out.writeUTF("first"));
+		records.append((byte) 2, out -> out.writeUTF("second"));
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FramedRecords.write(channel, records.take());
+		}
+		Assertions.assertEquals(0, records.size());
+		Assertions.assertEquals(List.of("first", "second"), read(log));
+
+		// The last record loses its last byte
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 1);
+		}
+		Assertions.assertEquals(List.of("first"), read(log));
+	}
+
+	@Test
+	void testWrite_TruncatesTornBatches() throws IOException {
+		Path log = directory.resolve("log");
+		FramedRecords records = new FramedRecords();
+		records.append((byte) 1, out -> out.writeUTF("first"));
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FramedRecords.write(channel, records.take());
+			long size = channel.size();
+			records.append((byte) 2, out -> out.writeUTF("second"));
+			ByteBuffer batch = records.take();
+
+			TornChannel torn = new TornChannel(channel);
+			Assertions.assertThrows(IOException.class, () -> FramedRecords.write(torn, batch));
+			Assertions.assertEquals(size, channel.size());
+
+			FramedRecords.write(channel, batch);
+		}
+		Assertions.assertEquals(List.of("first", "second"), read(log));
+	}
+
+	private static List<String> read(Path log) throws IOException {
+		List<String> values = new ArrayList<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(log)))) {
+			byte[] record;
+			while ((record = FramedRecords.next(in, 1024, log)) != null) {
+				// The type, then the length of the string
+				values.add(new String(record, 3, record.length - 3, StandardCharsets.UTF_8));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Writes a few bytes of the first buffer, then fails as a full disk would.
+	 */
+	private static final class TornChannel extends FileChannel {
+
+		private final FileChannel channel;
+		private boolean written;
+
+		private TornChannel(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			if (written) {
+				throw new IOException("No space left on device");
+			}
+			written = true;
+			ByteBuffer part = src.duplicate();
+			part.limit(part.position() + 3);
+			int count = channel.write(part);
+			src.position(src.position() + count);
+			return count;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			return channel.read(dst);
+		}
+
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+			return channel.read(dsts, offset, length);
+		}
+
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+			throw new IOException("No space left on device");
+		}
+
+		@Override
+		public long position() throws IOException {
+			return channel.position();
+		}
+
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			channel.position(newPosition);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			return channel.size();
+		}
+
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			channel.truncate(size);
+			return this;
+		}
+
+		@Override
+		public void force(boolean metaData) throws IOException {
+			channel.force(metaData);
+		}
+
+		@Override
+		public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+			return channel.transferTo(position, count, target);
+		}
+
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+			return channel.transferFrom(src, position, count);
+		}
+
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			return channel.read(dst, position);
+		}
+
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			throw new IOException("No space left on device");
+		}
+
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+			return channel.map(mode, position, size);
+		}
+
+		@Override
+		public FileLock lock(long position, long size, boolean shared) throws IOException {
+			return channel.lock(position, size, shared);
+		}
+
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+			return channel.tryLock(position, size, shared);
+		}
+
+		@Override
+		protected void implCloseChannel() {
+			// The underlying channel is closed by the test
+		}
+
+	}
+
+}
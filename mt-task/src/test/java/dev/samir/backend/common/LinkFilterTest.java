@@ -0,0 +1,39 @@
+package dev.samir.backend.common;
+
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the links rejected by {@link LinkFilter}:
+ * <ul>
+ * 	<li>Extensions: only the extension of the last path segment counts, whatever its case;</li>
+ * 	<li>Pattern: links matching the skipped links pattern anywhere are rejected.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class LinkFilterTest {
+
+	private LinkFilter filter = new LinkFilter(LinkFilter.DEFAULT_EXTENSIONS, Pattern.compile("/(login|logout)\\b"));
+
+	@Test
+	void testAccepts_ByExtension() {
+		Assertions.assertFalse(filter.accepts("http://www.valid.url/files/report.PDF"));
+		Assertions.assertFalse(filter.accepts("http://www.valid.url/img/logo.png?v=2#top"));
+		Assertions.assertTrue(filter.accepts("http://www.valid.url/page.html"));
+		Assertions.assertTrue(filter.accepts("http://www.valid.url/v1.2/page"));
+		Assertions.assertTrue(filter.accepts("http://www.valid.url/download?file=report.pdf"));
+		Assertions.assertTrue(filter.accepts("http://www.valid.url"));
+		Assertions.assertEquals("gz", LinkFilter.extension("http://www.valid.url/archive.tar.gz"));
+		Assertions.assertEquals("", LinkFilter.extension("http://www.valid.url/dir.d/"));
+	}
+
+	@Test
+	void testAccepts_ByPattern() {
+		Assertions.assertFalse(filter.accepts("http://www.valid.url/login?next=/"));
+		Assertions.assertTrue(filter.accepts("http://www.valid.url/logins-history"));
+	}
+
+}
@@ -0,0 +1,42 @@
+package dev.samir.backend.common;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the {@link LongHashSet} holding the fingerprints of the visited URLs:
+ * <ul>
+ * 	<li>Membership: it agrees with a {@link HashSet} while growing, zero included;</li>
+ * 	<li>Export: every value is copied out once, so a set can be rebuilt from it.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class LongHashSetTest {
+
+	@Test
+	void testAdd_WhileGrowing() {
+		LongHashSet set = new LongHashSet(1);
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(7);
+
+		for (int i = 0; i < 50_000; i++) {
+			// A narrow range makes sure some values are added twice
+			long value = i % 10 == 0 ? 0L : random.nextInt(40_000) * 0x9E3779B97F4A7C15L;
+			Assertions.assertEquals(expected.add(value), set.add(value));
+		}
+
+		Assertions.assertEquals(expected.size(), set.size());
+		expected.forEach(value -> Assertions.assertTrue(set.contains(value)));
+		Assertions.assertFalse(set.contains(1L));
+		Assertions.assertEquals(expected, LongStream.of(set.toArray()).boxed().collect(Collectors.toSet()));
+		Assertions.assertEquals(expected.size(), set.toArray().length);
+	}
+
+}
@@ -0,0 +1,62 @@
+package dev.samir.backend.common;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the {@link LongLongHashMap} indexing the pages stored on disk:
+ * <ul>
+ * 	<li>Mapping: it agrees with a {@link HashMap} while growing and removing, zero included;</li>
+ * 	<li>Removal: entries are only removed while they hold the expected value.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class LongLongHashMapTest {
+
+	@Test
+	void testPutAndRemove_WhileGrowing() {
+		LongLongHashMap map = new LongLongHashMap(1);
+		Map<Long, Long> expected = new HashMap<>();
+		Random random = new Random(7);
+
+		for (int i = 0; i < 100_000; i++) {
+			// A narrow range makes sure keys are replaced and removed, and collide once masked
+			long key = i % 10 == 0 ? 0L : random.nextInt(20_000) * 0x9E3779B97F4A7C15L;
+			long value = random.nextInt(Integer.MAX_VALUE);
+			if (random.nextInt(3) == 0) {
+				Long current = expected.get(key);
+				if (current != null) {
+					Assertions.assertTrue(map.remove(key, current));
+					expected.remove(key);
+				}
+			} else {
+				Assertions.assertEquals(expected.getOrDefault(key, LongLongHashMap.MISSING), map.put(key, value));
+				expected.put(key, value);
+			}
+		}
+
+		Assertions.assertEquals(expected.size(), map.size());
+		expected.forEach((key, value) -> Assertions.assertEquals(value, map.get(key)));
+		Assertions.assertEquals(LongLongHashMap.MISSING, map.get(1L));
+	}
+
+	@Test
+	void testRemove_OnlyExpectedValue() {
+		LongLongHashMap map = new LongLongHashMap(16);
+		map.put(42L, 7L);
+
+		Assertions.assertFalse(map.remove(42L, 8L));
+		Assertions.assertFalse(map.remove(43L, 7L));
+		Assertions.assertEquals(7L, map.get(42L));
+		Assertions.assertTrue(map.remove(42L, 7L));
+		Assertions.assertEquals(LongLongHashMap.MISSING, map.get(42L));
+		Assertions.assertEquals(0, map.size());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> map.put(42L, -2L));
+	}
+
+}
@@ -0,0 +1,67 @@
+package dev.samir.backend.common;
+
+import java.nio.CharBuffer;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the keywords found by the {@link MultiKeywordMatcher}:
+ * <ul>
+ * 	<li>Overlap: keywords inside other keywords, or sharing their prefix or suffix, are all found;</li>
+ * 	<li>Chunks: a keyword split across chunks is found, and the case is ignored like {@link KeywordMatcher} does;</li>
+ * 	<li>Random: the keywords found are the ones a plain search finds, for random texts of a small alphabet.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class MultiKeywordMatcherTest {
+
+	@Test
+	void testMatches_OverlappingKeywords() {
+		MultiKeywordMatcher matcher = new MultiKeywordMatcher(List.of("he", "she", "his", "hers", "absent"));
+
+		Assertions.assertEquals(BitSet.valueOf(new long[] { 0b1011 }), matcher.matches("ushers"));
+		Assertions.assertEquals(BitSet.valueOf(new long[] { 0b0101 }), matcher.matches("this he"));
+		Assertions.assertTrue(matcher.matches("nothing to see").isEmpty());
+	}
+
+	@Test
+	void testAdvance_AcrossChunksIgnoringCase() {
+		MultiKeywordMatcher matcher = new MultiKeywordMatcher(List.of("CAFÉ crème", "keyword", "keyword"));
+		BitSet found = new BitSet();
+
+		int state = matcher.advance(matcher.initialState(), CharBuffer.wrap("a café Crè"), found);
+		Assertions.assertTrue(found.isEmpty());
+		matcher.advance(state, CharBuffer.wrap("me and a KeyWord"), found);
+
+		// The same keyword twice is found for both crawls
+		Assertions.assertEquals(3, found.cardinality());
+	}
+
+	@Test
+	void testMatches_LikePlainSearch() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			List<String> keywords = IntStream.range(0, 1 + random.nextInt(8))
+				.mapToObj(i -> text(random, 1 + random.nextInt(4)))
+				.collect(Collectors.toList());
+			String text = text(random, random.nextInt(40));
+
+			BitSet expected = new BitSet();
+			IntStream.range(0, keywords.size()).filter(i -> text.contains(keywords.get(i))).forEach(expected::set);
+
+			Assertions.assertEquals(expected, new MultiKeywordMatcher(keywords).matches(text), keywords + " in " + text);
+		}
+	}
+
+	private static String text(Random random, int length) {
+		return random.ints(length, 'a', 'd').mapToObj(c -> String.valueOf((char) c)).collect(Collectors.joining());
+	}
+
+}
@@ -0,0 +1,71 @@
+package dev.samir.backend.common;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the URLs produced by {@link UrlCanonicalizer}:
+ * <ul>
+ * 	<li>Resolution: references are resolved against the base as of RFC 3986, like {@link URI#resolve(String)} mostly does;</li>
+ * 	<li>Canonical form: host case, default port, fragments, tracking parameters and parameters order;</li>
+ * 	<li>Rejection: other schemes and malformed URLs are dropped, while unsafe characters are encoded;</li>
+ * 	<li>Fingerprint: equal for the same page with or without a trailing slash.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class UrlCanonicalizerTest {
+
+	private static final String BASE = "http://www.valid.url/dir/page.html?q=1";
+
+	@Test
+	void testResolve_LikeUri() {
+		for (String href : new String[] { "/a", "a", "./a", "../a", "a/./b/../c", "//other.url/p",
+				"https://other.url", "dir/", "." }) {
+			Assertions.assertEquals(URI.create(BASE).resolve(href).toString(), UrlCanonicalizer.resolve(BASE, href), href);
+		}
+		// Where URI departs from RFC 3986: empty paths and query only references keep the base path, and
+		// segments above the root are dropped
+		Assertions.assertEquals("http://www.valid.url/a", UrlCanonicalizer.resolve(BASE, "../../a"));
+		Assertions.assertEquals("http://www.valid.url/dir/page.html?x=1", UrlCanonicalizer.resolve(BASE, "?x=1"));
+		Assertions.assertEquals("http://www.valid.url/dir/page.html?q=1", UrlCanonicalizer.resolve(BASE, ""));
+		Assertions.assertEquals("http://www.valid.url/a", UrlCanonicalizer.resolve("http://www.valid.url", "a"));
+	}
+
+	@Test
+	void testResolve_ToCanonicalForm() {
+		Assertions.assertEquals("http://www.valid.url/A", UrlCanonicalizer.resolve(BASE, "HTTP://WWW.Valid.URL:80/A#top"));
+		Assertions.assertEquals("https://www.valid.url/dir/", UrlCanonicalizer.canonicalize("https://www.valid.url:443/dir/"));
+		Assertions.assertEquals("http://www.valid.url:8080/", UrlCanonicalizer.canonicalize("http://www.valid.url:8080/"));
+		Assertions.assertEquals("http://www.valid.url/dir/page.html?q=1", UrlCanonicalizer.resolve(BASE, "#section"));
+		Assertions.assertEquals("http://www.valid.url/s?a=2&b=1&b=0",
+				UrlCanonicalizer.canonicalize("http://www.valid.url/s?utm_source=x&b=1&gclid=y&a=2&&b=0&utm=1"));
+		Assertions.assertEquals("http://www.valid.url/s", UrlCanonicalizer.canonicalize("http://www.valid.url/s?utm_medium=mail"));
+	}
+
+	@Test
+	void testResolve_RejectsOrEncodes() {
+		Assertions.assertNull(UrlCanonicalizer.resolve(BASE, "mailto:someone@valid.url"));
+		Assertions.assertNull(UrlCanonicalizer.resolve(BASE, "javascript:void(0)"));
+		Assertions.assertNull(UrlCanonicalizer.resolve(BASE, "http:relative"));
+		Assertions.assertNull(UrlCanonicalizer.resolve(BASE, "http://"));
+		Assertions.assertNull(UrlCanonicalizer.resolve(BASE, "http://bad host/"));
+		Assertions.assertNull(UrlCanonicalizer.canonicalize("/relative"));
+
+		String encoded = UrlCanonicalizer.resolve(BASE, "/a b/ç|%zz?x=\"%41\"");
+		Assertions.assertEquals("http://www.valid.url/a%20b/%C3%A7%7C%25zz?x=%22%41%22", encoded);
+		Assertions.assertDoesNotThrow(() -> URI.create(encoded));
+	}
+
+	@Test
+	void testFingerprint_IgnoresTrailingSlash() {
+		Assertions.assertEquals(UrlCanonicalizer.fingerprint("http://www.valid.url/a"), UrlCanonicalizer.fingerprint("http://www.valid.url/a/"));
+		Assertions.assertEquals(UrlCanonicalizer.fingerprint("http://www.valid.url"), UrlCanonicalizer.fingerprint("http://www.valid.url/"));
+		Assertions.assertEquals(UrlCanonicalizer.fingerprint("http://www.valid.url/a?b=1"), UrlCanonicalizer.fingerprint("http://www.valid.url/a/?b=1"));
+		Assertions.assertNotEquals(UrlCanonicalizer.fingerprint("http://www.valid.url/a"), UrlCanonicalizer.fingerprint("http://www.valid.url/b"));
+		Assertions.assertNotEquals(UrlCanonicalizer.fingerprint("http://www.valid.url/a"), UrlCanonicalizer.fingerprint("http://www.valid.url/a?b=1"));
+	}
+
+}
@@ -0,0 +1,70 @@
+package dev.samir.backend.common;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the {@link UrlDictionary} front-coding the result URLs:
+ * <ul>
+ * 	<li>Interning: a URL keeps its identifier, is only added once, and every identifier decodes back to its URL across
+ * 	blocks;</li>
+ * 	<li>Lookup: a URL never interned is not found, and is not interned by looking it up;</li>
+ * 	<li>Front coding: URLs sharing the base URL take a fraction of their length.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class UrlDictionaryTest {
+
+	private UrlDictionary dictionary = new UrlDictionary();
+
+	@Test
+	void testIntern_DecodesBack() {
+		List<String> urls = IntStream.range(0, 1000)
+			.mapToObj(i -> "http://www.valid.url/" + (i % 3 == 0 ? "ção/" : "page/") + i)
+			.collect(Collectors.toList());
+
+		List<Integer> ids = urls.stream().map(dictionary::intern).collect(Collectors.toList());
+
+		Assertions.assertEquals(IntStream.range(0, 1000).boxed().collect(Collectors.toList()), ids);
+		for (int i = 0; i < urls.size(); i++) {
+			Assertions.assertEquals(i, dictionary.intern(urls.get(i)));
+			Assertions.assertEquals(i, dictionary.find(urls.get(i)));
+			Assertions.assertEquals(urls.get(i), dictionary.url(i));
+		}
+		Assertions.assertEquals(1000, dictionary.size());
+		Assertions.assertFalse(dictionary.add(urls.get(999)));
+		Assertions.assertTrue(dictionary.add("http://www.valid.url/page/1000"));
+		Assertions.assertEquals(1000, dictionary.find("http://www.valid.url/page/1000"));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> dictionary.url(1001));
+	}
+
+	@Test
+	void testFind_NeverInterned() {
+		dictionary.intern("http://www.valid.url");
+
+		Assertions.assertEquals(-1, dictionary.find("http://www.valid.url/"));
+		Assertions.assertEquals(-1, dictionary.find(""));
+		Assertions.assertEquals(1, dictionary.size());
+		Assertions.assertEquals(1, dictionary.intern(""));
+		Assertions.assertEquals("", dictionary.url(1));
+	}
+
+	@Test
+	void testIntern_FrontCoded() {
+		int length = 0;
+		for (int i = 0; i < 10_000; i++) {
+			String url = "http://www.valid.url/section/subsection/page-" + i;
+			length += url.length();
+			dictionary.intern(url);
+		}
+
+		// Each URL stores the few characters following the prefix it shares with the previous one
+		Assertions.assertTrue(dictionary.encodedSize() * 5 < length, dictionary.encodedSize() + " bytes for " + length);
+	}
+
+}
@@ -0,0 +1,65 @@
+package dev.samir.backend.persistence;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the {@link EvictedFingerprints} of the evicted crawls:
+ * <ul>
+ * 	<li>Window: a fingerprint is remembered for at least its window, and forgotten within two;</li>
+ * 	<li>Export: only the fingerprints remembered are copied out, once each.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class EvictedFingerprintsTest {
+
+	private AtomicLong now = new AtomicLong(1_000_000);
+	private EvictedFingerprints fingerprints = new EvictedFingerprints(Duration.ofMinutes(1), now::get);
+
+	@Test
+	void testContains_WithinTheWindow() {
+		fingerprints.add(1);
+		now.addAndGet(Duration.ofSeconds(59).toMillis());
+		fingerprints.add(2);
+
+		// The second one was added less than a window ago, the first one less than two windows ago
+		now.addAndGet(Duration.ofSeconds(59).toMillis());
+		Assertions.assertTrue(fingerprints.contains(1));
+		Assertions.assertTrue(fingerprints.contains(2));
+
+		now.addAndGet(Duration.ofSeconds(62).toMillis());
+		Assertions.assertFalse(fingerprints.contains(1));
+		Assertions.assertFalse(fingerprints.contains(2));
+	}
+
+	@Test
+	void testContains_AfterALongIdle() {
+		fingerprints.add(1);
+
+		now.addAndGet(Duration.ofMinutes(2).toMillis());
+
+		Assertions.assertFalse(fingerprints.contains(1));
+	}
+
+	@Test
+	void testToArray_RememberedOnly() {
+		fingerprints.add(1);
+		now.addAndGet(Duration.ofMinutes(1).toMillis());
+		fingerprints.add(2);
+		fingerprints.add(1);
+		Assertions.assertArrayEquals(new long[] { 1, 2 }, Arrays.stream(fingerprints.toArray()).sorted().toArray());
+
+		now.addAndGet(Duration.ofMinutes(1).toMillis());
+		fingerprints.add(3);
+
+		Assertions.assertArrayEquals(new long[] { 1, 2, 3 }, Arrays.stream(fingerprints.toArray()).sorted().toArray());
+		now.addAndGet(Duration.ofMinutes(1).toMillis());
+		Assertions.assertArrayEquals(new long[] { 3 }, fingerprints.toArray());
+	}
+
+}
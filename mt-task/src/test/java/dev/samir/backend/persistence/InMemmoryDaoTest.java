@@ -1,6 +1,8 @@
 package dev.samir.backend.persistence;
 import static org.mockito.Mockito.mock;
 
+import java.util.List;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +20,7 @@ import dev.samir.backend.route.model.CrawlStatus;
  * <ul>
  * 	<li>Persist: receives only the URL and randomly generates de ID before saving at the database;</li>
  *  <li>Update (url) or (status): Update de URL or the status. Depends on both valid identifier AND valid URL or STATUS;</li>
+ *  <li>Evict: only finished crawls are evicted, fetching them afterwards failing as expired;</li>
  * </ul>
  * @author Scheide, Samir
  */
@@ -115,5 +118,54 @@ class InMemmoryDaoTest {
         Assertions.assertNotNull(updateResult);
         Assertions.assertEquals(CrawlStatus.DONE.name().toLowerCase(), updateResult.getStatus().toLowerCase());
     }
+    
+    @Test
+    void testUpdateUrl_WhenLimitReached() {
+    	String newUrl = "http://www.new.url";
+    	Mockito
+    		.when(validation.applyURLValidation(newUrl)).thenReturn(newUrl);
+        CrawlTableResultSet persistResult = dao.persist(url);
+        
+        Assertions.assertFalse(dao.updateUrl(persistResult.getId(), newUrl, 1));
+        Assertions.assertTrue(dao.updateUrl(persistResult.getId(), newUrl, 2));
+        Assertions.assertFalse(dao.updateUrl(persistResult.getId(), newUrl, 3));
+        Assertions.assertEquals(2, dao.get(id).getUrls().size());
+    }
+    
+    @Test
+    void testRestore_CreatesOrUpdatesCrawl() {
+        CrawlTableResultSet restored = dao.restore(id, CrawlStatus.HALT, List.of(url));
+        
+        Assertions.assertEquals(CrawlStatus.HALT.name(), dao.get(id).getStatus());
+        Assertions.assertSame(restored, dao.restore(id, CrawlStatus.ACTIVE, List.of(url, "http://www.new.url")));
+        Assertions.assertEquals(CrawlStatus.ACTIVE.name(), restored.getStatus());
+        Assertions.assertEquals(2, restored.getUrls().size());
+    }
+    
+    @Test
+    void testCompareAndSetStatus_FollowsStateMachine() {
+        CrawlTableResultSet persistResult = dao.persist(url);
+        
+        Assertions.assertFalse(dao.compareAndSetStatus(persistResult.getId(), CrawlStatus.HALT, CrawlStatus.DONE, null));
+        Assertions.assertTrue(dao.compareAndSetStatus(persistResult.getId(), CrawlStatus.ACTIVE, CrawlStatus.HALT, null));
+        Assertions.assertTrue(dao.compareAndSetStatus(persistResult.getId(), CrawlStatus.HALT, CrawlStatus.ACTIVE, null));
+        Assertions.assertTrue(dao.compareAndSetStatus(persistResult.getId(), CrawlStatus.ACTIVE, CrawlStatus.FAILED, "failure"));
+        Assertions.assertFalse(dao.compareAndSetStatus(persistResult.getId(), CrawlStatus.FAILED, CrawlStatus.ACTIVE, null));
+        Assertions.assertEquals(CrawlStatus.FAILED.name(), dao.get(id).getStatus());
+        Assertions.assertEquals("failure", dao.get(id).getMessage());
+    }
+
+    @Test
+    void testEvict_FetchingFailsAsExpired() {
+        dao.persist(url);
+        
+        Assertions.assertFalse(dao.evict(id));
+        Assertions.assertTrue(dao.compareAndSetStatus(id, CrawlStatus.ACTIVE, CrawlStatus.DONE, null));
+        Assertions.assertTrue(dao.evict(id));
+        Assertions.assertFalse(dao.evict(id));
+        
+        DataAccessObjectException expired = Assertions.assertThrows(DataAccessObjectException.class, () -> dao.get(id));
+        Assertions.assertEquals(1004, expired.getErrorCode());
+    }
 
 }
@@ -0,0 +1,88 @@
+package dev.samir.backend.persistence;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.samir.backend.common.RandomUtils;
+import dev.samir.backend.common.validation.DefaultValidation;
+import dev.samir.backend.persistence.model.CrawlTableResultSet;
+import dev.samir.backend.route.model.CrawlStatus;
+
+/**
+ * Testing the {@link MappedResultsDao}, whose crawls keep their results in a {@link MappedUrlStore}:
+ * <ul>
+ * 	<li>Persist: the first URL of a new crawl is moved to the store, and the next ones added to it up to the limit;</li>
+ * 	<li>Restore: the URLs of a restored crawl are added to the store along with the ones it already had;</li>
+ * 	<li>Evict: the URLs of an evicted crawl are released, while a crawl still running cannot be evicted.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class MappedResultsDaoTest {
+
+	@TempDir
+	Path directory;
+
+	private InMemmoryDao memory = new InMemmoryDao(new DefaultValidation(), new RandomUtils());
+
+	private MappedResultsDao dao;
+
+	@BeforeEach
+	void setUp() {
+		memory.clear();
+		dao = new MappedResultsDao(memory, directory);
+	}
+
+	@AfterEach
+	void tearDown() {
+		dao.close();
+	}
+
+	@Test
+	void testPersist_ResultsOffHeap() {
+		String id = dao.persist("http://www.valid.url").getId();
+
+		Assertions.assertTrue(dao.updateUrl(id, "http://www.valid.url/a", 2));
+		Assertions.assertFalse(dao.updateUrl(id, "http://www.valid.url/b", 2));
+
+		CrawlTableResultSet crawl = dao.get(id);
+		Assertions.assertTrue(crawl.getUrls() instanceof MappedUrlStore.UrlSet);
+		Assertions.assertEquals(Set.of("http://www.valid.url", "http://www.valid.url/a"), Set.copyOf(crawl.getUrls()));
+	}
+
+	@Test
+	void testRestore_ResultsOffHeap() {
+		memory.restore("restored", CrawlStatus.ACTIVE, List.of("http://www.valid.url"));
+
+		CrawlTableResultSet crawl = dao.restore("restored", CrawlStatus.HALT, List.of("http://www.valid.url", "http://www.valid.url/a"));
+
+		Assertions.assertTrue(crawl.getUrls() instanceof MappedUrlStore.UrlSet);
+		Assertions.assertEquals(CrawlStatus.HALT.name(), crawl.getStatus());
+		Assertions.assertEquals(Set.of("http://www.valid.url", "http://www.valid.url/a"), Set.copyOf(crawl.getUrls()));
+		Assertions.assertTrue(dao.updateUrl("restored", "http://www.valid.url/b", 3));
+		Assertions.assertFalse(dao.updateUrl("restored", "http://www.valid.url/c", 3));
+	}
+
+	@Test
+	void testEvict_ReleasesResults() {
+		String id = dao.persist("http://www.valid.url").getId();
+		CrawlTableResultSet crawl = dao.get(id);
+
+		Assertions.assertFalse(dao.evict(id));
+		Assertions.assertEquals(1, crawl.getUrls().size());
+
+		dao.updateStatus(id, CrawlStatus.DONE.name(), null);
+		Assertions.assertTrue(dao.evict(id));
+		Assertions.assertTrue(crawl.getUrls().isEmpty());
+		Assertions.assertFalse(dao.evict(id));
+		Assertions.assertFalse(dao.evict("absent"));
+	}
+
+}
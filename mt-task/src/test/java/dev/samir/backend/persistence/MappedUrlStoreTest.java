@@ -0,0 +1,149 @@
+package dev.samir.backend.persistence;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Testing the {@link MappedUrlStore} with chunks and a table small enough to be outgrown:
+ * <ul>
+ * 	<li>Sets: every set holds its own URLs, duplicates being ignored within a set only;</li>
+ * 	<li>Growth: the URLs are still found and iterated once the arena spans many chunks and the table was doubled;</li>
+ * 	<li>Iteration: an iterator or a snapshot goes through the URLs in the order they were added, leaving out the ones
+ * 	added after it was created;</li>
+ * 	<li>Range: pages after a cursor are in the order the URLs were added, wherever the cursor falls among the blocks;</li>
+ * 	<li>Release: a released set reads empty while the other sets are intact, and its blocks are reused.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class MappedUrlStoreTest {
+
+	@TempDir
+	Path directory;
+
+	private MappedUrlStore store;
+
+	@BeforeEach
+	void setUp() {
+		store = new MappedUrlStore(directory, 128, 4);
+	}
+
+	@AfterEach
+	void tearDown() {
+		store.close();
+	}
+
+	@Test
+	void testAdd_DuplicatesWithinSet() {
+		Set<String> first = store.newSet();
+		Set<String> second = store.newSet();
+
+		Assertions.assertTrue(first.add("http://www.valid.url"));
+		Assertions.assertFalse(first.add("http://www.valid.url"));
+		Assertions.assertTrue(second.add("http://www.valid.url"));
+		Assertions.assertTrue(second.add("http://www.valid.url/ção"));
+
+		Assertions.assertEquals(Set.of("http://www.valid.url"), new HashSet<>(first));
+		Assertions.assertEquals(Set.of("http://www.valid.url", "http://www.valid.url/ção"), new HashSet<>(second));
+		Assertions.assertFalse(first.contains("http://www.valid.url/ção"));
+		Assertions.assertTrue(second.contains("http://www.valid.url/ção"));
+	}
+
+	@Test
+	void testAdd_GrowsChunksAndTable() {
+		Set<String> first = store.newSet();
+		Set<String> second = store.newSet();
+		Set<String> urls = IntStream.range(0, 1000).mapToObj(i -> "http://www.valid.url/" + i).collect(Collectors.toSet());
+
+		urls.forEach(url -> Assertions.assertTrue(first.add(url)));
+		urls.stream().limit(10).forEach(second::add);
+		urls.forEach(url -> Assertions.assertFalse(first.add(url)));
+
+		Assertions.assertEquals(1000, first.size());
+		Assertions.assertEquals(urls, new HashSet<>(first));
+		Assertions.assertTrue(first.containsAll(urls));
+		Assertions.assertEquals(10, second.size());
+		Assertions.assertEquals(10, new HashSet<>(second).size());
+	}
+
+	@Test
+	void testIterator_LeavesOutLaterUrls() {
+		Set<String> urls = store.newSet();
+		urls.add("http://www.valid.url/a");
+		urls.add("http://www.valid.url/b");
+
+		Iterator<String> iterator = urls.iterator();
+		Set<String> snapshot = ((MappedUrlStore.UrlSet) urls).snapshot();
+		urls.add("http://www.valid.url/c");
+
+		Assertions.assertEquals("http://www.valid.url/a", iterator.next());
+		Assertions.assertEquals("http://www.valid.url/b", iterator.next());
+		Assertions.assertFalse(iterator.hasNext());
+		Assertions.assertEquals(2, snapshot.size());
+		Assertions.assertEquals(3, urls.size());
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> urls.remove("http://www.valid.url/a"));
+	}
+
+	@Test
+	void testRange_PagesInOrder() {
+		MappedUrlStore.UrlSet urls = store.newSet();
+		IntStream.range(0, 5).forEach(i -> urls.add("http://www.valid.url/" + i));
+
+		Assertions.assertEquals(List.of("http://www.valid.url/0", "http://www.valid.url/1"), urls.range(0, 2));
+		Assertions.assertEquals(List.of("http://www.valid.url/3", "http://www.valid.url/4"), urls.range(3, 10));
+		Assertions.assertTrue(urls.range(5, 10).isEmpty());
+		Assertions.assertTrue(store.newSet().range(0, 10).isEmpty());
+	}
+
+	@Test
+	void testRange_SeeksAcrossBlocks() {
+		MappedUrlStore.UrlSet urls = store.newSet();
+		List<String> added = IntStream.range(0, 500).mapToObj(i -> "http://www.valid.url/" + "x".repeat(i % 40) + i)
+			.collect(Collectors.toList());
+		added.forEach(urls::add);
+
+		for (int from = 0; from <= 500; from += 7) {
+			Assertions.assertEquals(added.subList(from, Math.min(500, from + 13)), urls.range(from, 13), "from " + from);
+		}
+		Assertions.assertEquals(added.subList(499, 500), urls.range(499, Integer.MAX_VALUE));
+	}
+
+	@Test
+	void testRelease_ReusesBlocks() {
+		MappedUrlStore.UrlSet released = store.newSet();
+		MappedUrlStore.UrlSet kept = store.newSet();
+		List<String> urls = IntStream.range(0, 100).mapToObj(i -> "http://www.valid.url/" + i).collect(Collectors.toList());
+		urls.forEach(released::add);
+		urls.forEach(kept::add);
+		Iterator<String> iterator = released.iterator();
+		long arena = store.getArenaSize();
+
+		released.release();
+
+		Assertions.assertEquals(0, released.size());
+		Assertions.assertFalse(released.contains("http://www.valid.url/0"));
+		Assertions.assertFalse(released.add("http://www.valid.url/100"));
+		Assertions.assertTrue(released.range(0, 10).isEmpty());
+		Assertions.assertEquals(urls, List.copyOf(kept));
+		Assertions.assertTrue(kept.containsAll(urls));
+
+		MappedUrlStore.UrlSet next = store.newSet();
+		urls.forEach(url -> Assertions.assertTrue(next.add(url)));
+		Assertions.assertEquals(arena, store.getArenaSize());
+		Assertions.assertEquals(urls, next.range(0, 100));
+		// An iterator of the released set stops rather than reading the URLs of the next crawl as its own
+		Assertions.assertFalse(iterator.hasNext() && iterator.next() != null && iterator.hasNext());
+	}
+
+}
@@ -0,0 +1,68 @@
+package dev.samir.backend.persistence;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.samir.backend.common.RandomUtils;
+import dev.samir.backend.common.validation.DefaultValidation;
+import dev.samir.backend.route.model.CrawlStatus;
+
+/**
+ * Testing the {@link RetentionSweeper} over the {@link InMemmoryDao}:
+ * <ul>
+ * 	<li>TTL: finished crawls past their time to live are evicted, running and halted ones are kept;</li>
+ * 	<li>Limits: the oldest finished crawls are evicted until the number of crawls and of URLs are within the limits.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class RetentionSweeperTest {
+
+	private InMemmoryDao dao = new InMemmoryDao(new DefaultValidation(), new RandomUtils());
+
+	@BeforeEach
+	void setUp() {
+		dao.clear();
+	}
+
+	@Test
+	void testSweep_EvictsExpiredCrawls() {
+		dao.restore("active12", CrawlStatus.ACTIVE, List.of());
+		dao.restore("halted12", CrawlStatus.HALT, List.of());
+		dao.restore("done1234", CrawlStatus.DONE, List.of());
+		dao.restore("failed12", CrawlStatus.FAILED, List.of());
+
+		Assertions.assertEquals(0, new RetentionSweeper(dao, Duration.ofHours(1), 100, 100).sweep());
+		Assertions.assertEquals(2, new RetentionSweeper(dao, Duration.ZERO, 100, 100).sweep());
+
+		Assertions.assertEquals(CrawlStatus.ACTIVE.name(), dao.get("active12").getStatus());
+		Assertions.assertEquals(CrawlStatus.HALT.name(), dao.get("halted12").getStatus());
+		Assertions.assertThrows(ExpiredException.class, () -> dao.get("done1234"));
+		Assertions.assertThrows(ExpiredException.class, () -> dao.get("failed12"));
+	}
+
+	@Test
+	void testSweep_EvictsOldestCrawlsBeyondLimits() throws InterruptedException {
+		dao.restore("oldest12", CrawlStatus.DONE, List.of("http://www.valid.url/a", "http://www.valid.url/b"));
+		Thread.sleep(5);
+		dao.restore("older123", CrawlStatus.DONE, List.of("http://www.valid.url/a"));
+		Thread.sleep(5);
+		dao.restore("newest12", CrawlStatus.DONE, List.of("http://www.valid.url/a"));
+		dao.restore("active12", CrawlStatus.ACTIVE, List.of("http://www.valid.url/a", "http://www.valid.url/b"));
+
+		// Four crawls over three allowed: the oldest one goes
+		Assertions.assertEquals(1, new RetentionSweeper(dao, Duration.ofHours(1), 3, 100).sweep());
+		Assertions.assertThrows(ExpiredException.class, () -> dao.get("oldest12"));
+		// Four URLs over three allowed: the oldest remaining one goes, the active crawl is kept anyway
+		Assertions.assertEquals(1, new RetentionSweeper(dao, Duration.ofHours(1), 3, 3).sweep());
+		Assertions.assertThrows(ExpiredException.class, () -> dao.get("older123"));
+		Assertions.assertEquals(CrawlStatus.DONE.name(), dao.get("newest12").getStatus());
+		Assertions.assertEquals(1, new RetentionSweeper(dao, Duration.ofHours(1), 1, 100).sweep());
+		Assertions.assertEquals(CrawlStatus.ACTIVE.name(), dao.get("active12").getStatus());
+	}
+
+}
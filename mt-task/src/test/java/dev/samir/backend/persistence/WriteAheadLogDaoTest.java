@@ -0,0 +1,294 @@
+package dev.samir.backend.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.samir.backend.client.HttpClientFacade;
+import dev.samir.backend.common.RandomUtils;
+import dev.samir.backend.common.configuration.Environment;
+import dev.samir.backend.common.configuration.EnvironmentConfiguration;
+import dev.samir.backend.common.validation.DefaultValidation;
+import dev.samir.backend.persistence.model.CrawlTableResultSet;
+import dev.samir.backend.persistence.model.VersionedUrlSet;
+import dev.samir.backend.route.model.CrawlStatus;
+import dev.samir.backend.service.ServicesImpl;
+
+/**
+ * Testing the {@link WriteAheadLogDao}, whose crawls are rebuilt from its log when it is opened again:
+ * <ul>
+ * 	<li>Replay: crawls, URLs, statuses and messages are back as they were, restored crawls included;</li>
+ * 	<li>Crash: the incomplete end of a segment is ignored;</li>
+ * 	<li>Close: changes made once the log is closed fail rather than being silently lost;</li>
+ * 	<li>Snapshot: once a segment is full, a snapshot replaces the older segments and the crawls are loaded from it, a
+ * 	crawl evicted while the snapshot is taken being left out of it;</li>
+ * 	<li>Retention: when a crawl finished and which crawls were evicted outlive a restart, from the log or a snapshot;</li>
+ * 	<li>Restart: an active crawl brought back without a checkpoint is failed by the recovery of the service.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class WriteAheadLogDaoTest {
+
+	private InMemmoryDao memory = new InMemmoryDao(new DefaultValidation(), new RandomUtils());
+
+	@TempDir
+	Path directory;
+
+	@BeforeEach
+	void setUp() {
+		memory.clear();
+	}
+
+	@Test
+	void testReopen_ReplaysTheLog() {
+		WriteAheadLogDao dao = new WriteAheadLogDao(memory, directory, Long.MAX_VALUE);
+		String done = dao.persist("http://www.valid.url").getId();
+		dao.updateUrl(done, "http://www.valid.url/a");
+		dao.updateStatus(done, CrawlStatus.DONE.name(), null);
+		String failed = dao.persist(null).getId();
+		Assertions.assertTrue(dao.compareAndSetStatus(failed, CrawlStatus.ACTIVE, CrawlStatus.FAILED, "Failed to crawl"));
+		dao.restore("restored", CrawlStatus.HALT, List.of("http://www.valid.url/b"));
+		dao.close();
+
+		WriteAheadLogDao reopened = reopen(Long.MAX_VALUE);
+
+		Assertions.assertEquals(CrawlStatus.DONE.name(), reopened.get(done).getStatus());
+		Assertions.assertEquals(Set.of("http://www.valid.url", "http://www.valid.url/a"), reopened.get(done).getUrls());
+		Assertions.assertEquals(CrawlStatus.FAILED.name(), reopened.get(failed).getStatus());
+		Assertions.assertEquals("Failed to crawl", reopened.get(failed).getMessage());
+		Assertions.assertTrue(reopened.get(failed).getUrls().isEmpty());
+		Assertions.assertEquals(CrawlStatus.HALT.name(), reopened.get("restored").getStatus());
+		Assertions.assertEquals(Set.of("http://www.valid.url/b"), reopened.get("restored").getUrls());
+		reopened.close();
+	}
+
+	@Test
+	void testClose_RejectsLaterRecords() {
+		WriteAheadLogDao dao = new WriteAheadLogDao(memory, directory, Long.MAX_VALUE);
+		String id = dao.persist("http://www.valid.url").getId();
+		dao.close();
+
+		Assertions.assertThrows(IllegalStateException.class, () -> dao.updateUrl(id, "http://www.valid.url/a"));
+		Assertions.assertThrows(IllegalStateException.class, () -> dao.updateStatus(id, CrawlStatus.DONE.name(), null));
+	}
+
+	@Test
+	void testReopen_IgnoresIncompleteRecord() throws IOException {
+		WriteAheadLogDao dao = new WriteAheadLogDao(memory, directory, Long.MAX_VALUE);
+		String id = dao.persist("http://www.valid.url").getId();
+		dao.updateUrl(id, "http://www.valid.url/a");
+		dao.close();
+		// A crash while writing leaves half a record behind
+		Files.write(files(".log").get(0), new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+
+		WriteAheadLogDao reopened = reopen(Long.MAX_VALUE);
+		reopened.updateUrl(id, "http://www.valid.url/b");
+		reopened.close();
+
+		// Records appended after the incomplete one go to a new segment, so they are replayed as well
+		Assertions.assertEquals(Set.of("http://www.valid.url", "http://www.valid.url/a", "http://www.valid.url/b"), reopen(Long.MAX_VALUE).get(id).getUrls());
+	}
+
+	@Test
+	void testReopen_FromSnapshot() throws IOException {
+		WriteAheadLogDao dao = new WriteAheadLogDao(memory, directory, 256);
+		String id = dao.persist("http://www.valid.url").getId();
+		for (int i = 0; i < 20; i++) {
+			dao.updateUrl(id, "http://www.valid.url/" + i);
+		}
+		dao.updateStatus(id, CrawlStatus.DONE.name(), null);
+		// Closing waits for the snapshots taken in the background
+		dao.close();
+		Assertions.assertFalse(files(".snapshot").isEmpty());
+		Assertions.assertTrue(files(".log").size() <= 2);
+
+		CrawlTableResultSet crawl = reopen(256).get(id);
+
+		Assertions.assertEquals(CrawlStatus.DONE.name(), crawl.getStatus());
+		Assertions.assertEquals(21, crawl.getUrls().size());
+	}
+
+	@Test
+	void testSnapshot_LeavesOutCrawlsEvictedMeanwhile() throws IOException, InterruptedException {
+		MappedResultsDao results = new MappedResultsDao(memory, directory.resolve("results"));
+		WriteAheadLogDao dao = new WriteAheadLogDao(results, directory, 256);
+		String evicted = dao.persist("http://www.valid.url").getId();
+		for (int i = 0; i < 20; i++) {
+			// Not logged, so no snapshot is taken before the crawl is evicted by the next one
+			results.updateUrl(evicted, "http://www.valid.url/" + i);
+		}
+		dao.updateStatus(evicted, CrawlStatus.DONE.name(), null);
+		CrawlTableResultSet crawl = dao.get(evicted);
+		CountDownLatch eviction = new CountDownLatch(1);
+		crawl.setUrls(new EvictingUrlSet((MappedUrlStore.UrlSet) crawl.getUrls(), () -> {
+			dao.evict(evicted);
+			eviction.countDown();
+		}));
+		String kept = dao.persist("http://www.valid.url").getId();
+		for (int i = 0; i < 20; i++) {
+			dao.updateUrl(kept, "http://www.valid.url/" + i);
+		}
+		Assertions.assertTrue(eviction.await(10, TimeUnit.SECONDS));
+		dao.close();
+		// The snapshot replaced the segment where both crawls were created
+		Assertions.assertFalse(files(".snapshot").isEmpty());
+		Assertions.assertFalse(Files.exists(directory.resolve("wal-00000001.log")));
+
+		memory.clear();
+		MappedResultsDao reopenedResults = new MappedResultsDao(memory, directory.resolve("reopened"));
+		WriteAheadLogDao reopened = new WriteAheadLogDao(reopenedResults, directory, 256);
+
+		Assertions.assertThrows(ExpiredException.class, () -> reopened.get(evicted));
+		Assertions.assertEquals(21, reopened.get(kept).getUrls().size());
+		reopened.close();
+		results.close();
+		reopenedResults.close();
+	}
+
+	@Test
+	void testReopen_KeepsFinishTimesAndEvictions() throws IOException {
+		WriteAheadLogDao dao = new WriteAheadLogDao(memory, directory, 256);
+		String evicted = dao.persist("http://www.valid.url").getId();
+		dao.updateStatus(evicted, CrawlStatus.DONE.name(), null);
+		Assertions.assertTrue(dao.evict(evicted));
+		String kept = dao.persist("http://www.valid.url").getId();
+		// Finished long ago, so a restart must not make it look fresh
+		dao.get(kept).setFinishedAt(1000);
+		dao.updateStatus(kept, CrawlStatus.DONE.name(), null);
+		String logged = dao.persist(null).getId();
+		for (int i = 0; i < 20; i++) {
+			dao.updateUrl(logged, "http://www.valid.url/" + i);
+		}
+		dao.get(logged).setFinishedAt(2000);
+		dao.updateStatus(logged, CrawlStatus.FAILED.name(), null);
+		dao.close();
+		// The eviction is only in the snapshot, its segment being deleted
+		Assertions.assertFalse(files(".snapshot").isEmpty());
+		Assertions.assertFalse(Files.exists(directory.resolve("wal-00000001.log")));
+
+		WriteAheadLogDao reopened = reopen(256);
+
+		Assertions.assertThrows(ExpiredException.class, () -> reopened.get(evicted));
+		Assertions.assertEquals(1000, reopened.get(kept).getFinishedAt());
+		Assertions.assertEquals(2000, reopened.get(logged).getFinishedAt());
+		reopened.close();
+	}
+
+	@Test
+	void testReopen_FailsActiveCrawlsOnRecovery() {
+		WriteAheadLogDao dao = new WriteAheadLogDao(memory, directory, Long.MAX_VALUE);
+		String active = dao.persist("http://www.valid.url").getId();
+		String halted = dao.persist(null).getId();
+		dao.updateStatus(halted, CrawlStatus.HALT.name(), null);
+		dao.close();
+
+		// Nothing runs the crawl which was active, there is no checkpoint to resume it from
+		WriteAheadLogDao reopened = reopen(Long.MAX_VALUE);
+		Assertions.assertEquals(CrawlStatus.ACTIVE.name(), reopened.get(active).getStatus());
+		Environment environment = new Environment(new EnvironmentConfiguration() {
+			@Override
+			public String baseUrl() {
+				return "http://www.valid.url";
+			}
+		});
+		new ServicesImpl(reopened, environment, new HttpClientFacade() {}).recover();
+		reopened.close();
+
+		WriteAheadLogDao restarted = reopen(Long.MAX_VALUE);
+		Assertions.assertEquals(CrawlStatus.FAILED.name(), restarted.get(active).getStatus());
+		Assertions.assertNotNull(restarted.get(active).getMessage());
+		Assertions.assertEquals(CrawlStatus.HALT.name(), restarted.get(halted).getStatus());
+		restarted.close();
+	}
+
+	private WriteAheadLogDao reopen(long segmentSize) {
+		memory.clear();
+		return new WriteAheadLogDao(memory, directory, segmentSize);
+	}
+
+	/**
+	 * URLs of a crawl evicted, and released as {@link MappedResultsDao} does, while a snapshot of them is read.
+	 */
+	private static final class EvictingUrlSet extends AbstractSet<String> implements VersionedUrlSet {
+
+		private final MappedUrlStore.UrlSet urls;
+		private final Runnable eviction;
+		private final AtomicBoolean evicted = new AtomicBoolean();
+
+		private EvictingUrlSet(MappedUrlStore.UrlSet urls, Runnable eviction) {
+			this.urls = urls;
+			this.eviction = eviction;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return urls.iterator();
+		}
+
+		@Override
+		public int size() {
+			return urls.size();
+		}
+
+		@Override
+		public Set<String> snapshot() {
+			Set<String> snapshot = urls.snapshot();
+			return new AbstractSet<>() {
+				@Override
+				public Iterator<String> iterator() {
+					Iterator<String> iterator = snapshot.iterator();
+					return new Iterator<>() {
+						@Override
+						public boolean hasNext() {
+							return iterator.hasNext();
+						}
+
+						@Override
+						public String next() {
+							String url = iterator.next();
+							if (evicted.compareAndSet(false, true)) {
+								eviction.run();
+								urls.release();
+							}
+							return url;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return snapshot.size();
+				}
+			};
+		}
+
+		@Override
+		public List<String> range(int from, int limit) {
+			return urls.range(from, limit);
+		}
+
+	}
+
+	private List<Path> files(String suffix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.toString().endsWith(suffix)).sorted().collect(Collectors.toList());
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package dev.samir.backend.persistence.model;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the {@link InternedUrlSet} results of a crawl, read while crawl threads add to them:
+ * <ul>
+ * 	<li>Snapshot: it keeps the URLs added before it was taken, in the order they were added;</li>
+ * 	<li>Range: pages after a cursor are in the order the URLs were added, ending at the last one;</li>
+ * 	<li>Concurrency: snapshots taken while URLs are added iterate exactly as many distinct URLs as their size.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class InternedUrlSetTest {
+
+	private InternedUrlSet urls = new InternedUrlSet();
+
+	@Test
+	void testSnapshot_KeepsItsVersion() {
+		urls.add("http://www.valid.url/a");
+		urls.add("http://www.valid.url/b");
+		urls.add("http://www.valid.url/a");
+
+		Set<String> snapshot = urls.snapshot();
+		IntStream.range(0, 100).forEach(i -> urls.add("http://www.valid.url/" + i));
+
+		Assertions.assertEquals(2, snapshot.size());
+		Assertions.assertEquals(List.of("http://www.valid.url/a", "http://www.valid.url/b"), new ArrayList<>(snapshot));
+		Assertions.assertTrue(snapshot.contains("http://www.valid.url/b"));
+		Assertions.assertFalse(snapshot.contains("http://www.valid.url/1"));
+		Assertions.assertTrue(urls.contains("http://www.valid.url/1"));
+		Assertions.assertEquals(102, urls.size());
+		Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.add("http://www.valid.url/c"));
+	}
+
+	@Test
+	void testRange_PagesInOrder() {
+		IntStream.range(0, 5).forEach(i -> urls.add("http://www.valid.url/" + i));
+
+		Assertions.assertEquals(List.of("http://www.valid.url/0", "http://www.valid.url/1"), urls.range(0, 2));
+		Assertions.assertEquals(List.of("http://www.valid.url/3", "http://www.valid.url/4"), urls.range(3, 10));
+		Assertions.assertTrue(urls.range(5, 10).isEmpty());
+		Assertions.assertTrue(urls.range(8, Integer.MAX_VALUE).isEmpty());
+	}
+
+	@Test
+	void testSnapshot_WhileAdding() {
+		CompletableFuture<?>[] writers = IntStream.range(0, 4)
+			.mapToObj(writer -> CompletableFuture.runAsync(() -> IntStream.range(0, 20_000)
+				.forEach(i -> urls.add("http://www.valid.url/" + (i * 4 + writer % 2)))))
+			.toArray(CompletableFuture[]::new);
+
+		while (!CompletableFuture.allOf(writers).isDone()) {
+			Set<String> snapshot = urls.snapshot();
+			Set<String> read = new HashSet<>(snapshot);
+			Assertions.assertEquals(snapshot.size(), read.size());
+		}
+
+		Assertions.assertEquals(40_000, urls.size());
+		Assertions.assertEquals(40_000, new HashSet<>(urls.snapshot()).size());
+	}
+
+}
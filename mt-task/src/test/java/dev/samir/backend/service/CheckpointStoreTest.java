@@ -0,0 +1,96 @@
+package dev.samir.backend.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.samir.backend.client.HttpClientSettings;
+import dev.samir.backend.common.UrlCanonicalizer;
+import dev.samir.backend.common.configuration.Environment;
+import dev.samir.backend.common.configuration.EnvironmentConfiguration;
+import dev.samir.backend.route.model.CrawlStatus;
+
+/**
+ * Testing the {@link CheckpointStore} and the {@link CrawlCheckpoint} logs it replays after a restart:
+ * <ul>
+ * 	<li>Replay: URLs enqueued and not fetched are pending again, along with the visited URLs, results and counters;</li>
+ * 	<li>Crash: the incomplete end of a log is ignored, and the log is compacted to what was replayed;</li>
+ * 	<li>Status: halted crawls are recovered as halted, while the logs of finished crawls are deleted.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class CheckpointStoreTest {
+
+	private static final Duration INTERVAL = Duration.ofHours(1);
+
+	private HttpClientSettings settings = HttpClientSettings.of(new Environment(new EnvironmentConfiguration() {}));
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testRecover_ReplaysUpToIncompleteRecord() throws IOException {
+		CheckpointStore store = new CheckpointStore(directory, INTERVAL);
+		CrawlCheckpoint checkpoint = store.create("abcd1234", "keyword", settings);
+		checkpoint.enqueued("http://www.valid.url");
+		checkpoint.enqueued("http://www.valid.url/a");
+		checkpoint.enqueued("http://www.valid.url/b");
+		checkpoint.fetched("http://www.valid.url");
+		checkpoint.visited(UrlCanonicalizer.fingerprint("http://www.valid.url/canonical"));
+		checkpoint.result("http://www.valid.url");
+		checkpoint.track(() -> Map.of("executions", 1L));
+		checkpoint.flush();
+		// A crash while writing leaves half a record behind
+		Files.write(directory.resolve("crawl-abcd1234.log"), new byte[] { 0, 0, 0, 40, 1, 2 }, StandardOpenOption.APPEND);
+
+		List<CheckpointStore.Recovered> recovered = new CheckpointStore(directory, INTERVAL).recover();
+
+		Assertions.assertEquals(1, recovered.size());
+		CheckpointStore.Recovered crawl = recovered.get(0);
+		Assertions.assertEquals("abcd1234", crawl.getId());
+		Assertions.assertEquals(CrawlStatus.ACTIVE, crawl.getStatus());
+		Assertions.assertEquals("keyword", crawl.getSnapshot().getKeyword());
+		Assertions.assertEquals(settings, crawl.getSnapshot().getHttpSettings());
+		Assertions.assertEquals(List.of("http://www.valid.url/a", "http://www.valid.url/b"), crawl.getSnapshot().getPending());
+		Assertions.assertEquals(4, crawl.getSnapshot().getVisited().length);
+		Assertions.assertEquals(Set.of("http://www.valid.url"), crawl.getResults());
+		Assertions.assertEquals(1L, crawl.getSnapshot().getCounter("executions"));
+
+		// The compacted log replays the same crawl, and records appended to it afterwards as well
+		crawl.getCheckpoint().fetched("http://www.valid.url/a");
+		crawl.getCheckpoint().flush();
+		CheckpointStore.Recovered again = new CheckpointStore(directory, INTERVAL).recover().get(0);
+		Assertions.assertEquals(List.of("http://www.valid.url/b"), again.getSnapshot().getPending());
+		Assertions.assertEquals(4, again.getSnapshot().getVisited().length);
+		Assertions.assertEquals(Set.of("http://www.valid.url"), again.getResults());
+	}
+
+	@Test
+	void testRecover_ByStatus() {
+		CheckpointStore store = new CheckpointStore(directory, INTERVAL);
+		store.create("halted12", "keyword", settings).status(CrawlStatus.HALT);
+		store.create("done1234", "keyword", settings).status(CrawlStatus.DONE);
+		store.create("deleted1", "keyword", settings);
+		store.delete("deleted1");
+		store.flush();
+
+		List<CheckpointStore.Recovered> recovered = new CheckpointStore(directory, INTERVAL).recover();
+
+		Assertions.assertEquals(1, recovered.size());
+		Assertions.assertEquals("halted12", recovered.get(0).getId());
+		Assertions.assertEquals(CrawlStatus.HALT, recovered.get(0).getStatus());
+		Assertions.assertFalse(Files.exists(directory.resolve("crawl-done1234.log")));
+		Assertions.assertFalse(Files.exists(directory.resolve("crawl-deleted1.log")));
+	}
+
+}
@@ -0,0 +1,120 @@
+package dev.samir.backend.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Testing the {@link CrawlFrontier} used by {@link ServicesImpl} to schedule the fetches of a crawl:
+ * <ul>
+ * 	<li>De-duplication: a URL linked by many pages, with or without a trailing slash, is fetched only once;</li>
+ * 	<li>In-flight window: no more than the configured fetches run at the same time;</li>
+ * 	<li>Failure and stop: the frontier completes as soon as a fetch fails or it is stopped;</li>
+ * 	<li>Suspension: a suspended frontier hands back its pending URLs and those in flight, from which another one resumes.</li>
+ * </ul>
+ *
+ * @author Scheide, Samir
+ */
+class CrawlFrontierTest {
+
+	@Test
+	void testStart_FetchesEachUrlOnce() {
+		Map<String, List<String>> site = Map.of(
+				"/", List.of("/a", "/b", "/a"),
+				"/a", List.of("/", "/b", "/c"),
+				"/b", List.of("/c"),
+				"/c", List.of("/a"));
+		Map<String, AtomicInteger> fetches = new ConcurrentHashMap<>();
+
+		new CrawlFrontier(2, 100).start("/", url -> {
+			fetches.computeIfAbsent(url, key -> new AtomicInteger()).incrementAndGet();
+			return CompletableFuture.completedFuture(site.get(url));
+		}).join();
+
+		Assertions.assertEquals(Set.of("/", "/a", "/b", "/c"), fetches.keySet());
+		fetches.values().forEach(counter -> Assertions.assertEquals(1, counter.get()));
+	}
+
+	@Test
+	void testOffer_WithTrailingSlashAndCanonicalUrl() {
+		CrawlFrontier frontier = new CrawlFrontier(1, 100);
+
+		Assertions.assertTrue(frontier.offer("http://www.valid.url/a"));
+		Assertions.assertFalse(frontier.offer("http://www.valid.url/a/"));
+		Assertions.assertTrue(frontier.offer("http://www.valid.url/a/?page=2"));
+		Assertions.assertTrue(frontier.markVisited("http://www.valid.url/canonical"));
+		Assertions.assertFalse(frontier.offer("http://www.valid.url/canonical/"));
+		Assertions.assertEquals(3, frontier.getVisitedSize());
+	}
+
+	@Test
+	void testStart_KeepsInFlightWindow() {
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+
+		new CrawlFrontier(3, 100).start("seed", url -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			return CompletableFuture.supplyAsync(() -> {
+				inFlight.decrementAndGet();
+				return "seed".equals(url) ? List.of("1", "2", "3", "4", "5", "6", "7", "8") : List.<String>of();
+			}, CompletableFuture.delayedExecutor(10, TimeUnit.MILLISECONDS));
+		}).join();
+
+		Assertions.assertTrue(maxInFlight.get() <= 3);
+	}
+
+	@Test
+	void testStart_WhenFetchFails() {
+		CompletableFuture<Void> completion = new CrawlFrontier(2, 100)
+				.start("seed", url -> CompletableFuture.failedFuture(new IllegalStateException(url)));
+		Assertions.assertThrows(CompletionException.class, completion::join);
+	}
+
+	@Test
+	void testStop_DropsPendingUrls() {
+		CrawlFrontier frontier = new CrawlFrontier(1, 100);
+		AtomicInteger fetches = new AtomicInteger();
+
+		frontier.start("seed", url -> {
+			fetches.incrementAndGet();
+			frontier.stop();
+			return CompletableFuture.completedFuture(List.of("1", "2"));
+		}).join();
+
+		Assertions.assertEquals(1, fetches.get());
+		Assertions.assertFalse(frontier.offer("3"));
+	}
+
+	@Test
+	void testSuspend_ResumesWhereItStopped() {
+		CrawlFrontier frontier = new CrawlFrontier(1, 100);
+		CompletableFuture<List<String>> stalled = new CompletableFuture<>();
+
+		CompletableFuture<Void> completion = frontier.start("seed", url -> "seed".equals(url)
+				? CompletableFuture.completedFuture(List.of("1", "2")) : stalled);
+		List<String> remaining = frontier.suspend();
+		stalled.complete(List.of("3"));
+
+		Assertions.assertTrue(completion.isDone());
+		Assertions.assertEquals(List.of("1", "2"), remaining);
+		Assertions.assertNull(frontier.suspend());
+		Assertions.assertFalse(frontier.offer("3"));
+
+		Set<String> fetches = ConcurrentHashMap.newKeySet();
+		new CrawlFrontier(1, 100, frontier.getVisited(), CrawlCheckpoint.NONE).start(remaining, url -> {
+			fetches.add(url);
+			return CompletableFuture.completedFuture(List.of("seed", "1", "3"));
+		}).join();
+
+		Assertions.assertEquals(Set.of("1", "2", "3"), fetches);
+	}
+
+}
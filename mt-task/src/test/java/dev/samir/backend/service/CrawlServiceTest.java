@@ -1,35 +1,48 @@
 package dev.samir.backend.service;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.net.URI;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import dev.samir.backend.client.CircuitOpenException;
 import dev.samir.backend.client.HttpClientFacade;
 import dev.samir.backend.common.configuration.Environment;
 import dev.samir.backend.common.configuration.EnvironmentConfiguration;
 import dev.samir.backend.persistence.DataAccessObject;
+import dev.samir.backend.persistence.model.CrawlSnapshot;
 import dev.samir.backend.persistence.model.CrawlTableResultSet;
+import dev.samir.backend.route.model.CrawlResponse;
 import dev.samir.backend.route.model.CrawlStatus;
 import dev.samir.backend.service.exception.ProcessingFailedException;
+import dev.samir.backend.service.exception.StatusNotUpdatedException;
 
 /**
  * Testing the service layer. 
  * The {@link ServicesImpl} contains the implementation of two required actions:
  * <ul>
  * 	<li>Results: brings all resultas from parcial and completed crawlings;</li>
- * 	<li>Crawl': which does the heavy job, crawling HTML documents starting from the base URL.</li>
+ * 	<li>Crawl': which does the heavy job, crawling HTML documents starting from the base URL, for a single keyword or
+ * 	a batch of keywords sharing the traversal.</li>
  * </ul>
  * Even thoug this another action is not signed as required, I thought it woudl become in hand implement it:
  * <ul>
@@ -54,7 +67,7 @@ class CrawlServiceTest {
 			return "5";
 		}
 	});
-	private HttpClientFacade httpClientFacade = mock(HttpClientFacade.class);
+	private HttpClientFacade httpClientFacade = Mockito.spy(new HttpClientFacade() {});
 	private ServicesImpl service = new ServicesImpl(dao, environment, httpClientFacade);
 	
 	private String id = "12341234";
@@ -96,17 +109,89 @@ class CrawlServiceTest {
         when(dao.get(id)).thenReturn(saved);
 
         saved.getUrls().add(environment.getBaseUrl());
-        when(dao.updateUrl(id, environment.getBaseUrl())).thenReturn(saved);
+        when(dao.updateUrl(id, environment.getBaseUrl(), environment.getMaxResultsSize())).thenReturn(true);
         
         HttpResponseAsString response = mock(HttpResponseAsString.class);
         when(response.body()).thenReturn(html);
-        when(httpClientFacade.requestAsync(URI.create(environment.getBaseUrl()))).thenReturn(CompletableFuture.completedFuture(response));
+        doReturn(CompletableFuture.completedFuture(response)).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
         
         HttpResponseAsString responseLink = mock(HttpResponseAsString.class);
         when(responseLink.body()).thenReturn("<html>test</html>");
-        when(httpClientFacade.requestAsync(URI.create(resolvedUrl))).thenReturn(CompletableFuture.completedFuture(responseLink));
+        doReturn(CompletableFuture.completedFuture(responseLink)).when(httpClientFacade).requestAsync(URI.create(resolvedUrl));
  
     	Assertions.assertEquals(saved.getId(), service.crawl(keyword).getId());
+    	Mockito.verify(dao, Mockito.timeout(1000)).updateUrl(id, resolvedUrl, environment.getMaxResultsSize());
+    }
+    
+    @Test
+    void testCrawlBatch_SharesTheTraversal() {
+        String html = "<html><body>first<a href='/link1'>Link</a></body></html>";
+        String resolvedUrl = environment.getBaseUrl() + "/link1";
+        
+        CrawlTableResultSet first = new CrawlTableResultSet("firstaaa", null);
+        CrawlTableResultSet second = new CrawlTableResultSet("secondbb", null);
+        when(dao.persist(null)).thenReturn(first, second);
+        when(dao.get(first.getId())).thenReturn(first);
+        when(dao.get(second.getId())).thenReturn(second);
+        when(dao.updateUrl(any(), any(), Mockito.anyInt())).thenReturn(true);
+        
+        HttpResponseAsString response = mock(HttpResponseAsString.class);
+        when(response.body()).thenReturn(html);
+        doReturn(CompletableFuture.completedFuture(response)).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
+        
+        HttpResponseAsString responseLink = mock(HttpResponseAsString.class);
+        when(responseLink.body()).thenReturn("<html>first and second</html>");
+        doReturn(CompletableFuture.completedFuture(responseLink)).when(httpClientFacade).requestAsync(URI.create(resolvedUrl));
+        
+        Assertions.assertEquals(List.of(first.getId(), second.getId()), service.crawlBatch(List.of("FIRST", "second"), settings -> settings)
+        		.stream().map(CrawlResponse::getId).collect(Collectors.toList()));
+        
+        Mockito.verify(dao, Mockito.timeout(1000)).updateStatus(first.getId(), CrawlStatus.DONE.name(), null);
+        Mockito.verify(dao, Mockito.timeout(1000)).updateStatus(second.getId(), CrawlStatus.DONE.name(), null);
+        // Each page is fetched once, its results going to every crawl whose keyword it contains
+        Mockito.verify(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
+        Mockito.verify(dao).updateUrl(first.getId(), environment.getBaseUrl(), environment.getMaxResultsSize());
+        Mockito.verify(dao).updateUrl(first.getId(), resolvedUrl, environment.getMaxResultsSize());
+        Mockito.verify(dao).updateUrl(second.getId(), resolvedUrl, environment.getMaxResultsSize());
+        Mockito.verify(dao, Mockito.never()).updateUrl(second.getId(), environment.getBaseUrl(), environment.getMaxResultsSize());
+        // The statuses are read once when the batch starts, not for every page
+        Mockito.verify(dao).get(first.getId());
+        Mockito.verify(dao).get(second.getId());
+    }
+    
+    @Test
+    void testCrawlBatch_StoppedByStatusUpdate() throws StatusNotUpdatedException {
+        CrawlTableResultSet first = new CrawlTableResultSet("firstaaa", null);
+        CrawlTableResultSet second = new CrawlTableResultSet("secondbb", null);
+        when(dao.persist(null)).thenReturn(first, second);
+        when(dao.get(first.getId())).thenReturn(first);
+        when(dao.get(second.getId())).thenReturn(second);
+        when(dao.updateStatus(first.getId(), CrawlStatus.HALT.name(), null)).thenReturn(first);
+        when(dao.updateUrl(any(), any(), Mockito.anyInt())).thenReturn(true);
+        
+        CompletableFuture<HttpResponseAsString> page = new CompletableFuture<>();
+        doReturn(page).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
+        
+        service.crawlBatch(List.of("first", "second"), settings -> settings);
+        service.update(first.getId(), CrawlStatus.HALT);
+        HttpResponseAsString response = mock(HttpResponseAsString.class);
+        when(response.body()).thenReturn("<html>first and second</html>");
+        page.complete(response);
+        
+        // The stored status was not moved by the mock, the update itself stopped the crawl
+        Mockito.verify(dao, Mockito.timeout(1000)).updateUrl(second.getId(), environment.getBaseUrl(), environment.getMaxResultsSize());
+        Mockito.verify(dao, Mockito.never()).updateUrl(Mockito.eq(first.getId()), any(), Mockito.anyInt());
+    }
+    
+    @Test
+    void testCrawlBatch_FailsCreatedCrawlsOnError() {
+        CrawlTableResultSet first = new CrawlTableResultSet("firstaaa", null);
+        when(dao.persist(null)).thenReturn(first).thenThrow(new IllegalStateException("Storage unavailable"));
+        
+        Assertions.assertThrows(ProcessingFailedException.class, () -> service.crawlBatch(List.of("first", "second"), settings -> settings));
+        
+        Mockito.verify(dao).compareAndSetStatus(first.getId(), CrawlStatus.ACTIVE, CrawlStatus.FAILED, "Storage unavailable");
+        Mockito.verify(httpClientFacade, Mockito.never()).requestAsync(any());
     }
     
     @Test
@@ -120,18 +205,18 @@ class CrawlServiceTest {
         when(dao.persist(null)).thenReturn(saved);
         
         saved.getUrls().add(environment.getBaseUrl());
-        when(dao.updateUrl(id, environment.getBaseUrl())).thenReturn(saved);
+        when(dao.updateUrl(id, environment.getBaseUrl(), environment.getMaxResultsSize())).thenReturn(true);
 
         saved.setStatus(CrawlStatus.HALT.name());
         when(dao.get(id)).thenReturn(saved);
         
         HttpResponseAsString response = mock(HttpResponseAsString.class);
         when(response.body()).thenReturn(html);
-        when(httpClientFacade.requestAsync(URI.create(environment.getBaseUrl()))).thenReturn(CompletableFuture.completedFuture(response));
+        doReturn(CompletableFuture.completedFuture(response)).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
         
         HttpResponseAsString responseLink = mock(HttpResponseAsString.class);
         when(responseLink.body()).thenReturn("<html></html>");
-        when(httpClientFacade.requestAsync(URI.create(resolvedUrl))).thenReturn(CompletableFuture.completedFuture(responseLink));
+        doReturn(CompletableFuture.completedFuture(responseLink)).when(httpClientFacade).requestAsync(URI.create(resolvedUrl));
  
         Assertions.assertEquals(saved.getId(), service.crawl(keyword).getId());
     }
@@ -146,14 +231,14 @@ class CrawlServiceTest {
         when(dao.persist(null)).thenReturn(saved);
         
         saved.getUrls().add(environment.getBaseUrl());
-        when(dao.updateUrl(id, environment.getBaseUrl())).thenReturn(saved);
+        when(dao.updateUrl(id, environment.getBaseUrl(), environment.getMaxResultsSize())).thenReturn(true);
 
         saved.setStatus(CrawlStatus.DONE.name());
         when(dao.get(id)).thenReturn(saved);
         
         HttpResponseAsString response = mock(HttpResponseAsString.class);
         when(response.body()).thenReturn(html);
-        when(httpClientFacade.requestAsync(URI.create(environment.getBaseUrl()))).thenReturn(CompletableFuture.completedFuture(response));
+        doReturn(CompletableFuture.completedFuture(response)).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
  
         Assertions.assertEquals(saved.getId(), service.crawl(keyword).getId());
     }
@@ -166,16 +251,127 @@ class CrawlServiceTest {
         CrawlTableResultSet saved = new CrawlTableResultSet(id, null);
 
         when(dao.persist(null)).thenReturn(saved);
-        when(dao.updateUrl(id, environment.getBaseUrl())).thenThrow(IllegalArgumentException.class);
+        when(dao.updateUrl(id, environment.getBaseUrl(), environment.getMaxResultsSize())).thenThrow(IllegalArgumentException.class);
 
         HttpResponseAsString response = mock(HttpResponseAsString.class);
         when(response.body()).thenReturn(html);
-        when(httpClientFacade.requestAsync(URI.create(environment.getBaseUrl()))).thenReturn(CompletableFuture.completedFuture(response));
-        when(httpClientFacade.requestAsync(Mockito.any())).thenReturn(CompletableFuture.completedFuture(response));
+        doReturn(CompletableFuture.completedFuture(response)).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
+        doReturn(CompletableFuture.completedFuture(response)).when(httpClientFacade).requestAsync(Mockito.any());
         
         Assertions.assertEquals(saved.getId(), service.crawl(keyword).getId());
     }
 
+    @Test
+    void testCrawl_SkipsPagesFailingToBeFetched() {
+        String keyword = "test";
+        String html = "<html><body>test<a href='/link1'>Link</a><a href='/link2'>Link</a></body></html>";
+        String resolvedUrl = environment.getBaseUrl() + "/link1";
+        
+        CrawlTableResultSet saved = new CrawlTableResultSet(id, null);
+
+        when(dao.persist(null)).thenReturn(saved);
+        when(dao.get(id)).thenReturn(saved);
+        when(dao.updateUrl(id, environment.getBaseUrl(), environment.getMaxResultsSize())).thenReturn(true);
+        
+        HttpResponseAsString response = mock(HttpResponseAsString.class);
+        when(response.body()).thenReturn(html);
+        doReturn(CompletableFuture.completedFuture(response)).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
+        doReturn(CompletableFuture.failedFuture(new HttpTimeoutException("timed out"))).when(httpClientFacade).requestAsync(URI.create(resolvedUrl));
+        doReturn(CompletableFuture.failedFuture(new CircuitOpenException("circuit open"))).when(httpClientFacade)
+        	.requestAsync(URI.create(environment.getBaseUrl() + "/link2"));
+ 
+        Assertions.assertEquals(saved.getId(), service.crawl(keyword, settings -> settings.override(null, 5, "HTTP_1_1", null)).getId());
+        Mockito.verify(dao, Mockito.timeout(1000)).updateStatus(id, CrawlStatus.DONE.name(), null);
+        Mockito.verify(dao, Mockito.never()).updateStatus(Mockito.eq(id), Mockito.eq(CrawlStatus.FAILED.name()), Mockito.any());
+    }
+    
+    @Test
+    void testCrawl_HaltedAndResumedByStatusUpdate() {
+        CrawlTableResultSet saved = new CrawlTableResultSet(id, null);
+        when(dao.persist(null)).thenReturn(saved);
+        when(dao.get(id)).thenReturn(saved);
+        when(dao.updateStatus(id, CrawlStatus.HALT.name(), null)).thenReturn(saved);
+        when(dao.compareAndSetStatus(id, CrawlStatus.HALT, CrawlStatus.ACTIVE, null)).thenReturn(true);
+        
+        // The base URL never answers, so only the cancellation can end the crawl
+        CompletableFuture<HttpResponse<String>> stalled = new CompletableFuture<>();
+        doReturn(stalled).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
+        
+        Assertions.assertEquals(saved.getId(), service.crawl("test").getId());
+        Mockito.verify(httpClientFacade, Mockito.timeout(1000)).requestAsync(URI.create(environment.getBaseUrl()));
+        service.update(id, CrawlStatus.HALT);
+        
+        // The aborted fetch is kept in the snapshot, and the crawl is neither done nor failed
+        ArgumentCaptor<CrawlSnapshot> snapshot = ArgumentCaptor.forClass(CrawlSnapshot.class);
+        Mockito.verify(dao, Mockito.timeout(1000)).updateSnapshot(Mockito.eq(id), snapshot.capture());
+        Assertions.assertEquals(List.of(environment.getBaseUrl()), snapshot.getValue().getPending());
+        Assertions.assertEquals("test", snapshot.getValue().getKeyword());
+        Mockito.verify(dao, Mockito.never()).updateStatus(Mockito.eq(id), Mockito.eq(CrawlStatus.DONE.name()), Mockito.any());
+        Mockito.verify(dao, Mockito.never()).updateStatus(Mockito.eq(id), Mockito.eq(CrawlStatus.FAILED.name()), Mockito.any());
+        Assertions.assertFalse(stalled.isDone());
+        
+        // Once resumed, the base URL answers and the crawl goes on to the end
+        saved.setSnapshot(snapshot.getValue());
+        HttpResponseAsString response = mock(HttpResponseAsString.class);
+        when(response.body()).thenReturn("<html><body>test</body></html>");
+        doReturn(CompletableFuture.completedFuture(response)).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
+        
+        Assertions.assertEquals(CrawlStatus.ACTIVE, service.update(id, CrawlStatus.ACTIVE).getStatus());
+        Mockito.verify(dao, Mockito.timeout(1000)).updateStatus(id, CrawlStatus.DONE.name(), null);
+        Mockito.verify(dao).updateUrl(id, environment.getBaseUrl(), environment.getMaxResultsSize());
+        Mockito.verify(dao).updateSnapshot(id, null);
+    }
+    
+    @Test
+    void testUpdate_ResumeWithoutSnapshot() {
+        Assertions.assertThrows(StatusNotUpdatedException.class, () -> service.update(id, CrawlStatus.ACTIVE));
+        Mockito.verify(dao, Mockito.never()).compareAndSetStatus(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+    }
+    
+    @Test
+    void testCrawl_RecoveredAfterRestart(@TempDir Path checkpoints) {
+        Environment checkpointed = new Environment(new EnvironmentConfiguration() {
+            @Override
+            public String baseUrl() {
+                return "http://www.valid.url";
+            }
+            @Override
+            public String checkpointDir() {
+                return checkpoints.toString();
+            }
+        });
+        CrawlTableResultSet saved = new CrawlTableResultSet(id, null);
+        when(dao.persist(null)).thenReturn(saved);
+        when(dao.get(id)).thenReturn(saved);
+        when(dao.updateSnapshot(Mockito.eq(id), any())).thenAnswer(invocation -> {
+            saved.setSnapshot(invocation.getArgument(1));
+            return saved;
+        });
+        when(dao.compareAndSetStatus(id, CrawlStatus.HALT, CrawlStatus.ACTIVE, null)).thenReturn(true);
+        
+        // The base URL never answers before the restart
+        doReturn(new CompletableFuture<>()).when(httpClientFacade).requestAsync(URI.create(environment.getBaseUrl()));
+        new ServicesImpl(dao, checkpointed, httpClientFacade).crawl("test");
+        Mockito.verify(httpClientFacade, Mockito.timeout(1000)).requestAsync(URI.create(environment.getBaseUrl()));
+        
+        // Another instance resumes the crawl from its checkpoint, fetching the base URL again
+        new ServicesImpl(dao, checkpointed, httpClientFacade).recover();
+        
+        Mockito.verify(dao).restore(id, CrawlStatus.HALT, Set.of());
+        Mockito.verify(httpClientFacade, Mockito.timeout(1000).times(2)).requestAsync(URI.create(environment.getBaseUrl()));
+        Assertions.assertEquals("test", Mockito.mockingDetails(dao).getInvocations().stream()
+        		.filter(invocation -> invocation.getMethod().getName().equals("updateSnapshot") && invocation.getArgument(1) != null)
+        		.map(invocation -> invocation.<CrawlSnapshot>getArgument(1).getKeyword())
+        		.findFirst().orElse(null));
+    }
+    
+    @Test
+    void testCrawl_WithInvalidHttpSettings() {
+        Assertions.assertThrows(ProcessingFailedException.class, () -> service.crawl("test", settings -> settings.override(0, null, null, null)));
+        Assertions.assertThrows(ProcessingFailedException.class, () -> service.crawl("test", settings -> settings.override(null, null, "HTTP_3", null)));
+        Mockito.verify(dao, Mockito.never()).persist(Mockito.any());
+    }
+
     interface HttpResponseAsString extends HttpResponse<String> {}
     
 }
\ No newline at end of file
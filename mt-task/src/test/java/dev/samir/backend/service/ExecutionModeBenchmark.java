@@ -0,0 +1,129 @@
+package dev.samir.backend.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import dev.samir.backend.common.configuration.ExecutionMode;
+
+/**
+ * Compares crawl throughput and tail latency between the {@link ExecutionMode}s.
+ * <p>
+ * A local HTTP server serves a tree of pages with a fixed latency and several crawls run at the same time on
+ * the executor of each mode, just like {@link ServicesImpl} does. It is not part of the regular test run, execute it with:
+ * <pre>mvn test -Dtest=ExecutionModeBenchmark</pre>
+ * The virtual mode is skipped on runtimes without virtual threads.
+ * </p>
+ * @author Scheide, Samir
+ */
+class ExecutionModeBenchmark {
+
+	private static final int PAGES = 2_000;
+	private static final int CRAWLS = 4;
+	private static final int CONCURRENCY = 64;
+	private static final long LATENCY_MILLIS = 20;
+	private static final Pattern HREF = Pattern.compile("href='([^']+)'");
+
+	private static HttpServer server;
+	private static String baseUrl;
+
+	@BeforeAll
+	static void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/", exchange -> {
+			int page = Integer.parseInt(exchange.getRequestURI().getPath().substring("/p".length()));
+			StringBuilder html = new StringBuilder("<html><body>");
+			for (int child = page * 3 + 1; child <= page * 3 + 3 && child < PAGES; child++) {
+				html.append("<a href='/p").append(child).append("'>").append(child).append("</a>");
+			}
+			byte[] body = html.append("</body></html>").toString().getBytes(StandardCharsets.UTF_8);
+			try {
+				Thread.sleep(LATENCY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		baseUrl = "http://localhost:" + server.getAddress().getPort();
+	}
+
+	@AfterAll
+	static void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void benchmarkFixed() {
+		run(ExecutionMode.FIXED);
+	}
+
+	@Test
+	void benchmarkVirtual() {
+		Assumptions.assumeTrue(Runtime.version().feature() >= 21, "Virtual threads need Java 21 or newer");
+		run(ExecutionMode.VIRTUAL);
+	}
+
+	private void run(ExecutionMode mode) {
+		ExecutorService executor = mode.newExecutorService();
+		try {
+			HttpClient client = HttpClient.newBuilder().executor(executor).build();
+			ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+			long start = System.nanoTime();
+			List<CompletableFuture<Void>> crawls = new ArrayList<>();
+			for (int i = 0; i < CRAWLS; i++) {
+				crawls.add(new CrawlFrontier(CONCURRENCY, PAGES).start(baseUrl + "/p0", link -> {
+					long requested = System.nanoTime();
+					return client.sendAsync(HttpRequest.newBuilder(URI.create(link)).GET().build(), BodyHandlers.ofString())
+						.thenApplyAsync(response -> {
+							latencies.add(System.nanoTime() - requested);
+							List<String> links = new ArrayList<>();
+							Matcher matcher = HREF.matcher(response.body());
+							while (matcher.find()) links.add(baseUrl + matcher.group(1));
+							return links;
+						}, executor);
+				}));
+			}
+			CompletableFuture.allOf(crawls.toArray(CompletableFuture[]::new)).join();
+			long elapsed = System.nanoTime() - start;
+
+			long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+			System.out.printf("%-8s %6d pages in %5d ms: %8.1f pages/s, p50 %4d ms, p99 %4d ms, max %4d ms%n", mode,
+					sorted.length, TimeUnit.NANOSECONDS.toMillis(elapsed), sorted.length / (elapsed / 1e9),
+					percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static long percentile(long[] sorted, double percentile) {
+		int index = (int) Math.ceil(percentile * sorted.length) - 1;
+		return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+	}
+
+}
@@ -4,6 +4,12 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -67,6 +73,56 @@ class GetResultsServiceTest {
     	Assertions.assertEquals(CrawlStatus.ACTIVE, resultsList.getStatus());
     }
     
+    @Test
+    void testGetResults_SinceCursor() {
+    	CrawlTableResultSet crawl = new CrawlTableResultSet(id, url);
+    	crawl.getUrls().add(url + "/a");
+    	crawl.getUrls().add(url + "/b");
+    	when(dao.get(id)).thenReturn(crawl);
+
+    	ResultsResponse first = service.list(id, 0, 2);
+    	ResultsResponse next = service.list(id, first.getCursor(), 2);
+
+    	Assertions.assertEquals(List.of(url, url + "/a"), first.getUrls());
+    	Assertions.assertEquals(2, first.getCursor());
+    	Assertions.assertEquals(List.of(url + "/b"), next.getUrls());
+    	Assertions.assertEquals(3, next.getCursor());
+    	Assertions.assertEquals(3, service.list(id, next.getCursor(), 2).getCursor());
+    	Assertions.assertNull(service.list(id).getCursor());
+    }
+    
+    @Test
+    void testSubscribe_UntilDone() throws Exception {
+    	CrawlTableResultSet crawl = new CrawlTableResultSet(id, url);
+    	when(dao.get(id)).thenReturn(crawl);
+    	ResultsSubscription subscription = service.subscribe(id, 0);
+
+    	ResultsResponse first = subscription.next(10, 1_000);
+    	Assertions.assertEquals(List.of(url), first.getUrls());
+    	Assertions.assertEquals(CrawlStatus.ACTIVE, first.getStatus());
+    	Assertions.assertNull(subscription.next(10, 10));
+
+    	// URLs added while the subscriber waits wake it up
+    	CompletableFuture.runAsync(() -> {
+    		crawl.addUrl(url + "/a", Integer.MAX_VALUE);
+    		crawl.setStatus(CrawlStatus.DONE.name());
+    	}, CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS));
+    	List<String> urls = new ArrayList<>();
+    	while (!subscription.isClosed()) {
+    		Optional.ofNullable(subscription.next(10, 5_000)).ifPresent(page -> urls.addAll(page.getUrls()));
+    	}
+
+    	Assertions.assertEquals(List.of(url + "/a"), urls);
+    	Assertions.assertEquals(2, subscription.getCursor());
+    	Assertions.assertNull(subscription.next(10, 10));
+    }
+    
+    @Test
+    void testSubscribe_WhenNotFound() {
+    	when(dao.get(any())).thenReturn(null);
+    	Assertions.assertThrows(NoResultsException.class, () -> service.subscribe("any", 0));
+    }
+    
     @Test
     void testGetResults_WithInvalidId() {
     	when(dao.get("1")).thenThrow(IllegalArgumentException.class);